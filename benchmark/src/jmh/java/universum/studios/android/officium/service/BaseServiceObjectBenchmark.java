@@ -0,0 +1,64 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks association of service objects with services and requests via
+ * {@link BaseServiceObject#associateWith(ServiceObject, BaseServiceObject)} and its variants.
+ *
+ * @author Martin Albedinsky
+ */
+@State(Scope.Thread)
+public class BaseServiceObjectBenchmark {
+
+	private StubServiceCallback<Object> primitiveSource;
+	private StubServiceCallback<Object> stringSource;
+
+	@Setup public void setup() {
+		this.primitiveSource = new StubServiceCallback<>();
+		this.primitiveSource.setServiceId(1);
+		this.primitiveSource.setRequestId(1234567890L);
+		this.stringSource = new StubServiceCallback<>();
+		this.stringSource.setServiceId(1);
+		this.stringSource.setRequestId("1234567890");
+	}
+
+	@Benchmark public ServiceObject associateWithPrimitiveRequestId() {
+		final ServiceObject serviceObject = new ServiceResponse();
+		BaseServiceObject.associateWith(serviceObject, primitiveSource);
+		return serviceObject;
+	}
+
+	@Benchmark public ServiceObject associateWithStringRequestId() {
+		final ServiceObject serviceObject = new ServiceResponse();
+		BaseServiceObject.associateWith(serviceObject, stringSource);
+		return serviceObject;
+	}
+
+	@Benchmark public String associateAndGetRequestId() {
+		final ServiceObject serviceObject = new ServiceResponse();
+		BaseServiceObject.associateWith(serviceObject, primitiveSource);
+		return serviceObject.getRequestId();
+	}
+}
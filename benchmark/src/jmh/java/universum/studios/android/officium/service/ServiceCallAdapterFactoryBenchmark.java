@@ -0,0 +1,68 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import retrofit2.CallAdapter;
+import retrofit2.Retrofit;
+import universum.studios.android.officium.service.adapter.ServiceCallAdapterFactory;
+
+/**
+ * Benchmarks resolution of call adapters via {@link ServiceCallAdapterFactory#get(Type, Annotation[], Retrofit)}
+ * which is performed by Retrofit for each service method when it is invoked for the first time.
+ *
+ * @author Martin Albedinsky
+ */
+@State(Scope.Benchmark)
+public class ServiceCallAdapterFactoryBenchmark {
+
+	private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+	private ServiceCallAdapterFactory factory;
+	private Retrofit retrofit;
+	private Type serviceCallType;
+	private Type stringType;
+
+	@Setup public void setup() throws Exception {
+		this.factory = ServiceCallAdapterFactory.create();
+		this.retrofit = new Retrofit.Builder().baseUrl("https://www.android.com/").addCallAdapterFactory(factory).build();
+		this.serviceCallType = Services.class.getMethod("call").getGenericReturnType();
+		this.stringType = String.class;
+	}
+
+	@Benchmark public CallAdapter<?, ?> getForServiceCallType() {
+		return factory.get(serviceCallType, NO_ANNOTATIONS, retrofit);
+	}
+
+	@Benchmark public CallAdapter<?, ?> getForNotServiceCallType() {
+		return factory.get(stringType, NO_ANNOTATIONS, retrofit);
+	}
+
+	interface Services {
+
+		ServiceCall<String> call();
+	}
+}
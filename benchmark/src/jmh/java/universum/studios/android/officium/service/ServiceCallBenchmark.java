@@ -0,0 +1,81 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.annotation.Annotation;
+
+import retrofit2.CallAdapter;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import universum.studios.android.officium.service.adapter.ServiceCallAdapterFactory;
+
+/**
+ * Benchmarks wrapping of calls into {@link ServiceCall} and overhead of enqueuing via service call
+ * compared to enqueuing of the original call directly.
+ *
+ * @author Martin Albedinsky
+ */
+@State(Scope.Thread)
+public class ServiceCallBenchmark {
+
+	private StubCall<String> call;
+	private CallAdapter<String, ServiceCall<String>> adapter;
+	private StubServiceCallback<String> callback;
+
+	@SuppressWarnings("unchecked")
+	@Setup public void setup() throws Exception {
+		this.call = new StubCall<>(Response.success("data"));
+		final ServiceCallAdapterFactory factory = ServiceCallAdapterFactory.create();
+		final Retrofit retrofit = new Retrofit.Builder().baseUrl("https://www.android.com/").addCallAdapterFactory(factory).build();
+		this.adapter = (CallAdapter<String, ServiceCall<String>>) factory.get(
+				ServiceCallAdapterFactoryBenchmark.Services.class.getMethod("call").getGenericReturnType(),
+				new Annotation[0],
+				retrofit
+		);
+		this.callback = new StubServiceCallback<>();
+	}
+
+	@Benchmark public ServiceCall<String> wrap() {
+		return new ServiceCall<>(call);
+	}
+
+	@Benchmark public ServiceCall<String> adapt() {
+		return adapter.adapt(call);
+	}
+
+	@Benchmark public int enqueueDirectly() {
+		call.enqueue(callback);
+		return callback.responses;
+	}
+
+	@Benchmark public int enqueueViaServiceCall() {
+		final StubServiceCallback<String> serviceCallback = new StubServiceCallback<>();
+		new ServiceCall<>(call).withServiceId(1).enqueue(serviceCallback);
+		return serviceCallback.responses;
+	}
+
+	@Benchmark public long enqueueRequestViaServiceCall() {
+		return new ServiceCall<>(call).withServiceId(1).enqueueRequest(new StubServiceCallback<String>());
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+/**
+ * Benchmarks dispatching of responses and failures via {@link ServiceCallback}.
+ *
+ * @author Martin Albedinsky
+ */
+@State(Scope.Thread)
+public class ServiceCallbackBenchmark {
+
+	private StubCall<Object> call;
+	private StubServiceCallback<Object> callback;
+	private Response<Object> plainResponse;
+	private Response<Object> errorResponse;
+	private Exception failure;
+
+	@Setup public void setup() {
+		this.call = new StubCall<>(Response.success(new Object()));
+		this.callback = new StubServiceCallback<>();
+		this.callback.setServiceId(1);
+		this.callback.setRequestId(1L);
+		this.plainResponse = Response.success(new Object());
+		this.errorResponse = Response.error(400, ResponseBody.create(MediaType.parse("application/json"), "{}"));
+		this.failure = new Exception();
+	}
+
+	@Benchmark public int onResponseWithPlainBody() {
+		callback.onResponse(call, plainResponse);
+		return callback.responses;
+	}
+
+	@Benchmark public int onResponseWithServiceObjectBody() {
+		// Service objects may be associated only once, so each dispatch needs a new body.
+		callback.onResponse(call, Response.<Object>success(new ServiceResponse()));
+		return callback.responses;
+	}
+
+	@Benchmark public int onResponseWithError() {
+		callback.onResponse(call, errorResponse);
+		return callback.errors;
+	}
+
+	@Benchmark public int onFailure() {
+		callback.onFailure(call, failure);
+		return callback.errors;
+	}
+}
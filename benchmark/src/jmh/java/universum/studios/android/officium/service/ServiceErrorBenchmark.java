@@ -0,0 +1,68 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+
+/**
+ * Benchmarks conversion of error bodies via {@link ServiceError#getErrorBodyAs(Class)}.
+ *
+ * @author Martin Albedinsky
+ */
+@State(Scope.Thread)
+public class ServiceErrorBenchmark {
+
+	private static final MediaType JSON = MediaType.parse("application/json");
+	private static final String ERROR_BODY = "{\"code\":\"INVALID_REQUEST\",\"message\":\"Request is not valid.\"}";
+
+	private Converter<ResponseBody, String> converter;
+	private ServiceError decodedError;
+
+	@Setup public void setup() {
+		this.converter = new Converter<ResponseBody, String>() {
+
+			@Override public String convert(final ResponseBody body) throws IOException {
+				return body.string();
+			}
+		};
+		this.decodedError = new ServiceError(400, ResponseBody.create(JSON, ERROR_BODY));
+		this.decodedError.setErrorBodyConverter(converter);
+		this.decodedError.getErrorBodyAs(String.class);
+	}
+
+	@Benchmark public String getErrorBodyAs() {
+		// Each first conversion reads the error body, so it needs a new error.
+		final ServiceError error = new ServiceError(400, ResponseBody.create(JSON, ERROR_BODY));
+		error.setErrorBodyConverter(converter);
+		return error.getErrorBodyAs(String.class);
+	}
+
+	@Benchmark public String getErrorBodyAsMemoized() {
+		return decodedError.getErrorBodyAs(String.class);
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import java.io.IOException;
+
+import androidx.annotation.NonNull;
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * An in-memory {@link Call} implementation used by benchmarks which delivers the specified response
+ * synchronously on the caller's thread without any network access.
+ *
+ * @param <T> Type of the response body.
+ * @author Martin Albedinsky
+ */
+final class StubCall<T> implements Call<T> {
+
+	/**
+	 * Request returned by all stub calls.
+	 */
+	static final Request REQUEST = new Request.Builder().url("https://www.android.com/items").build();
+
+	/**
+	 * Response delivered by this call.
+	 */
+	private final Response<T> response;
+
+	/**
+	 * Creates a new instance of StubCall which delivers the specified <var>response</var>.
+	 *
+	 * @param response The response to be delivered by the new call.
+	 */
+	StubCall(@NonNull final Response<T> response) {
+		this.response = response;
+	}
+
+	/**
+	 */
+	@Override public Response<T> execute() throws IOException {
+		return response;
+	}
+
+	/**
+	 */
+	@Override public void enqueue(@NonNull final Callback<T> callback) {
+		callback.onResponse(this, response);
+	}
+
+	/**
+	 */
+	@Override public boolean isExecuted() {
+		return false;
+	}
+
+	/**
+	 */
+	@Override public void cancel() {}
+
+	/**
+	 */
+	@Override public boolean isCanceled() {
+		return false;
+	}
+
+	/**
+	 */
+	@SuppressWarnings("CloneDoesntCallSuperClone")
+	@Override public Call<T> clone() {
+		return new StubCall<>(response);
+	}
+
+	/**
+	 */
+	@Override public Request request() {
+		return REQUEST;
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A {@link ServiceCallback} implementation used by benchmarks which only counts dispatched responses
+ * and errors.
+ *
+ * @param <T> Type of the response body.
+ * @author Martin Albedinsky
+ */
+final class StubServiceCallback<T> extends ServiceCallback<T> {
+
+	/**
+	 * Counts of dispatched responses and errors.
+	 */
+	int responses, errors;
+
+	/**
+	 */
+	@Override protected void onDispatchResponse(@NonNull final T responseBody) {
+		this.responses++;
+	}
+
+	/**
+	 */
+	@Override protected void onDispatchError(@NonNull final ServiceError error) {
+		this.errors++;
+	}
+}
@@ -23,11 +23,21 @@ import androidx.annotation.Nullable;
 
 /**
  * Base implementation of {@link ServiceObject} for objects associated to services.
+ * <p>
+ * A single response body may be delivered to multiple requests, like when it is shared by
+ * concurrent identical requests or served from a cache. In such case, each request receives its
+ * own shallow copy of the body associated with that request, so subclasses should not rely on
+ * identity of the received bodies.
+ * <p>
+ * In addition to the string request id of {@link ServiceObject}, base service objects may be
+ * associated with a primitive request id, as generated by {@link ServiceCall#enqueueRequest(ServiceCallback)},
+ * which may be obtained via {@link #getRequestIdAsLong()}. Other implementations of {@link ServiceObject}
+ * are associated with string representation of such id.
  *
  * @author Martin Albedinsky
  * @since 1.0
  */
-public abstract class BaseServiceObject implements ServiceObject {
+public abstract class BaseServiceObject implements ServiceObject, Cloneable {
 
 	/*
 	 * Constants ===================================================================================
@@ -38,6 +48,14 @@ public abstract class BaseServiceObject implements ServiceObject {
 	 */
 	// private static final String TAG = "BaseServiceObject";
 
+	/**
+	 * Constant used to identify that a specific BaseServiceObject is not associated with any
+	 * particular service request identified by a primitive id.
+	 *
+	 * @see #getRequestIdAsLong()
+	 */
+	public static final long NO_REQUEST_ID = 0L;
+
 	/*
 	 * Interface ===================================================================================
 	 */
@@ -60,6 +78,16 @@ public abstract class BaseServiceObject implements ServiceObject {
 	 */
 	String requestId;
 
+	/**
+	 * Primitive request id to which is this object associated.
+	 */
+	long requestIdValue = NO_REQUEST_ID;
+
+	/**
+	 * Timings of network phases of the call for which has been this object received.
+	 */
+	CallTimings callTimings;
+
 	/*
 	 * Constructors ================================================================================
 	 */
@@ -81,10 +109,118 @@ public abstract class BaseServiceObject implements ServiceObject {
 	static void associateWith(@NonNull final ServiceObject serviceObject, @Nullable final Integer serviceId, @Nullable final String requestId) {
 		if (serviceId != null && serviceObject.getServiceId() == NO_SERVICE)
 			serviceObject.setServiceId(serviceId);
-		if (requestId != null && NO_REQUEST.equals(serviceObject.getRequestId()))
+		if (requestId != null && !hasRequestId(serviceObject))
 			serviceObject.setRequestId(requestId);
 	}
 
+	/**
+	 * Same as {@link #associateWith(ServiceObject, Integer, String)} but for a primitive
+	 * <var>requestId</var>.
+	 *
+	 * @param serviceObject The service object to be associated with the specified service and request.
+	 * @param serviceId     Id of the service to associate the service object with. May be {@code null}
+	 *                      to not associate.
+	 * @param requestId     Id of the service request to associate the service object with. May be
+	 *                      {@link #NO_REQUEST_ID} to not associate.
+	 */
+	static void associateWith(@NonNull final ServiceObject serviceObject, @Nullable final Integer serviceId, final long requestId) {
+		if (serviceId != null && serviceObject.getServiceId() == NO_SERVICE)
+			serviceObject.setServiceId(serviceId);
+		if (requestId == NO_REQUEST_ID || hasRequestId(serviceObject))
+			return;
+		if (serviceObject instanceof BaseServiceObject) {
+			((BaseServiceObject) serviceObject).setRequestId(requestId);
+		} else {
+			serviceObject.setRequestId(Long.toString(requestId));
+		}
+	}
+
+	/**
+	 * Associates the given <var>serviceObject</var> with the same service and request as the given
+	 * <var>source</var> object.
+	 *
+	 * @param serviceObject The service object to be associated with service and request of the source.
+	 * @param source        The service object of which association to copy.
+	 */
+	static void associateWith(@NonNull final ServiceObject serviceObject, @NonNull final BaseServiceObject source) {
+		if (source.requestId == null) {
+			associateWith(serviceObject, source.serviceId, source.requestIdValue);
+		} else {
+			associateWith(serviceObject, source.serviceId, source.requestId);
+		}
+	}
+
+	/**
+	 * Checks whether the given <var>serviceObject</var> has request id specified, avoiding creation
+	 * of string representation of primitive request id for base service objects.
+	 *
+	 * @param serviceObject The service object to check.
+	 * @return {@code True} if request id has been already specified, {@code false} otherwise.
+	 */
+	private static boolean hasRequestId(final ServiceObject serviceObject) {
+		if (serviceObject instanceof BaseServiceObject) {
+			return ((BaseServiceObject) serviceObject).hasRequestId();
+		}
+		return !NO_REQUEST.equals(serviceObject.getRequestId());
+	}
+
+	/**
+	 * Associates the given <var>serviceObject</var> with the same service and request as the given
+	 * <var>source</var> object if it is not associated with any request yet. Otherwise, when the
+	 * service object is a {@link BaseServiceObject} already associated with another request, like
+	 * a response body shared by multiple requests, a shallow copy of the service object is associated
+	 * instead.
+	 *
+	 * @param serviceObject The service object to be associated with service and request of the source.
+	 * @param source        The service object of which association to copy.
+	 * @return The associated service object, either the given one or its copy.
+	 */
+	@NonNull static ServiceObject associateOrCopy(@NonNull final ServiceObject serviceObject, @NonNull final BaseServiceObject source) {
+		if (!(serviceObject instanceof BaseServiceObject)) {
+			associateWith(serviceObject, source);
+			return serviceObject;
+		}
+		final BaseServiceObject baseObject = (BaseServiceObject) serviceObject;
+		synchronized (baseObject) {
+			if (baseObject.serviceId == null && !baseObject.hasRequestId()) {
+				associateWith(baseObject, source);
+				return baseObject;
+			}
+		}
+		final BaseServiceObject copy = baseObject.copy();
+		associateWith(copy, source);
+		return copy;
+	}
+
+	/**
+	 * Creates a shallow copy of this object which is not associated with any service nor request.
+	 *
+	 * @return Copy of this object.
+	 */
+	@NonNull BaseServiceObject copy() {
+		final BaseServiceObject copy;
+		try {
+			copy = (BaseServiceObject) super.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new AssertionError(e);
+		}
+		copy.serviceId = null;
+		copy.requestId = null;
+		copy.requestIdValue = NO_REQUEST_ID;
+		copy.callTimings = null;
+		return copy;
+	}
+
+	/**
+	 * Checks whether this object has request id specified.
+	 *
+	 * @return {@code True} if either string or primitive request id has been specified, {@code false}
+	 * otherwise.
+	 */
+	private boolean hasRequestId() {
+		return requestId != null || requestIdValue != NO_REQUEST_ID;
+	}
+
 	/**
 	 * @throws UnsupportedOperationException If service id has been already specified for this
 	 *                                       service object.
@@ -108,19 +244,87 @@ public abstract class BaseServiceObject implements ServiceObject {
 	 *                                       service object.
 	 */
 	@Override public final void setRequestId(@NonNull final String requestId) {
-		if (this.requestId == null) {
-			this.requestId = requestId;
-		} else {
-			throw new UnsupportedOperationException("Cannot change already specified request id(" + this.requestId + ")!");
+		if (hasRequestId()) {
+			throw new UnsupportedOperationException("Cannot change already specified request id(" + getRequestId() + ")!");
+		}
+		this.requestId = requestId;
+		this.requestIdValue = parseRequestId(requestId);
+	}
+
+	/**
+	 * Parses the given string <var>requestId</var> into its primitive representation.
+	 *
+	 * @param requestId The request id to parse.
+	 * @return Parsed request id or {@link #NO_REQUEST_ID} if the id does not represent a number.
+	 */
+	private static long parseRequestId(final String requestId) {
+		final int length = requestId.length();
+		if (length == 0 || length > 19) {
+			return NO_REQUEST_ID;
 		}
+		long value = 0;
+		for (int i = 0; i < length; i++) {
+			final char digit = requestId.charAt(i);
+			if (digit < '0' || digit > '9') {
+				return NO_REQUEST_ID;
+			}
+			value = value * 10 + (digit - '0');
+		}
+		// Values of 19 digits greater than Long.MAX_VALUE overflow into negative numbers.
+		return value < 0 ? NO_REQUEST_ID : value;
 	}
 
 	/**
 	 */
 	@Override @NonNull public final String getRequestId() {
+		if (requestId == null && requestIdValue != NO_REQUEST_ID) {
+			// String representation is created lazily, only when actually requested.
+			this.requestId = Long.toString(requestIdValue);
+		}
 		return requestId == null ? NO_REQUEST : requestId;
 	}
 
+	/**
+	 * Same as {@link #setRequestId(String)} but for a primitive request id, as generated by
+	 * {@link ServiceCall#enqueueRequest(ServiceCallback)}.
+	 *
+	 * @param requestId The desired request id. Should be unique among all requests made through
+	 *                  services API.
+	 * @throws UnsupportedOperationException If request id has been already specified for this
+	 *                                       service object.
+	 * @see #getRequestIdAsLong()
+	 */
+	public final void setRequestId(final long requestId) {
+		if (hasRequestId()) {
+			throw new UnsupportedOperationException("Cannot change already specified request id(" + getRequestId() + ")!");
+		}
+		this.requestIdValue = requestId;
+	}
+
+	/**
+	 * Returns the unique id of the request with which is this service object associated as primitive
+	 * value, so the object may be matched with its request without any parsing or allocation.
+	 *
+	 * @return Request id specified for this object or {@link #NO_REQUEST_ID} if there was no request
+	 * id provided or the provided one does not represent a number.
+	 * @see #setRequestId(long)
+	 */
+	public final long getRequestIdAsLong() {
+		return requestIdValue;
+	}
+
+	/**
+	 * Returns timings of network phases of the call for which has been this object received.
+	 * <p>
+	 * Timings are attached by {@link ServiceCallback} to response bodies and errors it dispatches
+	 * if the call has been performed by OkHttp client of {@link ServiceManager}.
+	 *
+	 * @return Call timings or {@code null} if there are no timings attached to this object.
+	 */
+	@Nullable public CallTimings getCallTimings() {
+		return callTimings;
+	}
+
 	/*
 	 * Inner classes ===============================================================================
 	 */
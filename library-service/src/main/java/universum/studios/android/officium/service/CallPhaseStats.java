@@ -0,0 +1,170 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Statistics of network phases of calls made for a single service, aggregated from {@link CallTimings}
+ * of the calls. Statistics for a specific service may be obtained via {@link ServiceManager#getCallPhaseStats(int)}.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class CallPhaseStats {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "CallPhaseStats";
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Id of the service for which have been the statistics aggregated.
+	 */
+	private final int serviceId;
+
+	/**
+	 * Count of aggregated calls.
+	 */
+	private final long callCount;
+
+	/**
+	 * Count of aggregated calls which have reused a pooled connection.
+	 */
+	private final long reusedConnectionCount;
+
+	/**
+	 * Counts of calls which have performed each phase.
+	 */
+	private final long[] phaseCounts;
+
+	/**
+	 * Total durations in nanoseconds of each phase.
+	 */
+	private final long[] phaseTotals;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of CallPhaseStats with the specified data.
+	 *
+	 * @param serviceId             Id of the service for which have been the statistics aggregated.
+	 * @param callCount             Count of aggregated calls.
+	 * @param reusedConnectionCount Count of calls which have reused a pooled connection.
+	 * @param phaseCounts           Counts of calls which have performed each phase.
+	 * @param phaseTotals           Total durations in nanoseconds of each phase.
+	 */
+	CallPhaseStats(final int serviceId, final long callCount, final long reusedConnectionCount, final long[] phaseCounts, final long[] phaseTotals) {
+		this.serviceId = serviceId;
+		this.callCount = callCount;
+		this.reusedConnectionCount = reusedConnectionCount;
+		this.phaseCounts = phaseCounts;
+		this.phaseTotals = phaseTotals;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Returns id of the service for which have been these statistics aggregated.
+	 *
+	 * @return Service id.
+	 */
+	public int getServiceId() {
+		return serviceId;
+	}
+
+	/**
+	 * Returns the count of calls aggregated in these statistics.
+	 *
+	 * @return Count of calls.
+	 */
+	public long getCallCount() {
+		return callCount;
+	}
+
+	/**
+	 * Returns the count of calls which have reused a pooled connection instead of opening a new one.
+	 *
+	 * @return Count of calls with reused connection.
+	 */
+	public long getReusedConnectionCount() {
+		return reusedConnectionCount;
+	}
+
+	/**
+	 * Returns the count of calls which have performed the specified <var>phase</var>.
+	 *
+	 * @param phase The phase of which count to return.
+	 * @return Count of calls which have performed the phase.
+	 */
+	public long getPhaseCount(@CallTimings.Phase final int phase) {
+		return phaseCounts[phase];
+	}
+
+	/**
+	 * Returns the mean duration of the specified <var>phase</var> computed from calls which have
+	 * performed that phase.
+	 *
+	 * @param phase The phase of which mean duration to return.
+	 * @param unit  The desired time unit.
+	 * @return Mean duration in the requested unit or {@code 0} if no call has performed the phase.
+	 */
+	public long getMeanDuration(@CallTimings.Phase final int phase, @NonNull final TimeUnit unit) {
+		final long count = phaseCounts[phase];
+		return count == 0 ? 0 : unit.convert(phaseTotals[phase] / count, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 */
+	@Override public String toString() {
+		return "CallPhaseStats{serviceId: " + serviceId +
+				", callCount: " + callCount +
+				", reusedConnectionCount: " + reusedConnectionCount +
+				", meanDnsMillis: " + getMeanDuration(CallTimings.PHASE_DNS, TimeUnit.MILLISECONDS) +
+				", meanConnectMillis: " + getMeanDuration(CallTimings.PHASE_CONNECT, TimeUnit.MILLISECONDS) +
+				", meanWaitMillis: " + getMeanDuration(CallTimings.PHASE_WAIT, TimeUnit.MILLISECONDS) +
+				", meanTotalMillis: " + getMeanDuration(CallTimings.PHASE_TOTAL, TimeUnit.MILLISECONDS) + "}";
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+}
@@ -0,0 +1,265 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.NonNull;
+
+/**
+ * Timings of network phases of a single OkHttp call recorded via {@link okhttp3.EventListener}
+ * installed by {@link ServiceManager} for its shared client.
+ * <p>
+ * Timings are attached by {@link ServiceCallback} enqueued via {@link ServiceCall#enqueue(ServiceCallback)}
+ * to the dispatched response body, if it is a {@link BaseServiceObject}, and to the dispatched
+ * {@link ServiceError}, and may be obtained via {@link BaseServiceObject#getCallTimings()}. Duration
+ * of a phase that has not been performed by the call, like DNS lookup or connect for a call which
+ * has reused a pooled connection, is {@code 0}.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class CallTimings {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "CallTimings";
+
+	/**
+	 * Defines an annotation for determining set of allowed phases for {@link #getDuration(int, TimeUnit)}.
+	 */
+	@Retention(RetentionPolicy.SOURCE)
+	@IntDef({
+			PHASE_DNS,
+			PHASE_CONNECT,
+			PHASE_SECURE_CONNECT,
+			PHASE_REQUEST,
+			PHASE_WAIT,
+			PHASE_RESPONSE,
+			PHASE_TOTAL
+	})
+	public @interface Phase {}
+
+	/**
+	 * Phase of DNS lookup of the host.
+	 */
+	public static final int PHASE_DNS = 0;
+
+	/**
+	 * Phase of opening of a new connection including its TLS handshake.
+	 */
+	public static final int PHASE_CONNECT = 1;
+
+	/**
+	 * Phase of TLS handshake of a new connection.
+	 */
+	public static final int PHASE_SECURE_CONNECT = 2;
+
+	/**
+	 * Phase of writing of request headers and body.
+	 */
+	public static final int PHASE_REQUEST = 3;
+
+	/**
+	 * Phase of waiting for the server, from the end of the request to receipt of response headers.
+	 */
+	public static final int PHASE_WAIT = 4;
+
+	/**
+	 * Phase of download of the response body.
+	 */
+	public static final int PHASE_RESPONSE = 5;
+
+	/**
+	 * Whole call, from its start to its end or failure.
+	 */
+	public static final int PHASE_TOTAL = 6;
+
+	/**
+	 * Count of all phases.
+	 */
+	static final int PHASE_COUNT = 7;
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Durations of phases in nanoseconds.
+	 */
+	private final long[] durations;
+
+	/**
+	 * Flag indicating whether the call has reused a pooled connection.
+	 */
+	private final boolean connectionReused;
+
+	/**
+	 * Count of bytes of the request body.
+	 */
+	private final long requestBytes;
+
+	/**
+	 * Count of bytes of the response body.
+	 */
+	private final long responseBytes;
+
+	/**
+	 * Flag indicating whether the call has failed.
+	 */
+	private final boolean failed;
+
+	/**
+	 * Recorder which has recorded these timings and to which these timings may be aggregated.
+	 */
+	private final ConnectionEventRecorder recorder;
+
+	/**
+	 * Flag indicating whether these timings have been already aggregated for a service.
+	 */
+	private final AtomicBoolean aggregated = new AtomicBoolean();
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of CallTimings with the specified data.
+	 *
+	 * @param recorder         The recorder which has recorded the timings.
+	 * @param durations        Durations of phases in nanoseconds.
+	 * @param connectionReused {@code True} if the call has reused a pooled connection.
+	 * @param requestBytes     Count of bytes of the request body.
+	 * @param responseBytes    Count of bytes of the response body.
+	 * @param failed           {@code True} if the call has failed.
+	 */
+	CallTimings(
+			@NonNull final ConnectionEventRecorder recorder,
+			@NonNull final long[] durations,
+			final boolean connectionReused,
+			final long requestBytes,
+			final long responseBytes,
+			final boolean failed
+	) {
+		this.recorder = recorder;
+		this.durations = durations;
+		this.connectionReused = connectionReused;
+		this.requestBytes = requestBytes;
+		this.responseBytes = responseBytes;
+		this.failed = failed;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Aggregates these timings to statistics of the service with the specified <var>serviceId</var>,
+	 * if they have not been aggregated yet.
+	 *
+	 * @param serviceId Id of the service for which to aggregate the timings.
+	 */
+	void aggregateFor(final int serviceId) {
+		if (aggregated.compareAndSet(false, true)) {
+			recorder.aggregate(serviceId, this);
+		}
+	}
+
+	/**
+	 * Returns the duration of the specified <var>phase</var>.
+	 *
+	 * @param phase The phase of which duration to return.
+	 * @param unit  The desired time unit.
+	 * @return Duration in the requested unit or {@code 0} if the phase has not been performed.
+	 */
+	public long getDuration(@Phase final int phase, @NonNull final TimeUnit unit) {
+		return unit.convert(durations[phase], TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Checks whether the call has reused a pooled connection instead of opening a new one.
+	 *
+	 * @return {@code True} if the connection has been reused, {@code false} otherwise.
+	 */
+	public boolean isConnectionReused() {
+		return connectionReused;
+	}
+
+	/**
+	 * Returns the count of bytes of the written request body.
+	 *
+	 * @return Count of request bytes.
+	 */
+	public long getRequestBytes() {
+		return requestBytes;
+	}
+
+	/**
+	 * Returns the count of bytes of the read response body.
+	 *
+	 * @return Count of response bytes.
+	 */
+	public long getResponseBytes() {
+		return responseBytes;
+	}
+
+	/**
+	 * Checks whether the call has failed.
+	 *
+	 * @return {@code True} if the call has failed, {@code false} if it has finished with response.
+	 */
+	public boolean isFailed() {
+		return failed;
+	}
+
+	/**
+	 */
+	@Override public String toString() {
+		return "CallTimings{dnsMillis: " + getDuration(PHASE_DNS, TimeUnit.MILLISECONDS) +
+				", connectMillis: " + getDuration(PHASE_CONNECT, TimeUnit.MILLISECONDS) +
+				", secureConnectMillis: " + getDuration(PHASE_SECURE_CONNECT, TimeUnit.MILLISECONDS) +
+				", requestMillis: " + getDuration(PHASE_REQUEST, TimeUnit.MILLISECONDS) +
+				", waitMillis: " + getDuration(PHASE_WAIT, TimeUnit.MILLISECONDS) +
+				", responseMillis: " + getDuration(PHASE_RESPONSE, TimeUnit.MILLISECONDS) +
+				", totalMillis: " + getDuration(PHASE_TOTAL, TimeUnit.MILLISECONDS) +
+				", connectionReused: " + connectionReused +
+				", failed: " + isFailed() + "}";
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+}
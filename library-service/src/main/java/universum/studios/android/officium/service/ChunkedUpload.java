@@ -0,0 +1,744 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+import okio.Source;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Upload which splits content of a file into parts of fixed size and uploads them in parallel, each
+ * via its own service call, so a network failure requires to upload again only the parts which have
+ * not been uploaded yet.
+ * <p>
+ * Calls for the parts are created via {@link PartCallFactory} specified for the upload, typically
+ * via a service api obtained from {@link ServiceManager}, so the parts are uploaded via the same
+ * client, interceptors and call adapters as other service calls. Each part is sent as
+ * {@link RequestBody} which streams the corresponding range of the file and the factory may send
+ * position of the part to the server, like via {@code Content-Range} header obtained via
+ * {@link Part#getContentRange()}.
+ * <p>
+ * If a state file is specified for the upload, indexes of the uploaded parts are persisted into it,
+ * so when {@link #execute()} fails or the process is killed, the next execution of an upload for
+ * the same file and the same state file uploads only the remaining parts. The state is discarded
+ * if the file has been modified in the meantime.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class ChunkedUpload {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "ChunkedUpload";
+
+	/**
+	 * Count of bytes to read from the file at once. Same as size of Okio segment.
+	 */
+	private static final long READ_SIZE = 8192;
+
+	/**
+	 * Version of format of the state file.
+	 */
+	private static final String STATE_VERSION = "v1";
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/**
+	 * Factory which creates service calls which upload particular parts of a {@link ChunkedUpload}.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public interface PartCallFactory {
+
+		/**
+		 * Creates a new call which uploads the given <var>body</var> of the specified <var>part</var>.
+		 * The part is treated as uploaded when the call receives a successful response.
+		 *
+		 * @param part The part to be uploaded.
+		 * @param body Body with content of the part.
+		 * @return Call to be executed.
+		 */
+		@NonNull Call<?> newPartCall(@NonNull Part part, @NonNull RequestBody body);
+	}
+
+	/**
+	 * Listener which may be used to receive aggregated progress of a {@link ChunkedUpload}.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public interface OnProgressListener {
+
+		/**
+		 * Invoked whenever progress of the given <var>upload</var> changes, at most once per progress
+		 * interval. This method is invoked on one of the threads which upload the parts.
+		 *
+		 * @param upload        The upload of which progress has changed.
+		 * @param uploadedBytes Count of bytes uploaded so far, including bytes of parts uploaded by
+		 *                      previous executions.
+		 * @param totalBytes    Total count of bytes to upload.
+		 */
+		void onProgress(@NonNull ChunkedUpload upload, long uploadedBytes, long totalBytes);
+	}
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * File of which content to upload.
+	 */
+	private final File file;
+
+	/**
+	 * Factory used to create calls for parts.
+	 */
+	private final PartCallFactory partCallFactory;
+
+	/**
+	 * Size of a single part in bytes.
+	 */
+	private final long partSize;
+
+	/**
+	 * Maximum count of parts uploaded at the same time.
+	 */
+	private final int maxConcurrency;
+
+	/**
+	 * File into which to persist state of the upload. May be {@code null}.
+	 */
+	private final File stateFile;
+
+	/**
+	 * Media type of the parts.
+	 */
+	private final MediaType mediaType;
+
+	/**
+	 * Listener to be notified about progress. May be {@code null}.
+	 */
+	private final OnProgressListener progressListener;
+
+	/**
+	 * Interval in nanoseconds at which to report progress.
+	 */
+	private final long progressInterval;
+
+	/**
+	 * Count of bytes uploaded so far.
+	 */
+	private final AtomicLong uploadedBytes = new AtomicLong();
+
+	/**
+	 * Time in nanoseconds at which has been progress reported for the last time.
+	 */
+	private final AtomicLong progressTime = new AtomicLong();
+
+	/**
+	 * Total count of bytes to upload.
+	 */
+	private long totalBytes;
+
+	/**
+	 * Batch executing the current execution. May be {@code null} if the upload is not executing.
+	 */
+	private volatile ServiceCallBatch<Object> batch;
+
+	/**
+	 * Flag indicating whether this upload has been canceled.
+	 */
+	private volatile boolean canceled;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of ChunkedUpload with configuration provided by the given <var>builder</var>.
+	 *
+	 * @param builder The builder with configuration for the new upload.
+	 */
+	ChunkedUpload(final Builder builder) {
+		this.file = builder.file;
+		this.partCallFactory = builder.partCallFactory;
+		this.partSize = builder.partSize;
+		this.maxConcurrency = builder.maxConcurrency;
+		this.stateFile = builder.stateFile;
+		this.mediaType = builder.mediaType;
+		this.progressListener = builder.progressListener;
+		this.progressInterval = builder.progressInterval;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Returns the file of which content is uploaded.
+	 *
+	 * @return The uploaded file.
+	 */
+	@NonNull public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the count of bytes uploaded so far.
+	 *
+	 * @return Uploaded bytes, including bytes of parts uploaded by previous executions.
+	 */
+	public long getUploadedBytes() {
+		return uploadedBytes.get();
+	}
+
+	/**
+	 * Uploads all parts of the file that have not been uploaded yet on the shared
+	 * {@link ServiceExecutors#background() background} executor and blocks until all of them are
+	 * uploaded or one of them fails.
+	 * <p>
+	 * When the upload fails, the parts already uploaded remain recorded in the state file (if any),
+	 * so another execution uploads only the remaining parts. When all parts are uploaded, the state
+	 * file is deleted.
+	 *
+	 * @throws IOException If reading of the file or upload of any part fails. A part for which
+	 *                     the server responds with an error response fails with {@link ServiceErrorException}.
+	 *                     Canceled upload fails with {@link ServiceFailure#CANCELED}.
+	 */
+	public void execute() throws IOException {
+		final long fileLength = file.length();
+		final long lastModified = file.lastModified();
+		final int partCount = (int) Math.max(1, (fileLength + partSize - 1) / partSize);
+		final String stateHeader = STATE_VERSION + " " + fileLength + " " + lastModified + " " + partSize;
+		final BitSet uploadedParts = readState(stateHeader, partCount);
+		final List<Part> parts = new ArrayList<>(partCount - uploadedParts.cardinality());
+		long alreadyUploadedBytes = 0;
+		for (int i = 0; i < partCount; i++) {
+			final Part part = new Part(i, i * partSize, Math.min(partSize, fileLength - i * partSize), fileLength);
+			if (uploadedParts.get(i)) {
+				alreadyUploadedBytes += part.length;
+			} else {
+				parts.add(part);
+			}
+		}
+		this.totalBytes = fileLength;
+		this.uploadedBytes.set(alreadyUploadedBytes);
+		if (parts.isEmpty()) {
+			deleteState();
+			return;
+		}
+		final List<Call<Object>> calls = new ArrayList<>(parts.size());
+		for (final Part part : parts) {
+			calls.add(newPartCall(part));
+		}
+		final BufferedSink stateSink = openState(stateHeader, uploadedParts.isEmpty());
+		try {
+			final ServiceCallBatch<Object> partsBatch = new ServiceCallBatch<>(calls, maxConcurrency, maxConcurrency, ServiceExecutors.background());
+			partsBatch.setOnResponseListener(new ServiceCallBatch.OnResponseListener<Object>() {
+
+				/**
+				 */
+				@Override public void onResponse(final int index, @NonNull final Response<Object> response) throws IOException {
+					if (!response.isSuccessful()) {
+						throw new ServiceErrorException(new ServiceError(response.code(), response.errorBody()));
+					}
+					recordUploadedPart(stateSink, parts.get(index).index);
+				}
+			});
+			this.batch = partsBatch;
+			if (canceled) {
+				partsBatch.cancel();
+			}
+			partsBatch.execute();
+		} finally {
+			this.batch = null;
+			if (stateSink != null) {
+				closeQuietly(stateSink);
+			}
+		}
+		deleteState();
+		dispatchProgress(true);
+	}
+
+	/**
+	 * Creates a new call which uploads the given <var>part</var>.
+	 *
+	 * @param part The part to upload.
+	 * @return Call for the part.
+	 */
+	@SuppressWarnings("unchecked")
+	private Call<Object> newPartCall(final Part part) {
+		return (Call<Object>) partCallFactory.newPartCall(part, new PartBody(part));
+	}
+
+	/**
+	 * Cancels this upload. The running calls are canceled and {@link #execute()} fails with
+	 * {@link ServiceFailure#CANCELED}. The parts already uploaded remain recorded in the state file.
+	 */
+	public void cancel() {
+		this.canceled = true;
+		final ServiceCallBatch<Object> currentBatch = batch;
+		if (currentBatch != null) {
+			currentBatch.cancel();
+		}
+	}
+
+	/**
+	 * Reads indexes of parts uploaded by previous executions from the state file.
+	 *
+	 * @param stateHeader Expected header of the state file.
+	 * @param partCount   Count of all parts.
+	 * @return Set of uploaded parts. Empty if there is no state file or it has been written for
+	 * another content or configuration.
+	 */
+	private BitSet readState(final String stateHeader, final int partCount) {
+		final BitSet uploadedParts = new BitSet(partCount);
+		if (stateFile == null || !stateFile.exists()) {
+			return uploadedParts;
+		}
+		BufferedSource source = null;
+		try {
+			source = Okio.buffer(Okio.source(stateFile));
+			if (!stateHeader.equals(source.readUtf8Line())) {
+				return uploadedParts;
+			}
+			String line;
+			while ((line = source.readUtf8Line()) != null) {
+				final int index = Integer.parseInt(line);
+				if (index >= 0 && index < partCount) {
+					uploadedParts.set(index);
+				}
+			}
+		} catch (IOException | NumberFormatException e) {
+			// Incomplete last record of a killed process, parts read so far are valid.
+		} finally {
+			closeQuietly(source);
+		}
+		return uploadedParts;
+	}
+
+	/**
+	 * Opens the state file for recording of uploaded parts.
+	 *
+	 * @param stateHeader Header of the state file.
+	 * @param reset       {@code True} to write a new state file, {@code false} to append to the
+	 *                    existing one.
+	 * @return Sink of the state file or {@code null} if there is no state file specified.
+	 * @throws IOException If the state file cannot be opened.
+	 */
+	private BufferedSink openState(final String stateHeader, final boolean reset) throws IOException {
+		if (stateFile == null) {
+			return null;
+		}
+		if (reset) {
+			final BufferedSink sink = Okio.buffer(Okio.sink(stateFile));
+			sink.writeUtf8(stateHeader).writeByte('\n').flush();
+			return sink;
+		}
+		return Okio.buffer(Okio.appendingSink(stateFile));
+	}
+
+	/**
+	 * Records the part at the specified <var>index</var> as uploaded.
+	 *
+	 * @param stateSink Sink of the state file. May be {@code null}.
+	 * @param index     Index of the uploaded part.
+	 * @throws IOException If the state cannot be written.
+	 */
+	private void recordUploadedPart(final BufferedSink stateSink, final int index) throws IOException {
+		if (stateSink != null) {
+			synchronized (stateSink) {
+				stateSink.writeDecimalLong(index).writeByte('\n').flush();
+			}
+		}
+	}
+
+	/**
+	 * Deletes the state file (if any).
+	 */
+	private void deleteState() {
+		if (stateFile != null) {
+			stateFile.delete();
+		}
+	}
+
+	/**
+	 * Reports the current progress to the progress listener, if the progress interval has elapsed
+	 * since the last report or if <var>force</var> is {@code true}.
+	 *
+	 * @param force {@code True} to report regardless of the progress interval.
+	 */
+	void dispatchProgress(final boolean force) {
+		if (progressListener == null) {
+			return;
+		}
+		final long now = System.nanoTime();
+		final long lastTime = progressTime.get();
+		if (force || (now - lastTime >= progressInterval && progressTime.compareAndSet(lastTime, now))) {
+			progressListener.onProgress(this, uploadedBytes.get(), totalBytes);
+		}
+	}
+
+	/**
+	 * Closes the given <var>closeable</var> ignoring any failure.
+	 *
+	 * @param closeable The closeable to close. May be {@code null}.
+	 */
+	private static void closeQuietly(final Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException ignored) {
+				// State has been already written or the upload has already failed.
+			}
+		}
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * Builder which may be used to create instances of {@link ChunkedUpload}.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public static final class Builder {
+
+		/**
+		 * See {@link ChunkedUpload#file}.
+		 */
+		final File file;
+
+		/**
+		 * See {@link ChunkedUpload#partCallFactory}.
+		 */
+		final PartCallFactory partCallFactory;
+
+		/**
+		 * See {@link ChunkedUpload#partSize}.
+		 */
+		long partSize = 1024 * 1024;
+
+		/**
+		 * See {@link ChunkedUpload#maxConcurrency}.
+		 */
+		int maxConcurrency = 2;
+
+		/**
+		 * See {@link ChunkedUpload#stateFile}.
+		 */
+		File stateFile;
+
+		/**
+		 * See {@link ChunkedUpload#mediaType}.
+		 */
+		MediaType mediaType = MediaType.parse("application/octet-stream");
+
+		/**
+		 * See {@link ChunkedUpload#progressListener}.
+		 */
+		OnProgressListener progressListener;
+
+		/**
+		 * See {@link ChunkedUpload#progressInterval}.
+		 */
+		long progressInterval = TimeUnit.MILLISECONDS.toNanos(100);
+
+		/**
+		 * Creates a new instance of Builder for upload of the specified <var>file</var>.
+		 *
+		 * @param file            The file of which content to upload.
+		 * @param partCallFactory The factory used to create calls for parts of the file.
+		 */
+		public Builder(@NonNull final File file, @NonNull final PartCallFactory partCallFactory) {
+			this.file = file;
+			this.partCallFactory = partCallFactory;
+		}
+
+		/**
+		 * Specifies size of a single part. The last part may be smaller.
+		 * <p>
+		 * Default value: {@code 1 MiB}
+		 *
+		 * @param size The desired size in bytes.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder partSize(final long size) {
+			this.partSize = size;
+			return this;
+		}
+
+		/**
+		 * Specifies maximum count of parts uploaded at the same time.
+		 * <p>
+		 * Default value: {@code 2}
+		 *
+		 * @param maxConcurrency The desired count.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder maxConcurrency(final int maxConcurrency) {
+			this.maxConcurrency = maxConcurrency;
+			return this;
+		}
+
+		/**
+		 * Specifies file into which to persist state of the upload, so an interrupted upload may be
+		 * resumed.
+		 * <p>
+		 * Default value: {@code null}
+		 *
+		 * @param file The desired state file. May be {@code null} to not persist the state.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder stateFile(@Nullable final File file) {
+			this.stateFile = file;
+			return this;
+		}
+
+		/**
+		 * Specifies media type of the uploaded parts.
+		 * <p>
+		 * Default value: {@code application/octet-stream}
+		 *
+		 * @param mediaType The desired media type. May be {@code null}.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder mediaType(@Nullable final MediaType mediaType) {
+			this.mediaType = mediaType;
+			return this;
+		}
+
+		/**
+		 * Specifies listener to be notified about progress of the upload.
+		 * <p>
+		 * Default value: {@code null}
+		 *
+		 * @param listener The desired listener. May be {@code null}.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder progressListener(@Nullable final OnProgressListener listener) {
+			this.progressListener = listener;
+			return this;
+		}
+
+		/**
+		 * Specifies interval at which should be progress of the upload reported.
+		 * <p>
+		 * Default value: {@code 100 ms}
+		 *
+		 * @param interval The desired interval.
+		 * @param unit     Unit of the interval.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder progressInterval(final long interval, @NonNull final TimeUnit unit) {
+			this.progressInterval = unit.toNanos(interval);
+			return this;
+		}
+
+		/**
+		 * Builds a new instance of ChunkedUpload with the current configuration.
+		 *
+		 * @return New upload ready to be executed.
+		 * @throws IllegalArgumentException If some of the configuration parameters is not valid.
+		 */
+		@NonNull public ChunkedUpload build() {
+			if (partSize <= 0) throw new IllegalArgumentException("Part size must be positive.");
+			if (maxConcurrency <= 0) throw new IllegalArgumentException("Max concurrency must be positive.");
+			if (progressInterval < 0) throw new IllegalArgumentException("Progress interval must not be negative.");
+			return new ChunkedUpload(this);
+		}
+	}
+
+	/**
+	 * A single part of a {@link ChunkedUpload}.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public static final class Part {
+
+		/**
+		 * Index of this part.
+		 */
+		final int index;
+
+		/**
+		 * Offset of this part in the file.
+		 */
+		final long offset;
+
+		/**
+		 * Length of this part in bytes.
+		 */
+		final long length;
+
+		/**
+		 * Length of the whole file in bytes.
+		 */
+		final long totalLength;
+
+		/**
+		 * Creates a new instance of Part with the specified position in the file.
+		 *
+		 * @param index       Index of the part.
+		 * @param offset      Offset of the part in the file.
+		 * @param length      Length of the part in bytes.
+		 * @param totalLength Length of the whole file in bytes.
+		 */
+		Part(final int index, final long offset, final long length, final long totalLength) {
+			this.index = index;
+			this.offset = offset;
+			this.length = length;
+			this.totalLength = totalLength;
+		}
+
+		/**
+		 * Returns the index of this part.
+		 *
+		 * @return Zero based index.
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * Returns the offset of this part in the file.
+		 *
+		 * @return Offset in bytes.
+		 */
+		public long getOffset() {
+			return offset;
+		}
+
+		/**
+		 * Returns the length of this part.
+		 *
+		 * @return Length in bytes.
+		 */
+		public long getLength() {
+			return length;
+		}
+
+		/**
+		 * Returns the value of {@code Content-Range} header describing position of this part in the
+		 * file, like {@code bytes 0-1048575/5242880}.
+		 *
+		 * @return Content range of this part.
+		 */
+		@NonNull public String getContentRange() {
+			return length == 0 ? "bytes */" + totalLength : "bytes " + offset + "-" + (offset + length - 1) + "/" + totalLength;
+		}
+	}
+
+	/**
+	 * A {@link RequestBody} which streams content of a single part from the file.
+	 */
+	private final class PartBody extends RequestBody {
+
+		/**
+		 * Part of which content to stream.
+		 */
+		private final Part part;
+
+		/**
+		 * Count of bytes of the part written by the last write.
+		 */
+		private long writtenBytes;
+
+		/**
+		 * Creates a new instance of PartBody for the specified <var>part</var>.
+		 *
+		 * @param part The part of which content to stream.
+		 */
+		PartBody(final Part part) {
+			this.part = part;
+		}
+
+		/**
+		 */
+		@Override public MediaType contentType() {
+			return mediaType;
+		}
+
+		/**
+		 */
+		@Override public long contentLength() {
+			return part.length;
+		}
+
+		/**
+		 */
+		@Override public void writeTo(@NonNull final BufferedSink sink) throws IOException {
+			// Body may be written multiple times, like when the request is retried.
+			uploadedBytes.addAndGet(-writtenBytes);
+			this.writtenBytes = 0;
+			final FileInputStream stream = new FileInputStream(file);
+			try {
+				stream.getChannel().position(part.offset);
+				final Source source = Okio.source(stream);
+				long remaining = part.length;
+				while (remaining > 0) {
+					final long readBytes = source.read(sink.buffer(), Math.min(remaining, READ_SIZE));
+					if (readBytes == -1) {
+						throw new IOException("File has been truncated while being uploaded.");
+					}
+					sink.emitCompleteSegments();
+					remaining -= readBytes;
+					this.writtenBytes += readBytes;
+					uploadedBytes.addAndGet(readBytes);
+					dispatchProgress(false);
+				}
+			} finally {
+				stream.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,420 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import retrofit2.Retrofit;
+
+/**
+ * An {@link EventListener.Factory} implementation which records connection related events dispatched
+ * by OkHttp client for all its calls. The recorded counts are used to build {@link ConnectionStats}.
+ * <p>
+ * Each call is also listened by its own listener which records timings of network phases of the
+ * call. When the call finishes, its {@link CallTimings} are published in this recorder keyed by tag
+ * of the request of the call, which is the original request unless a custom tag has been specified,
+ * or by the failure of the call. {@link ServiceCallback} which receives response or failure of the
+ * call, on any thread, may then resolve the recorder of the client which has executed the call via
+ * {@link #of(Retrofit)}, obtain the timings via {@link #timingsOf(okhttp3.Response)} or {@link #timingsOf(Throwable)}
+ * and aggregate them for its service into {@link CallPhaseStats}. Published timings are held only
+ * weakly by theirs keys, so timings which are never obtained do not leak.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+final class ConnectionEventRecorder implements EventListener.Factory {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "ConnectionEventRecorder";
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Timings of calls finished with response mapped to tags of theirs requests.
+	 */
+	private final Map<Object, CallTimings> responseTimings = Collections.synchronizedMap(new WeakHashMap<Object, CallTimings>());
+
+	/**
+	 * Timings of failed calls mapped to theirs failures.
+	 */
+	private final Map<Throwable, CallTimings> failureTimings = Collections.synchronizedMap(new WeakHashMap<Throwable, CallTimings>());
+
+	/**
+	 * Count of connections acquired by calls, either newly opened or reused from the pool.
+	 */
+	final AtomicLong acquiredConnections = new AtomicLong();
+
+	/**
+	 * Count of connections that have been successfully opened.
+	 */
+	final AtomicLong openedConnections = new AtomicLong();
+
+	/**
+	 * Count of connection attempts that have failed.
+	 */
+	final AtomicLong failedConnections = new AtomicLong();
+
+	/**
+	 * Aggregated phase timings mapped to ids of theirs services.
+	 */
+	private final ConcurrentMap<Integer, PhaseAggregate> aggregates = new ConcurrentHashMap<>(8);
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Resolves the recorder attached to the OkHttp client which executes calls created by the given
+	 * <var>retrofit</var> instance.
+	 *
+	 * @param retrofit The Retrofit instance of which recorder to resolve. May be {@code null}.
+	 * @return The recorder or {@code null} if the Retrofit instance does not use OkHttp client with
+	 * a recorder attached as its event listener factory.
+	 */
+	@Nullable static ConnectionEventRecorder of(@Nullable final Retrofit retrofit) {
+		if (retrofit == null) {
+			return null;
+		}
+		okhttp3.Call.Factory callFactory = retrofit.callFactory();
+		if (callFactory instanceof ServiceManager.ServicesConfiguration.SnapshotCallFactory) {
+			callFactory = ((ServiceManager.ServicesConfiguration.SnapshotCallFactory) callFactory).delegate();
+		}
+		if (callFactory instanceof OkHttpClient) {
+			final EventListener.Factory listenerFactory = ((OkHttpClient) callFactory).eventListenerFactory();
+			return listenerFactory instanceof ConnectionEventRecorder ? (ConnectionEventRecorder) listenerFactory : null;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns timings of the call which has received the given <var>response</var>.
+	 *
+	 * @param response The raw response of which call timings to return.
+	 * @return Timings of the call or {@code null} if there are no timings recorded for the response.
+	 */
+	@Nullable CallTimings timingsOf(@NonNull final okhttp3.Response response) {
+		return responseTimings.get(response.request().tag());
+	}
+
+	/**
+	 * Returns timings of the call which has failed with the given <var>failure</var>.
+	 *
+	 * @param failure The failure of which call timings to return.
+	 * @return Timings of the call or {@code null} if there are no timings recorded for the failure.
+	 */
+	@Nullable CallTimings timingsOf(@NonNull final Throwable failure) {
+		return failureTimings.get(failure);
+	}
+
+	/**
+	 */
+	@Override @NonNull public EventListener create(@NonNull final Call call) {
+		return new CallEventListener();
+	}
+
+	/**
+	 * Aggregates the given <var>timings</var> for the service with the specified <var>serviceId</var>.
+	 *
+	 * @param serviceId Id of the service for which to aggregate the timings.
+	 * @param timings   The timings to be aggregated.
+	 */
+	void aggregate(final int serviceId, @NonNull final CallTimings timings) {
+		PhaseAggregate aggregate = aggregates.get(serviceId);
+		if (aggregate == null) {
+			final PhaseAggregate newAggregate = new PhaseAggregate();
+			aggregate = aggregates.putIfAbsent(serviceId, newAggregate);
+			if (aggregate == null) {
+				aggregate = newAggregate;
+			}
+		}
+		aggregate.add(timings);
+	}
+
+	/**
+	 * Returns phase statistics aggregated for the service with the specified <var>serviceId</var>.
+	 *
+	 * @param serviceId Id of the service of which statistics to return.
+	 * @return Statistics or {@code null} if there are no calls aggregated for the service.
+	 */
+	@Nullable CallPhaseStats phaseStatsOf(final int serviceId) {
+		final PhaseAggregate aggregate = aggregates.get(serviceId);
+		return aggregate == null ? null : aggregate.snapshot(serviceId);
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * Lock-free aggregate of phase timings of calls made for a single service.
+	 */
+	private static final class PhaseAggregate {
+
+		/**
+		 * Count of aggregated calls.
+		 */
+		final AtomicLong calls = new AtomicLong();
+
+		/**
+		 * Count of aggregated calls which have reused a pooled connection.
+		 */
+		final AtomicLong reusedConnections = new AtomicLong();
+
+		/**
+		 * Counts of calls which have performed each phase.
+		 */
+		final AtomicLongArray phaseCounts = new AtomicLongArray(CallTimings.PHASE_COUNT);
+
+		/**
+		 * Total durations in nanoseconds of each phase.
+		 */
+		final AtomicLongArray phaseTotals = new AtomicLongArray(CallTimings.PHASE_COUNT);
+
+		/**
+		 * Adds the given <var>timings</var> into this aggregate.
+		 *
+		 * @param timings The timings to be added.
+		 */
+		void add(final CallTimings timings) {
+			calls.incrementAndGet();
+			if (timings.isConnectionReused()) {
+				reusedConnections.incrementAndGet();
+			}
+			for (int phase = 0; phase < CallTimings.PHASE_COUNT; phase++) {
+				final long duration = timings.getDuration(phase, TimeUnit.NANOSECONDS);
+				if (duration > 0) {
+					phaseCounts.incrementAndGet(phase);
+					phaseTotals.addAndGet(phase, duration);
+				}
+			}
+		}
+
+		/**
+		 * Creates a snapshot of this aggregate.
+		 *
+		 * @param serviceId Id of the service for which are the timings aggregated.
+		 * @return Phase statistics.
+		 */
+		CallPhaseStats snapshot(final int serviceId) {
+			final long[] counts = new long[CallTimings.PHASE_COUNT];
+			final long[] totals = new long[CallTimings.PHASE_COUNT];
+			for (int phase = 0; phase < CallTimings.PHASE_COUNT; phase++) {
+				counts[phase] = phaseCounts.get(phase);
+				totals[phase] = phaseTotals.get(phase);
+			}
+			return new CallPhaseStats(serviceId, calls.get(), reusedConnections.get(), counts, totals);
+		}
+	}
+
+	/**
+	 * An {@link EventListener} implementation which records timings of network phases of a single
+	 * call and counts its connection related events.
+	 */
+	private final class CallEventListener extends EventListener {
+
+		/**
+		 * Time in nanoseconds at which has been the call started.
+		 */
+		private long callStart;
+
+		/**
+		 * Times in nanoseconds at which have been started particular phases.
+		 */
+		private long dnsStart, connectStart, secureConnectStart, requestStart, requestEnd, responseHeadersEnd;
+
+		/**
+		 * Durations in nanoseconds of particular phases.
+		 */
+		private final long[] durations = new long[CallTimings.PHASE_COUNT];
+
+		/**
+		 * Counts of bytes of the request and response bodies.
+		 */
+		private long requestBytes, responseBytes;
+
+		/**
+		 * Flag indicating whether the call has acquired a connection.
+		 */
+		private boolean connectionAcquired;
+
+		/**
+		 */
+		@Override public void callStart(@NonNull final Call call) {
+			this.callStart = System.nanoTime();
+		}
+
+		/**
+		 */
+		@Override public void dnsStart(@NonNull final Call call, @NonNull final String domainName) {
+			this.dnsStart = System.nanoTime();
+		}
+
+		/**
+		 */
+		@Override public void dnsEnd(@NonNull final Call call, @NonNull final String domainName, @NonNull final List<InetAddress> addresses) {
+			this.durations[CallTimings.PHASE_DNS] += System.nanoTime() - dnsStart;
+		}
+
+		/**
+		 */
+		@Override public void connectStart(@NonNull final Call call, @NonNull final InetSocketAddress inetSocketAddress, @NonNull final Proxy proxy) {
+			this.connectStart = System.nanoTime();
+		}
+
+		/**
+		 */
+		@Override public void secureConnectStart(@NonNull final Call call) {
+			this.secureConnectStart = System.nanoTime();
+		}
+
+		/**
+		 */
+		@Override public void secureConnectEnd(@NonNull final Call call, @Nullable final Handshake handshake) {
+			this.durations[CallTimings.PHASE_SECURE_CONNECT] += System.nanoTime() - secureConnectStart;
+		}
+
+		/**
+		 */
+		@Override public void connectEnd(@NonNull final Call call, @NonNull final InetSocketAddress inetSocketAddress, @NonNull final Proxy proxy, @Nullable final Protocol protocol) {
+			this.durations[CallTimings.PHASE_CONNECT] += System.nanoTime() - connectStart;
+			openedConnections.incrementAndGet();
+		}
+
+		/**
+		 */
+		@Override public void connectFailed(@NonNull final Call call, @NonNull final InetSocketAddress inetSocketAddress, @NonNull final Proxy proxy, @Nullable final Protocol protocol, @NonNull final IOException failure) {
+			this.durations[CallTimings.PHASE_CONNECT] += System.nanoTime() - connectStart;
+			failedConnections.incrementAndGet();
+		}
+
+		/**
+		 */
+		@Override public void connectionAcquired(@NonNull final Call call, @NonNull final Connection connection) {
+			this.connectionAcquired = true;
+			acquiredConnections.incrementAndGet();
+		}
+
+		/**
+		 */
+		@Override public void requestHeadersStart(@NonNull final Call call) {
+			this.requestStart = System.nanoTime();
+		}
+
+		/**
+		 */
+		@Override public void requestHeadersEnd(@NonNull final Call call, @NonNull final Request request) {
+			this.requestEnd = System.nanoTime();
+			this.durations[CallTimings.PHASE_REQUEST] = requestEnd - requestStart;
+		}
+
+		/**
+		 */
+		@Override public void requestBodyEnd(@NonNull final Call call, final long byteCount) {
+			this.requestEnd = System.nanoTime();
+			this.durations[CallTimings.PHASE_REQUEST] = requestEnd - requestStart;
+			this.requestBytes = byteCount;
+		}
+
+		/**
+		 */
+		@Override public void responseHeadersEnd(@NonNull final Call call, @NonNull final Response response) {
+			this.responseHeadersEnd = System.nanoTime();
+			this.durations[CallTimings.PHASE_WAIT] = responseHeadersEnd - requestEnd;
+		}
+
+		/**
+		 */
+		@Override public void responseBodyEnd(@NonNull final Call call, final long byteCount) {
+			this.durations[CallTimings.PHASE_RESPONSE] = System.nanoTime() - responseHeadersEnd;
+			this.responseBytes = byteCount;
+		}
+
+		/**
+		 */
+		@Override public void callEnd(@NonNull final Call call) {
+			responseTimings.put(call.request().tag(), createTimings(false));
+		}
+
+		/**
+		 */
+		@Override public void callFailed(@NonNull final Call call, @NonNull final IOException failure) {
+			failureTimings.put(failure, createTimings(true));
+		}
+
+		/**
+		 * Creates timings from the data recorded by this listener.
+		 *
+		 * @param failed {@code True} if the call has failed, {@code false} if it has finished with response.
+		 * @return The call timings.
+		 */
+		private CallTimings createTimings(final boolean failed) {
+			this.durations[CallTimings.PHASE_TOTAL] = System.nanoTime() - callStart;
+			return new CallTimings(
+					ConnectionEventRecorder.this,
+					durations.clone(),
+					connectionAcquired && connectStart == 0,
+					requestBytes,
+					responseBytes,
+					failed
+			);
+		}
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import androidx.annotation.NonNull;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+
+/**
+ * Immutable snapshot of statistics about connections of the OkHttp client shared by services of
+ * a specific {@link ServiceManager}. Instance of these statistics may be obtained via
+ * {@link ServiceManager#getConnectionStats()}.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class ConnectionStats {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "ConnectionStats";
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Count of connections currently held in the connection pool.
+	 */
+	private final int pooledConnectionCount;
+
+	/**
+	 * Count of idle connections currently held in the connection pool.
+	 */
+	private final int idleConnectionCount;
+
+	/**
+	 * Count of calls currently running in the dispatcher.
+	 */
+	private final int runningCallCount;
+
+	/**
+	 * Count of calls currently waiting in the dispatcher's queue.
+	 */
+	private final int queuedCallCount;
+
+	/**
+	 * Total count of connections acquired by calls.
+	 */
+	private final long acquiredConnectionCount;
+
+	/**
+	 * Total count of connections that have been newly opened.
+	 */
+	private final long openedConnectionCount;
+
+	/**
+	 * Total count of connection attempts that have failed.
+	 */
+	private final long failedConnectionCount;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of ConnectionStats with the current state of the given <var>pool</var>,
+	 * <var>dispatcher</var> and <var>recorder</var>.
+	 *
+	 * @param pool       The connection pool of which state to capture.
+	 * @param dispatcher The dispatcher of which state to capture.
+	 * @param recorder   The recorder of which counts to capture.
+	 */
+	ConnectionStats(@NonNull final ConnectionPool pool, @NonNull final Dispatcher dispatcher, @NonNull final ConnectionEventRecorder recorder) {
+		this.pooledConnectionCount = pool.connectionCount();
+		this.idleConnectionCount = pool.idleConnectionCount();
+		this.runningCallCount = dispatcher.runningCallsCount();
+		this.queuedCallCount = dispatcher.queuedCallsCount();
+		this.acquiredConnectionCount = recorder.acquiredConnections.get();
+		this.openedConnectionCount = recorder.openedConnections.get();
+		this.failedConnectionCount = recorder.failedConnections.get();
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Returns the count of connections held in the connection pool at the time this snapshot has
+	 * been taken.
+	 *
+	 * @return Pooled connections count.
+	 * @see ConnectionPool#connectionCount()
+	 */
+	public int getPooledConnectionCount() {
+		return pooledConnectionCount;
+	}
+
+	/**
+	 * Returns the count of idle connections held in the connection pool at the time this snapshot
+	 * has been taken.
+	 *
+	 * @return Idle connections count.
+	 * @see ConnectionPool#idleConnectionCount()
+	 */
+	public int getIdleConnectionCount() {
+		return idleConnectionCount;
+	}
+
+	/**
+	 * Returns the count of calls that were running at the time this snapshot has been taken.
+	 *
+	 * @return Running calls count.
+	 * @see Dispatcher#runningCallsCount()
+	 */
+	public int getRunningCallCount() {
+		return runningCallCount;
+	}
+
+	/**
+	 * Returns the count of calls that were waiting to be executed at the time this snapshot has
+	 * been taken.
+	 *
+	 * @return Queued calls count.
+	 * @see Dispatcher#queuedCallsCount()
+	 */
+	public int getQueuedCallCount() {
+		return queuedCallCount;
+	}
+
+	/**
+	 * Returns the total count of connections acquired by calls, either newly opened or reused.
+	 *
+	 * @return Acquired connections count.
+	 */
+	public long getAcquiredConnectionCount() {
+		return acquiredConnectionCount;
+	}
+
+	/**
+	 * Returns the total count of connections that have been newly opened, that is, with performed
+	 * TCP (and TLS) handshake.
+	 *
+	 * @return Opened connections count.
+	 */
+	public long getOpenedConnectionCount() {
+		return openedConnectionCount;
+	}
+
+	/**
+	 * Returns the total count of connection acquisitions that have been satisfied by an already
+	 * opened connection without any additional handshake.
+	 *
+	 * @return Reused connections count.
+	 */
+	public long getReusedConnectionCount() {
+		return Math.max(0, acquiredConnectionCount - openedConnectionCount);
+	}
+
+	/**
+	 * Returns the total count of connection attempts that have failed.
+	 *
+	 * @return Failed connections count.
+	 */
+	public long getFailedConnectionCount() {
+		return failedConnectionCount;
+	}
+
+	/**
+	 */
+	@SuppressWarnings("StringBufferReplaceableByString")
+	@Override public String toString() {
+		final StringBuilder builder = new StringBuilder(128);
+		builder.append(getClass().getSimpleName());
+		builder.append("{pooled: ");
+		builder.append(pooledConnectionCount);
+		builder.append(", idle: ");
+		builder.append(idleConnectionCount);
+		builder.append(", running: ");
+		builder.append(runningCallCount);
+		builder.append(", queued: ");
+		builder.append(queuedCallCount);
+		builder.append(", acquired: ");
+		builder.append(acquiredConnectionCount);
+		builder.append(", opened: ");
+		builder.append(openedConnectionCount);
+		builder.append(", reused: ");
+		builder.append(getReusedConnectionCount());
+		builder.append(", failed: ");
+		builder.append(failedConnectionCount);
+		return builder.append("}").toString();
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+}
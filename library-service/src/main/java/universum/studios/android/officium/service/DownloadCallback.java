@@ -0,0 +1,441 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+import okio.Sink;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * A {@link ServiceCallback} implementation which streams body of a successful response into a file
+ * or into a sink, without buffering the whole body in memory, and reports progress of the download.
+ * <p>
+ * The body is written on the shared {@link ServiceExecutors#background() background} executor
+ * segment by segment, so the body is never held in memory as a whole. For this to be true also for
+ * the response itself, the corresponding service api method should be annotated with
+ * {@link retrofit2.http.Streaming @Streaming}, otherwise Retrofit buffers the whole body before it
+ * is delivered to this callback.
+ * <p>
+ * When writing into a file, the body is first written into a temporary {@code .part} file which
+ * replaces the target file once the whole body has been written. If the connection drops while the
+ * body is being downloaded, the download is resumed via a request with {@code Range} header, so
+ * the already downloaded bytes are not downloaded again. If the server does not support ranges or
+ * the content has changed, the download starts again from the beginning. Downloads into a sink may
+ * be resumed only if the server supports ranges.
+ * <p>
+ * Progress is reported via {@link #onDispatchProgress(long, long)} at most once per progress interval
+ * and the downloaded body via {@link #onDispatchDownload(long)}. Both, along with errors, are dispatched
+ * via callback executor of the Retrofit instance which has created the call, if the call is
+ * a {@link ServiceCall} created by {@link universum.studios.android.officium.service.adapter.ServiceCallAdapterFactory ServiceCallAdapterFactory}
+ * and the Retrofit instance has a callback executor. Otherwise errors of error responses are
+ * dispatched on the thread which has received the response and the other results on the background
+ * thread.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public abstract class DownloadCallback extends ServiceCallback<ResponseBody> {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "DownloadCallback";
+
+	/**
+	 * Default interval in milliseconds at which is progress of download reported.
+	 */
+	public static final long DEFAULT_PROGRESS_INTERVAL = 100;
+
+	/**
+	 * Default count of attempts to resume download after the connection drops.
+	 */
+	public static final int DEFAULT_MAX_RESUME_ATTEMPTS = 3;
+
+	/**
+	 * Count of bytes to read from the response body at once. Same as size of Okio segment.
+	 */
+	private static final long READ_SIZE = 8192;
+
+	/**
+	 * Suffix of the temporary file into which is the body written.
+	 */
+	private static final String PART_FILE_SUFFIX = ".part";
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * File into which to write the downloaded body. May be {@code null} if downloading into a sink.
+	 */
+	private final File file;
+
+	/**
+	 * Sink into which to write the downloaded body. May be {@code null} if downloading into a file.
+	 */
+	private final Sink sink;
+
+	/**
+	 * Interval in nanoseconds at which to report progress.
+	 */
+	private long progressInterval = TimeUnit.MILLISECONDS.toNanos(DEFAULT_PROGRESS_INTERVAL);
+
+	/**
+	 * Count of attempts to resume download after the connection drops.
+	 */
+	private int maxResumeAttempts = DEFAULT_MAX_RESUME_ATTEMPTS;
+
+	/**
+	 * Executor on which to write the downloaded body.
+	 */
+	@VisibleForTesting Executor downloadExecutor = ServiceExecutors.background();
+
+	/**
+	 * Raw response of which body is being downloaded.
+	 */
+	private okhttp3.Response rawResponse;
+
+	/**
+	 * Flag indicating whether the download has been canceled.
+	 */
+	private volatile boolean canceled;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of DownloadCallback which writes the downloaded body into the specified
+	 * <var>file</var>.
+	 *
+	 * @param file The file into which to write the body. Existing file is replaced once the whole
+	 *             body is downloaded.
+	 */
+	protected DownloadCallback(@NonNull final File file) {
+		this.file = file;
+		this.sink = null;
+	}
+
+	/**
+	 * Creates a new instance of DownloadCallback which writes the downloaded body into the specified
+	 * <var>sink</var>. The sink is closed once the download finishes or fails.
+	 *
+	 * @param sink The sink into which to write the body.
+	 */
+	protected DownloadCallback(@NonNull final Sink sink) {
+		this.file = null;
+		this.sink = sink;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Specifies interval at which should be progress of the download reported.
+	 *
+	 * @param interval The desired interval.
+	 * @param unit     Unit of the interval.
+	 * @return This callback to allow methods chaining.
+	 */
+	public DownloadCallback setProgressInterval(final long interval, @NonNull final TimeUnit unit) {
+		this.progressInterval = unit.toNanos(interval);
+		return this;
+	}
+
+	/**
+	 * Specifies count of attempts to resume the download after the connection drops.
+	 *
+	 * @param maxAttempts The desired count of attempts. May be {@code 0} to not resume.
+	 * @return This callback to allow methods chaining.
+	 */
+	public DownloadCallback setMaxResumeAttempts(final int maxAttempts) {
+		this.maxResumeAttempts = maxAttempts;
+		return this;
+	}
+
+	/**
+	 * Returns the file into which is the body downloaded.
+	 *
+	 * @return The target file or {@code null} if this callback downloads into a sink.
+	 */
+	@Nullable public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Cancels the download. The download fails with {@link ServiceFailure#CANCELED} and the partially
+	 * downloaded body is discarded.
+	 */
+	public void cancel() {
+		this.canceled = true;
+	}
+
+	/**
+	 */
+	@Override public void onResponse(@NonNull final Call<ResponseBody> call, @NonNull final Response<ResponseBody> response) {
+		this.rawResponse = response.raw();
+		super.onResponse(call, response);
+	}
+
+	/**
+	 * Starts writing of the given <var>responseBody</var> on the background executor.
+	 */
+	@Override protected final void onDispatchResponse(@Nullable final ResponseBody responseBody) {
+		final okhttp3.Response response = rawResponse;
+		this.downloadExecutor.execute(new Runnable() {
+
+			/**
+			 */
+			@Override public void run() {
+				download(responseBody, response);
+			}
+		});
+	}
+
+	/**
+	 * Writes the given <var>body</var> into the file or sink of this callback and dispatches the result.
+	 *
+	 * @param body     The body to write. May be {@code null} if the response has no body.
+	 * @param response Raw response of which body to write.
+	 */
+	@VisibleForTesting void download(@Nullable final ResponseBody body, @Nullable final okhttp3.Response response) {
+		final File partFile = file == null ? null : new File(file.getPath() + PART_FILE_SUFFIX);
+		final long byteCount;
+		try {
+			byteCount = write(body, response, partFile);
+			if (partFile != null && ((file.exists() && !file.delete()) || !partFile.renameTo(file))) {
+				throw new IOException("Failed to move downloaded file to " + file + ".");
+			}
+		} catch (IOException e) {
+			if (partFile != null) {
+				partFile.delete();
+			}
+			final ServiceError error = new ServiceError(canceled ? ServiceFailure.CANCELED : e);
+			associateWith(error, this);
+			dispatch(new Runnable() {
+
+				/**
+				 */
+				@Override public void run() {
+					onDispatchError(error);
+				}
+			});
+			return;
+		}
+		dispatch(new Runnable() {
+
+			/**
+			 */
+			@Override public void run() {
+				onDispatchProgress(byteCount, byteCount);
+				onDispatchDownload(byteCount);
+			}
+		});
+	}
+
+	/**
+	 * Writes the given <var>body</var>, resuming the download if the connection drops.
+	 *
+	 * @param body     The body to write.
+	 * @param response Raw response of which body to write.
+	 * @param partFile The temporary file into which to write or {@code null} to write into sink.
+	 * @return Count of written bytes.
+	 * @throws IOException If writing fails and the download may not be resumed.
+	 */
+	private long write(final ResponseBody body, final okhttp3.Response response, final File partFile) throws IOException {
+		BufferedSink target = Okio.buffer(partFile == null ? sink : Okio.sink(partFile));
+		BufferedSource source = body == null ? null : body.source();
+		long totalBytes = body == null ? 0 : body.contentLength();
+		long writtenBytes = 0;
+		long lastProgressTime = System.nanoTime();
+		int resumeAttempts = 0;
+		try {
+			while (source != null) {
+				try {
+					long readBytes;
+					while ((readBytes = source.read(target.buffer(), READ_SIZE)) != -1) {
+						target.emitCompleteSegments();
+						writtenBytes += readBytes;
+						if (canceled) {
+							throw ServiceFailure.CANCELED;
+						}
+						final long now = System.nanoTime();
+						if (now - lastProgressTime >= progressInterval) {
+							lastProgressTime = now;
+							dispatchProgress(writtenBytes, totalBytes);
+						}
+					}
+					source.close();
+					source = null;
+				} catch (IOException e) {
+					closeQuietly(source);
+					source = null;
+					if (canceled || resumeAttempts >= maxResumeAttempts || response == null) {
+						throw e;
+					}
+					resumeAttempts++;
+					final okhttp3.Response resumedResponse = resume(response, writtenBytes, e);
+					final ResponseBody resumedBody = resumedResponse.body();
+					if (resumedResponse.code() != 206) {
+						// Server sends the whole body again.
+						if (partFile == null) {
+							resumedResponse.close();
+							throw e;
+						}
+						target.close();
+						target = Okio.buffer(Okio.sink(partFile));
+						writtenBytes = 0;
+						totalBytes = resumedBody.contentLength();
+					}
+					source = resumedBody.source();
+				}
+			}
+			target.flush();
+		} finally {
+			closeQuietly(target);
+		}
+		return writtenBytes;
+	}
+
+	/**
+	 * Requests the remaining part of the body of the given <var>response</var>.
+	 *
+	 * @param response     The original response.
+	 * @param writtenBytes Count of bytes of the body already written.
+	 * @param failure      The failure which has interrupted the download.
+	 * @return Response with either the remaining part of the body ({@code 206}) or with the whole
+	 * body ({@code 200}).
+	 * @throws IOException The failure if there is no way to request the body or the request has failed
+	 *                     or the server has responded unexpectedly.
+	 */
+	private okhttp3.Response resume(final okhttp3.Response response, final long writtenBytes, final IOException failure) throws IOException {
+		if (retrofit == null) {
+			throw failure;
+		}
+		final Request.Builder requestBuilder = response.request().newBuilder()
+				.header("Range", "bytes=" + writtenBytes + "-");
+		final String validator = response.header("ETag", response.header("Last-Modified"));
+		if (validator != null) {
+			requestBuilder.header("If-Range", validator);
+		}
+		final okhttp3.Response resumedResponse = retrofit.callFactory().newCall(requestBuilder.build()).execute();
+		final String contentRange = resumedResponse.header("Content-Range");
+		if (resumedResponse.code() == 200 || (resumedResponse.code() == 206 && contentRange != null && contentRange.startsWith("bytes " + writtenBytes + "-"))) {
+			return resumedResponse;
+		}
+		resumedResponse.close();
+		throw failure;
+	}
+
+	/**
+	 * Dispatches the specified progress via callback executor.
+	 *
+	 * @param writtenBytes Count of already written bytes.
+	 * @param totalBytes   Total count of bytes or {@code -1} if unknown.
+	 */
+	private void dispatchProgress(final long writtenBytes, final long totalBytes) {
+		dispatch(new Runnable() {
+
+			/**
+			 */
+			@Override public void run() {
+				onDispatchProgress(writtenBytes, totalBytes);
+			}
+		});
+	}
+
+	/**
+	 * Runs the given <var>action</var> via callback executor of the associated Retrofit instance or
+	 * directly if there is no such executor.
+	 *
+	 * @param action The action to run.
+	 */
+	private void dispatch(final Runnable action) {
+		final Executor executor = retrofit == null ? null : retrofit.callbackExecutor();
+		if (executor == null) {
+			action.run();
+		} else {
+			executor.execute(action);
+		}
+	}
+
+	/**
+	 * Closes the given <var>closeable</var> ignoring any failure.
+	 *
+	 * @param closeable The closeable to close. May be {@code null}.
+	 */
+	private static void closeQuietly(final Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException ignored) {
+				// Body has been already downloaded or the download has already failed.
+			}
+		}
+	}
+
+	/**
+	 * Invoked to dispatch progress of the download.
+	 *
+	 * @param writtenBytes Count of bytes already written.
+	 * @param totalBytes   Total count of bytes of the body or {@code -1} if unknown.
+	 */
+	protected void onDispatchProgress(final long writtenBytes, final long totalBytes) {
+		// Inheritance hierarchies may for example update progress indicator.
+	}
+
+	/**
+	 * Invoked to dispatch the downloaded body, once it has been whole written into file, which may
+	 * be obtained via {@link #getFile()}, or into sink.
+	 *
+	 * @param byteCount Count of downloaded bytes.
+	 */
+	protected abstract void onDispatchDownload(long byteCount);
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+}
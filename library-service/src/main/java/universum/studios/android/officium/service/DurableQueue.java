@@ -0,0 +1,1012 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+import retrofit2.Response;
+
+/**
+ * Queue which persists requests of service calls in an append-only log on disk and replays them
+ * whenever the network is available, so requests made while offline are not lost even if the process
+ * is killed in the meantime. Requests may be added into the queue via {@link ServiceCall#enqueueDurable(DurableQueue)}
+ * or {@link ServiceCall#enqueueDurable(DurableQueue, ServiceCallback)}.
+ * <p>
+ * Records are appended to the log in batches and each batch is synced to the storage device via
+ * a single {@code fsync}, at most {@link Builder#syncDelay(long, TimeUnit)} after a request has
+ * been added. A synced batch triggers replay of the queue. Requests are replayed in the order in
+ * which they have been added with bounded concurrency. Whenever a replayed request fails with an
+ * {@link IOException}, which is the case while offline, replay is stopped and the request is replayed
+ * again the next time, either after {@link Builder#retryDelay(long, TimeUnit)} or when {@link #replay()}
+ * is called, for example when the network connectivity is restored. A request is removed from the
+ * queue once any response has been received for it, so requests are delivered <b>at least once</b>.
+ * <p>
+ * Results of requests added with a {@link ServiceCallback} are delivered to that callback, by its
+ * request id, as long as the process which has added them lives. Results of other requests, like
+ * those which have been restored from the log after the process restart, are delivered to the
+ * {@link OnReplayListener} by request id.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class DurableQueue {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "DurableQueue";
+
+	/**
+	 * Default maximum count of requests which may be replayed at the same time.
+	 */
+	public static final int DEFAULT_MAX_CONCURRENCY = 2;
+
+	/**
+	 * Default delay in milliseconds after which are added requests synced to the log.
+	 */
+	public static final long DEFAULT_SYNC_DELAY = 100;
+
+	/**
+	 * Default delay in milliseconds after which is replay retried when it has been stopped due to
+	 * a failed request.
+	 */
+	public static final long DEFAULT_RETRY_DELAY = 30000;
+
+	/**
+	 * Type of log record for an added request.
+	 */
+	private static final byte RECORD_ENQUEUED = 1;
+
+	/**
+	 * Type of log record for a request which has been replayed.
+	 */
+	private static final byte RECORD_COMPLETED = 2;
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/**
+	 * Listener which may be used to receive results of replayed requests which are not delivered
+	 * to a {@link ServiceCallback}.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public interface OnReplayListener {
+
+		/**
+		 * Invoked on a background thread whenever a response is received for a replayed request.
+		 *
+		 * @param queue     The queue which has replayed the request.
+		 * @param requestId Id of the request returned when it has been added into the queue.
+		 * @param serviceId Id of the service specified for the request's call. May be {@link ServiceObject#NO_SERVICE}.
+		 * @param response  The received response, with its body already read into memory.
+		 */
+		void onRequestReplayed(@NonNull DurableQueue queue, @NonNull String requestId, int serviceId, @NonNull okhttp3.Response response);
+
+		/**
+		 * Invoked on a background thread whenever a request cannot be replayed due to other failure
+		 * than an {@link IOException}. Such request is removed from the queue.
+		 *
+		 * @param queue     The queue which has replayed the request.
+		 * @param requestId Id of the request returned when it has been added into the queue.
+		 * @param serviceId Id of the service specified for the request's call. May be {@link ServiceObject#NO_SERVICE}.
+		 * @param failure   The failure of the request.
+		 */
+		void onRequestFailed(@NonNull DurableQueue queue, @NonNull String requestId, int serviceId, @NonNull Throwable failure);
+	}
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * File of the log.
+	 */
+	private final File file;
+
+	/**
+	 * Call factory used to replay requests which are not replayed via theirs service calls.
+	 */
+	private final okhttp3.Call.Factory callFactory;
+
+	/**
+	 * Maximum count of requests which may be replayed at the same time.
+	 */
+	private final int maxConcurrency;
+
+	/**
+	 * Delay in milliseconds after which are added requests synced to the log.
+	 */
+	private final long syncDelay;
+
+	/**
+	 * Delay in milliseconds after which is replay retried when it has been stopped.
+	 */
+	private final long retryDelay;
+
+	/**
+	 * Executor used to sync the log and to replay requests.
+	 */
+	private final Executor executor;
+
+	/**
+	 * Scheduler used to schedule delayed syncs and retries.
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * Lock guarding writes into the log {@link #file}.
+	 */
+	private final Object fileLock = new Object();
+
+	/**
+	 * Requests which have not been replayed yet, in the order in which they have been added and
+	 * mapped to theirs request ids.
+	 */
+	private final Map<String, Entry> pending;
+
+	/**
+	 * Records which have not been synced to the log yet.
+	 */
+	private Buffer unsynced = new Buffer();
+
+	/**
+	 * Listener to be notified about results of replayed requests. May be {@code null}.
+	 */
+	private volatile OnReplayListener replayListener;
+
+	/**
+	 * Flag indicating whether sync of the log is scheduled.
+	 */
+	private boolean syncScheduled;
+
+	/**
+	 * Flag indicating whether retry of replay is scheduled.
+	 */
+	private boolean retryScheduled;
+
+	/**
+	 * Flag indicating whether the queue is being replayed.
+	 */
+	private boolean replaying;
+
+	/**
+	 * Flag indicating whether the current replay has been stopped due to a failed request.
+	 */
+	private boolean stopped;
+
+	/**
+	 * Count of requests which are being replayed.
+	 */
+	private int runningCount;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of DurableQueue with configuration provided by the given <var>builder</var>.
+	 *
+	 * @param builder The builder with configuration for the new queue.
+	 * @param pending Requests restored from the log.
+	 */
+	DurableQueue(final Builder builder, final Map<String, Entry> pending) {
+		this.file = builder.file;
+		this.callFactory = builder.callFactory;
+		this.maxConcurrency = builder.maxConcurrency;
+		this.syncDelay = builder.syncDelay;
+		this.retryDelay = builder.retryDelay;
+		this.executor = builder.executor;
+		this.scheduler = builder.scheduler;
+		this.pending = pending;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Specifies listener to be notified about results of replayed requests which are not delivered
+	 * to a {@link ServiceCallback}.
+	 *
+	 * @param listener The desired listener. May be {@code null} to clear the current one.
+	 */
+	public void setOnReplayListener(@Nullable final OnReplayListener listener) {
+		this.replayListener = listener;
+	}
+
+	/**
+	 * Returns the file of the log of this queue.
+	 *
+	 * @return The log file.
+	 */
+	@NonNull public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the count of requests which have not been replayed yet.
+	 *
+	 * @return Count of pending requests.
+	 */
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Adds the given <var>request</var> into this queue.
+	 *
+	 * @param requestId Id of the request.
+	 * @param serviceId Id of the service of the request.
+	 * @param request   The request to add.
+	 * @param liveCall  Call via which to replay the request while the process lives. May be {@code null}.
+	 * @throws IllegalArgumentException If body of the request cannot be serialized.
+	 */
+	void enqueue(final String requestId, final int serviceId, final Request request, @Nullable final LiveCall<?> liveCall) {
+		final Entry entry;
+		final Buffer record = new Buffer();
+		try {
+			entry = new Entry(requestId, serviceId, copyOf(request));
+			writeEntry(record, entry);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Failed to serialize request(" + request + ").", e);
+		}
+		entry.liveCall = liveCall;
+		synchronized (this) {
+			pending.put(requestId, entry);
+			unsynced.write(record, record.size());
+			scheduleSync();
+		}
+	}
+
+	/**
+	 * Schedules sync of the log followed by replay of this queue, if not scheduled yet.
+	 * <p>
+	 * <b>Note</b>, that this method should be called only while holding lock of this queue.
+	 */
+	private void scheduleSync() {
+		if (!syncScheduled) {
+			this.syncScheduled = true;
+			scheduler.schedule(new Runnable() {
+
+				/**
+				 */
+				@Override public void run() {
+					executor.execute(new Runnable() {
+
+						/**
+						 */
+						@Override public void run() {
+							try {
+								flush();
+							} catch (IOException e) {
+								// Records remain buffered and are synced with the next batch.
+							}
+							replay();
+						}
+					});
+				}
+			}, syncDelay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Writes all records which have not been synced yet to the log and syncs it to the storage device.
+	 * <p>
+	 * This method is invoked automatically with delay specified via {@link Builder#syncDelay(long, TimeUnit)}
+	 * whenever a request is added into this queue.
+	 *
+	 * @throws IOException If writing to the log fails. In such case the records remain buffered.
+	 */
+	public void flush() throws IOException {
+		synchronized (fileLock) {
+			final Buffer records;
+			synchronized (this) {
+				this.syncScheduled = false;
+				records = unsynced;
+				this.unsynced = new Buffer();
+			}
+			if (records.size() == 0) {
+				return;
+			}
+			final RandomAccessFile log = new RandomAccessFile(file, "rw");
+			final long length = log.length();
+			try {
+				log.seek(length);
+				log.write(records.clone().readByteArray());
+				log.getFD().sync();
+			} catch (IOException e) {
+				// Drop torn records, so the log remains readable.
+				log.setLength(length);
+				synchronized (this) {
+					records.writeAll(unsynced);
+					this.unsynced = records;
+				}
+				throw e;
+			} finally {
+				log.close();
+			}
+		}
+	}
+
+	/**
+	 * Starts replay of this queue if it is not being replayed already. Also restarts replay which
+	 * has been stopped due to a failed request without waiting for the retry delay.
+	 * <p>
+	 * This method should be called whenever the network connectivity is restored.
+	 */
+	public synchronized void replay() {
+		if (replaying && !stopped) {
+			return;
+		}
+		this.replaying = true;
+		this.stopped = false;
+		startEntries();
+	}
+
+	/**
+	 * Starts replay of pending requests in theirs order while the concurrency limit is not reached.
+	 * <p>
+	 * <b>Note</b>, that this method should be called only while holding lock of this queue.
+	 */
+	private void startEntries() {
+		Entry entry;
+		while (!stopped && runningCount < maxConcurrency && (entry = nextIdleEntry()) != null) {
+			entry.running = true;
+			this.runningCount++;
+			executor.execute(new ReplayTask(entry));
+		}
+		if (runningCount == 0 && replaying) {
+			this.replaying = false;
+			if (stopped) {
+				scheduleRetry();
+			} else if (pending.isEmpty()) {
+				executor.execute(new Runnable() {
+
+					/**
+					 */
+					@Override public void run() {
+						compact();
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Returns the first pending request which is not being replayed.
+	 *
+	 * @return The request or {@code null} if there is no such request.
+	 */
+	private Entry nextIdleEntry() {
+		for (final Entry entry : pending.values()) {
+			if (!entry.running) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Schedules retry of replay, if not scheduled yet.
+	 * <p>
+	 * <b>Note</b>, that this method should be called only while holding lock of this queue.
+	 */
+	private void scheduleRetry() {
+		if (!retryScheduled) {
+			this.retryScheduled = true;
+			scheduler.schedule(new Runnable() {
+
+				/**
+				 */
+				@Override public void run() {
+					synchronized (DurableQueue.this) {
+						retryScheduled = false;
+					}
+					replay();
+				}
+			}, retryDelay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Invoked whenever replay of the given <var>entry</var> finishes.
+	 *
+	 * @param entry     The replayed entry.
+	 * @param completed {@code True} if the entry has been completed and should be removed from this
+	 *                  queue, {@code false} if it should be replayed again later.
+	 */
+	synchronized void onEntryFinished(final Entry entry, final boolean completed) {
+		entry.running = false;
+		this.runningCount--;
+		if (completed) {
+			pending.remove(entry.requestId);
+			unsynced.writeByte(RECORD_COMPLETED);
+			writeString(unsynced, entry.requestId);
+			scheduleSync();
+		} else {
+			this.stopped = true;
+		}
+		startEntries();
+	}
+
+	/**
+	 * Truncates the log if all requests have been replayed.
+	 */
+	void compact() {
+		synchronized (fileLock) {
+			synchronized (this) {
+				if (!pending.isEmpty()) {
+					return;
+				}
+				// All unsynced records belong to already replayed requests.
+				this.unsynced = new Buffer();
+			}
+			try {
+				final RandomAccessFile log = new RandomAccessFile(file, "rw");
+				try {
+					log.setLength(0);
+				} finally {
+					log.close();
+				}
+			} catch (IOException e) {
+				// Replayed records are skipped when the log is read the next time.
+			}
+		}
+	}
+
+	/**
+	 * Creates a copy of the given <var>request</var> with its body read into memory, so it may be
+	 * sent multiple times.
+	 *
+	 * @param request The request to copy.
+	 * @return Copy of the request.
+	 * @throws IOException If the request body cannot be read.
+	 */
+	private static Request copyOf(final Request request) throws IOException {
+		final RequestBody body = request.body();
+		if (body == null) {
+			return request;
+		}
+		final Buffer content = new Buffer();
+		body.writeTo(content);
+		return request.newBuilder().method(request.method(), RequestBody.create(body.contentType(), content.readByteArray())).build();
+	}
+
+	/**
+	 * Reads pending requests from the specified log <var>file</var>. The log is then rewritten to
+	 * contain only the pending requests.
+	 *
+	 * @param file The log file.
+	 * @return Pending requests in the order in which they have been added.
+	 * @throws IOException If the log cannot be read or rewritten.
+	 */
+	static Map<String, Entry> restore(final File file) throws IOException {
+		final Map<String, Entry> pending = new LinkedHashMap<>();
+		if (!file.exists()) {
+			return pending;
+		}
+		final BufferedSource source = Okio.buffer(Okio.source(file));
+		try {
+			while (!source.exhausted()) {
+				final byte type = source.readByte();
+				if (type == RECORD_ENQUEUED) {
+					final Entry entry = readEntry(source);
+					pending.put(entry.requestId, entry);
+				} else if (type == RECORD_COMPLETED) {
+					pending.remove(readString(source));
+				} else {
+					break;
+				}
+			}
+		} catch (EOFException e) {
+			// The last record has not been completely written.
+		} finally {
+			source.close();
+		}
+		final File compacted = new File(file.getPath() + ".tmp");
+		final FileOutputStream output = new FileOutputStream(compacted);
+		final BufferedSink sink = Okio.buffer(Okio.sink(output));
+		try {
+			for (final Entry entry : pending.values()) {
+				writeEntry(sink, entry);
+			}
+			sink.flush();
+			// Sync the rewritten log before it replaces the original one, so a crash cannot leave
+			// the log truncated.
+			output.getFD().sync();
+		} finally {
+			sink.close();
+		}
+		if (!compacted.renameTo(file)) {
+			throw new IOException("Failed to rewrite log(" + file + ").");
+		}
+		return pending;
+	}
+
+	/**
+	 * Writes the given <var>entry</var> as record into the given <var>sink</var>.
+	 *
+	 * @param sink  The sink into which to write the record.
+	 * @param entry The entry to write.
+	 * @throws IOException If writing fails.
+	 */
+	private static void writeEntry(final BufferedSink sink, final Entry entry) throws IOException {
+		final Request request = entry.request;
+		sink.writeByte(RECORD_ENQUEUED);
+		writeString(sink, entry.requestId);
+		sink.writeInt(entry.serviceId);
+		writeString(sink, request.method());
+		writeString(sink, request.url().toString());
+		final Headers headers = request.headers();
+		sink.writeInt(headers.size());
+		for (int i = 0; i < headers.size(); i++) {
+			writeString(sink, headers.name(i));
+			writeString(sink, headers.value(i));
+		}
+		final RequestBody body = request.body();
+		if (body == null) {
+			sink.writeInt(-1);
+		} else {
+			final Buffer content = new Buffer();
+			body.writeTo(content);
+			sink.writeInt((int) content.size());
+			sink.writeAll(content);
+			final MediaType contentType = body.contentType();
+			writeString(sink, contentType == null ? "" : contentType.toString());
+		}
+	}
+
+	/**
+	 * Reads an entry from the given <var>source</var>.
+	 *
+	 * @param source The source from which to read the entry.
+	 * @return The read entry.
+	 * @throws IOException If reading fails or the record is not complete.
+	 */
+	private static Entry readEntry(final BufferedSource source) throws IOException {
+		final String requestId = readString(source);
+		final int serviceId = source.readInt();
+		final String method = readString(source);
+		final Request.Builder builder = new Request.Builder().url(readString(source));
+		final int headerCount = source.readInt();
+		for (int i = 0; i < headerCount; i++) {
+			builder.addHeader(readString(source), readString(source));
+		}
+		final int bodyLength = source.readInt();
+		RequestBody body = null;
+		if (bodyLength >= 0) {
+			final byte[] content = source.readByteArray(bodyLength);
+			final String contentType = readString(source);
+			body = RequestBody.create(contentType.isEmpty() ? null : MediaType.parse(contentType), content);
+		}
+		return new Entry(requestId, serviceId, builder.method(method, body).build());
+	}
+
+	/**
+	 * Writes the given <var>value</var> prefixed by its length into the given <var>sink</var>.
+	 *
+	 * @param sink  The sink into which to write the value.
+	 * @param value The value to write.
+	 */
+	private static void writeString(final Buffer sink, final String value) {
+		final Buffer content = new Buffer().writeUtf8(value);
+		sink.writeInt((int) content.size());
+		sink.write(content, content.size());
+	}
+
+	/**
+	 * Same as {@link #writeString(Buffer, String)} for any sink.
+	 *
+	 * @param sink  The sink into which to write the value.
+	 * @param value The value to write.
+	 * @throws IOException If writing fails.
+	 */
+	private static void writeString(final BufferedSink sink, final String value) throws IOException {
+		final Buffer content = new Buffer().writeUtf8(value);
+		sink.writeInt((int) content.size());
+		sink.writeAll(content);
+	}
+
+	/**
+	 * Reads a value written via {@link #writeString(BufferedSink, String)} from the given <var>source</var>.
+	 *
+	 * @param source The source from which to read the value.
+	 * @return The read value.
+	 * @throws IOException If reading fails or the value is not complete.
+	 */
+	private static String readString(final BufferedSource source) throws IOException {
+		final int length = source.readInt();
+		if (length < 0) {
+			throw new EOFException("Corrupted record.");
+		}
+		return source.readUtf8(length);
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * Builder which may be used to create instances of {@link DurableQueue}.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public static final class Builder {
+
+		/**
+		 * See {@link DurableQueue#file}.
+		 */
+		final File file;
+
+		/**
+		 * See {@link DurableQueue#callFactory}.
+		 */
+		final okhttp3.Call.Factory callFactory;
+
+		/**
+		 * See {@link DurableQueue#maxConcurrency}.
+		 */
+		int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+		/**
+		 * See {@link DurableQueue#syncDelay}.
+		 */
+		long syncDelay = DEFAULT_SYNC_DELAY;
+
+		/**
+		 * See {@link DurableQueue#retryDelay}.
+		 */
+		long retryDelay = DEFAULT_RETRY_DELAY;
+
+		/**
+		 * See {@link DurableQueue#executor}.
+		 */
+		Executor executor = ServiceExecutors.background();
+
+		/**
+		 * See {@link DurableQueue#scheduler}.
+		 */
+		ScheduledExecutorService scheduler = ServiceExecutors.scheduler();
+
+		/**
+		 * Creates a new Builder for queue with log in the specified <var>file</var>.
+		 *
+		 * @param file        The file of the log. Created if it does not exist yet.
+		 * @param callFactory Factory used to replay requests restored from the log, like the client
+		 *                    obtained via {@link ServiceManager#getHttpClient()}. The factory should
+		 *                    apply the same interceptors, like authorization, as clients of the services.
+		 */
+		public Builder(@NonNull final File file, @NonNull final okhttp3.Call.Factory callFactory) {
+			this.file = file;
+			this.callFactory = callFactory;
+		}
+
+		/**
+		 * Specifies maximum count of requests which may be replayed at the same time.
+		 * <p>
+		 * Default value: {@link #DEFAULT_MAX_CONCURRENCY}
+		 *
+		 * @param maxConcurrency The desired count.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder maxConcurrency(@IntRange(from = 1) final int maxConcurrency) {
+			this.maxConcurrency = maxConcurrency;
+			return this;
+		}
+
+		/**
+		 * Specifies delay after which are added requests synced to the log. All requests added
+		 * within this delay are synced at once.
+		 * <p>
+		 * Default value: {@link #DEFAULT_SYNC_DELAY} milliseconds
+		 *
+		 * @param delay The desired delay.
+		 * @param unit  Unit of the delay.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder syncDelay(final long delay, @NonNull final TimeUnit unit) {
+			this.syncDelay = unit.toMillis(delay);
+			return this;
+		}
+
+		/**
+		 * Specifies delay after which is replay retried when it has been stopped due to a failed
+		 * request.
+		 * <p>
+		 * Default value: {@link #DEFAULT_RETRY_DELAY} milliseconds
+		 *
+		 * @param delay The desired delay.
+		 * @param unit  Unit of the delay.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder retryDelay(final long delay, @NonNull final TimeUnit unit) {
+			this.retryDelay = unit.toMillis(delay);
+			return this;
+		}
+
+		/**
+		 * Specifies executor used to sync the log and to replay requests.
+		 * <p>
+		 * Default value: {@link ServiceExecutors#background()}
+		 *
+		 * @param executor The desired executor.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder executor(@NonNull final Executor executor) {
+			this.executor = executor;
+			return this;
+		}
+
+		/**
+		 * Specifies scheduler used to schedule delayed syncs of the log and retries of replay.
+		 * <p>
+		 * Default value: {@link ServiceExecutors#scheduler()}
+		 *
+		 * @param scheduler The desired scheduler.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder scheduler(@NonNull final ScheduledExecutorService scheduler) {
+			this.scheduler = scheduler;
+			return this;
+		}
+
+		/**
+		 * Builds a new instance of DurableQueue with the current configuration. Requests restored
+		 * from an existing log are replayed immediately.
+		 *
+		 * @return New queue ready to be used.
+		 * @throws IllegalArgumentException If some of the configuration parameters is not valid.
+		 * @throws IOException              If the existing log cannot be read.
+		 */
+		@NonNull public DurableQueue build() throws IOException {
+			if (maxConcurrency < 1) throw new IllegalArgumentException("Max concurrency must be at least 1.");
+			if (syncDelay < 0 || retryDelay < 0) throw new IllegalArgumentException("Delays must not be negative.");
+			final DurableQueue queue = new DurableQueue(this, restore(file));
+			if (queue.getPendingCount() > 0) {
+				queue.replay();
+			}
+			return queue;
+		}
+	}
+
+	/**
+	 * Request added into the queue.
+	 */
+	static final class Entry {
+
+		/**
+		 * Id of the request.
+		 */
+		final String requestId;
+
+		/**
+		 * Id of the service of the request.
+		 */
+		final int serviceId;
+
+		/**
+		 * The request with body read into memory.
+		 */
+		final Request request;
+
+		/**
+		 * Call via which to replay the request. May be {@code null} to replay the request directly.
+		 */
+		LiveCall<?> liveCall;
+
+		/**
+		 * Flag indicating whether the request is being replayed.
+		 */
+		boolean running;
+
+		/**
+		 * Creates a new instance of Entry with the specified parameters.
+		 *
+		 * @param requestId Id of the request.
+		 * @param serviceId Id of the service of the request.
+		 * @param request   The request.
+		 */
+		Entry(final String requestId, final int serviceId, final Request request) {
+			this.requestId = requestId;
+			this.serviceId = serviceId;
+			this.request = request;
+		}
+	}
+
+	/**
+	 * Service call along with its callback via which is replayed a request while the process which
+	 * has added it lives.
+	 *
+	 * @param <T> Type of the response body.
+	 */
+	static final class LiveCall<T> {
+
+		/**
+		 * Call of which clone is executed to replay the request.
+		 */
+		final ServiceCall<T> call;
+
+		/**
+		 * Callback to which to deliver the result.
+		 */
+		final ServiceCallback<T> callback;
+
+		/**
+		 * Creates a new instance of LiveCall with the specified <var>call</var> and <var>callback</var>.
+		 *
+		 * @param call     The call to replay.
+		 * @param callback The callback for the result.
+		 */
+		LiveCall(final ServiceCall<T> call, final ServiceCallback<T> callback) {
+			this.call = call;
+			this.callback = callback;
+		}
+
+		/**
+		 * Replays the call and delivers its response to the callback.
+		 *
+		 * @throws IOException If the call fails with I/O error and should be replayed later.
+		 */
+		void replay() throws IOException {
+			final Response<T> response = call.clone().execute();
+			deliver(new Runnable() {
+
+				/**
+				 */
+				@Override public void run() {
+					callback.onResponse(call, response);
+				}
+			});
+		}
+
+		/**
+		 * Delivers the given <var>failure</var> to the callback.
+		 *
+		 * @param failure The failure to deliver.
+		 */
+		void fail(final Throwable failure) {
+			deliver(new Runnable() {
+
+				/**
+				 */
+				@Override public void run() {
+					callback.onFailure(call, failure);
+				}
+			});
+		}
+
+		/**
+		 * Runs the given <var>delivery</var> via callback executor of the call's Retrofit, if any.
+		 *
+		 * @param delivery The delivery to run.
+		 */
+		private void deliver(final Runnable delivery) {
+			final Executor callbackExecutor = call.retrofit == null ? null : call.retrofit.callbackExecutor();
+			if (callbackExecutor == null) {
+				delivery.run();
+			} else {
+				callbackExecutor.execute(delivery);
+			}
+		}
+	}
+
+	/**
+	 * Task which replays a single request.
+	 */
+	private final class ReplayTask implements Runnable {
+
+		/**
+		 * Entry of the request to replay.
+		 */
+		private final Entry entry;
+
+		/**
+		 * Creates a new instance of ReplayTask for the given <var>entry</var>.
+		 *
+		 * @param entry Entry of the request to replay.
+		 */
+		ReplayTask(final Entry entry) {
+			this.entry = entry;
+		}
+
+		/**
+		 */
+		@Override public void run() {
+			boolean completed = false;
+			try {
+				if (entry.liveCall == null) {
+					replayRequest();
+				} else {
+					entry.liveCall.replay();
+				}
+				completed = true;
+			} catch (IOException e) {
+				// Offline or the server is not reachable, replay later.
+			} catch (RuntimeException e) {
+				completed = true;
+				if (entry.liveCall == null) {
+					final OnReplayListener listener = replayListener;
+					if (listener != null) {
+						listener.onRequestFailed(DurableQueue.this, entry.requestId, entry.serviceId, e);
+					}
+				} else {
+					entry.liveCall.fail(e);
+				}
+			} finally {
+				onEntryFinished(entry, completed);
+			}
+		}
+
+		/**
+		 * Replays the request of the entry via call factory of the queue and delivers its response
+		 * to the replay listener.
+		 *
+		 * @throws IOException If the request fails.
+		 */
+		private void replayRequest() throws IOException {
+			final okhttp3.Response response = callFactory.newCall(entry.request).execute();
+			final ResponseBody body = response.body();
+			final okhttp3.Response bufferedResponse;
+			try {
+				bufferedResponse = body == null ? response : response.newBuilder()
+						.body(ResponseBody.create(body.contentType(), body.bytes()))
+						.build();
+			} finally {
+				response.close();
+			}
+			final OnReplayListener listener = replayListener;
+			if (listener != null) {
+				listener.onRequestReplayed(DurableQueue.this, entry.requestId, entry.serviceId, bufferedResponse);
+			}
+		}
+	}
+}
@@ -0,0 +1,617 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.FloatRange;
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+
+/**
+ * Selector of the best base url among multiple weighted end points, like regional mirrors of the
+ * same api, which may be specified for {@link ServiceManager} via {@link ServiceManager#ServiceManager(EndPointSelector)}.
+ * <p>
+ * The selector is an OkHttp {@link Interceptor} which is added to the client shared by the manager.
+ * It measures latency of each request sent to any of its end points and maintains exponentially
+ * weighted moving average (<b>EWMA</b>) of the latencies for each end point. The selected end point
+ * is the one with the lowest average latency divided by its weight, so an end point with weight
+ * {@code 2} is preferred over an end point with weight {@code 1} unless its latency is more than
+ * twice as high. End points without any measured latency are preferred, so each end point is probed.
+ * In order to not switch end points back and forth, the selected end point is replaced only by an
+ * end point which is better by at least {@link #SWITCH_THRESHOLD}.
+ * <p>
+ * When a request fails to connect to its end point, that is it fails with {@link ConnectException},
+ * {@link NoRouteToHostException} or {@link UnknownHostException}, the end point is excluded from
+ * selection for the failure cooldown and the request is sent again to the next best end point, as
+ * the failed request has never reached the server. Requests with non-idempotent methods, like
+ * <b>POST</b>, are sent again only if theirs body has not been written yet, as OkHttp may fail to
+ * connect while it retries a request that has been already written to a stale pooled connection.
+ * Timeouts are never treated as connect failures. Requests are always sent to the currently selected end
+ * point, even if they have been created for another end point, so calls created before the end point
+ * has changed are redirected as well.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class EndPointSelector implements Interceptor {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "EndPointSelector";
+
+	/**
+	 * Ratio of scores by which needs to be an end point better than the selected one in order to
+	 * replace it.
+	 */
+	public static final double SWITCH_THRESHOLD = 0.2;
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/**
+	 * Listener which may be used to receive callback about change of the selected end point.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public interface OnEndPointChangeListener {
+
+		/**
+		 * Invoked whenever the selected end point of the given <var>selector</var> changes. This
+		 * method is invoked on the thread which has sent the request that caused the change.
+		 *
+		 * @param selector   The selector of which end point has changed.
+		 * @param oldBaseUrl Base url of the previously selected end point.
+		 * @param newBaseUrl Base url of the newly selected end point.
+		 */
+		void onEndPointChanged(@NonNull EndPointSelector selector, @NonNull HttpUrl oldBaseUrl, @NonNull HttpUrl newBaseUrl);
+	}
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * End points among which to select.
+	 */
+	private final WeightedEndPoint[] endPoints;
+
+	/**
+	 * Smoothing factor of the moving average of latencies.
+	 */
+	private final double smoothing;
+
+	/**
+	 * Duration in nanoseconds for which is a failed end point excluded from selection.
+	 */
+	private final long failureCooldown;
+
+	/**
+	 * Listeners to be notified about change of the selected end point.
+	 */
+	private final List<OnEndPointChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Currently selected end point.
+	 */
+	private volatile WeightedEndPoint selected;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of EndPointSelector with configuration provided by the given <var>builder</var>.
+	 *
+	 * @param builder The builder with configuration for the new selector.
+	 */
+	EndPointSelector(final Builder builder) {
+		this.smoothing = builder.smoothing;
+		this.failureCooldown = builder.failureCooldown;
+		this.endPoints = new WeightedEndPoint[builder.endPoints.size()];
+		for (int i = 0; i < endPoints.length; i++) {
+			final WeightedEndPoint endPoint = builder.endPoints.get(i);
+			this.endPoints[i] = new WeightedEndPoint(endPoint.baseUrl, endPoint.weight, failureCooldown);
+		}
+		WeightedEndPoint heaviest = endPoints[0];
+		for (final WeightedEndPoint endPoint : endPoints) {
+			if (endPoint.weight > heaviest.weight) {
+				heaviest = endPoint;
+			}
+		}
+		this.selected = heaviest;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Registers a listener to be notified about change of the selected end point.
+	 *
+	 * @param listener The desired listener.
+	 */
+	public void addOnEndPointChangeListener(@NonNull final OnEndPointChangeListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Unregisters the given listener.
+	 *
+	 * @param listener The listener to unregister.
+	 */
+	public void removeOnEndPointChangeListener(@NonNull final OnEndPointChangeListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Returns the base url of the currently selected end point.
+	 *
+	 * @return Selected base url.
+	 */
+	@NonNull public HttpUrl getSelectedBaseUrl() {
+		return selected.baseUrl;
+	}
+
+	/**
+	 * Returns the current average latency measured for the end point with the specified <var>baseUrl</var>.
+	 *
+	 * @param baseUrl Base url of the end point.
+	 * @param unit    Unit in which to return the latency.
+	 * @return Average latency or {@code -1} if there is no latency measured for the end point or
+	 * the end point is not known to this selector.
+	 */
+	public long getAverageLatency(@NonNull final HttpUrl baseUrl, @NonNull final TimeUnit unit) {
+		final WeightedEndPoint endPoint = findEndPoint(baseUrl.toString());
+		if (endPoint == null) {
+			return -1;
+		}
+		synchronized (this) {
+			return endPoint.averageLatency < 0 ? -1 : unit.convert((long) endPoint.averageLatency, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 */
+	@Override public Response intercept(@NonNull final Chain chain) throws IOException {
+		final Request request = chain.request();
+		final String url = request.url().toString();
+		final WeightedEndPoint origin = findEndPoint(url);
+		if (origin == null) {
+			return chain.proceed(request);
+		}
+		final RequestBody body = request.body();
+		final WriteTrackingBody trackingBody = body == null || isRepeatable(request) ? null : new WriteTrackingBody(body);
+		IOException failure = null;
+		for (int i = 0; i < endPoints.length; i++) {
+			final WeightedEndPoint target = selected;
+			if (failure != null && target.isFailedAt(System.nanoTime())) {
+				// All end points have failed recently.
+				break;
+			}
+			Request targetRequest = request;
+			if (target != origin || trackingBody != null) {
+				final Request.Builder builder = request.newBuilder();
+				if (target != origin) {
+					builder.url(target.baseUrl + url.substring(origin.baseUrl.toString().length()));
+				}
+				if (trackingBody != null) {
+					builder.method(request.method(), trackingBody);
+				}
+				targetRequest = builder.build();
+			}
+			final long startTime = System.nanoTime();
+			try {
+				final Response response = chain.proceed(targetRequest);
+				onRequestSucceeded(target, System.nanoTime() - startTime);
+				return response;
+			} catch (IOException e) {
+				if (!isConnectFailure(e)) {
+					throw e;
+				}
+				onRequestFailed(target, System.nanoTime());
+				if (trackingBody != null && trackingBody.written) {
+					// The server may have already received the request, so it must not be sent again.
+					throw e;
+				}
+				failure = e;
+			}
+		}
+		throw failure;
+	}
+
+	/**
+	 * Finds end point of which base url is prefix of the specified <var>url</var>.
+	 *
+	 * @param url The url for which to find end point.
+	 * @return The end point or {@code null} if the url does not belong to any end point of this selector.
+	 */
+	private WeightedEndPoint findEndPoint(final String url) {
+		for (final WeightedEndPoint endPoint : endPoints) {
+			if (url.startsWith(endPoint.baseUrl.toString())) {
+				return endPoint;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Checks whether the given <var>failure</var> has been caused by a failed attempt to connect
+	 * to the server, so the request has never been sent and may be sent to another end point.
+	 *
+	 * @param failure The failure to check.
+	 * @return {@code True} if the failure is a connect failure, {@code false} otherwise.
+	 */
+	@VisibleForTesting static boolean isConnectFailure(@NonNull final IOException failure) {
+		return failure instanceof UnknownHostException || failure instanceof ConnectException || failure instanceof NoRouteToHostException;
+	}
+
+	/**
+	 * Checks whether the given <var>request</var> may be sent multiple times without changing the
+	 * outcome on the server side. Such requests are those with an idempotent method: <b>GET, HEAD,
+	 * OPTIONS, PUT</b> and <b>DELETE</b>.
+	 *
+	 * @param request The request to check.
+	 * @return {@code True} if the request may be repeated, {@code false} otherwise.
+	 */
+	@VisibleForTesting static boolean isRepeatable(@NonNull final Request request) {
+		switch (request.method()) {
+			case "GET":
+			case "HEAD":
+			case "OPTIONS":
+			case "PUT":
+			case "DELETE":
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Invoked whenever a request to the given <var>endPoint</var> receives a response.
+	 *
+	 * @param endPoint The end point which has responded.
+	 * @param latency  Latency of the response in nanoseconds.
+	 */
+	@VisibleForTesting void onRequestSucceeded(final WeightedEndPoint endPoint, final long latency) {
+		final WeightedEndPoint oldSelected;
+		final WeightedEndPoint newSelected;
+		synchronized (this) {
+			endPoint.failedAt = 0;
+			endPoint.averageLatency = endPoint.averageLatency < 0 ? latency : smoothing * latency + (1 - smoothing) * endPoint.averageLatency;
+			oldSelected = selected;
+			newSelected = selectEndPoint(System.nanoTime());
+		}
+		notifyChange(oldSelected, newSelected);
+	}
+
+	/**
+	 * Invoked whenever a request fails to connect to the given <var>endPoint</var>.
+	 *
+	 * @param endPoint The end point which has failed.
+	 * @param now      Current time in nanoseconds.
+	 */
+	@VisibleForTesting void onRequestFailed(final WeightedEndPoint endPoint, final long now) {
+		final WeightedEndPoint oldSelected;
+		final WeightedEndPoint newSelected;
+		synchronized (this) {
+			// Zero is reserved for end points which have not failed.
+			endPoint.failedAt = now == 0 ? 1 : now;
+			oldSelected = selected;
+			newSelected = selectEndPoint(now);
+		}
+		notifyChange(oldSelected, newSelected);
+	}
+
+	/**
+	 * Selects the best end point at the specified time.
+	 * <p>
+	 * <b>Note</b>, that this method should be called only while holding lock of this selector.
+	 *
+	 * @param now Current time in nanoseconds.
+	 * @return The selected end point.
+	 */
+	private WeightedEndPoint selectEndPoint(final long now) {
+		WeightedEndPoint best = null;
+		for (final WeightedEndPoint endPoint : endPoints) {
+			if (!endPoint.isFailedAt(now) && (best == null || endPoint.score() < best.score())) {
+				best = endPoint;
+			}
+		}
+		final WeightedEndPoint current = selected;
+		if (best == null || best == current) {
+			// Keep the current end point if all end points have failed.
+			return current;
+		}
+		if (current.isFailedAt(now) || best.score() < current.score() * (1 - SWITCH_THRESHOLD)) {
+			this.selected = best;
+		}
+		return selected;
+	}
+
+	/**
+	 * Notifies the registered listeners if the selected end point has changed.
+	 *
+	 * @param oldSelected End point selected before the change.
+	 * @param newSelected End point selected after the change.
+	 */
+	private void notifyChange(final WeightedEndPoint oldSelected, final WeightedEndPoint newSelected) {
+		if (oldSelected != newSelected) {
+			for (final OnEndPointChangeListener listener : listeners) {
+				listener.onEndPointChanged(this, oldSelected.baseUrl, newSelected.baseUrl);
+			}
+		}
+	}
+
+	/**
+	 * Returns the end point with the specified <var>baseUrl</var>.
+	 *
+	 * @param baseUrl Base url of the desired end point.
+	 * @return The end point or {@code null} if there is no such end point.
+	 */
+	@VisibleForTesting @Nullable WeightedEndPoint endPoint(@NonNull final HttpUrl baseUrl) {
+		for (final WeightedEndPoint endPoint : endPoints) {
+			if (endPoint.baseUrl.equals(baseUrl)) {
+				return endPoint;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * Builder which may be used to create instances of {@link EndPointSelector}.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public static final class Builder {
+
+		/**
+		 * See {@link EndPointSelector#endPoints}.
+		 */
+		final List<WeightedEndPoint> endPoints = new ArrayList<>(4);
+
+		/**
+		 * See {@link EndPointSelector#smoothing}.
+		 */
+		double smoothing = 0.2;
+
+		/**
+		 * See {@link EndPointSelector#failureCooldown}.
+		 */
+		long failureCooldown = TimeUnit.SECONDS.toNanos(30);
+
+		/**
+		 * Same as {@link #addEndPoint(HttpUrl, int)} where the specified <var>baseUrl</var> string
+		 * will be parsed via {@link HttpUrl#parse(String)}.
+		 *
+		 * @param baseUrl Base url of the end point.
+		 * @param weight  Weight of the end point.
+		 * @return This builder to allow methods chaining.
+		 * @throws IllegalArgumentException If the base url is not a valid url.
+		 */
+		public Builder addEndPoint(@NonNull final String baseUrl, @IntRange(from = 1) final int weight) {
+			final HttpUrl url = HttpUrl.parse(baseUrl);
+			if (url == null) throw new IllegalArgumentException("Invalid base url(" + baseUrl + ").");
+			return addEndPoint(url, weight);
+		}
+
+		/**
+		 * Adds an end point with the specified <var>baseUrl</var> and <var>weight</var>.
+		 *
+		 * @param baseUrl Base url of the end point. Must end with {@code /}.
+		 * @param weight  Weight of the end point. End points with higher weight are preferred.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder addEndPoint(@NonNull final HttpUrl baseUrl, @IntRange(from = 1) final int weight) {
+			this.endPoints.add(new WeightedEndPoint(baseUrl, weight, 0));
+			return this;
+		}
+
+		/**
+		 * Specifies smoothing factor of the moving average of latencies. The higher the factor is
+		 * the faster the average follows changes in latency.
+		 * <p>
+		 * Default value: {@code 0.2}
+		 *
+		 * @param smoothing The desired factor.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder smoothing(@FloatRange(from = 0, to = 1, fromInclusive = false) final double smoothing) {
+			this.smoothing = smoothing;
+			return this;
+		}
+
+		/**
+		 * Specifies duration for which is an end point excluded from selection after a request has
+		 * failed to connect to it.
+		 * <p>
+		 * Default value: {@code 30 seconds}
+		 *
+		 * @param duration The desired duration.
+		 * @param unit     Unit of the duration.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder failureCooldown(final long duration, @NonNull final TimeUnit unit) {
+			this.failureCooldown = unit.toNanos(duration);
+			return this;
+		}
+
+		/**
+		 * Builds a new instance of EndPointSelector with the current configuration.
+		 *
+		 * @return New selector ready to be used.
+		 * @throws IllegalArgumentException If there are no end points specified or some of the
+		 *                                  configuration parameters is not valid.
+		 */
+		@NonNull public EndPointSelector build() {
+			if (endPoints.isEmpty()) throw new IllegalArgumentException("No end points specified.");
+			for (final WeightedEndPoint endPoint : endPoints) {
+				if (endPoint.weight <= 0) throw new IllegalArgumentException("End point weight must be positive.");
+				if (!endPoint.baseUrl.toString().endsWith("/")) throw new IllegalArgumentException("Base url must end in /: " + endPoint.baseUrl);
+			}
+			if (smoothing <= 0 || smoothing > 1) throw new IllegalArgumentException("Smoothing must be from (0, 1].");
+			if (failureCooldown < 0) throw new IllegalArgumentException("Failure cooldown must not be negative.");
+			return new EndPointSelector(this);
+		}
+	}
+
+	/**
+	 * A {@link RequestBody} implementation which delegates to the original body and tracks whether
+	 * it has been written.
+	 */
+	private static final class WriteTrackingBody extends RequestBody {
+
+		/**
+		 * Original body to which this body delegates.
+		 */
+		private final RequestBody delegate;
+
+		/**
+		 * Flag indicating whether writing of this body has been started.
+		 */
+		volatile boolean written;
+
+		/**
+		 * Creates a new instance of WriteTrackingBody for the specified <var>delegate</var>.
+		 *
+		 * @param delegate The body to which should the new body delegate.
+		 */
+		WriteTrackingBody(final RequestBody delegate) {
+			this.delegate = delegate;
+		}
+
+		/**
+		 */
+		@Override @Nullable public MediaType contentType() {
+			return delegate.contentType();
+		}
+
+		/**
+		 */
+		@Override public long contentLength() throws IOException {
+			return delegate.contentLength();
+		}
+
+		/**
+		 */
+		@Override public void writeTo(@NonNull final BufferedSink sink) throws IOException {
+			this.written = true;
+			delegate.writeTo(sink);
+		}
+	}
+
+	/**
+	 * Single end point of {@link EndPointSelector} along with its statistics.
+	 */
+	static final class WeightedEndPoint {
+
+		/**
+		 * Base url of the end point.
+		 */
+		final HttpUrl baseUrl;
+
+		/**
+		 * Weight of the end point.
+		 */
+		final int weight;
+
+		/**
+		 * Moving average of latencies in nanoseconds. Negative if no latency has been measured.
+		 */
+		double averageLatency = -1;
+
+		/**
+		 * Time in nanoseconds at which has the end point failed for the last time. Zero if it has
+		 * not failed since the last successful request. Written only while holding lock of the
+		 * selector but read also without it, like by {@link EndPointSelector#intercept(Chain)}.
+		 */
+		volatile long failedAt;
+
+		/**
+		 * Duration in nanoseconds for which is the end point excluded from selection after it has failed.
+		 */
+		private final long failureCooldown;
+
+		/**
+		 * Creates a new instance of WeightedEndPoint with the specified parameters.
+		 *
+		 * @param baseUrl         Base url of the end point.
+		 * @param weight          Weight of the end point.
+		 * @param failureCooldown Duration in nanoseconds for which to exclude the end point from
+		 *                        selection after it has failed.
+		 */
+		WeightedEndPoint(final HttpUrl baseUrl, final int weight, final long failureCooldown) {
+			this.baseUrl = baseUrl;
+			this.weight = weight;
+			this.failureCooldown = failureCooldown;
+		}
+
+		/**
+		 * Returns score of this end point. The lower the better.
+		 *
+		 * @return Average latency divided by weight or a negative number if there is no latency
+		 * measured yet, preferring heavier end points.
+		 */
+		double score() {
+			return averageLatency < 0 ? -weight : averageLatency / weight;
+		}
+
+		/**
+		 * Checks whether this end point should be excluded from selection at the specified time.
+		 *
+		 * @param now Current time in nanoseconds.
+		 * @return {@code True} if the end point has failed recently, {@code false} otherwise.
+		 */
+		boolean isFailedAt(final long now) {
+			return failedAt != 0 && now - failedAt < failureCooldown;
+		}
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * An {@link Executor} implementation which coalesces tasks submitted from any thread into a single
+ * message posted to the main thread at most once per frame, so many responses dispatched on
+ * a background thread (see {@link ServiceManager.ServicesConfiguration#dispatchExecutor(Executor)})
+ * result in a single handoff to the main thread instead of one per response.
+ * <p>
+ * Tasks are executed in the order in which they have been submitted. When a task is submitted while
+ * no frame is pending, it is handed off immediately, if the last handoff happened at least one frame
+ * interval ago, or at the beginning of the next frame interval otherwise. All tasks submitted until
+ * the handoff is executed are executed within that single handoff.
+ * <p>
+ * Executor handing off to the main thread may be obtained via {@link ServiceExecutors#mainFrame()}.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class FrameBatchingExecutor implements Executor {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "FrameBatchingExecutor";
+
+	/**
+	 * Default frame interval in milliseconds, matching display refreshed at 60 frames per second.
+	 */
+	public static final long DEFAULT_FRAME_INTERVAL = 16;
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Executor to which are the batches of tasks handed off.
+	 */
+	private final Executor targetExecutor;
+
+	/**
+	 * Minimum interval in nanoseconds between two handoffs.
+	 */
+	private final long frameInterval;
+
+	/**
+	 * Scheduler used to delay handoffs until the next frame.
+	 */
+	@VisibleForTesting ScheduledExecutorService scheduler = ServiceExecutors.scheduler();
+
+	/**
+	 * Tasks submitted since the last handoff.
+	 */
+	private List<Runnable> pendingTasks = new ArrayList<>();
+
+	/**
+	 * Flag indicating whether a handoff of the pending tasks has been already requested.
+	 */
+	private boolean handoffRequested;
+
+	/**
+	 * Time in nanoseconds at which has been the last handoff executed.
+	 */
+	private long lastHandoffTime;
+
+	/**
+	 * Task handing off the pending tasks to the target executor.
+	 */
+	private final Runnable handoff = new Runnable() {
+
+		/**
+		 */
+		@Override public void run() {
+			targetExecutor.execute(drain);
+		}
+	};
+
+	/**
+	 * Task executing all pending tasks.
+	 */
+	private final Runnable drain = new Runnable() {
+
+		/**
+		 */
+		@Override public void run() {
+			executePending();
+		}
+	};
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of FrameBatchingExecutor which hands off to the main thread with
+	 * {@link #DEFAULT_FRAME_INTERVAL}.
+	 */
+	public FrameBatchingExecutor() {
+		this(new HandlerExecutor(new Handler(Looper.getMainLooper())), DEFAULT_FRAME_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Creates a new instance of FrameBatchingExecutor which hands off to the specified <var>targetExecutor</var>
+	 * at most once per the specified <var>frameInterval</var>.
+	 *
+	 * @param targetExecutor The executor to which to hand off batches of tasks, like executor posting
+	 *                       to a specific looper.
+	 * @param frameInterval  Minimum interval between two handoffs.
+	 * @param unit           Unit of the interval.
+	 */
+	public FrameBatchingExecutor(@NonNull final Executor targetExecutor, final long frameInterval, @NonNull final TimeUnit unit) {
+		this.targetExecutor = targetExecutor;
+		this.frameInterval = unit.toNanos(frameInterval);
+		this.lastHandoffTime = System.nanoTime() - this.frameInterval;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 */
+	@Override public void execute(@NonNull final Runnable task) {
+		final long delay;
+		synchronized (this) {
+			pendingTasks.add(task);
+			if (handoffRequested) {
+				return;
+			}
+			this.handoffRequested = true;
+			delay = lastHandoffTime + frameInterval - System.nanoTime();
+		}
+		if (delay <= 0) {
+			targetExecutor.execute(drain);
+		} else {
+			scheduler.schedule(handoff, delay, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Executes all tasks submitted since the last handoff. Tasks submitted while executing are
+	 * executed by the next handoff.
+	 *
+	 * @throws RuntimeException The first failure thrown by any of the tasks, after all of them
+	 *                          have been executed.
+	 */
+	@VisibleForTesting void executePending() {
+		final List<Runnable> tasks;
+		synchronized (this) {
+			tasks = pendingTasks;
+			this.pendingTasks = new ArrayList<>(tasks.size());
+			this.handoffRequested = false;
+			this.lastHandoffTime = System.nanoTime();
+		}
+		RuntimeException failure = null;
+		for (int i = 0; i < tasks.size(); i++) {
+			try {
+				tasks.get(i).run();
+			} catch (RuntimeException e) {
+				if (failure == null) {
+					failure = e;
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * An {@link Executor} which posts tasks to a {@link Handler}.
+	 */
+	private static final class HandlerExecutor implements Executor {
+
+		/**
+		 * Handler to which to post the tasks.
+		 */
+		private final Handler handler;
+
+		/**
+		 * Creates a new instance of HandlerExecutor for the specified <var>handler</var>.
+		 *
+		 * @param handler The handler to which to post the tasks.
+		 */
+		HandlerExecutor(final Handler handler) {
+			this.handler = handler;
+		}
+
+		/**
+		 */
+		@Override public void execute(@NonNull final Runnable task) {
+			handler.post(task);
+		}
+	}
+}
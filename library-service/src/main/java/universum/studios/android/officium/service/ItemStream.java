@@ -0,0 +1,197 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+
+/**
+ * A stream of items of a JSON array response body which are parsed incrementally, batch by batch,
+ * as they are read from the network, so the whole body is never held in memory neither as a string
+ * nor as a list of all its items.
+ * <p>
+ * Instances of ItemStream are created by {@link ItemStreamConverterFactory} for service api methods
+ * declared to return {@code ServiceCall<ItemStream<T>>} and are supposed to be consumed by
+ * {@link ItemsCallback}. The stream may be read only once and it should be closed if it is not read
+ * until its end.
+ * <p>
+ * <b>Note</b>, that the items are parsed via <b>Gson</b> which is only a compile time dependency of
+ * this library, so projects which use item streams must add {@code com.google.code.gson:gson} to
+ * theirs own dependencies.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ *
+ * @param <T> Type of the items of the stream.
+ */
+public final class ItemStream<T> implements Closeable {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "ItemStream";
+
+	/**
+	 * Maximum initial capacity of a list for a batch of items.
+	 */
+	private static final int MAX_INITIAL_BATCH_CAPACITY = 256;
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Reader from which to parse the items.
+	 */
+	private final JsonReader reader;
+
+	/**
+	 * Adapter used to parse a single item.
+	 */
+	private final TypeAdapter<T> itemAdapter;
+
+	/**
+	 * Flag indicating whether the beginning of the array has been already read.
+	 */
+	private boolean started;
+
+	/**
+	 * Flag indicating whether all items have been already read.
+	 */
+	private boolean finished;
+
+	/**
+	 * Count of items read so far.
+	 */
+	private int readCount;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of ItemStream which parses items from the given <var>reader</var>.
+	 *
+	 * @param reader      The reader positioned at the beginning of the JSON array.
+	 * @param itemAdapter The adapter used to parse a single item.
+	 */
+	ItemStream(@NonNull final JsonReader reader, @NonNull final TypeAdapter<T> itemAdapter) {
+		this.reader = reader;
+		this.itemAdapter = itemAdapter;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Reads the next batch of items from this stream. When the last item is read, the stream is
+	 * closed.
+	 *
+	 * @param maxCount Maximum count of items to read.
+	 * @return List with at most the specified count of items. Empty if there are no more items.
+	 * @throws IOException         If reading from the network fails or the body is not a valid JSON.
+	 * @throws JsonSyntaxException If the body is not an array of the expected items.
+	 */
+	@NonNull public List<T> read(@IntRange(from = 1) final int maxCount) throws IOException {
+		if (finished) {
+			return Collections.emptyList();
+		}
+		try {
+			if (!started) {
+				this.started = true;
+				if (reader.peek() == JsonToken.NULL) {
+					reader.nextNull();
+					close();
+					return Collections.emptyList();
+				}
+				reader.beginArray();
+			}
+			final List<T> items = new ArrayList<>(Math.min(maxCount, MAX_INITIAL_BATCH_CAPACITY));
+			while (items.size() < maxCount && reader.hasNext()) {
+				items.add(itemAdapter.read(reader));
+			}
+			this.readCount += items.size();
+			if (!reader.hasNext()) {
+				reader.endArray();
+				close();
+			}
+			return items;
+		} catch (IllegalStateException e) {
+			// Thrown by the reader when the body or an item does not have the expected structure.
+			close();
+			throw new JsonSyntaxException(e);
+		}
+	}
+
+	/**
+	 * Returns the count of items read from this stream so far.
+	 *
+	 * @return Count of read items.
+	 */
+	public int getReadCount() {
+		return readCount;
+	}
+
+	/**
+	 * Checks whether all items of this stream have been read or the stream has been closed.
+	 *
+	 * @return {@code True} if there are no more items to read, {@code false} otherwise.
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * Closes this stream along with the underlying response body.
+	 */
+	@Override public void close() throws IOException {
+		if (!finished) {
+			this.finished = true;
+			reader.close();
+		}
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+}
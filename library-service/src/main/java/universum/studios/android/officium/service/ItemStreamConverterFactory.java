@@ -0,0 +1,164 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * A {@link Converter.Factory} implementation which converts JSON array response bodies into
+ * {@link ItemStream ItemStreams} for service api methods declared to return {@code ServiceCall<ItemStream<T>>}.
+ * The body is not read by the converter at all, its items are parsed via {@link Gson} only when
+ * they are read from the stream, typically by {@link ItemsCallback}.
+ * <p>
+ * This factory should be added to the Retrofit instance before any other converter factory which
+ * could also convert JSON bodies, like Gson converter factory. Calls of methods returning item
+ * streams are adapted by {@link universum.studios.android.officium.service.adapter.ServiceCallAdapterFactory ServiceCallAdapterFactory}
+ * without response caching and single flight, as a stream may be consumed only once.
+ * <p>
+ * Gson is not a transitive dependency of this library, so it must be added to dependencies of the
+ * project which uses this factory, otherwise the factory fails with {@link NoClassDefFoundError}.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class ItemStreamConverterFactory extends Converter.Factory {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "ItemStreamConverterFactory";
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Gson instance used to parse the items.
+	 */
+	private final Gson gson;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of ItemStreamConverterFactory with the specified <var>gson</var>.
+	 *
+	 * @param gson The Gson instance used to parse the items.
+	 */
+	private ItemStreamConverterFactory(final Gson gson) {
+		this.gson = gson;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of ItemStreamConverterFactory which parses items via a default Gson instance.
+	 *
+	 * @return New converter factory ready to be added to Retrofit.
+	 */
+	@NonNull public static ItemStreamConverterFactory create() {
+		return create(new Gson());
+	}
+
+	/**
+	 * Creates a new instance of ItemStreamConverterFactory which parses items via the specified <var>gson</var>.
+	 *
+	 * @param gson The Gson instance used to parse the items.
+	 * @return New converter factory ready to be added to Retrofit.
+	 */
+	@NonNull public static ItemStreamConverterFactory create(@NonNull final Gson gson) {
+		return new ItemStreamConverterFactory(gson);
+	}
+
+	/**
+	 */
+	@Override @Nullable public Converter<ResponseBody, ?> responseBodyConverter(
+			@NonNull final Type type,
+			@NonNull final Annotation[] annotations,
+			@NonNull final Retrofit retrofit
+	) {
+		if (getRawType(type) != ItemStream.class) {
+			return null;
+		}
+		if (!(type instanceof ParameterizedType)) {
+			throw new IllegalArgumentException("ItemStream return type must be parameterized as ItemStream<Foo> or ItemStream<? extends Foo>.");
+		}
+		return new ItemStreamConverter<>(gson.getAdapter(TypeToken.get(getParameterUpperBound(0, (ParameterizedType) type))));
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * A {@link Converter} which wraps response body into {@link ItemStream}.
+	 *
+	 * @param <T> Type of the items of the stream.
+	 */
+	private final class ItemStreamConverter<T> implements Converter<ResponseBody, ItemStream<T>> {
+
+		/**
+		 * Adapter used to parse a single item.
+		 */
+		private final TypeAdapter<T> itemAdapter;
+
+		/**
+		 * Creates a new instance of ItemStreamConverter with the specified <var>itemAdapter</var>.
+		 *
+		 * @param itemAdapter The adapter used to parse a single item.
+		 */
+		ItemStreamConverter(final TypeAdapter<T> itemAdapter) {
+			this.itemAdapter = itemAdapter;
+		}
+
+		/**
+		 */
+		@Override public ItemStream<T> convert(@NonNull final ResponseBody body) throws IOException {
+			return new ItemStream<>(gson.newJsonReader(body.charStream()), itemAdapter);
+		}
+	}
+}
@@ -0,0 +1,257 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * A {@link ServiceCallback} implementation which reads items of an {@link ItemStream} in batches and
+ * dispatches each batch via {@link #onDispatchItems(List)} as soon as it is parsed, so peak memory
+ * used to receive a large list response is proportional to the batch size instead of to the size
+ * of the whole response.
+ * <p>
+ * The items are read on the shared {@link ServiceExecutors#background() background} executor and
+ * dispatched, along with errors, via callback executor of the Retrofit instance which has created
+ * the call, if the call is a {@link ServiceCall} created by {@link universum.studios.android.officium.service.adapter.ServiceCallAdapterFactory ServiceCallAdapterFactory}
+ * and the Retrofit instance has a callback executor. Otherwise errors of error responses are
+ * dispatched on the thread which has received the response and the other results on the background
+ * thread. Reading of the next batches is suspended while
+ * {@link #DEFAULT_MAX_PENDING_BATCHES} batches are waiting to be dispatched, so a slow callback
+ * executor does not cause the batches to pile up in memory.
+ * <p>
+ * Corresponding service api method should be declared to return {@code ServiceCall<ItemStream<T>>}
+ * and Retrofit instance should have {@link ItemStreamConverterFactory} among its converter factories.
+ * As the items are parsed via Gson, the project must also depend on {@code com.google.code.gson:gson}
+ * itself.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ *
+ * @param <T> Type of the items to be received by this callback.
+ */
+public abstract class ItemsCallback<T> extends ServiceCallback<ItemStream<T>> {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "ItemsCallback";
+
+	/**
+	 * Default count of items dispatched in a single batch.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 50;
+
+	/**
+	 * Count of parsed batches which may wait to be dispatched before reading of the next batch is
+	 * suspended.
+	 */
+	public static final int DEFAULT_MAX_PENDING_BATCHES = 2;
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Count of items dispatched in a single batch.
+	 */
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	/**
+	 * Executor on which to read the items.
+	 */
+	@VisibleForTesting Executor readExecutor = ServiceExecutors.background();
+
+	/**
+	 * Permits for batches which may wait to be dispatched.
+	 */
+	private final Semaphore pendingBatches = new Semaphore(DEFAULT_MAX_PENDING_BATCHES);
+
+	/**
+	 * Flag indicating whether reading of the items has been canceled.
+	 */
+	private volatile boolean canceled;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Specifies count of items to be dispatched in a single batch.
+	 *
+	 * @param batchSize The desired count of items.
+	 * @return This callback to allow methods chaining.
+	 * @throws IllegalArgumentException If the specified size is not positive.
+	 */
+	public ItemsCallback<T> setBatchSize(@IntRange(from = 1) final int batchSize) {
+		if (batchSize <= 0) throw new IllegalArgumentException("Batch size must be positive.");
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	/**
+	 * Cancels reading of the items. No more batches are dispatched and the error with
+	 * {@link ServiceFailure#CANCELED} failure is dispatched instead.
+	 */
+	public void cancel() {
+		this.canceled = true;
+	}
+
+	/**
+	 * Starts reading of the given <var>stream</var> on the background executor.
+	 */
+	@Override protected final void onDispatchResponse(@NonNull final ItemStream<T> stream) {
+		this.readExecutor.execute(new Runnable() {
+
+			/**
+			 */
+			@Override public void run() {
+				read(stream);
+			}
+		});
+	}
+
+	/**
+	 * Reads all items of the given <var>stream</var> in batches and dispatches them.
+	 *
+	 * @param stream The stream of which items to read.
+	 */
+	@VisibleForTesting void read(@NonNull final ItemStream<T> stream) {
+		try {
+			while (!stream.isFinished()) {
+				if (canceled) {
+					throw ServiceFailure.CANCELED;
+				}
+				final List<T> items = stream.read(batchSize);
+				if (!items.isEmpty()) {
+					pendingBatches.acquire();
+					dispatch(new Runnable() {
+
+						/**
+						 */
+						@Override public void run() {
+							try {
+								if (!canceled) {
+									onDispatchItems(items);
+								}
+							} finally {
+								pendingBatches.release();
+							}
+						}
+					});
+				}
+			}
+		} catch (IOException | RuntimeException | InterruptedException e) {
+			closeQuietly(stream);
+			if (e instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
+			final ServiceError error = new ServiceError(canceled || e instanceof InterruptedException ? ServiceFailure.CANCELED : e);
+			associateWith(error, this);
+			dispatch(new Runnable() {
+
+				/**
+				 */
+				@Override public void run() {
+					onDispatchError(error);
+				}
+			});
+			return;
+		}
+		final int itemCount = stream.getReadCount();
+		dispatch(new Runnable() {
+
+			/**
+			 */
+			@Override public void run() {
+				onDispatchItemsFinished(itemCount);
+			}
+		});
+	}
+
+	/**
+	 * Runs the given <var>action</var> via callback executor of the associated Retrofit instance or
+	 * directly if there is no such executor.
+	 *
+	 * @param action The action to run.
+	 */
+	private void dispatch(final Runnable action) {
+		final Executor executor = retrofit == null ? null : retrofit.callbackExecutor();
+		if (executor == null) {
+			action.run();
+		} else {
+			executor.execute(action);
+		}
+	}
+
+	/**
+	 * Closes the given <var>stream</var> ignoring any failure.
+	 *
+	 * @param stream The stream to close.
+	 */
+	private static void closeQuietly(final ItemStream<?> stream) {
+		try {
+			stream.close();
+		} catch (IOException ignored) {
+			// Reading has already failed.
+		}
+	}
+
+	/**
+	 * Invoked to dispatch the next batch of received items. The batch is never empty.
+	 *
+	 * @param items The items to be dispatched. At most batch size items.
+	 */
+	protected abstract void onDispatchItems(@NonNull List<T> items);
+
+	/**
+	 * Invoked to dispatch that all items have been received and dispatched via {@link #onDispatchItems(List)}.
+	 *
+	 * @param itemCount Total count of received items.
+	 */
+	protected void onDispatchItemsFinished(final int itemCount) {
+		// Inheritance hierarchies may for example hide progress indicator.
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+}
@@ -19,13 +19,19 @@
 package universum.studios.android.officium.service;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import okhttp3.Request;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
+import retrofit2.Retrofit;
 
 /**
  * A {@link Call} implementation that wraps original Retrofit call to provide functionality that
@@ -37,6 +43,22 @@ import retrofit2.Response;
  * along with the request id which this method returns. Subclasses may implement {@link #nextRequestId()}
  * to generate custom unique id for a specific request. In such case, do not forget to properly override
  * also {@link #clone()} method.
+ * <p>
+ * Request ids are by default generated from a process wide monotonic sequence, so each asynchronous
+ * request receives a different id even if multiple requests are enqueued within the same millisecond.
+ * Callers that want to avoid creation of string ids altogether may use {@link #enqueueRequest(ServiceCallback)}
+ * and match the received service objects via {@link BaseServiceObject#getRequestIdAsLong()}. Primitive
+ * ids are generated via {@link #nextRequestIdValue()}, so subclasses which generate custom ids
+ * via {@link #nextRequestId()} should override also that method, or use only {@link #enqueue(ServiceCallback)},
+ * as overriding only of {@link #nextRequestId()} does not affect requests enqueued via
+ * {@link #enqueueRequest(ServiceCallback)} nor {@link #toFuture()}.
+ * <p>
+ * Results of multiple calls may be combined without nesting of callbacks via {@link ServiceFuture}
+ * obtained for each call via {@link #toFuture()}. Multiple calls may be also executed synchronously
+ * in parallel via {@link #executeAll(Collection, int)}.
+ * <p>
+ * Mutating requests which should not be lost while offline may be added into a {@link DurableQueue}
+ * via {@link #enqueueDurable(DurableQueue, ServiceCallback)}.
  *
  * @author Martin Albedinsky
  * @since 1.2
@@ -52,6 +74,39 @@ public class ServiceCall<T> implements Call<T> {
 	 */
 	// private static final String TAG = "ServiceCall";
 
+	/**
+	 * Number of low bits of generated request ids reserved for the sequence counter. The remaining
+	 * high bits hold the epoch time (in milliseconds) at which the process started generating ids.
+	 */
+	private static final int REQUEST_ID_SEQUENCE_BITS = 16;
+
+	/**
+	 * Priority of requests which may be deferred in favor of other requests, like background prefetch.
+	 *
+	 * @see #withPriority(int)
+	 */
+	public static final int PRIORITY_LOW = -1;
+
+	/**
+	 * Default priority of requests.
+	 *
+	 * @see #withPriority(int)
+	 */
+	public static final int PRIORITY_DEFAULT = 0;
+
+	/**
+	 * Priority of requests which should be performed before other requests, like user facing ones.
+	 *
+	 * @see #withPriority(int)
+	 */
+	public static final int PRIORITY_HIGH = 1;
+
+	/**
+	 * Default maximum count of calls for the same host which may be executed at the same time via
+	 * {@link #executeAll(Collection, int)}. Same as default limit of OkHttp's dispatcher.
+	 */
+	public static final int DEFAULT_MAX_CONCURRENCY_PER_HOST = 5;
+
 	/*
 	 * Interface ===================================================================================
 	 */
@@ -60,6 +115,13 @@ public class ServiceCall<T> implements Call<T> {
 	 * Static members ==============================================================================
 	 */
 
+	/**
+	 * Sequence used to generate unique request ids. Seeded with the current epoch time shifted by
+	 * {@link #REQUEST_ID_SEQUENCE_BITS}, so ids generated by subsequent processes do not collide
+	 * unless a previous process generated more than {@code 65536} ids per millisecond of its lifetime.
+	 */
+	private static final AtomicLong REQUEST_ID_SEQUENCE = new AtomicLong(System.currentTimeMillis() << REQUEST_ID_SEQUENCE_BITS);
+
 	/*
 	 * Members =====================================================================================
 	 */
@@ -74,6 +136,16 @@ public class ServiceCall<T> implements Call<T> {
 	 */
 	@VisibleForTesting Integer serviceId;
 
+	/**
+	 * Priority of this call.
+	 */
+	@VisibleForTesting int priority = PRIORITY_DEFAULT;
+
+	/**
+	 * Retrofit instance which has created the original call. May be {@code null}.
+	 */
+	@VisibleForTesting final Retrofit retrofit;
+
 	/*
 	 * Constructors ================================================================================
 	 */
@@ -84,7 +156,21 @@ public class ServiceCall<T> implements Call<T> {
 	 * @param call The Retrofit call to which will be this service call delegating its methods.
 	 */
 	public ServiceCall(@NonNull final Call<T> call) {
+		this(call, null);
+	}
+
+	/**
+	 * Creates a new instance of ServiceCall with the given original Retrofit <var>call</var> created
+	 * by the specified <var>retrofit</var> instance. The Retrofit instance is attached to callbacks
+	 * enqueued via {@link #enqueue(ServiceCallback)} so they may resolve timings of the call. Its
+	 * converters are used to decode error bodies via {@link ServiceError#getErrorBodyAs(Class)}.
+	 *
+	 * @param call     The Retrofit call to which will be this service call delegating its methods.
+	 * @param retrofit The Retrofit instance which has created the call. May be {@code null}.
+	 */
+	public ServiceCall(@NonNull final Call<T> call, @Nullable final Retrofit retrofit) {
 		this.call = call;
+		this.retrofit = retrofit;
 	}
 
 	/*
@@ -108,19 +194,69 @@ public class ServiceCall<T> implements Call<T> {
 		throw new UnsupportedOperationException("Service id is already specified!");
 	}
 
+	/**
+	 * Specifies priority of this call. The priority will be attached to the {@link ServiceCallback}
+	 * when {@link #enqueue(ServiceCallback)} is called, so calls with higher priority may be performed
+	 * before calls with lower priority if the call has been adapted by a factory with priority
+	 * dispatching enabled.
+	 *
+	 * @param priority The desired priority. Higher values mean higher priority. Predefined values are
+	 *                 {@link #PRIORITY_LOW}, {@link #PRIORITY_DEFAULT} and {@link #PRIORITY_HIGH}.
+	 * @return This service call to allow methods chaining.
+	 * @see universum.studios.android.officium.service.adapter.ServiceCallAdapterFactory.Builder#priorityDispatcher(universum.studios.android.officium.service.adapter.PriorityDispatcher)
+	 */
+	public ServiceCall<T> withPriority(final int priority) {
+		this.priority = priority;
+		return this;
+	}
+
 	/**
 	 */
 	@Override public Response<T> execute() throws IOException {
 		return call.execute();
 	}
 
+	/**
+	 * Same as {@link #executeAll(Collection, int, int)} with {@link #DEFAULT_MAX_CONCURRENCY_PER_HOST}.
+	 */
+	@NonNull public static <T> List<Response<T>> executeAll(@NonNull final Collection<? extends Call<T>> calls, final int maxConcurrency) throws IOException {
+		return executeAll(calls, maxConcurrency, DEFAULT_MAX_CONCURRENCY_PER_HOST);
+	}
+
+	/**
+	 * Synchronously executes all the given <var>calls</var> in parallel on the shared
+	 * {@link ServiceExecutors#background() background} executor and returns theirs responses in the
+	 * order of the calls. This method blocks until all calls finish, so it should be invoked only
+	 * from a background thread, like from a sync adapter.
+	 * <p>
+	 * At most <var>maxConcurrency</var> calls are executed at the same time and at most
+	 * <var>maxConcurrencyPerHost</var> of them for the same host. The first call that fails with an
+	 * exception stops the execution: no more calls are started, the running calls are canceled and
+	 * the failure is thrown. Error responses are returned along with the successful ones.
+	 *
+	 * @param calls                 The calls to execute. Each call may be executed only once.
+	 * @param maxConcurrency        Maximum count of calls executed at the same time.
+	 * @param maxConcurrencyPerHost Maximum count of calls for the same host executed at the same time.
+	 * @param <T>                   Type of the response body of the calls.
+	 * @return Responses of the calls in the order of the calls.
+	 * @throws IOException              Failure of the first failed call or {@link java.io.InterruptedIOException}
+	 *                                  if the calling thread has been interrupted.
+	 * @throws IllegalArgumentException If any of the concurrency limits is less than {@code 1}.
+	 */
+	@NonNull public static <T> List<Response<T>> executeAll(@NonNull final Collection<? extends Call<T>> calls, final int maxConcurrency, final int maxConcurrencyPerHost) throws IOException {
+		if (maxConcurrency < 1 || maxConcurrencyPerHost < 1) {
+			throw new IllegalArgumentException("Concurrency limits must be at least 1!");
+		}
+		return new ServiceCallBatch<>(calls, maxConcurrency, maxConcurrencyPerHost, ServiceExecutors.background()).execute();
+	}
+
 	/**
 	 * Like {@link #enqueue(Callback)}, but this method also obtains and returns unique id of this
 	 * asynchronous request so it may be later identified through the associated service objects:
 	 * {@link ServiceCallback} which results to either {@link ServiceResponse} or {@link ServiceError}.
 	 * <p>
 	 * Also id of the service specified for this service call will be attached to the callback if
-	 * it has no service id attached yet.
+	 * it has no service id attached yet, along with priority of this call.
 	 *
 	 * @param callback The desired callback that should be notified when service request is finished.
 	 * @return Unique id of this request for later identification of received callback, either
@@ -131,21 +267,136 @@ public class ServiceCall<T> implements Call<T> {
 	@NonNull public String enqueue(@NonNull final ServiceCallback<T> callback) {
 		final String requestId = nextRequestId();
 		ServiceCallback.associateWith(callback, serviceId, requestId);
+		callback.priority = priority;
+		callback.retrofit = retrofit;
+		enqueue((Callback<T>) callback);
+		return requestId;
+	}
+
+	/**
+	 * Like {@link #enqueue(ServiceCallback)}, but this method returns the unique id of this asynchronous
+	 * request as primitive value, so no string id is created for the request unless it is explicitly
+	 * requested via {@link ServiceObject#getRequestId()}.
+	 * <p>
+	 * The request id is generated via {@link #nextRequestIdValue()}, not via {@link #nextRequestId()}.
+	 *
+	 * @param callback The desired callback that should be notified when service request is finished.
+	 * @return Unique id of this request for later identification of received callback, either
+	 * successful response or error.
+	 * @see BaseServiceObject#getRequestIdAsLong()
+	 */
+	public long enqueueRequest(@NonNull final ServiceCallback<T> callback) {
+		final long requestId = nextRequestIdValue();
+		ServiceCallback.associateWith(callback, serviceId, requestId);
+		callback.priority = priority;
+		callback.retrofit = retrofit;
 		enqueue((Callback<T>) callback);
 		return requestId;
 	}
 
+	/**
+	 * Adds request of this call into the given durable <var>queue</var> which persists it and sends
+	 * it whenever the network is available, even after the process restart. Result of the request
+	 * is delivered to {@link DurableQueue.OnReplayListener} of the queue along with the returned
+	 * request id.
+	 * <p>
+	 * This call itself is not executed.
+	 *
+	 * @param queue The queue into which to add the request.
+	 * @return Unique id of the request for later identification of its result.
+	 * @throws IllegalArgumentException If body of the request cannot be serialized.
+	 * @see #enqueueDurable(DurableQueue, ServiceCallback)
+	 */
+	@NonNull public String enqueueDurable(@NonNull final DurableQueue queue) {
+		final String requestId = nextRequestId();
+		queue.enqueue(requestId, serviceId == null ? ServiceObject.NO_SERVICE : serviceId, request(), null);
+		return requestId;
+	}
+
+	/**
+	 * Like {@link #enqueueDurable(DurableQueue)}, but result of the request is delivered to the given
+	 * <var>callback</var>, like for {@link #enqueue(ServiceCallback)}, as long as the current process
+	 * lives. The request is sent via clone of this call. If the process is restarted before the
+	 * request is sent, its result is delivered to {@link DurableQueue.OnReplayListener} of the queue.
+	 *
+	 * @param queue    The queue into which to add the request.
+	 * @param callback The desired callback that should be notified when the request is finished.
+	 * @return Unique id of the request for later identification of received callback, either
+	 * successful response or error.
+	 * @throws IllegalArgumentException If body of the request cannot be serialized.
+	 */
+	@NonNull public String enqueueDurable(@NonNull final DurableQueue queue, @NonNull final ServiceCallback<T> callback) {
+		final String requestId = nextRequestId();
+		ServiceCallback.associateWith(callback, serviceId, requestId);
+		callback.priority = priority;
+		callback.retrofit = retrofit;
+		queue.enqueue(requestId, serviceId == null ? ServiceObject.NO_SERVICE : serviceId, request(), new DurableQueue.LiveCall<>(this, callback));
+		return requestId;
+	}
+
+	/**
+	 * Same as {@link #toFuture(Executor)} with {@code null} executor, so listeners of the returned
+	 * future are notified on the thread which delivers the response of this call.
+	 *
+	 * @return Future of this call's response body.
+	 */
+	@NonNull public ServiceFuture<T> toFuture() {
+		return toFuture(null);
+	}
+
+	/**
+	 * Enqueues this call, like {@link #enqueueRequest(ServiceCallback)}, and returns a future which
+	 * completes with result of this call. The future succeeds with body of the successful response
+	 * and fails with the failure of this call or with {@link ServiceErrorException} if the server
+	 * responds with an error response. Canceling of the returned future cancels also this call.
+	 *
+	 * @param executor The executor via which to notify listeners of the future and of futures derived
+	 *                 from it. May be {@code null} to notify them on the thread which delivers the
+	 *                 response of this call.
+	 * @return Future of this call's response body.
+	 * @see ServiceFuture#allOf(java.util.Collection)
+	 * @see ServiceFuture#anyOf(java.util.Collection)
+	 */
+	@NonNull public ServiceFuture<T> toFuture(@Nullable final Executor executor) {
+		final ServiceFuture<T> future = new ServiceFuture<T>(executor) {
+
+			/**
+			 */
+			@Override void onCancel() {
+				ServiceCall.this.cancel();
+			}
+		};
+		enqueueRequest(new FutureCallback<>(future));
+		return future;
+	}
+
 	/**
 	 * Called to generate a unique id for the current service request that has been requested to be
 	 * executed asynchronously via {@link #enqueue(ServiceCallback)}.
 	 * <p>
-	 * This implementation returns a string representation of the current time in milliseconds as
-	 * {@link Long#toString(long) Long.toString(System.currentTimeMillis())}.
+	 * This implementation returns a string representation of {@link #nextRequestIdValue()}.
+	 * <p>
+	 * <b>Note</b>, that this method is not used by {@link #enqueueRequest(ServiceCallback)} which
+	 * uses {@link #nextRequestIdValue()} directly, so subclasses overriding this method should override
+	 * also {@link #nextRequestIdValue()} if primitive request ids should be customized as well.
 	 *
 	 * @return Unique id for the current request that will be attached to the service callback.
 	 */
 	@NonNull protected String nextRequestId() {
-		return Long.toString(System.currentTimeMillis());
+		return Long.toString(nextRequestIdValue());
+	}
+
+	/**
+	 * Called to generate a unique primitive id for the current service request that has been requested
+	 * to be executed asynchronously via {@link #enqueueRequest(ServiceCallback)}.
+	 * <p>
+	 * This implementation returns next value of a process wide monotonic sequence. The value is
+	 * always positive and never equal to {@link BaseServiceObject#NO_REQUEST_ID}.
+	 *
+	 * @return Unique id for the current request that will be attached to the service callback.
+	 */
+	protected long nextRequestIdValue() {
+		return REQUEST_ID_SEQUENCE.incrementAndGet();
 	}
 
 	/**
@@ -180,16 +431,52 @@ public class ServiceCall<T> implements Call<T> {
 
 	/**
 	 * Creates a new clone of this service call with the original <b>Retrofit</b> call also cloned
-	 * and with the same service id as specified via {@link #withServiceId(int)} (if any).
+	 * and with the same service id as specified via {@link #withServiceId(int)} (if any) and the same
+	 * priority as specified via {@link #withPriority(int)}.
 	 */
 	@SuppressWarnings("CloneDoesntCallSuperClone")
 	@Override public ServiceCall<T> clone() {
-		final ServiceCall<T> serviceCall = new ServiceCall<>(call.clone());
+		final ServiceCall<T> serviceCall = new ServiceCall<>(call.clone(), retrofit);
 		serviceCall.serviceId = serviceId;
+		serviceCall.priority = priority;
 		return serviceCall;
 	}
 
 	/*
 	 * Inner classes ===============================================================================
 	 */
+
+	/**
+	 * A {@link ServiceCallback} which completes the associated {@link ServiceFuture}.
+	 *
+	 * @param <T> Type of the response body.
+	 */
+	private static final class FutureCallback<T> extends ServiceCallback<T> {
+
+		/**
+		 * Future to be completed by this callback.
+		 */
+		private final ServiceFuture<T> future;
+
+		/**
+		 * Creates a new instance of FutureCallback for the given <var>future</var>.
+		 *
+		 * @param future The future to be completed.
+		 */
+		FutureCallback(final ServiceFuture<T> future) {
+			this.future = future;
+		}
+
+		/**
+		 */
+		@Override protected void onDispatchResponse(@NonNull final T responseBody) {
+			future.complete(responseBody);
+		}
+
+		/**
+		 */
+		@Override protected void onDispatchError(@NonNull final ServiceError error) {
+			future.fail(error.isFailure() ? error.getFailure() : new ServiceErrorException(error));
+		}
+	}
 }
\ No newline at end of file
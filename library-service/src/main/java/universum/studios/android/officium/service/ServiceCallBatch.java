@@ -0,0 +1,352 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Batch which executes a collection of calls in parallel with bounded concurrency, both overall and
+ * per host, and collects theirs responses in the order of the calls.
+ * <p>
+ * Pending calls are started in theirs order, except that a call whose host has reached its limit
+ * of running calls is skipped in favor of the next call for another host, so calls for one busy
+ * host do not block calls for other hosts. The first call that fails with an exception stops the
+ * batch: no more calls are started, the running calls are canceled and the failure is thrown to
+ * the caller. Error responses are not treated as failures.
+ *
+ * @param <T> Type of the response body of the executed calls.
+ * @author Martin Albedinsky
+ * @since 2.0
+ * @see ServiceCall#executeAll(Collection, int, int)
+ */
+final class ServiceCallBatch<T> {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "ServiceCallBatch";
+
+	/**
+	 * State of a call that is running.
+	 */
+	private static final byte RUNNING = 1;
+
+	/**
+	 * State of a call that has finished.
+	 */
+	private static final byte FINISHED = 2;
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/**
+	 * Listener which may be used to process response of each call of the batch as soon as the call
+	 * finishes.
+	 *
+	 * @param <T> Type of the response body.
+	 */
+	interface OnResponseListener<T> {
+
+		/**
+		 * Invoked on the thread which has executed the call at the specified <var>index</var> whenever
+		 * the call receives the given <var>response</var>.
+		 *
+		 * @param index    Index of the call.
+		 * @param response Response of the call.
+		 * @throws IOException If the response should be treated as failure which stops the batch.
+		 */
+		void onResponse(int index, @NonNull Response<T> response) throws IOException;
+	}
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Calls to be executed.
+	 */
+	private final List<Call<T>> calls;
+
+	/**
+	 * Hosts of the calls.
+	 */
+	private final String[] hosts;
+
+	/**
+	 * Maximum count of calls which may be running at the same time.
+	 */
+	private final int maxConcurrency;
+
+	/**
+	 * Maximum count of calls for the same host which may be running at the same time.
+	 */
+	private final int maxConcurrencyPerHost;
+
+	/**
+	 * Executor used to execute the calls.
+	 */
+	private final Executor executor;
+
+	/**
+	 * Listener to be notified about each response. May be {@code null}.
+	 */
+	private OnResponseListener<T> responseListener;
+
+	/**
+	 * Indexes of calls which have not been started yet, in ascending order.
+	 */
+	private final LinkedList<Integer> pendingCalls = new LinkedList<>();
+
+	/**
+	 * States of the calls.
+	 */
+	private final byte[] states;
+
+	/**
+	 * Responses of the finished calls.
+	 */
+	private final List<Response<T>> responses;
+
+	/**
+	 * Counts of running calls mapped to theirs hosts.
+	 */
+	private final Map<String, int[]> runningCallsPerHost = new HashMap<>();
+
+	/**
+	 * Count of running calls.
+	 */
+	private int runningCalls;
+
+	/**
+	 * Failure of the first failed call. May be {@code null} if no call has failed.
+	 */
+	private Throwable failure;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of ServiceCallBatch for the specified <var>calls</var>.
+	 *
+	 * @param calls                 The calls to execute.
+	 * @param maxConcurrency        Maximum count of calls which may be running at the same time.
+	 * @param maxConcurrencyPerHost Maximum count of calls for the same host which may be running
+	 *                              at the same time.
+	 * @param executor              The executor used to execute the calls.
+	 */
+	ServiceCallBatch(final Collection<? extends Call<T>> calls, final int maxConcurrency, final int maxConcurrencyPerHost, final Executor executor) {
+		this.calls = new ArrayList<>(calls);
+		this.maxConcurrency = maxConcurrency;
+		this.maxConcurrencyPerHost = maxConcurrencyPerHost;
+		this.executor = executor;
+		final int count = this.calls.size();
+		this.hosts = new String[count];
+		this.states = new byte[count];
+		this.responses = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			this.hosts[i] = this.calls.get(i).request().url().host();
+			this.pendingCalls.add(i);
+			this.responses.add(null);
+		}
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Specifies listener to be notified about response of each call as soon as the call finishes.
+	 *
+	 * @param listener The desired listener. May be {@code null} to clear the current one.
+	 */
+	void setOnResponseListener(@Nullable final OnResponseListener<T> listener) {
+		this.responseListener = listener;
+	}
+
+	/**
+	 * Cancels this batch. No more calls are started, the running calls are canceled and {@link #execute()}
+	 * fails with {@link ServiceFailure#CANCELED}.
+	 */
+	synchronized void cancel() {
+		if (failure == null) {
+			this.failure = ServiceFailure.CANCELED;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Executes all calls of this batch and waits until all of them finish or one of them fails.
+	 *
+	 * @return Responses of the calls in the order of the calls.
+	 * @throws IOException If any of the calls fails or the calling thread is interrupted.
+	 */
+	@NonNull List<Response<T>> execute() throws IOException {
+		final Throwable batchFailure;
+		synchronized (this) {
+			try {
+				while (failure == null && (runningCalls > 0 || !pendingCalls.isEmpty())) {
+					if (!startNextCall()) {
+						wait();
+					}
+				}
+			} catch (InterruptedException e) {
+				cancelRunningCalls();
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for calls.");
+			}
+			batchFailure = failure;
+			if (batchFailure != null) {
+				cancelRunningCalls();
+			}
+		}
+		if (batchFailure == null) {
+			return responses;
+		}
+		if (batchFailure instanceof IOException) {
+			throw (IOException) batchFailure;
+		}
+		if (batchFailure instanceof RuntimeException) {
+			throw (RuntimeException) batchFailure;
+		}
+		throw (Error) batchFailure;
+	}
+
+	/**
+	 * Starts the first pending call which may be started without exceeding the concurrency limits.
+	 *
+	 * @return {@code True} if a call has been started, {@code false} otherwise.
+	 */
+	private boolean startNextCall() {
+		if (runningCalls >= maxConcurrency) {
+			return false;
+		}
+		final Iterator<Integer> iterator = pendingCalls.iterator();
+		while (iterator.hasNext()) {
+			final int index = iterator.next();
+			int[] hostCalls = runningCallsPerHost.get(hosts[index]);
+			if (hostCalls == null) {
+				runningCallsPerHost.put(hosts[index], hostCalls = new int[1]);
+			}
+			if (hostCalls[0] < maxConcurrencyPerHost) {
+				iterator.remove();
+				hostCalls[0]++;
+				runningCalls++;
+				states[index] = RUNNING;
+				executor.execute(new CallTask(index));
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Cancels all calls that are currently running.
+	 */
+	private void cancelRunningCalls() {
+		for (int i = 0; i < states.length; i++) {
+			if (states[i] == RUNNING) {
+				calls.get(i).cancel();
+			}
+		}
+	}
+
+	/**
+	 * Invoked whenever the call at the specified <var>index</var> finishes.
+	 *
+	 * @param index       Index of the finished call.
+	 * @param response    Response of the call. May be {@code null} if the call has failed.
+	 * @param callFailure Failure of the call. May be {@code null} if the call has succeeded.
+	 */
+	synchronized void onCallFinished(final int index, final Response<T> response, final Throwable callFailure) {
+		states[index] = FINISHED;
+		runningCalls--;
+		runningCallsPerHost.get(hosts[index])[0]--;
+		if (callFailure == null) {
+			responses.set(index, response);
+		} else if (failure == null) {
+			this.failure = callFailure;
+		}
+		notifyAll();
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * Task which executes a single call of the batch.
+	 */
+	private final class CallTask implements Runnable {
+
+		/**
+		 * Index of the call to execute.
+		 */
+		private final int index;
+
+		/**
+		 * Creates a new instance of CallTask for call at the specified <var>index</var>.
+		 *
+		 * @param index Index of the call to execute.
+		 */
+		CallTask(final int index) {
+			this.index = index;
+		}
+
+		/**
+		 */
+		@Override public void run() {
+			Response<T> response = null;
+			Throwable callFailure = null;
+			try {
+				response = calls.get(index).execute();
+				if (responseListener != null) {
+					responseListener.onResponse(index, response);
+				}
+			} catch (Throwable e) {
+				callFailure = e;
+			} finally {
+				onCallFinished(index, response, callFailure);
+			}
+		}
+	}
+}
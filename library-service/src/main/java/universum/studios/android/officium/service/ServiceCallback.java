@@ -18,10 +18,13 @@
  */
 package universum.studios.android.officium.service;
 
+import java.net.HttpURLConnection;
+
 import androidx.annotation.NonNull;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
+import retrofit2.Retrofit;
 
 /**
  * Base implementation of {@link Callback} that may be used to receive a response for a particular
@@ -55,6 +58,18 @@ public abstract class ServiceCallback<R> extends BaseServiceObject implements Ca
 	 * Members =====================================================================================
 	 */
 
+	/**
+	 * Priority of the service request for which has been this callback enqueued.
+	 */
+	int priority = ServiceCall.PRIORITY_DEFAULT;
+
+	/**
+	 * Retrofit instance which has created the call for which has been this callback enqueued. Used
+	 * to resolve converters for error bodies of dispatched errors and recorder of timings of the
+	 * call. May be {@code null}.
+	 */
+	Retrofit retrofit;
+
 	/*
 	 * Constructors ================================================================================
 	 */
@@ -63,22 +78,92 @@ public abstract class ServiceCallback<R> extends BaseServiceObject implements Ca
 	 * Methods =====================================================================================
 	 */
 
+	/**
+	 * Returns the priority of the service request for which has been this callback enqueued via
+	 * {@link ServiceCall#enqueue(ServiceCallback)}.
+	 *
+	 * @return Priority specified via {@link ServiceCall#withPriority(int)} or {@link ServiceCall#PRIORITY_DEFAULT}
+	 * if there was no priority specified.
+	 */
+	public int getPriority() {
+		return priority;
+	}
+
 	/**
 	 */
 	@Override public void onResponse(@NonNull final Call<R> call, @NonNull final Response<R> response) {
+		final ConnectionEventRecorder recorder = ConnectionEventRecorder.of(retrofit);
+		final CallTimings timings = recorder == null ? null : recorder.timingsOf(response.raw());
+		if (timings != null) {
+			timings.aggregateFor(getServiceId());
+		}
 		if (response.isSuccessful()) {
-			final R responseBody = response.body();
+			R responseBody = response.body();
 			if (responseBody instanceof ServiceObject) {
-				associateWith((ServiceObject) responseBody, serviceId, requestId);
+				responseBody = associateWith(responseBody);
+			}
+			if (responseBody instanceof BaseServiceObject && timings != null) {
+				((BaseServiceObject) responseBody).callTimings = timings;
 			}
-			onDispatchResponse(responseBody);
+			onDispatchResponse(responseBody, isNotModified(response.raw()));
 		} else {
 			final ServiceError error = new ServiceError(response.code(), response.errorBody());
-			associateWith(error, serviceId, requestId);
+			// Release the original body so the dispatched error retains only its limited content.
+			error.readErrorBody();
+			associateWith(error, this);
+			error.setRetrofit(retrofit);
+			error.callTimings = timings;
 			onDispatchError(error);
 		}
 	}
 
+	/**
+	 * Associates the given <var>responseBody</var> with service and request of this callback. If the
+	 * body has been already associated with another request, like a body shared by multiple requests
+	 * or served from a cache, a shallow copy of the body is associated instead, if the body is
+	 * a {@link BaseServiceObject}. Other {@link ServiceObject} implementations keep theirs first
+	 * association as they cannot be copied.
+	 *
+	 * @param responseBody The service object body to associate.
+	 * @return The associated body, either the given one or its copy.
+	 */
+	@SuppressWarnings("unchecked")
+	private R associateWith(final R responseBody) {
+		return (R) associateOrCopy((ServiceObject) responseBody, this);
+	}
+
+	/**
+	 * Checks whether the given successful <var>rawResponse</var> delivers a cached body confirmed
+	 * by the server via {@code 304 Not Modified} response to a conditional request.
+	 *
+	 * @param rawResponse The raw response to check.
+	 * @return {@code True} if the response body has not been modified since it was received the
+	 * last time, {@code false} otherwise.
+	 */
+	static boolean isNotModified(@NonNull final okhttp3.Response rawResponse) {
+		final okhttp3.Response networkResponse = rawResponse.networkResponse();
+		return networkResponse != null && networkResponse.code() == HttpURLConnection.HTTP_NOT_MODIFIED;
+	}
+
+	/**
+	 * Invoked to dispatch the given <var>responseBody</var> object to its receivers along with
+	 * a flag indicating whether the body has been modified since it was dispatched the last time.
+	 * <p>
+	 * A not modified body is the same body which has been cached for the request and confirmed by
+	 * the server via {@code 304 Not Modified} response, so the receivers may skip its processing.
+	 * See {@link universum.studios.android.officium.service.adapter.ResponseCache ResponseCache}
+	 * for more information.
+	 * <p>
+	 * Default implementation delegates to {@link #onDispatchResponse(Object)}.
+	 *
+	 * @param responseBody The response body to be dispatched.
+	 * @param notModified  {@code True} if the body has not been modified, {@code false} otherwise.
+	 * @see Response#body()
+	 */
+	protected void onDispatchResponse(@NonNull final R responseBody, final boolean notModified) {
+		onDispatchResponse(responseBody);
+	}
+
 	/**
 	 * Invoked to dispatch the given <var>responseBody</var> object to its receivers.
 	 *
@@ -92,7 +177,12 @@ public abstract class ServiceCallback<R> extends BaseServiceObject implements Ca
 	 */
 	@Override public void onFailure(@NonNull final Call<R> call, @NonNull final Throwable failure) {
 		final ServiceError error = new ServiceError(failure);
-		associateWith(error, serviceId, requestId);
+		associateWith(error, this);
+		final ConnectionEventRecorder recorder = ConnectionEventRecorder.of(retrofit);
+		error.callTimings = recorder == null ? null : recorder.timingsOf(failure);
+		if (error.callTimings != null) {
+			error.callTimings.aggregateFor(getServiceId());
+		}
 		onDispatchError(error);
 	}
 
@@ -19,11 +19,30 @@
 package universum.studios.android.officium.service;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
 
+import javax.net.ssl.SSLException;
+
+import androidx.annotation.IntDef;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import okhttp3.MediaType;
 import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
 import retrofit2.Converter;
+import retrofit2.Retrofit;
 
 /**
  * A {@link BaseServiceObject} implementation that represents an error occurred during service execution.
@@ -32,6 +51,18 @@ import retrofit2.Converter;
  * respectively. Or it may be defined as a failure that has caused the associated service and request
  * to fail. In such case {@link #isFailure()} will return {@code true} and the occurred failure may
  * be obtained via {@link #getFailure()}.
+ * <p>
+ * Error body may be decoded via {@link #getErrorBodyAs(Class)} using either converter specified
+ * via {@link #setErrorBodyConverter(Converter)} or converter resolved from the Retrofit instance
+ * which has created the service call, if the error has been dispatched by {@link ServiceCallback}
+ * for a call adapted to {@link ServiceCall}. The error body is read only once, at most
+ * {@link #MAX_ERROR_BODY_SIZE} bytes of it, and bodies decoded for particular classes are memoized,
+ * so the same error may be inspected by multiple receivers. Errors dispatched by {@link ServiceCallback}
+ * have theirs error body read and the original body released before they are dispatched, so bodies
+ * of such errors are always limited to {@link #MAX_ERROR_BODY_SIZE} bytes.
+ * <p>
+ * Each error is classified by its {@link #getKind() kind}, so receivers may distinguish for example
+ * a timeout from a DNS lookup failure without inspecting type of the failure.
  *
  * @author Martin Albedinsky
  * @since 1.0
@@ -47,6 +78,89 @@ public class ServiceError extends BaseServiceObject {
 	 */
 	// private static final String TAG = "ServiceError";
 
+	/**
+	 * Maximum size in bytes of error body which may be decoded. Error bodies that exceed this size
+	 * are not decoded so they cannot pin large amount of memory.
+	 */
+	public static final long MAX_ERROR_BODY_SIZE = 64 * 1024;
+
+	/**
+	 * Defines an annotation for determining set of allowed kinds of service errors.
+	 *
+	 * @see #getKind()
+	 */
+	@Retention(RetentionPolicy.SOURCE)
+	@IntDef({
+			KIND_UNKNOWN,
+			KIND_HTTP,
+			KIND_TIMEOUT,
+			KIND_DNS,
+			KIND_CONNECTION,
+			KIND_TLS,
+			KIND_CANCELED,
+			KIND_CONVERSION,
+			KIND_IO,
+			KIND_CIRCUIT_OPEN,
+			KIND_RATE_LIMITED
+	})
+	public @interface Kind {}
+
+	/**
+	 * Kind of failure that does not match any other kind.
+	 */
+	public static final int KIND_UNKNOWN = 0;
+
+	/**
+	 * Kind of error that is an error response received from the server.
+	 */
+	public static final int KIND_HTTP = 1;
+
+	/**
+	 * Kind of failure caused by a timeout while connecting to the server or waiting for its response.
+	 */
+	public static final int KIND_TIMEOUT = 2;
+
+	/**
+	 * Kind of failure caused by an unsuccessful DNS lookup of the host.
+	 */
+	public static final int KIND_DNS = 3;
+
+	/**
+	 * Kind of failure caused by an unsuccessful attempt to connect to the host or by an unexpectedly
+	 * closed connection.
+	 */
+	public static final int KIND_CONNECTION = 4;
+
+	/**
+	 * Kind of failure caused by an unsuccessful TLS handshake or other TLS related problem.
+	 */
+	public static final int KIND_TLS = 5;
+
+	/**
+	 * Kind of failure reported for a call that has been canceled or interrupted.
+	 */
+	public static final int KIND_CANCELED = 6;
+
+	/**
+	 * Kind of failure that is not an {@link IOException}, like a failure to convert the response body.
+	 */
+	public static final int KIND_CONVERSION = 7;
+
+	/**
+	 * Kind of failure that is an {@link IOException} not matching any more specific kind.
+	 */
+	public static final int KIND_IO = 8;
+
+	/**
+	 * Kind of failure reported for a call rejected due to open circuit of a circuit breaker.
+	 */
+	public static final int KIND_CIRCUIT_OPEN = 9;
+
+	/**
+	 * Kind of failure reported for a call rejected due to exceeded rate limit.
+	 */
+	public static final int KIND_RATE_LIMITED = 10;
+
 	/*
 	 * Interface ===================================================================================
 	 */
@@ -74,6 +188,13 @@ public class ServiceError extends BaseServiceObject {
 	 */
 	private final int errorCode;
 
+	/**
+	 * Kind of this service error.
+	 *
+	 * @see #getKind()
+	 */
+	private final int kind;
+
 	/**
 	 * Error body specified for this service error along with error code. May be {@code null} if this
 	 * error represents a failure.
@@ -89,6 +210,12 @@ public class ServiceError extends BaseServiceObject {
 	 */
 	private Converter<ResponseBody, ?> errorBodyConverter;
 
+	/**
+	 * Decoder of the error body shared by copies of this error. May be {@code null} if this error
+	 * represents a failure.
+	 */
+	private final ErrorBodyDecoder errorBodyDecoder;
+
 	/*
 	 * Constructors ================================================================================
 	 */
@@ -106,7 +233,9 @@ public class ServiceError extends BaseServiceObject {
 		super();
 		this.errorCode = errorCode;
 		this.errorBody = errorBody;
+		this.errorBodyDecoder = new ErrorBodyDecoder(errorBody);
 		this.failure = null;
+		this.kind = KIND_HTTP;
 	}
 
 	/**
@@ -120,7 +249,9 @@ public class ServiceError extends BaseServiceObject {
 		super();
 		this.errorCode = 0;
 		this.errorBody = null;
+		this.errorBodyDecoder = null;
 		this.failure = failure;
+		this.kind = kindOf(failure);
 	}
 
 	/**
@@ -134,14 +265,63 @@ public class ServiceError extends BaseServiceObject {
 		super();
 		this.errorCode = other.errorCode;
 		this.errorBody = other.errorBody;
+		this.errorBodyDecoder = other.errorBodyDecoder;
 		this.failure = other.failure;
+		this.kind = other.kind;
 		this.errorBodyConverter = other.errorBodyConverter;
+		this.callTimings = other.callTimings;
 	}
 
 	/*
 	 * Methods =====================================================================================
 	 */
 
+	/**
+	 * Classifies the given <var>failure</var> into one of the service error kinds.
+	 *
+	 * @param failure The failure to classify.
+	 * @return Kind of the failure. Failures that are {@link ServiceFailure ServiceFailures} are of
+	 * theirs own kind.
+	 * @see #getKind()
+	 */
+	@Kind public static int kindOf(@NonNull final Throwable failure) {
+		if (failure instanceof ServiceFailure) {
+			return ((ServiceFailure) failure).getKind();
+		}
+		if (!(failure instanceof IOException)) {
+			return failure instanceof Exception ? KIND_CONVERSION : KIND_UNKNOWN;
+		}
+		if (failure instanceof SocketTimeoutException) {
+			return KIND_TIMEOUT;
+		}
+		if (failure instanceof InterruptedIOException) {
+			// Okio reports expired timeouts as interrupted I/O with one of these messages.
+			final String message = failure.getMessage();
+			return "timeout".equals(message) || "deadline reached".equals(message) ? KIND_TIMEOUT : KIND_CANCELED;
+		}
+		if (failure instanceof UnknownHostException) {
+			return KIND_DNS;
+		}
+		if (failure instanceof SSLException) {
+			return KIND_TLS;
+		}
+		if (failure instanceof ConnectException || failure instanceof NoRouteToHostException || failure instanceof SocketException) {
+			return KIND_CONNECTION;
+		}
+		// OkHttp reports canceled calls as plain I/O failure with this message.
+		return "Canceled".equals(failure.getMessage()) ? KIND_CANCELED : KIND_IO;
+	}
+
+	/**
+	 * Returns the kind of this service error.
+	 *
+	 * @return {@link #KIND_HTTP} if this error is an error response, otherwise kind of the failure
+	 * as classified via {@link #kindOf(Throwable)}.
+	 */
+	@Kind public final int getKind() {
+		return kind;
+	}
+
 	/**
 	 * Checks whether this service error represents an error response that has been received from
 	 * the server for the associated service and request.
@@ -172,6 +352,11 @@ public class ServiceError extends BaseServiceObject {
 	/**
 	 * Returns the error body of the response send by the server as result to call to the associated
 	 * service and request.
+	 * <p>
+	 * Once the error body has been read in order to be decoded via {@link #getErrorBodyAs(Class)},
+	 * this method returns a new body with the read content, limited to {@link #MAX_ERROR_BODY_SIZE}
+	 * bytes, which is always the case for errors dispatched by {@link ServiceCallback}. <b>Note</b>,
+	 * that reading of the original body before it is decoded prevents its decoding.
 	 *
 	 * @return Error body specified for this service error.
 	 * @throws UnsupportedOperationException If this error is not an error response but a failure.
@@ -180,7 +365,31 @@ public class ServiceError extends BaseServiceObject {
 	@NonNull public ResponseBody getErrorBody() {
 		if (errorBody == null)
 			throw new UnsupportedOperationException("Not an error but a failure!");
-		return errorBody;
+		final ResponseBody readBody = errorBodyDecoder.readBody();
+		return readBody == null ? errorBody : readBody;
+	}
+
+	/**
+	 * Reads at most {@link #MAX_ERROR_BODY_SIZE} bytes of the error body of this error, if it has not
+	 * been read yet, and releases the original body, so this error does not retain more than the
+	 * limited content of the body. Does nothing if this error is a failure.
+	 */
+	void readErrorBody() {
+		if (errorBodyDecoder != null) {
+			errorBodyDecoder.readContent();
+		}
+	}
+
+	/**
+	 * Specifies Retrofit instance from which to resolve converter for error body of this error if
+	 * there is no converter specified via {@link #setErrorBodyConverter(Converter)}.
+	 *
+	 * @param retrofit The Retrofit instance which has created the service call. May be {@code null}.
+	 */
+	void setRetrofit(@Nullable final Retrofit retrofit) {
+		if (errorBodyDecoder != null) {
+			errorBodyDecoder.retrofit = retrofit;
+		}
 	}
 
 	/**
@@ -196,30 +405,39 @@ public class ServiceError extends BaseServiceObject {
 
 	/**
 	 * Returns the error body of this service error as the desired type.
+	 * <p>
+	 * The error body is converted via converter specified via {@link #setErrorBodyConverter(Converter)}
+	 * or, if there is no such converter, via converter resolved for the requested class from the
+	 * Retrofit instance which has created the service call. The converted body is memoized for the
+	 * requested class, so subsequent calls return the same object without reading the body again.
 	 *
 	 * @param classOfT Class ot the type to which to convert the error body.
 	 * @param <T>      The desired type as which to return error body or {@code null} if conversion fails.
-	 * @return Error body converted to the requested type.
+	 * @return Error body converted to the requested type or {@code null} if it could not be read or
+	 * converted. See {@link #getErrorBodyFailure()}.
 	 * @throws UnsupportedOperationException If this error is not an error response but a failure.
-	 * @throws IllegalStateException         If no converter has been specified.
+	 * @throws IllegalStateException         If no converter has been specified nor may be resolved.
+	 * @throws IllegalArgumentException      If the specified class does not match type of the converted body.
 	 */
-	@SuppressWarnings("unchecked")
 	@Nullable public <T> T getErrorBodyAs(@NonNull final Class<T> classOfT) {
 		if (errorBody == null)
 			throw new UnsupportedOperationException("Not an error but a failure!");
-		if (errorBodyConverter == null)
-			throw new IllegalStateException("No error body converter specified!");
-		T errorBody = null;
-		try {
-			errorBody = (T) errorBodyConverter.convert(this.errorBody);
-		} catch (IOException e) {
-			e.printStackTrace();
-		} catch (ClassCastException e) {
-			throw new IllegalArgumentException("Specified class(" + classOfT + ") does not match that specified for converter!", e);
-		} finally {
-			this.errorBody.close();
-		}
-		return errorBody;
+		return errorBodyDecoder.decode(classOfT, errorBodyConverter);
+	}
+
+	/**
+	 * Returns the failure that has occurred while reading or converting of the error body via
+	 * {@link #getErrorBodyAs(Class)}.
+	 * <p>
+	 * A failure to read the error body, like when the body exceeds {@link #MAX_ERROR_BODY_SIZE},
+	 * prevents conversion of the body to any class. A failure to convert the read body to a specific
+	 * class does not affect conversion to other classes.
+	 *
+	 * @return The last decoding failure or {@code null} if there has been none or this error is
+	 * a failure.
+	 */
+	@Nullable public IOException getErrorBodyFailure() {
+		return errorBodyDecoder == null ? null : errorBodyDecoder.getFailure();
 	}
 
 	/**
@@ -267,4 +485,172 @@ public class ServiceError extends BaseServiceObject {
 	/*
 	 * Inner classes ===============================================================================
 	 */
+
+	/**
+	 * Decoder which lazily reads limited content of an error body and memoizes bodies converted from
+	 * that content.
+	 */
+	private static final class ErrorBodyDecoder {
+
+		/**
+		 * Empty annotations used to resolve converters from Retrofit.
+		 */
+		private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+		/**
+		 * Original error body to be read.
+		 */
+		private final ResponseBody body;
+
+		/**
+		 * Media type of the original error body.
+		 */
+		private final MediaType contentType;
+
+		/**
+		 * Retrofit instance from which to resolve converters. May be {@code null}.
+		 */
+		volatile Retrofit retrofit;
+
+		/**
+		 * Read content of the error body. May be {@code null} if the body has not been read yet.
+		 */
+		private ByteString content;
+
+		/**
+		 * Failure occurred while reading of the error body, including exceeding of the maximum size.
+		 * If specified, the read content may not be converted.
+		 */
+		private IOException readFailure;
+
+		/**
+		 * The last failure occurred while reading or converting of the error body.
+		 */
+		private IOException failure;
+
+		/**
+		 * Converted bodies mapped to theirs classes.
+		 */
+		private final Map<Class<?>, Object> decodedBodies = new HashMap<>(2);
+
+		/**
+		 * Creates a new instance of ErrorBodyDecoder for the given error <var>body</var>.
+		 *
+		 * @param body The error body to be decoded.
+		 */
+		ErrorBodyDecoder(final ResponseBody body) {
+			this.body = body;
+			this.contentType = body.contentType();
+		}
+
+		/**
+		 * Returns a new body with the read content of the original body.
+		 *
+		 * @return Body with the read content or {@code null} if the original body has not been read yet.
+		 */
+		synchronized ResponseBody readBody() {
+			return content == null ? null : createBody();
+		}
+
+		/**
+		 * Reads content of the original body, if it has not been read yet, and closes it.
+		 *
+		 * @see #read()
+		 */
+		synchronized void readContent() {
+			read();
+		}
+
+		/**
+		 * Returns the last failure occurred while reading or converting of the error body.
+		 *
+		 * @return The last failure or {@code null} if there has been none.
+		 */
+		synchronized IOException getFailure() {
+			return failure;
+		}
+
+		/**
+		 * Converts the error body to the desired type.
+		 *
+		 * @param classOfT  Class of the desired type.
+		 * @param converter Converter specified for the error. May be {@code null} to resolve one.
+		 * @return Converted body or {@code null} if the body could not be read or converted.
+		 */
+		@SuppressWarnings("unchecked")
+		synchronized <T> T decode(final Class<T> classOfT, final Converter<ResponseBody, ?> converter) {
+			if (decodedBodies.containsKey(classOfT)) {
+				return (T) decodedBodies.get(classOfT);
+			}
+			final Converter<ResponseBody, ?> bodyConverter = converter == null ? resolveConverter(classOfT) : converter;
+			Object decodedBody = null;
+			if (read()) {
+				try {
+					decodedBody = bodyConverter.convert(createBody());
+				} catch (IOException e) {
+					this.failure = e;
+				}
+			}
+			if (decodedBody != null && !classOfT.isInstance(decodedBody)) {
+				throw new IllegalArgumentException("Specified class(" + classOfT + ") does not match that specified for converter!");
+			}
+			this.decodedBodies.put(classOfT, decodedBody);
+			return (T) decodedBody;
+		}
+
+		/**
+		 * Resolves converter for the specified class from the Retrofit instance.
+		 *
+		 * @param classOfT Class of the desired type.
+		 * @return Resolved converter.
+		 * @throws IllegalStateException If there is no Retrofit instance specified.
+		 */
+		private Converter<ResponseBody, ?> resolveConverter(final Class<?> classOfT) {
+			final Retrofit retrofit = this.retrofit;
+			if (retrofit == null) {
+				throw new IllegalStateException("No error body converter specified!");
+			}
+			return retrofit.responseBodyConverter(classOfT, NO_ANNOTATIONS);
+		}
+
+		/**
+		 * Creates a new body with the read content of the original body.
+		 *
+		 * @return Body ready to be read.
+		 */
+		private ResponseBody createBody() {
+			return ResponseBody.create(contentType, content.size(), new Buffer().write(content));
+		}
+
+		/**
+		 * Reads at most {@link #MAX_ERROR_BODY_SIZE} bytes of the original body, if it has not been
+		 * read yet, and closes it.
+		 *
+		 * @return {@code True} if the whole body has been successfully read, {@code false} otherwise.
+		 * Conversion failures of the read content do not affect the result.
+		 */
+		private boolean read() {
+			if (content == null) {
+				final Buffer buffer = new Buffer();
+				try {
+					final BufferedSource source = body.source();
+					while (buffer.size() <= MAX_ERROR_BODY_SIZE && source.read(buffer, 8192) != -1) {
+						// Keep reading until the whole body is read or its size exceeds the limit.
+					}
+					if (buffer.size() > MAX_ERROR_BODY_SIZE) {
+						this.readFailure = new IOException("Error body exceeds maximum size of " + MAX_ERROR_BODY_SIZE + " bytes.");
+					}
+				} catch (IOException e) {
+					this.readFailure = e;
+				} finally {
+					body.close();
+				}
+				this.content = buffer.size() > MAX_ERROR_BODY_SIZE ? buffer.snapshot((int) MAX_ERROR_BODY_SIZE) : buffer.readByteString();
+				if (readFailure != null) {
+					this.failure = readFailure;
+				}
+			}
+			return readFailure == null;
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A {@link ServiceFailure} with which fail {@link ServiceFuture ServiceFutures} of calls that have
+ * received an error response from the server. The error response is available via {@link #getError()}.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class ServiceErrorException extends ServiceFailure {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "ServiceErrorException";
+
+	/**
+	 * Serial version UID of this exception.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Error response with which has the call failed.
+	 */
+	private final transient ServiceError error;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of ServiceErrorException for the specified error response.
+	 *
+	 * @param error The error response with which has the call failed.
+	 */
+	public ServiceErrorException(@NonNull final ServiceError error) {
+		super("Error response(" + error.getErrorCode() + ").", error.getKind());
+		this.error = error;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Returns the error response with which has the call failed.
+	 *
+	 * @return The error response.
+	 */
+	@NonNull public ServiceError getError() {
+		return error;
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+}
@@ -0,0 +1,268 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Utility class providing executors shared by components of the service layer which need to perform
+ * their work off the caller's thread.
+ * <p>
+ * All executors provided by this class are created lazily and use <b>daemon</b> threads so they
+ * never prevent the process from finishing.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class ServiceExecutors {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "ServiceExecutors";
+
+	/**
+	 * Duration in seconds for which may be idle threads of the background executor kept alive.
+	 */
+	private static final long BACKGROUND_KEEP_ALIVE = 30;
+
+	/**
+	 * Maximum count of threads of the background executor.
+	 */
+	static final int BACKGROUND_POOL_SIZE = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/**
+	 * Lock used for synchronized operations.
+	 */
+	private static final Object LOCK = new Object();
+
+	/**
+	 * Background executor shared by service components.
+	 *
+	 * @see #background()
+	 */
+	private static volatile ExecutorService background;
+
+	/**
+	 * Scheduler shared by service components.
+	 *
+	 * @see #scheduler()
+	 */
+	private static volatile ScheduledExecutorService scheduler;
+
+	/**
+	 * Serial executor shared for dispatching of service responses.
+	 *
+	 * @see #dispatcher()
+	 */
+	private static volatile ExecutorService dispatcher;
+
+	/**
+	 * Executor handing off batches of tasks to the main thread once per frame.
+	 *
+	 * @see #mainFrame()
+	 */
+	private static volatile FrameBatchingExecutor mainFrame;
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 */
+	private ServiceExecutors() {
+		// Not allowed to be instantiated publicly.
+		throw new UnsupportedOperationException();
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Returns the shared background executor which may be used to execute short background tasks.
+	 * <p>
+	 * The executor runs at most {@code 2 - 4} threads, depending on count of available processors.
+	 * Tasks submitted while all threads are busy are queued and executed in the order in which
+	 * they have been submitted. Threads are created on demand and terminated when idle for
+	 * {@code 30 seconds}. As the threads are shared, concurrency of batches executed on this executor,
+	 * like via {@link ServiceCall#executeAll(java.util.Collection, int, int)}, is also limited by the count
+	 * of threads and tasks should avoid blocking while waiting for other tasks of this executor.
+	 *
+	 * @return Shared background executor.
+	 */
+	@NonNull public static ExecutorService background() {
+		ExecutorService executor = background;
+		if (executor == null) {
+			synchronized (LOCK) {
+				executor = background;
+				if (executor == null) {
+					final ThreadPoolExecutor poolExecutor = new ThreadPoolExecutor(
+							BACKGROUND_POOL_SIZE,
+							BACKGROUND_POOL_SIZE,
+							BACKGROUND_KEEP_ALIVE,
+							TimeUnit.SECONDS,
+							new LinkedBlockingQueue<Runnable>(),
+							new DaemonThreadFactory("Officium Background")
+					);
+					poolExecutor.allowCoreThreadTimeOut(true);
+					background = executor = poolExecutor;
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Returns the shared scheduler which may be used to execute short tasks after a delay, like
+	 * delayed retries of service requests.
+	 * <p>
+	 * The scheduler uses a single thread, so scheduled tasks should only hand off theirs work and
+	 * should never block.
+	 *
+	 * @return Shared scheduler.
+	 */
+	@NonNull public static ScheduledExecutorService scheduler() {
+		ScheduledExecutorService executor = scheduler;
+		if (executor == null) {
+			synchronized (LOCK) {
+				executor = scheduler;
+				if (executor == null) {
+					scheduler = executor = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("Officium Scheduler"));
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Returns the shared serial executor which may be used to dispatch responses of service calls
+	 * off the main thread, like via {@link ServiceManager.ServicesConfiguration#dispatchExecutor(Executor)}.
+	 * <p>
+	 * The executor runs its tasks one at a time in the order in which they have been submitted, so
+	 * responses are dispatched in the same order as they would be dispatched on the main thread.
+	 *
+	 * @return Shared dispatch executor.
+	 */
+	@NonNull public static ExecutorService dispatcher() {
+		ExecutorService executor = dispatcher;
+		if (executor == null) {
+			synchronized (LOCK) {
+				executor = dispatcher;
+				if (executor == null) {
+					final ThreadPoolExecutor serialExecutor = new ThreadPoolExecutor(
+							1,
+							1,
+							BACKGROUND_KEEP_ALIVE,
+							TimeUnit.SECONDS,
+							new LinkedBlockingQueue<Runnable>(),
+							new DaemonThreadFactory("Officium Dispatcher")
+					);
+					serialExecutor.allowCoreThreadTimeOut(true);
+					dispatcher = executor = serialExecutor;
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Returns the shared executor which executes submitted tasks on the main thread, coalesced into
+	 * a single main thread message per frame. It may be used to notify UI about responses dispatched
+	 * via {@link #dispatcher()}.
+	 *
+	 * @return Shared main thread executor batching tasks per frame.
+	 * @see FrameBatchingExecutor
+	 */
+	@NonNull public static Executor mainFrame() {
+		FrameBatchingExecutor executor = mainFrame;
+		if (executor == null) {
+			synchronized (LOCK) {
+				executor = mainFrame;
+				if (executor == null) {
+					mainFrame = executor = new FrameBatchingExecutor();
+				}
+			}
+		}
+		return executor;
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * A {@link ThreadFactory} implementation which creates named daemon threads.
+	 */
+	static final class DaemonThreadFactory implements ThreadFactory {
+
+		/**
+		 * Base name for threads created by this factory.
+		 */
+		private final String name;
+
+		/**
+		 * Counter used to number threads created by this factory.
+		 */
+		private final AtomicInteger counter = new AtomicInteger();
+
+		/**
+		 * Creates a new instance of DaemonThreadFactory with the specified <var>name</var>.
+		 *
+		 * @param name Base name for threads created by the new factory.
+		 */
+		DaemonThreadFactory(final String name) {
+			this.name = name;
+		}
+
+		/**
+		 */
+		@Override public Thread newThread(@NonNull final Runnable runnable) {
+			final Thread thread = new Thread(runnable, name + " #" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import java.io.IOException;
+
+import androidx.annotation.NonNull;
+
+/**
+ * An {@link IOException} which carries its {@link ServiceError.Kind kind} and does not capture stack
+ * trace, so it is cheap to create and may be also shared as pre-allocated instance for failures that
+ * are reported often, like {@link #CANCELED}, which would otherwise allocate a new exception with
+ * full stack trace for each failed call.
+ * <p>
+ * <b>Note</b>, that shared instances of service failure should not be modified, like via
+ * {@link #addSuppressed(Throwable)}.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ * @see ServiceError#getKind()
+ */
+public class ServiceFailure extends IOException {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "ServiceFailure";
+
+	/**
+	 * Serial version UID of this exception.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Pre-allocated failure reported for calls that have been canceled before theirs response has
+	 * been received.
+	 */
+	public static final ServiceFailure CANCELED = new ServiceFailure("Canceled", ServiceError.KIND_CANCELED);
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Kind of this failure.
+	 */
+	private final int kind;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of ServiceFailure with the specified <var>message</var> and <var>kind</var>.
+	 *
+	 * @param message Message describing the failure.
+	 * @param kind    Kind of the failure.
+	 */
+	protected ServiceFailure(@NonNull final String message, @ServiceError.Kind final int kind) {
+		super(message, null);
+		this.kind = kind;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Returns the kind of this failure.
+	 *
+	 * @return Kind as reported by {@link ServiceError#getKind()} for error with this failure.
+	 */
+	@ServiceError.Kind public final int getKind() {
+		return kind;
+	}
+
+	/**
+	 * Does not capture stack trace as service failures describe expected conditions for which
+	 * the stack trace has no value.
+	 */
+	@Override public synchronized Throwable fillInStackTrace() {
+		return this;
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+}
@@ -0,0 +1,735 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A {@link Future} implementation which represents result of an asynchronous service request and
+ * which may be composed with other service futures without nesting of callbacks.
+ * <p>
+ * Service future for a particular call may be obtained via {@link ServiceCall#toFuture()}. Such
+ * future succeeds with body of the successful response and fails with the failure of the call or
+ * with {@link ServiceErrorException} if the server has responded with an error response. Receivers
+ * may be notified about completion of a future via {@link #addListener(Listener)} and results of
+ * futures may be transformed via {@link #then(Function)} and {@link #thenCompose(AsyncFunction)}
+ * or combined via {@link #allOf(Collection)} and {@link #anyOf(Collection)}.
+ * <p>
+ * Listeners are notified via executor specified for the future, like via {@link ServiceCall#toFuture(Executor)},
+ * or, if there is no executor specified, directly on the thread which has completed the future.
+ * Futures derived from a particular future use the same executor. Canceling of a derived future
+ * also cancels the futures from which it has been derived.
+ *
+ * @param <V> Type of the value with which the future succeeds.
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public class ServiceFuture<V> implements Future<V> {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "ServiceFuture";
+
+	/**
+	 * State of a future which has not completed yet.
+	 */
+	private static final int PENDING = 0;
+
+	/**
+	 * State of a future which has completed with value.
+	 */
+	private static final int SUCCEEDED = 1;
+
+	/**
+	 * State of a future which has completed with failure.
+	 */
+	private static final int FAILED = 2;
+
+	/**
+	 * State of a future which has been canceled.
+	 */
+	private static final int CANCELED = 3;
+
+	/**
+	 * Executor which runs the given commands directly on the calling thread.
+	 */
+	static final Executor DIRECT_EXECUTOR = new Executor() {
+
+		/**
+		 */
+		@Override public void execute(@NonNull final Runnable command) {
+			command.run();
+		}
+	};
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/**
+	 * Listener which may be used to receive notification about completion of a {@link ServiceFuture}.
+	 *
+	 * @param <V> Type of the value of the future.
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public interface Listener<V> {
+
+		/**
+		 * Invoked whenever the given <var>future</var> completes, either successfully, with failure
+		 * or due to cancellation.
+		 *
+		 * @param future The completed future.
+		 * @see ServiceFuture#isSuccessful()
+		 * @see ServiceFuture#getValue()
+		 * @see ServiceFuture#getFailure()
+		 */
+		void onComplete(@NonNull ServiceFuture<V> future);
+	}
+
+	/**
+	 * Function which transforms value of a successful future.
+	 *
+	 * @param <I> Type of the input value.
+	 * @param <O> Type of the output value.
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 * @see ServiceFuture#then(Function)
+	 */
+	public interface Function<I, O> {
+
+		/**
+		 * Transforms the given <var>input</var> value.
+		 *
+		 * @param input The value to transform.
+		 * @return The transformed value.
+		 * @throws Exception If transformation fails. The derived future fails with the exception.
+		 */
+		O apply(I input) throws Exception;
+	}
+
+	/**
+	 * Function which transforms value of a successful future into another future, like a future of
+	 * another service call which requires result of the previous one.
+	 *
+	 * @param <I> Type of the input value.
+	 * @param <O> Type of the value of the output future.
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 * @see ServiceFuture#thenCompose(AsyncFunction)
+	 */
+	public interface AsyncFunction<I, O> {
+
+		/**
+		 * Transforms the given <var>input</var> value into a future.
+		 *
+		 * @param input The value to transform.
+		 * @return Future of which result should be the result of the derived future.
+		 * @throws Exception If transformation fails. The derived future fails with the exception.
+		 */
+		@NonNull ServiceFuture<O> apply(I input) throws Exception;
+	}
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Executor via which to notify listeners.
+	 */
+	private final Executor executor;
+
+	/**
+	 * Current state of this future.
+	 */
+	private int state = PENDING;
+
+	/**
+	 * Value with which has this future succeeded.
+	 */
+	private V value;
+
+	/**
+	 * Failure with which has this future failed or been canceled.
+	 */
+	private Throwable failure;
+
+	/**
+	 * Actions to be run when this future completes. Cleared once this future is completed.
+	 */
+	private List<Runnable> completionActions;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of ServiceFuture with the specified <var>executor</var>.
+	 *
+	 * @param executor The executor via which to notify listeners. May be {@code null} to notify them
+	 *                 directly.
+	 */
+	ServiceFuture(@Nullable final Executor executor) {
+		this.executor = executor == null ? DIRECT_EXECUTOR : executor;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Creates a new future which has already succeeded with the specified <var>value</var>.
+	 *
+	 * @param value The value of the future.
+	 * @param <V>   Type of the value.
+	 * @return Successful future.
+	 */
+	@NonNull public static <V> ServiceFuture<V> completed(@Nullable final V value) {
+		final ServiceFuture<V> future = new ServiceFuture<>(null);
+		future.complete(value);
+		return future;
+	}
+
+	/**
+	 * Creates a new future which has already failed with the specified <var>failure</var>.
+	 *
+	 * @param failure The failure of the future.
+	 * @param <V>     Type of the value.
+	 * @return Failed future.
+	 */
+	@NonNull public static <V> ServiceFuture<V> failed(@NonNull final Throwable failure) {
+		final ServiceFuture<V> future = new ServiceFuture<>(null);
+		future.fail(failure);
+		return future;
+	}
+
+	/**
+	 * Creates a new future which succeeds with values of all the specified <var>futures</var>, in
+	 * the order in which the futures are iterated, once all of them succeed.
+	 * <p>
+	 * The created future fails as soon as any of the futures fails or is canceled, in which case all
+	 * the other futures are canceled.
+	 *
+	 * @param futures The futures to combine.
+	 * @param <V>     Type of values of the futures.
+	 * @return Future of all values.
+	 */
+	@NonNull public static <V> ServiceFuture<List<V>> allOf(@NonNull final Collection<? extends ServiceFuture<? extends V>> futures) {
+		final List<ServiceFuture<? extends V>> sources = new ArrayList<>(futures);
+		final ServiceFuture<List<V>> result = new ServiceFuture<List<V>>(null) {
+
+			/**
+			 */
+			@Override void onCancel() {
+				cancelAll(sources);
+			}
+		};
+		if (sources.isEmpty()) {
+			result.complete(Collections.<V>emptyList());
+			return result;
+		}
+		final AtomicInteger remaining = new AtomicInteger(sources.size());
+		for (final ServiceFuture<? extends V> source : sources) {
+			source.whenDone(new Runnable() {
+
+				/**
+				 */
+				@Override public void run() {
+					if (source.isSuccessful()) {
+						if (remaining.decrementAndGet() == 0) {
+							final List<V> values = new ArrayList<>(sources.size());
+							for (final ServiceFuture<? extends V> completedSource : sources) {
+								values.add(completedSource.value);
+							}
+							result.complete(Collections.unmodifiableList(values));
+						}
+					} else if (result.fail(source.failure)) {
+						cancelAll(sources);
+					}
+				}
+			});
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a new future which succeeds with value of the first of the specified <var>futures</var>
+	 * which succeeds. All the other futures are then canceled.
+	 * <p>
+	 * The created future fails only if all the futures fail, with failure of the last of them.
+	 *
+	 * @param futures The futures to combine.
+	 * @param <V>     Type of values of the futures.
+	 * @return Future of the first value.
+	 * @throws IllegalArgumentException If there are no futures specified.
+	 */
+	@NonNull public static <V> ServiceFuture<V> anyOf(@NonNull final Collection<? extends ServiceFuture<? extends V>> futures) {
+		if (futures.isEmpty()) {
+			throw new IllegalArgumentException("No futures specified!");
+		}
+		final List<ServiceFuture<? extends V>> sources = new ArrayList<>(futures);
+		final ServiceFuture<V> result = new ServiceFuture<V>(null) {
+
+			/**
+			 */
+			@Override void onCancel() {
+				cancelAll(sources);
+			}
+		};
+		final AtomicInteger remaining = new AtomicInteger(sources.size());
+		for (final ServiceFuture<? extends V> source : sources) {
+			source.whenDone(new Runnable() {
+
+				/**
+				 */
+				@Override public void run() {
+					if (source.isSuccessful()) {
+						if (result.complete(source.value)) {
+							cancelAll(sources);
+						}
+					} else if (remaining.decrementAndGet() == 0) {
+						result.fail(source.failure);
+					}
+				}
+			});
+		}
+		return result;
+	}
+
+	/**
+	 * Cancels all the given <var>futures</var>.
+	 *
+	 * @param futures The futures to cancel.
+	 */
+	static void cancelAll(final List<? extends ServiceFuture<?>> futures) {
+		for (final ServiceFuture<?> future : futures) {
+			future.cancel(false);
+		}
+	}
+
+	/**
+	 * Completes this future with the specified <var>value</var>, if it has not completed yet.
+	 *
+	 * @param value The value with which to complete.
+	 * @return {@code True} if this future has been completed, {@code false} if it has been already
+	 * completed before.
+	 */
+	boolean complete(@Nullable final V value) {
+		return finish(SUCCEEDED, value, null);
+	}
+
+	/**
+	 * Completes this future with the specified <var>failure</var>, if it has not completed yet.
+	 *
+	 * @param failure The failure with which to complete.
+	 * @return {@code True} if this future has been completed, {@code false} if it has been already
+	 * completed before.
+	 */
+	boolean fail(@NonNull final Throwable failure) {
+		return finish(FAILED, null, failure);
+	}
+
+	/**
+	 * Completes this future with the same result as the given <var>other</var> completed future.
+	 *
+	 * @param other The future of which result to use.
+	 */
+	void completeWith(final ServiceFuture<? extends V> other) {
+		switch (other.state) {
+			case SUCCEEDED:
+				complete(other.value);
+				break;
+			case CANCELED:
+				cancel(false);
+				break;
+			default:
+				fail(other.failure);
+				break;
+		}
+	}
+
+	/**
+	 * Moves this future to the specified final <var>newState</var> and runs all registered completion
+	 * actions.
+	 *
+	 * @param newState   The final state.
+	 * @param newValue   Value of the future.
+	 * @param newFailure Failure of the future.
+	 * @return {@code True} if this future has been completed, {@code false} if it has been already
+	 * completed before.
+	 */
+	private boolean finish(final int newState, final V newValue, final Throwable newFailure) {
+		final List<Runnable> actions;
+		synchronized (this) {
+			if (state != PENDING) {
+				return false;
+			}
+			this.state = newState;
+			this.value = newValue;
+			this.failure = newFailure;
+			actions = completionActions;
+			this.completionActions = null;
+			notifyAll();
+		}
+		if (actions != null) {
+			for (final Runnable action : actions) {
+				action.run();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Registers the given <var>action</var> to be run directly once this future completes. If this
+	 * future is already completed, the action is run right away.
+	 *
+	 * @param action The action to run.
+	 */
+	private void whenDone(final Runnable action) {
+		synchronized (this) {
+			if (state == PENDING) {
+				if (completionActions == null) {
+					this.completionActions = new ArrayList<>(2);
+				}
+				this.completionActions.add(action);
+				return;
+			}
+		}
+		action.run();
+	}
+
+	/**
+	 * Registers the given <var>listener</var> to be notified via executor of this future once this
+	 * future completes. If this future is already completed, the listener is notified right away.
+	 *
+	 * @param listener The listener to be notified.
+	 * @return This future to allow methods chaining.
+	 */
+	public ServiceFuture<V> addListener(@NonNull final Listener<V> listener) {
+		return addListener(listener, executor);
+	}
+
+	/**
+	 * Like {@link #addListener(Listener)}, but the listener is notified via the specified <var>executor</var>.
+	 *
+	 * @param listener The listener to be notified.
+	 * @param executor The executor via which to notify the listener.
+	 * @return This future to allow methods chaining.
+	 */
+	public ServiceFuture<V> addListener(@NonNull final Listener<V> listener, @NonNull final Executor executor) {
+		whenDone(new Runnable() {
+
+			/**
+			 */
+			@Override public void run() {
+				executor.execute(new Runnable() {
+
+					/**
+					 */
+					@Override public void run() {
+						listener.onComplete(ServiceFuture.this);
+					}
+				});
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Creates a new future which succeeds with value of this future transformed via the given
+	 * <var>function</var>. The function is invoked on the thread which completes this future.
+	 * <p>
+	 * If this future fails, the derived future fails with the same failure.
+	 *
+	 * @param function The function used to transform value of this future.
+	 * @param <R>      Type of the transformed value.
+	 * @return Derived future.
+	 */
+	@NonNull public <R> ServiceFuture<R> then(@NonNull final Function<? super V, ? extends R> function) {
+		final ServiceFuture<R> result = new ServiceFuture<R>(executor) {
+
+			/**
+			 */
+			@Override void onCancel() {
+				ServiceFuture.this.cancel(false);
+			}
+		};
+		whenDone(new Runnable() {
+
+			/**
+			 */
+			@Override public void run() {
+				if (state == SUCCEEDED) {
+					final R transformedValue;
+					try {
+						transformedValue = function.apply(value);
+					} catch (Exception e) {
+						result.fail(e);
+						return;
+					}
+					result.complete(transformedValue);
+				} else if (state == CANCELED) {
+					result.cancel(false);
+				} else {
+					result.fail(failure);
+				}
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Creates a new future which completes with result of a future returned by the given <var>function</var>
+	 * for value of this future. The function is invoked on the thread which completes this future.
+	 * <p>
+	 * If this future fails, the derived future fails with the same failure.
+	 *
+	 * @param function The function used to transform value of this future into another future.
+	 * @param <R>      Type of the value of the other future.
+	 * @return Derived future.
+	 */
+	@NonNull public <R> ServiceFuture<R> thenCompose(@NonNull final AsyncFunction<? super V, R> function) {
+		final ComposedFuture<V, R> result = new ComposedFuture<>(this, function);
+		whenDone(result);
+		return result;
+	}
+
+	/**
+	 * Invoked whenever this future is canceled via {@link #cancel(boolean)}.
+	 */
+	void onCancel() {
+		// Inheritance hierarchies may for example cancel the associated call.
+	}
+
+	/**
+	 * Cancels this future, if it has not completed yet, along with the request it represents.
+	 * Canceled future fails with {@link ServiceFailure#CANCELED}.
+	 *
+	 * @param mayInterruptIfRunning Ignored as service requests cannot be interrupted.
+	 */
+	@Override public boolean cancel(final boolean mayInterruptIfRunning) {
+		if (finish(CANCELED, null, ServiceFailure.CANCELED)) {
+			onCancel();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 */
+	@Override public synchronized boolean isCancelled() {
+		return state == CANCELED;
+	}
+
+	/**
+	 */
+	@Override public synchronized boolean isDone() {
+		return state != PENDING;
+	}
+
+	/**
+	 * Checks whether this future has completed successfully.
+	 *
+	 * @return {@code True} if this future has succeeded, {@code false} if it has not completed yet,
+	 * has failed or has been canceled.
+	 */
+	public synchronized boolean isSuccessful() {
+		return state == SUCCEEDED;
+	}
+
+	/**
+	 * Returns the value of this future without waiting for its completion.
+	 *
+	 * @return Value of this future or {@code null} if it has not succeeded.
+	 */
+	@Nullable public synchronized V getValue() {
+		return value;
+	}
+
+	/**
+	 * Returns the failure of this future without waiting for its completion.
+	 *
+	 * @return Failure of this future or {@code null} if it has not failed. Canceled future has
+	 * {@link ServiceFailure#CANCELED} failure.
+	 */
+	@Nullable public synchronized Throwable getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Returns the failure of this future as service error.
+	 *
+	 * @return The error response if this future has failed with {@link ServiceErrorException}, error
+	 * with failure of this future if it has failed otherwise or {@code null} if it has not failed.
+	 */
+	@Nullable public ServiceError getError() {
+		final Throwable failure = getFailure();
+		if (failure == null) {
+			return null;
+		}
+		return failure instanceof ServiceErrorException ? ((ServiceErrorException) failure).getError() : new ServiceError(failure);
+	}
+
+	/**
+	 */
+	@Override public synchronized V get() throws InterruptedException, ExecutionException {
+		while (state == PENDING) {
+			wait();
+		}
+		return report();
+	}
+
+	/**
+	 */
+	@Override public synchronized V get(final long timeout, @NonNull final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (state == PENDING) {
+			final long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				throw new TimeoutException();
+			}
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+		}
+		return report();
+	}
+
+	/**
+	 * Returns value of this completed future or throws its failure.
+	 *
+	 * @return Value of this future.
+	 * @throws ExecutionException If this future has failed.
+	 */
+	private V report() throws ExecutionException {
+		switch (state) {
+			case SUCCEEDED:
+				return value;
+			case CANCELED:
+				throw new CancellationException();
+			default:
+				throw new ExecutionException(failure);
+		}
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * A {@link ServiceFuture} which completes with result of a future obtained for value of a source
+	 * future.
+	 *
+	 * @param <I> Type of the value of the source future.
+	 * @param <O> Type of the value of this future.
+	 */
+	private static final class ComposedFuture<I, O> extends ServiceFuture<O> implements Runnable {
+
+		/**
+		 * Future for value of which to obtain the inner future.
+		 */
+		private final ServiceFuture<I> source;
+
+		/**
+		 * Function used to obtain the inner future.
+		 */
+		private final AsyncFunction<? super I, O> function;
+
+		/**
+		 * Future obtained for value of the source future. May be {@code null} if not obtained yet.
+		 */
+		private volatile ServiceFuture<O> inner;
+
+		/**
+		 * Creates a new instance of ComposedFuture for the given <var>source</var> and <var>function</var>.
+		 *
+		 * @param source   The source future.
+		 * @param function The function used to obtain the inner future.
+		 */
+		ComposedFuture(final ServiceFuture<I> source, final AsyncFunction<? super I, O> function) {
+			super(source.executor);
+			this.source = source;
+			this.function = function;
+		}
+
+		/**
+		 * Invoked once the source future completes.
+		 */
+		@Override public void run() {
+			if (!source.isSuccessful()) {
+				if (source.isCancelled()) {
+					cancel(false);
+				} else {
+					fail(source.getFailure());
+				}
+				return;
+			}
+			final ServiceFuture<O> future;
+			try {
+				future = function.apply(source.getValue());
+			} catch (Exception e) {
+				fail(e);
+				return;
+			}
+			this.inner = future;
+			if (isCancelled()) {
+				future.cancel(false);
+				return;
+			}
+			future.whenDone(new Runnable() {
+
+				/**
+				 */
+				@Override public void run() {
+					completeWith(future);
+				}
+			});
+		}
+
+		/**
+		 */
+		@Override void onCancel() {
+			source.cancel(false);
+			final ServiceFuture<O> future = inner;
+			if (future != null) {
+				future.cancel(false);
+			}
+		}
+	}
+}
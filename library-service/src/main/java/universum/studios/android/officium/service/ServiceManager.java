@@ -20,14 +20,21 @@ package universum.studios.android.officium.service;
 
 import android.content.ServiceConnection;
 
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 import androidx.annotation.CallSuper;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import retrofit2.CallAdapter;
 import retrofit2.Retrofit;
+import universum.studios.android.officium.service.adapter.ResponseCache;
+import universum.studios.android.officium.service.adapter.ServiceCallAdapterFactory;
 
 /**
  * Manager that may be used for accessing of multiple instances of services (theirs PROXYies) and
@@ -40,6 +47,26 @@ import retrofit2.Retrofit;
  * caches its services PROXY instance and re-creates it only in case of configuration change. Also
  * ServiceManager caches each instance of these configuration objects and maps them to their
  * corresponding services interface class.
+ * <p>
+ * All services configurations created by ServiceManager share a single {@link OkHttpClient} which
+ * may be obtained via {@link #getHttpClient()}. Each configuration uses either this shared client
+ * directly or a client derived from it via {@link OkHttpClient#newBuilder()} (see
+ * {@link ServicesConfiguration#clientBuilder()}), so all services managed by a single manager share
+ * one connection pool and one dispatcher. Statistics about the shared connections may be obtained
+ * via {@link #getConnectionStats()} and statistics of network phases of calls made for a specific
+ * service via {@link #getCallPhaseStats(int)}.
+ * <p>
+ * Configurations are stored in a concurrent registry, so accessing of already configured services
+ * does not require any locking. In order to move the initial cost of Retrofit instances and services
+ * PROXYies creation off the caller's thread, services may be pre-warmed via {@link #prewarm(Class[])},
+ * ideally at the application start.
+ * <p>
+ * Services available via multiple end points, like regional mirrors, may be accessed via manager
+ * created with {@link EndPointSelector} via {@link #ServiceManager(EndPointSelector)}. Such manager
+ * sends requests to the end point with the best recent latency and fails over to other end points
+ * whenever the selected one cannot be connected. Requests are redirected to the selected end point
+ * by the selector itself, so base url of the manager and of its configurations does not change and
+ * no configuration needs to be rebuilt when the selected end point changes.
  *
  * @author Martin Albedinsky
  * @since 1.0
@@ -71,12 +98,31 @@ public class ServiceManager {
 	 * Base url specified for services accessible via this manager.
 	 */
 	// todo: make final in final production release of version 2.0.0
-	private HttpUrl baseUrl;
+	private volatile HttpUrl baseUrl;
+
+	/**
+	 * Selector of end point used by this manager. May be {@code null} if this manager has been
+	 * created with a single base url.
+	 */
+	private EndPointSelector endPointSelector;
 
 	/**
 	 * Map containing services configuration objects mapped to class of services that they configure.
 	 */
-	private final Map<Class<?>, ServicesConfiguration> services = new HashMap<>(1);
+	private final Map<Class<?>, ServicesConfiguration> services = new ConcurrentHashMap<>(4);
+
+	/**
+	 * Recorder of connection events dispatched by the shared {@link #httpClient}.
+	 */
+	private final ConnectionEventRecorder connectionEventRecorder = new ConnectionEventRecorder();
+
+	/**
+	 * Shared OkHttp client from which are derived clients for all services configurations created
+	 * by this manager.
+	 *
+	 * @see #getHttpClient()
+	 */
+	private volatile OkHttpClient httpClient;
 
 	/**
 	 * End point for services managed by this manager.
@@ -110,6 +156,23 @@ public class ServiceManager {
 		this.baseUrl = baseUrl;
 	}
 
+	/**
+	 * Creates a new instance of ServiceManager which will access its services via end points of
+	 * the specified <var>endPointSelector</var>.
+	 * <p>
+	 * Base url of the manager is the one initially selected by the selector. Requests for this
+	 * base url are redirected by the selector to its currently selected end point, so the base url
+	 * stays the same whenever the selector selects another end point.
+	 *
+	 * @param endPointSelector The desired selector. It will be added as interceptor to the OkHttp
+	 *                         client shared by services of this manager.
+	 * @see #getEndPointSelector()
+	 */
+	public ServiceManager(@NonNull final EndPointSelector endPointSelector) {
+		this.endPointSelector = endPointSelector;
+		this.baseUrl = endPointSelector.getSelectedBaseUrl();
+	}
+
 	/**
 	 * <b>This constructor is deprecated and will be removed in the final production release of version 2.0.0.</b>
 	 * <p>
@@ -155,6 +218,88 @@ public class ServiceManager {
 		return baseUrl;
 	}
 
+	/**
+	 * Returns the end point selector specified for this manager.
+	 *
+	 * @return The selector or {@code null} if this manager has been created with a single base url.
+	 * @see #ServiceManager(EndPointSelector)
+	 */
+	@Nullable public EndPointSelector getEndPointSelector() {
+		return endPointSelector;
+	}
+
+	/**
+	 * Returns the OkHttp client shared by all services configurations created by this manager.
+	 * <p>
+	 * The client is created lazily via {@link #onCreateHttpClient()} when it is first requested.
+	 *
+	 * @return Shared OkHttp client.
+	 * @see ServicesConfiguration#clientBuilder()
+	 */
+	@NonNull public OkHttpClient getHttpClient() {
+		OkHttpClient client = httpClient;
+		if (client == null) {
+			synchronized (connectionEventRecorder) {
+				client = httpClient;
+				if (client == null) {
+					this.httpClient = client = onCreateHttpClient();
+				}
+			}
+		}
+		return client;
+	}
+
+	/**
+	 * Invoked whenever {@link #getHttpClient()} is called for the first time to create the OkHttp
+	 * client that will be shared by all services configurations of this manager.
+	 * <p>
+	 * Default implementation creates a new client with default configuration that has attached
+	 * recorder for connection events used to provide {@link #getConnectionStats()} and timings of
+	 * network phases of calls (see {@link #getCallPhaseStats(int)}) and also the end point selector,
+	 * if specified.
+	 * <p>
+	 * Custom implementations of ServiceManager may override this method in order to tune the shared
+	 * client, like timeouts, connection pool or dispatcher limits. Such implementations should derive
+	 * the tuned client from the client created by the super implementation via {@link OkHttpClient#newBuilder()}.
+	 *
+	 * @return New OkHttp client to be shared by services of this manager.
+	 */
+	@CallSuper @NonNull protected OkHttpClient onCreateHttpClient() {
+		final OkHttpClient.Builder builder = new OkHttpClient.Builder().eventListenerFactory(connectionEventRecorder);
+		if (endPointSelector != null) {
+			builder.addInterceptor(endPointSelector);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Returns a snapshot of statistics about connections of the OkHttp client shared by services
+	 * of this manager.
+	 *
+	 * @return Current connection statistics.
+	 * @see #getHttpClient()
+	 */
+	@NonNull public ConnectionStats getConnectionStats() {
+		final OkHttpClient client = getHttpClient();
+		return new ConnectionStats(client.connectionPool(), client.dispatcher(), connectionEventRecorder);
+	}
+
+	/**
+	 * Returns statistics of network phases of calls made for the service with the specified
+	 * <var>serviceId</var> via the OkHttp client shared by services of this manager.
+	 * <p>
+	 * Timings of a call are aggregated when its response or failure is received by {@link ServiceCallback}
+	 * for which has been the service id specified and which has been enqueued via
+	 * {@link ServiceCall#enqueue(ServiceCallback)}, so it knows the client which has executed the call. Timings of particular calls are attached to the
+	 * dispatched objects and may be obtained via {@link BaseServiceObject#getCallTimings()}.
+	 *
+	 * @param serviceId Id of the service of which statistics to return.
+	 * @return Phase statistics or {@code null} if there are no calls recorded for the service.
+	 */
+	@Nullable public CallPhaseStats getCallPhaseStats(final int serviceId) {
+		return connectionEventRecorder.phaseStatsOf(serviceId);
+	}
+
 	/**
 	 * Same as {@link #setEndPoint(EndPoint)} with EndPoint instance providing the given <var>baseUrl</var>
 	 * as its base url via {@link EndPoint#getBaseUrl()}.
@@ -233,22 +378,86 @@ public class ServiceManager {
 		return ensureServicesConfiguration(servicesInterface);
 	}
 
+	/**
+	 * Same as {@link #prewarm(Executor, Class[])} where the services will be pre-warmed on the
+	 * {@link ServiceExecutors#background()} executor.
+	 *
+	 * @param servicesInterfaces The services interfaces to be pre-warmed.
+	 */
+	public void prewarm(@NonNull final Class<?>... servicesInterfaces) {
+		prewarm(ServiceExecutors.background(), servicesInterfaces);
+	}
+
+	/**
+	 * Pre-warms services for the specified <var>servicesInterfaces</var> on the given <var>executor</var>.
+	 * <p>
+	 * Pre-warming of a specific services interface creates its configuration (if not created yet),
+	 * builds its Retrofit instance and creates its services PROXY with all its methods eagerly
+	 * validated (see {@link Retrofit.Builder#validateEagerly(boolean)}), so the first call of any
+	 * of the services does not need to parse the service method on the caller's thread.
+	 * <p>
+	 * Failure to pre-warm a specific services interface, like due to an invalid service method,
+	 * does not prevent pre-warming of the other interfaces and is reported via
+	 * {@link #onPrewarmFailed(Class, RuntimeException)}.
+	 *
+	 * @param executor           The executor on which to perform pre-warming.
+	 * @param servicesInterfaces The services interfaces to be pre-warmed.
+	 */
+	public void prewarm(@NonNull final Executor executor, @NonNull final Class<?>... servicesInterfaces) {
+		executor.execute(new Runnable() {
+
+			/**
+			 */
+			@Override public void run() {
+				for (final Class<?> servicesInterface : servicesInterfaces) {
+					try {
+						ensureServicesConfiguration(servicesInterface).prewarm();
+					} catch (RuntimeException e) {
+						onPrewarmFailed(servicesInterface, e);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Invoked whenever pre-warming of the specified <var>servicesInterface</var> requested via
+	 * {@link #prewarm(Executor, Class[])} fails.
+	 * <p>
+	 * Default implementation does nothing, as the same failure occurs again when the services are
+	 * requested via {@link #services(Class)}. Custom implementations may override this method in
+	 * order to log or report the failure.
+	 *
+	 * @param servicesInterface The services interface which failed to be pre-warmed.
+	 * @param error             The failure thrown while pre-warming the services.
+	 */
+	protected void onPrewarmFailed(@NonNull final Class<?> servicesInterface, @NonNull final RuntimeException error) {
+		// Inheritance hierarchies may for example log the failure.
+	}
+
 	/**
 	 * Ensures that the services configuration object is created for the given <var>servicesInterface</var>.
+	 * <p>
+	 * Already created configurations are obtained without any locking, only creation of a new
+	 * configuration is synchronized, so {@link #onCreateServicesConfiguration(Class)} is invoked
+	 * only once for each services interface.
 	 *
 	 * @param servicesInterface The services interface for which to create new configuration if it
 	 *                          is not created yet.
 	 */
 	@SuppressWarnings("unchecked")
 	private <S> ServicesConfiguration<S> ensureServicesConfiguration(final Class<S> servicesInterface) {
-		synchronized (services) {
-			ServicesConfiguration<S> servicesConfiguration = (ServicesConfiguration<S>) services.get(servicesInterface);
-			if (servicesConfiguration == null) {
-				servicesConfiguration = onCreateServicesConfiguration(servicesInterface);
-				services.put(servicesInterface, servicesConfiguration);
+		ServicesConfiguration<S> servicesConfiguration = (ServicesConfiguration<S>) services.get(servicesInterface);
+		if (servicesConfiguration == null) {
+			synchronized (services) {
+				servicesConfiguration = (ServicesConfiguration<S>) services.get(servicesInterface);
+				if (servicesConfiguration == null) {
+					servicesConfiguration = onCreateServicesConfiguration(servicesInterface);
+					services.put(servicesInterface, servicesConfiguration);
+				}
 			}
-			return servicesConfiguration;
 		}
+		return servicesConfiguration;
 	}
 
 	/**
@@ -256,7 +465,7 @@ public class ServiceManager {
 	 * for the first time for the specified <var>servicesInterface</var>.
 	 * <p>
 	 * Default implementation creates a new instance of ServicesConfiguration with the given services
-	 * interface and end point specified for this manager (if any).
+	 * interface, base url specified for this manager and the shared OkHttp client.
 	 * <p>
 	 * Custom implementations of ServiceManager may override this method to perform default services
 	 * configuration for them specific.
@@ -266,7 +475,7 @@ public class ServiceManager {
 	 * @return New services configuration for the services interface.
 	 */
 	@CallSuper @NonNull protected <S> ServicesConfiguration<S> onCreateServicesConfiguration(@NonNull final Class<S> servicesInterface) {
-		final ServicesConfiguration<S> configuration = new ServicesConfiguration<>(servicesInterface);
+		final ServicesConfiguration<S> configuration = new ServicesConfiguration<>(servicesInterface, getHttpClient());
 		configuration.retrofitBuilder().baseUrl(baseUrl);
 		return configuration;
 	}
@@ -285,6 +494,20 @@ public class ServiceManager {
 	 * is requested via {@link ServiceManager#services(Class)}. This instance of PROXY is re-created
 	 * only in case where there has been performed some configuration change and {@link #invalidate()}
 	 * has been called to indicate the services PROXY is no longer valid.
+	 * <p>
+	 * The Retrofit instance and services PROXY are published together as an immutable snapshot, so
+	 * accessing of a valid configuration does not require any locking. Base url and OkHttp client
+	 * may be replaced incrementally via {@link #baseUrl(HttpUrl)} and {@link #client(OkHttpClient)}
+	 * which publish a new snapshot with the current Retrofit instance and services PROXY, so already
+	 * parsed service methods are not parsed again. Services PROXY obtained before the configuration
+	 * has been invalidated keeps sending its requests to the base url and via the client that have
+	 * been current for its Retrofit instance, as such changes made after the invalidation apply only
+	 * to the rebuilt Retrofit instance.
+	 * <p>
+	 * Configurations created by {@link ServiceManager} use the manager's shared OkHttp client. If
+	 * a specific services interface requires additional client configuration, like its own interceptors,
+	 * it may be done via {@link #clientBuilder()} which derives a new client from the shared one, so
+	 * the connection pool and dispatcher remain shared.
 	 *
 	 * @param <S> Type of the services interface specific for this configuration.
 	 */
@@ -302,28 +525,30 @@ public class ServiceManager {
 		private final Class<S> servicesInterface;
 
 		/**
-		 * Current instance (if any) of services PROXY created using {@link #retrofit} for the
-		 * current configuration.
-		 *
-		 * @see #services()
+		 * OkHttp client shared by the manager that created this configuration. May be {@code null}
+		 * if this configuration has been created without shared client.
 		 */
-		private S services;
+		private final OkHttpClient sharedClient;
 
 		/**
-		 * Retrofit instance created by {@link #builder} for the current configuration parameters.
-		 * This retrofit instance is used to create an instance of services PROXY whenever
-		 * {@link #services()} is invoked and there has been registered configuration change.
-		 *
-		 * @see Retrofit#create(Class)
+		 * Builder used to derive OkHttp client specific for this configuration. Lazily created
+		 * whenever {@link #clientBuilder()} is called.
 		 */
-		private Retrofit retrofit;
+		private OkHttpClient.Builder clientBuilder;
 
 		/**
-		 * Flag indicating whether this services configuration has changed or not. If {@code true}
-		 * the current instance of {@link #retrofit} should be updated the next time services
-		 * are requested via {@link #services()}.
+		 * Current snapshot of this configuration. May be {@code null} if no snapshot has been built yet.
+		 * Snapshots are immutable and replaced as a whole, so readers may access a valid snapshot
+		 * without any locking.
 		 */
-		private volatile boolean changed = true;
+		private volatile Snapshot<S> snapshot;
+
+		/**
+		 * Version of the configuration parameters of {@link #builder}. Incremented whenever this
+		 * configuration is invalidated, so the current {@link #snapshot} is valid only if it has
+		 * been built for this version.
+		 */
+		private volatile int version;
 
 		/**
 		 * Creates a new instance of ServicesConfiguration for the specified <var>servicesInterface</var>
@@ -333,7 +558,24 @@ public class ServiceManager {
 		 *                          instance.
 		 */
 		ServicesConfiguration(@NonNull final Class<S> servicesInterface) {
+			this(servicesInterface, null);
+		}
+
+		/**
+		 * Creates a new instance of ServicesConfiguration for the specified <var>servicesInterface</var>
+		 * class and the shared OkHttp <var>client</var>.
+		 *
+		 * @param servicesInterface Class of the services interface used to create PROXY services
+		 *                          instance.
+		 * @param sharedClient      The OkHttp client shared across multiple configurations. May be
+		 *                          {@code null} to let Retrofit create its own client.
+		 */
+		ServicesConfiguration(@NonNull final Class<S> servicesInterface, @Nullable final OkHttpClient sharedClient) {
 			this.servicesInterface = servicesInterface;
+			this.sharedClient = sharedClient;
+			if (sharedClient != null) {
+				this.builder.client(sharedClient);
+			}
 		}
 
 		/**
@@ -351,6 +593,136 @@ public class ServiceManager {
 			return builder;
 		}
 
+		/**
+		 * Returns the OkHttp client builder that is used to build client specific for this services
+		 * configuration. The builder is derived from the client shared by {@link ServiceManager}
+		 * via {@link OkHttpClient#newBuilder()}, so the client built from it shares the connection
+		 * pool and dispatcher with all other services. This builder may be used for example to add
+		 * interceptors specific for the associated services interface.
+		 * <p>
+		 * Once this builder is obtained the client built from it replaces the one set via
+		 * {@link Retrofit.Builder#client(OkHttpClient)}. When any of the current parameters of the
+		 * builder is changed do not forget to call {@link #invalidate()}.
+		 *
+		 * @return OkHttp client builder for the services associated with this configuration.
+		 */
+		@NonNull public OkHttpClient.Builder clientBuilder() {
+			synchronized (builder) {
+				if (clientBuilder == null) {
+					this.clientBuilder = sharedClient == null ? new OkHttpClient.Builder() : sharedClient.newBuilder();
+				}
+				return clientBuilder;
+			}
+		}
+
+		/**
+		 * Specifies executor on which should be responses and failures of the associated services
+		 * dispatched to theirs {@link ServiceCallback ServiceCallbacks}. Without this executor,
+		 * calls adapted by {@link ServiceCallAdapterFactory} deliver responses on the thread which
+		 * has received them.
+		 * <p>
+		 * The executor is applied to calls adapted by {@link ServiceCallAdapterFactory}, which then
+		 * deliver all results, network responses including error ones as well as results not received
+		 * from the network, like cached responses or rejections, via this executor, unless the factory
+		 * has its own executor specified via {@link ServiceCallAdapterFactory.Builder#dispatchExecutor(Executor)}.
+		 * <p>
+		 * Dispatching on a background executor, like {@link ServiceExecutors#dispatcher()}, keeps
+		 * work done in {@link ServiceCallback#onDispatchResponse(Object)}, like mapping or database
+		 * writes, off the main thread. Notifications of the UI may be then handed off to the main
+		 * thread via {@link ServiceExecutors#mainFrame()}, which coalesces them into a single message
+		 * per frame.
+		 * <p>
+		 * This is a shortcut for {@link Retrofit.Builder#callbackExecutor(Executor)} with the given
+		 * executor wrapped into {@link ServiceCallAdapterFactory.DispatchExecutor} followed by
+		 * {@link #invalidate()}.
+		 *
+		 * @param executor The desired executor. Should execute its tasks serially in order to preserve
+		 *                 order in which are responses for a single callback dispatched.
+		 * @return This configuration to allow methods chaining.
+		 */
+		@NonNull public ServicesConfiguration<S> dispatchExecutor(@NonNull final Executor executor) {
+			synchronized (builder) {
+				builder.callbackExecutor(executor instanceof ServiceCallAdapterFactory.DispatchExecutor ? executor : new ServicesDispatchExecutor(executor));
+			}
+			invalidate();
+			return this;
+		}
+
+		/**
+		 * Replaces base url of this configuration with the specified one.
+		 * <p>
+		 * Unlike change of the base url via {@link #retrofitBuilder()} followed by {@link #invalidate()},
+		 * this change does not rebuild the current Retrofit instance and services PROXY, so already
+		 * parsed service methods are reused. Requests of the subsequently created calls are instead
+		 * redirected from base url of the current Retrofit instance to the new base url. Calls that
+		 * have been already executed are not affected.
+		 *
+		 * @param baseUrl The desired base url. Must end with {@code /}.
+		 * @return This configuration to allow methods chaining.
+		 * @see #baseUrl()
+		 */
+		@NonNull public ServicesConfiguration<S> baseUrl(@NonNull final HttpUrl baseUrl) {
+			synchronized (builder) {
+				builder.baseUrl(baseUrl);
+				final Snapshot<S> current = snapshot;
+				if (current != null && current.version == version) {
+					publish(new Snapshot<>(current.retrofit, current.services, current.validated, current.version, baseUrl, current.callFactory, current.calls));
+				}
+			}
+			return this;
+		}
+
+		/**
+		 * Returns the base url to which are sent requests of calls created by the current services
+		 * PROXY. This base url may differ from base url of {@link #retrofit()} if it has been
+		 * replaced via {@link #baseUrl(HttpUrl)}.
+		 *
+		 * @return Current base url.
+		 */
+		@NonNull public HttpUrl baseUrl() {
+			return ensureValid().baseUrl;
+		}
+
+		/**
+		 * Replaces OkHttp client of this configuration with the specified one. This may be used for
+		 * example to swap an interceptor by setting a client derived from the current one via
+		 * {@link OkHttpClient#newBuilder()}.
+		 * <p>
+		 * Unlike change of the client via {@link #clientBuilder()} followed by {@link #invalidate()},
+		 * this change does not rebuild the current Retrofit instance and services PROXY, so already
+		 * parsed service methods are reused. Subsequently created calls are created via the new client.
+		 * Any changes made via {@link #clientBuilder()} are discarded.
+		 *
+		 * @param client The desired client.
+		 * @return This configuration to allow methods chaining.
+		 * @see #callFactory()
+		 */
+		@NonNull public ServicesConfiguration<S> client(@NonNull final OkHttpClient client) {
+			synchronized (builder) {
+				builder.client(client);
+				this.clientBuilder = null;
+				final Snapshot<S> current = snapshot;
+				if (current != null && current.version == version) {
+					publish(new Snapshot<>(current.retrofit, current.services, current.validated, current.version, current.baseUrl, withCacheInterceptors(current.retrofit, client), current.calls));
+				}
+			}
+			return this;
+		}
+
+		/**
+		 * Returns the call factory, usually an {@link OkHttpClient}, via which are created calls of
+		 * the current services PROXY. This is the factory specified for {@link #retrofitBuilder()},
+		 * not the one of {@link #retrofit()} which dispatches calls to the current factory. If the
+		 * specified factory is an {@link OkHttpClient} and services use a {@link ServiceCallAdapterFactory}
+		 * with a {@link ResponseCache}, the returned factory is a client derived from it with
+		 * {@link ResponseCache#interceptor()} installed.
+		 *
+		 * @return Current call factory.
+		 */
+		@NonNull public okhttp3.Call.Factory callFactory() {
+			return ensureValid().callFactory;
+		}
+
 		/**
 		 * Returns the Retrofit instance for the current configuration.
 		 *
@@ -359,8 +731,7 @@ public class ServiceManager {
 		 * @see #invalidate()
 		 */
 		@NonNull public Retrofit retrofit() {
-			this.ensureValid();
-			return retrofit;
+			return ensureValid().retrofit;
 		}
 
 		/**
@@ -370,31 +741,309 @@ public class ServiceManager {
 		 * @return Services PROXY configured according to this configuration.
 		 */
 		@NonNull S services() {
-			this.ensureValid();
-			return services;
+			return ensureValid().services;
 		}
 
 		/**
-		 * Ensures that the current Retrofit instance and services PROXY are valid according to the
-		 * current configuration.
+		 * Pre-warms this configuration by creating its Retrofit instance and services PROXY with
+		 * all service methods eagerly validated. Does nothing if the current services PROXY has been
+		 * already pre-warmed and the configuration has not changed since then.
+		 *
+		 * @see Retrofit.Builder#validateEagerly(boolean)
 		 */
-		private void ensureValid() {
-			if (changed) {
+		void prewarm() {
+			synchronized (builder) {
+				final Snapshot<S> current = snapshot;
+				if (current == null || current.version != version || !current.validated) {
+					rebuild(true);
+				}
+			}
+		}
+
+		/**
+		 * Ensures that the current snapshot is valid according to the current configuration. A valid
+		 * snapshot is returned without any locking, only rebuild of an invalid snapshot is synchronized.
+		 *
+		 * @return Valid snapshot of this configuration.
+		 */
+		private Snapshot<S> ensureValid() {
+			Snapshot<S> current = snapshot;
+			if (current == null || current.version != version) {
 				synchronized (builder) {
-					this.retrofit = builder.build();
-					this.services = retrofit.create(servicesInterface);
-					this.changed = false;
+					current = snapshot;
+					if (current == null || current.version != version) {
+						current = rebuild(false);
+					}
+				}
+			}
+			return current;
+		}
+
+		/**
+		 * Rebuilds the current Retrofit instance and services PROXY according to the current
+		 * configuration and publishes them as a new snapshot.
+		 * <p>
+		 * <b>Note</b>, that this method should be called only while holding lock of {@link #builder}.
+		 *
+		 * @param validateEagerly {@code True} to validate all service methods while creating the
+		 *                        services PROXY, {@code false} otherwise.
+		 * @return The new snapshot.
+		 */
+		private Snapshot<S> rebuild(final boolean validateEagerly) {
+			// Read version before the configuration so changes made during rebuild invalidate it.
+			final int snapshotVersion = version;
+			if (clientBuilder != null) {
+				builder.client(clientBuilder.build());
+			}
+			final Retrofit configured = builder.build();
+			final SnapshotCallFactory<S> calls = new SnapshotCallFactory<>();
+			final Retrofit retrofit = configured.newBuilder()
+					.callFactory(calls)
+					.validateEagerly(validateEagerly)
+					.build();
+			final Snapshot<S> newSnapshot = new Snapshot<>(
+					retrofit,
+					retrofit.create(servicesInterface),
+					validateEagerly,
+					snapshotVersion,
+					configured.baseUrl(),
+					withCacheInterceptors(configured, configured.callFactory()),
+					calls
+			);
+			publish(newSnapshot);
+			return newSnapshot;
+		}
+
+		/**
+		 * Publishes the given <var>newSnapshot</var> as the current snapshot of this configuration
+		 * and also as the current snapshot of its call factory, so calls of its services PROXY are
+		 * created according to it.
+		 * <p>
+		 * <b>Note</b>, that this method should be called only while holding lock of {@link #builder}.
+		 *
+		 * @param newSnapshot The snapshot to publish.
+		 */
+		private void publish(final Snapshot<S> newSnapshot) {
+			newSnapshot.calls.snapshot = newSnapshot;
+			this.snapshot = newSnapshot;
+		}
+
+		/**
+		 * Returns the given <var>callFactory</var> with interceptors of response caches used by call
+		 * adapter factories of the given <var>retrofit</var> installed, so requests revalidating
+		 * cached bodies are sent as conditional requests.
+		 *
+		 * @param retrofit    The Retrofit instance of which call adapter factories to inspect.
+		 * @param callFactory The call factory in which to install the interceptors.
+		 * @return The given call factory if it is not an {@link OkHttpClient} or it has all the
+		 * interceptors already installed, a client derived from it with the interceptors installed
+		 * as its first interceptors otherwise.
+		 * @see ResponseCache#interceptor()
+		 */
+		private static okhttp3.Call.Factory withCacheInterceptors(final Retrofit retrofit, final okhttp3.Call.Factory callFactory) {
+			if (!(callFactory instanceof OkHttpClient)) {
+				return callFactory;
+			}
+			final OkHttpClient client = (OkHttpClient) callFactory;
+			OkHttpClient.Builder clientBuilder = null;
+			for (final CallAdapter.Factory factory : retrofit.callAdapterFactories()) {
+				final ResponseCache cache = factory instanceof ServiceCallAdapterFactory ? ((ServiceCallAdapterFactory) factory).getResponseCache() : null;
+				if (cache == null || client.interceptors().contains(cache.interceptor())) {
+					continue;
+				}
+				if (clientBuilder == null) {
+					clientBuilder = client.newBuilder();
+				}
+				if (!clientBuilder.interceptors().contains(cache.interceptor())) {
+					clientBuilder.interceptors().add(0, cache.interceptor());
 				}
 			}
+			return clientBuilder == null ? client : clientBuilder.build();
 		}
 
 		/**
 		 * Invalidates the current configuration. Next call to {@link ServiceManager#services(Class)}
 		 * with services interface associated with this configuration will create a new instance
 		 * of the desired services PROXY.
+		 * <p>
+		 * Base url and OkHttp client may be changed without invalidation via {@link #baseUrl(HttpUrl)}
+		 * and {@link #client(OkHttpClient)}.
 		 */
 		public void invalidate() {
-			this.changed = true;
+			synchronized (builder) {
+				this.version++;
+			}
+		}
+
+		/**
+		 * A {@link ServiceCallAdapterFactory.DispatchExecutor} implementation which executes all
+		 * commands via the specified executor.
+		 */
+		private static final class ServicesDispatchExecutor implements ServiceCallAdapterFactory.DispatchExecutor {
+
+			/**
+			 * Executor to which this executor delegates.
+			 */
+			final Executor delegate;
+
+			/**
+			 * Creates a new instance of ServicesDispatchExecutor for the specified <var>delegate</var>.
+			 *
+			 * @param delegate The executor to which should the new executor delegate.
+			 */
+			ServicesDispatchExecutor(final Executor delegate) {
+				this.delegate = delegate;
+			}
+
+			/**
+			 */
+			@Override public void execute(@NonNull final Runnable command) {
+				delegate.execute(command);
+			}
+		}
+
+		/**
+		 * Immutable snapshot of a services configuration.
+		 *
+		 * @param <S> Type of the services interface.
+		 */
+		private static final class Snapshot<S> {
+
+			/**
+			 * Retrofit instance of the snapshot.
+			 */
+			final Retrofit retrofit;
+
+			/**
+			 * Services PROXY created by {@link #retrofit}.
+			 */
+			final S services;
+
+			/**
+			 * Flag indicating whether the services PROXY has been created with all its methods
+			 * eagerly validated.
+			 */
+			final boolean validated;
+
+			/**
+			 * Version of the configuration for which has been this snapshot built.
+			 */
+			final int version;
+
+			/**
+			 * Base url to which are redirected requests created for base url of {@link #retrofit}.
+			 */
+			final HttpUrl baseUrl;
+
+			/**
+			 * Call factory via which are created calls for the services.
+			 */
+			final okhttp3.Call.Factory callFactory;
+
+			/**
+			 * Call factory of {@link #retrofit}, shared by all snapshots with the same Retrofit instance.
+			 */
+			final SnapshotCallFactory<S> calls;
+
+			/**
+			 * Creates a new instance of Snapshot with the specified parameters.
+			 *
+			 * @param retrofit    Retrofit instance.
+			 * @param services    Services PROXY created by the Retrofit instance.
+			 * @param validated   Whether the services PROXY has been eagerly validated.
+			 * @param version     Version of the configuration.
+			 * @param baseUrl     Base url for requests.
+			 * @param callFactory Factory for calls.
+			 * @param calls       Call factory of the Retrofit instance.
+			 */
+			Snapshot(
+					final Retrofit retrofit,
+					final S services,
+					final boolean validated,
+					final int version,
+					final HttpUrl baseUrl,
+					final okhttp3.Call.Factory callFactory,
+					final SnapshotCallFactory<S> calls
+			) {
+				this.retrofit = retrofit;
+				this.services = services;
+				this.validated = validated;
+				this.version = version;
+				this.baseUrl = baseUrl;
+				this.callFactory = callFactory;
+				this.calls = calls;
+			}
+		}
+
+		/**
+		 * Call factory of a single Retrofit instance which creates calls via the call factory of the
+		 * latest snapshot published for that Retrofit instance and redirects theirs requests to base
+		 * url of the snapshot.
+		 *
+		 * @param <S> Type of the services interface.
+		 */
+		static final class SnapshotCallFactory<S> implements okhttp3.Call.Factory {
+
+			/**
+			 * Latest snapshot published for the Retrofit instance of this factory.
+			 */
+			volatile Snapshot<S> snapshot;
+
+			/**
+			 * Returns the call factory to which are delegated calls created by this factory.
+			 *
+			 * @return Call factory of the latest published snapshot.
+			 */
+			@NonNull okhttp3.Call.Factory delegate() {
+				return snapshot.callFactory;
+			}
+
+			/**
+			 */
+			@Override public okhttp3.Call newCall(@NonNull final Request request) {
+				// Calls are created only by services of an already published snapshot.
+				final Snapshot<S> current = snapshot;
+				final HttpUrl url = redirect(request.url(), current.retrofit.baseUrl(), current.baseUrl);
+				return current.callFactory.newCall(url == null ? request : request.newBuilder().url(url).build());
+			}
+
+			/**
+			 * Redirects the given <var>url</var> from the specified <var>fromBaseUrl</var> to the
+			 * specified <var>toBaseUrl</var>. Path segments of the from base url are replaced by path
+			 * segments of the to base url, the remaining path segments along with query and fragment
+			 * of the url are preserved.
+			 *
+			 * @param url         The url to redirect.
+			 * @param fromBaseUrl Base url from which to redirect. Must end with {@code /}.
+			 * @param toBaseUrl   Base url to which to redirect. Must end with {@code /}.
+			 * @return Redirected url or {@code null} if the base urls are the same or the url does not
+			 * belong to the from base url.
+			 */
+			@Nullable static HttpUrl redirect(final HttpUrl url, final HttpUrl fromBaseUrl, final HttpUrl toBaseUrl) {
+				if (fromBaseUrl.equals(toBaseUrl) || !url.scheme().equals(fromBaseUrl.scheme()) || !url.host().equals(fromBaseUrl.host()) || url.port() != fromBaseUrl.port()) {
+					return null;
+				}
+				final List<String> segments = url.encodedPathSegments();
+				// Path segments of a base url end with an empty segment for its trailing slash.
+				final List<String> fromSegments = fromBaseUrl.encodedPathSegments();
+				final int prefixSize = fromSegments.size() - 1;
+				if (segments.size() <= prefixSize || !segments.subList(0, prefixSize).equals(fromSegments.subList(0, prefixSize))) {
+					return null;
+				}
+				final HttpUrl.Builder builder = url.newBuilder()
+						.scheme(toBaseUrl.scheme())
+						.host(toBaseUrl.host())
+						.port(toBaseUrl.port())
+						.encodedPath("/");
+				final List<String> toSegments = toBaseUrl.encodedPathSegments();
+				for (final String segment : toSegments.subList(0, toSegments.size() - 1)) {
+					builder.addEncodedPathSegment(segment);
+				}
+				for (final String segment : segments.subList(prefixSize, segments.size())) {
+					builder.addEncodedPathSegment(segment);
+				}
+				return builder.build();
+			}
 		}
 	}
 }
\ No newline at end of file
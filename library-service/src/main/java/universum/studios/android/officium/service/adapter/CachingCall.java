@@ -0,0 +1,388 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import okhttp3.Headers;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import universum.studios.android.officium.service.ServiceFailure;
+import universum.studios.android.officium.service.ServiceObject;
+
+/**
+ * A {@link Call} implementation which serves response bodies of idempotent requests from a
+ * {@link ResponseCache} and stores there bodies of successful responses received for such requests.
+ * <p>
+ * Time to live of cached bodies is resolved from id of the service to which the enqueued callback
+ * is associated, if the callback is a {@link ServiceObject}. Synchronous execution via {@link #execute()}
+ * bypasses the cache. Bodies of responses for which an interceptor has added or changed the
+ * {@code Authorization} header of the request are not stored, as the cache key identifies only
+ * headers of the request before interception.
+ * <p>
+ * Requests revalidating expired cached bodies are marked via {@link ResponseCache#markRevalidation(Request)},
+ * so {@link ConditionalRequestInterceptor} sends them as conditional requests. When the original
+ * call receives {@code 304 Not Modified} response for such request, the cached body is delivered
+ * to the callback along with a raw response which has the 304 response as its network response,
+ * like it is done by cache of the OkHttp client.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+final class CachingCall<T> implements Call<T> {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "CachingCall";
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Original call to which this call delegates.
+	 */
+	private final Call<T> delegate;
+
+	/**
+	 * Type of the response body for this call. Used as part of the cache key.
+	 */
+	private final Type responseType;
+
+	/**
+	 * Cache from which to serve and to which to store response bodies.
+	 */
+	private final ResponseCache cache;
+
+	/**
+	 * Executor used to deliver cached response bodies.
+	 */
+	private final Executor callbackExecutor;
+
+	/**
+	 * Flag indicating whether this call has been already executed or enqueued.
+	 */
+	private volatile boolean executed;
+
+	/**
+	 * Flag indicating whether this call has been canceled.
+	 */
+	private volatile boolean canceled;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of CachingCall for the specified <var>delegate</var>.
+	 *
+	 * @param delegate         The call to which should the new call delegate.
+	 * @param responseType     Type of the response body.
+	 * @param cache            The cache used to serve and store response bodies.
+	 * @param callbackExecutor Executor used to deliver cached response bodies.
+	 */
+	CachingCall(@NonNull final Call<T> delegate, @NonNull final Type responseType, @NonNull final ResponseCache cache, @NonNull final Executor callbackExecutor) {
+		this.delegate = delegate;
+		this.responseType = responseType;
+		this.cache = cache;
+		this.callbackExecutor = callbackExecutor;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Returns the current time used to measure expiration of cached entries.
+	 *
+	 * @return Current time in milliseconds.
+	 */
+	static long now() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+	}
+
+	/**
+	 */
+	@Override public Response<T> execute() throws IOException {
+		markExecuted();
+		return delegate.execute();
+	}
+
+	/**
+	 */
+	@Override public void enqueue(@NonNull final Callback<T> callback) {
+		markExecuted();
+		final Request request = delegate.request();
+		if (!Requests.isIdempotent(request)) {
+			this.delegate.enqueue(callback);
+			return;
+		}
+		final int serviceId = Callbacks.serviceIdOf(callback);
+		final String requestKey = Requests.createKey(request);
+		final String key = Requests.createKey(request, responseType);
+		final ResponseCache.Entry entry = cache.get(key);
+		if (entry == null) {
+			this.delegate.enqueue(new CachingCallback(key, requestKey, serviceId, callback));
+		} else if (!entry.isExpired(now())) {
+			deliverCached(entry, callback, null);
+		} else if (cache.isStaleWhileRevalidate()) {
+			cache.markRevalidation(request);
+			deliverCached(entry, callback, new CachingCallback(key, requestKey, serviceId, callback));
+		} else {
+			cache.markRevalidation(request);
+			this.delegate.enqueue(new CachingCallback(key, requestKey, serviceId, callback));
+		}
+	}
+
+	/**
+	 * Delivers body of the given cached <var>entry</var> to the specified <var>callback</var> via
+	 * the callback executor.
+	 *
+	 * @param entry        The cached entry of which body to deliver.
+	 * @param callback     The callback to which to deliver the cached body.
+	 * @param revalidation Callback with which to enqueue the original call after the cached body
+	 *                     has been delivered. May be {@code null} if the entry is fresh.
+	 */
+	private void deliverCached(final ResponseCache.Entry entry, final Callback<T> callback, final Callback<T> revalidation) {
+		this.callbackExecutor.execute(new Runnable() {
+
+			/**
+			 */
+			@SuppressWarnings("unchecked")
+			@Override public void run() {
+				if (canceled) {
+					callback.onFailure(CachingCall.this, ServiceFailure.CANCELED);
+					return;
+				}
+				final okhttp3.Response rawResponse = new okhttp3.Response.Builder()
+						.request(delegate.request())
+						.protocol(Protocol.HTTP_1_1)
+						.code(200)
+						.message("OK")
+						.build();
+				callback.onResponse(CachingCall.this, Response.success((T) entry.body, rawResponse));
+				if (revalidation != null) {
+					delegate.enqueue(revalidation);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Marks this call as executed.
+	 *
+	 * @throws IllegalStateException If this call has been already executed.
+	 */
+	private synchronized void markExecuted() {
+		if (executed) throw new IllegalStateException("Already executed.");
+		this.executed = true;
+	}
+
+	/**
+	 */
+	@Override public boolean isExecuted() {
+		return executed;
+	}
+
+	/**
+	 */
+	@Override public void cancel() {
+		this.canceled = true;
+		this.delegate.cancel();
+	}
+
+	/**
+	 */
+	@Override public boolean isCanceled() {
+		return canceled || delegate.isCanceled();
+	}
+
+	/**
+	 */
+	@Override public Request request() {
+		return delegate.request();
+	}
+
+	/**
+	 */
+	@SuppressWarnings("CloneDoesntCallSuperClone")
+	@Override public Call<T> clone() {
+		return new CachingCall<>(delegate.clone(), responseType, cache, callbackExecutor);
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * A {@link Callback} implementation which stores body of successful response in the cache and
+	 * forwards the response to the original callback.
+	 */
+	private final class CachingCallback implements Callback<T>, Callbacks.Wrapper {
+
+		/**
+		 * Key under which to store the response body.
+		 */
+		private final String key;
+
+		/**
+		 * Key of the request regardless of the response type under which to store validators of
+		 * the response body.
+		 */
+		private final String requestKey;
+
+		/**
+		 * Id of the service to which the response body belongs.
+		 */
+		private final int serviceId;
+
+		/**
+		 * Original callback to which to forward received response.
+		 */
+		private final Callback<T> callback;
+
+		/**
+		 * Flag indicating whether the request has been sent again without validators because a not
+		 * modified response could not be served from the cache.
+		 */
+		private boolean refetched;
+
+		/**
+		 * Creates a new instance of CachingCallback with the specified <var>key</var> and <var>callback</var>.
+		 *
+		 * @param key        Key under which to store the response body.
+		 * @param requestKey Key of the request under which to store validators of the response body.
+		 * @param serviceId  Id of the service to which the response body belongs.
+		 * @param callback   The callback to which to forward received response.
+		 */
+		CachingCallback(final String key, final String requestKey, final int serviceId, final Callback<T> callback) {
+			this.key = key;
+			this.requestKey = requestKey;
+			this.serviceId = serviceId;
+			this.callback = callback;
+		}
+
+		/**
+		 */
+		@Override @NonNull public Callback<?> unwrap() {
+			return callback;
+		}
+
+		/**
+		 */
+		@Override public void onResponse(@NonNull final Call<T> call, @NonNull final Response<T> response) {
+			if (response.code() == ConditionalRequestInterceptor.NOT_MODIFIED && !refetched) {
+				onNotModified(response);
+				return;
+			}
+			final T body = response.body();
+			final okhttp3.Response rawResponse = response.raw();
+			if (response.isSuccessful() && body != null && Requests.hasSameCredentials(delegate.request(), rawResponse.request())) {
+				final ResponseBody rawBody = rawResponse.body();
+				final Headers headers = response.headers();
+				final long contentLength = rawBody == null ? -1 : rawBody.contentLength();
+				cache.put(
+						key,
+						requestKey,
+						serviceId,
+						body,
+						contentLength < 0 ? cache.bodySizeOf(rawResponse.request()) : contentLength,
+						now(),
+						headers.get(ConditionalRequestInterceptor.ETAG),
+						headers.get(ConditionalRequestInterceptor.LAST_MODIFIED)
+				);
+			}
+			callback.onResponse(CachingCall.this, response);
+		}
+
+		/**
+		 * Handles the given not modified <var>response</var> by delivering the cached body which has
+		 * been validated by the response. If there is no such body cached anymore, the request is
+		 * sent again without validators.
+		 *
+		 * @param response The not modified response.
+		 */
+		@SuppressWarnings("unchecked")
+		private void onNotModified(final Response<T> response) {
+			final okhttp3.Response rawResponse = response.raw();
+			final ResponseCache.Entry entry = cache.get(key);
+			if (entry != null && entry.isValidatedBy(rawResponse.request())) {
+				final String eTag = rawResponse.header(ConditionalRequestInterceptor.ETAG);
+				final String lastModified = rawResponse.header(ConditionalRequestInterceptor.LAST_MODIFIED);
+				cache.put(
+						key,
+						requestKey,
+						serviceId,
+						entry.body,
+						entry.size,
+						now(),
+						eTag == null ? entry.eTag : eTag,
+						lastModified == null ? entry.lastModified : lastModified
+				);
+				final okhttp3.Response networkResponse = rawResponse.newBuilder()
+						.body(null)
+						.networkResponse(null)
+						.cacheResponse(null)
+						.priorResponse(null)
+						.build();
+				callback.onResponse(CachingCall.this, Response.success((T) entry.body, rawResponse.newBuilder()
+						.code(200)
+						.message("OK")
+						.networkResponse(networkResponse)
+						.build()
+				));
+				return;
+			}
+			cache.removeValidators(requestKey);
+			if (canceled) {
+				callback.onFailure(CachingCall.this, ServiceFailure.CANCELED);
+				return;
+			}
+			this.refetched = true;
+			delegate.clone().enqueue(this);
+		}
+
+		/**
+		 */
+		@Override public void onFailure(@NonNull final Call<T> call, @NonNull final Throwable failure) {
+			callback.onFailure(CachingCall.this, failure);
+		}
+	}
+}
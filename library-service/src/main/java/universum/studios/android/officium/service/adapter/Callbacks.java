@@ -0,0 +1,106 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import retrofit2.Callback;
+import universum.studios.android.officium.service.ServiceCall;
+import universum.studios.android.officium.service.ServiceCallback;
+import universum.studios.android.officium.service.ServiceObject;
+
+/**
+ * Utility class used by calls adapted by {@link ServiceCallAdapterFactory} to resolve information
+ * about callbacks which may be wrapped by callbacks of other adapted calls.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+final class Callbacks {
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/**
+	 * Interface for callbacks which wrap another, original, callback.
+	 */
+	interface Wrapper {
+
+		/**
+		 * Returns the callback wrapped by this callback.
+		 *
+		 * @return Wrapped callback. May be {@code null} if there is no callback wrapped at this time.
+		 */
+		@Nullable Callback<?> unwrap();
+	}
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 */
+	private Callbacks() {
+		// Not allowed to be instantiated publicly.
+		throw new UnsupportedOperationException();
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Resolves id of the service to which is associated the given <var>callback</var> or any of the
+	 * callbacks wrapped by it.
+	 *
+	 * @param callback The callback of which service id to resolve.
+	 * @return Service id or {@link ServiceObject#NO_SERVICE} if there is no {@link ServiceObject}
+	 * among the callbacks.
+	 */
+	static int serviceIdOf(@NonNull final Callback<?> callback) {
+		Callback<?> current = callback;
+		while (current != null) {
+			if (current instanceof ServiceObject) {
+				return ((ServiceObject) current).getServiceId();
+			}
+			current = current instanceof Wrapper ? ((Wrapper) current).unwrap() : null;
+		}
+		return ServiceObject.NO_SERVICE;
+	}
+
+	/**
+	 * Resolves priority of the request for which has been enqueued the given <var>callback</var>
+	 * or any of the callbacks wrapped by it.
+	 *
+	 * @param callback The callback of which priority to resolve.
+	 * @return Priority or {@link ServiceCall#PRIORITY_DEFAULT} if there is no {@link ServiceCallback}
+	 * among the callbacks.
+	 */
+	static int priorityOf(@NonNull final Callback<?> callback) {
+		Callback<?> current = callback;
+		while (current != null) {
+			if (current instanceof ServiceCallback) {
+				return ((ServiceCallback) current).getPriority();
+			}
+			current = current instanceof Wrapper ? ((Wrapper) current).unwrap() : null;
+		}
+		return ServiceCall.PRIORITY_DEFAULT;
+	}
+}
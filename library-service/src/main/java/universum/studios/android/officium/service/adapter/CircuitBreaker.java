@@ -0,0 +1,772 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import okhttp3.Request;
+import universum.studios.android.officium.service.ServiceObject;
+
+/**
+ * A circuit breaker which may be used by calls adapted by {@link ServiceCallAdapterFactory}
+ * (see {@link ServiceCallAdapterFactory.Builder#circuitBreaker(CircuitBreaker)}) in order to stop
+ * sending requests to a backend endpoint which does not respond properly.
+ * <p>
+ * The breaker maintains a separate {@link Circuit} for each service id, or for each host if the
+ * breaker is keyed by host or if a call is not associated with any service. Each circuit records
+ * outcomes of the last calls within a sliding window. A call fails if it fails due to an
+ * {@link java.io.IOException} or if it receives response with a <b>5xx</b> status code. A call is
+ * slow if it takes at least the slow call duration. When either the failure rate or the slow call
+ * rate of a circuit exceeds its threshold, the circuit is {@link #OPEN opened} and all calls for it
+ * fail immediately with {@link CircuitOpenException} without reaching the network. After the open
+ * duration elapses, the circuit becomes {@link #HALF_OPEN half-open} and lets a limited count of
+ * trial calls through. If all of them succeed the circuit is {@link #CLOSED closed} again, otherwise
+ * it is opened again.
+ * <p>
+ * Current state of all circuits may be obtained via {@link #getCircuits()} and changes of theirs
+ * states may be observed via {@link OnStateChangeListener}.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class CircuitBreaker {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "CircuitBreaker";
+
+	/**
+	 * State of a circuit which lets all calls through.
+	 */
+	public static final int CLOSED = 0;
+
+	/**
+	 * State of a circuit which rejects all calls.
+	 */
+	public static final int OPEN = 1;
+
+	/**
+	 * State of a circuit which lets through a limited count of trial calls.
+	 */
+	public static final int HALF_OPEN = 2;
+
+	/**
+	 * Defines an annotation for determining set of allowed states of circuit.
+	 *
+	 * <h3>Available values:</h3>
+	 * <ul>
+	 * <li>{@link #CLOSED}</li>
+	 * <li>{@link #OPEN}</li>
+	 * <li>{@link #HALF_OPEN}</li>
+	 * </ul>
+	 */
+	@IntDef({CLOSED, OPEN, HALF_OPEN})
+	@Retention(RetentionPolicy.SOURCE)
+	public @interface State {}
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/**
+	 * Listener which may be used to receive callback about changed state of a circuit.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public interface OnStateChangeListener {
+
+		/**
+		 * Invoked whenever the specified <var>circuit</var> changes its state.
+		 * <p>
+		 * This callback is invoked on the thread which has completed or started the call that caused
+		 * the state change, so it should return quickly.
+		 *
+		 * @param circuit The circuit of which state has changed.
+		 * @param state   The new state of the circuit.
+		 */
+		void onStateChanged(@NonNull Circuit circuit, @State int state);
+	}
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Flag indicating whether circuits should be always keyed by host.
+	 */
+	private final boolean keyByHost;
+
+	/**
+	 * Failure rate from the range {@code (0, 1]} at which is a circuit opened.
+	 */
+	private final float failureRateThreshold;
+
+	/**
+	 * Slow call rate from the range {@code (0, 1]} at which is a circuit opened.
+	 */
+	private final float slowCallRateThreshold;
+
+	/**
+	 * Duration in milliseconds from which is a call considered slow.
+	 */
+	private final long slowCallDuration;
+
+	/**
+	 * Count of the last calls of which outcomes are recorded by a circuit.
+	 */
+	private final int windowSize;
+
+	/**
+	 * Minimum count of recorded calls before a circuit may be opened.
+	 */
+	private final int minimumCalls;
+
+	/**
+	 * Duration in milliseconds for which a circuit stays open.
+	 */
+	private final long openDuration;
+
+	/**
+	 * Count of trial calls let through by a half-open circuit.
+	 */
+	private final int halfOpenCalls;
+
+	/**
+	 * Listener to be notified about changed states of circuits. May be {@code null}.
+	 */
+	private final OnStateChangeListener listener;
+
+	/**
+	 * Circuits maintained by this breaker mapped to theirs keys, that is, either service ids or hosts.
+	 */
+	private final ConcurrentMap<Object, Circuit> circuits = new ConcurrentHashMap<>(4);
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of CircuitBreaker with configuration of the given <var>builder</var>.
+	 *
+	 * @param builder The builder with configuration for the new breaker.
+	 */
+	CircuitBreaker(@NonNull final Builder builder) {
+		this.keyByHost = builder.keyByHost;
+		this.failureRateThreshold = builder.failureRateThreshold;
+		this.slowCallRateThreshold = builder.slowCallRateThreshold;
+		this.slowCallDuration = builder.slowCallDuration;
+		this.windowSize = builder.windowSize;
+		this.minimumCalls = Math.min(builder.minimumCalls, builder.windowSize);
+		this.openDuration = builder.openDuration;
+		this.halfOpenCalls = builder.halfOpenCalls;
+		this.listener = builder.listener;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Returns the current time used to measure durations of calls and open circuits.
+	 *
+	 * @return Current time in milliseconds.
+	 */
+	static long now() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+	}
+
+	/**
+	 * Returns the circuit for call of the given <var>request</var> associated with the specified
+	 * <var>serviceId</var>, creating it if it does not exist yet.
+	 *
+	 * @param serviceId Id of the service to which the call belongs.
+	 * @param request   Request of the call.
+	 * @return Circuit for the call.
+	 */
+	@NonNull Circuit circuitFor(final int serviceId, @NonNull final Request request) {
+		final boolean byHost = keyByHost || serviceId == ServiceObject.NO_SERVICE;
+		final Object key = byHost ? request.url().host() : serviceId;
+		Circuit circuit = circuits.get(key);
+		if (circuit == null) {
+			final Circuit newCircuit = byHost ? new Circuit(ServiceObject.NO_SERVICE, (String) key) : new Circuit(serviceId, null);
+			circuit = circuits.putIfAbsent(key, newCircuit);
+			if (circuit == null) {
+				circuit = newCircuit;
+			}
+		}
+		return circuit;
+	}
+
+	/**
+	 * Returns the current state of circuit for calls of the specified <var>serviceId</var>.
+	 *
+	 * @param serviceId Id of the service for which to return state.
+	 * @return State of the circuit or {@link #CLOSED} if there were no calls for the service yet.
+	 */
+	@State public int getState(final int serviceId) {
+		final Circuit circuit = circuits.get(serviceId);
+		return circuit == null ? CLOSED : circuit.getState();
+	}
+
+	/**
+	 * Returns the current state of circuit for calls to the specified <var>host</var>.
+	 *
+	 * @param host The host for which to return state.
+	 * @return State of the circuit or {@link #CLOSED} if there were no calls to the host yet.
+	 */
+	@State public int getState(@NonNull final String host) {
+		final Circuit circuit = circuits.get(host);
+		return circuit == null ? CLOSED : circuit.getState();
+	}
+
+	/**
+	 * Returns all circuits maintained by this breaker.
+	 *
+	 * @return Unmodifiable live collection of circuits.
+	 */
+	@NonNull public Collection<Circuit> getCircuits() {
+		return Collections.unmodifiableCollection(circuits.values());
+	}
+
+	/**
+	 * Closes all circuits maintained by this breaker and discards theirs recorded outcomes.
+	 */
+	public void reset() {
+		for (final Circuit circuit : circuits.values()) {
+			circuit.transitionTo(CLOSED, 0);
+		}
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * Builder that may be used to build instances of {@link CircuitBreaker}.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public static final class Builder {
+
+		/**
+		 * See {@link CircuitBreaker#keyByHost}.
+		 */
+		boolean keyByHost;
+
+		/**
+		 * See {@link CircuitBreaker#failureRateThreshold}.
+		 */
+		float failureRateThreshold = 0.5f;
+
+		/**
+		 * See {@link CircuitBreaker#slowCallRateThreshold}.
+		 */
+		float slowCallRateThreshold = 1f;
+
+		/**
+		 * See {@link CircuitBreaker#slowCallDuration}.
+		 */
+		long slowCallDuration = TimeUnit.SECONDS.toMillis(10);
+
+		/**
+		 * See {@link CircuitBreaker#windowSize}.
+		 */
+		int windowSize = 20;
+
+		/**
+		 * See {@link CircuitBreaker#minimumCalls}.
+		 */
+		int minimumCalls = 10;
+
+		/**
+		 * See {@link CircuitBreaker#openDuration}.
+		 */
+		long openDuration = TimeUnit.SECONDS.toMillis(30);
+
+		/**
+		 * See {@link CircuitBreaker#halfOpenCalls}.
+		 */
+		int halfOpenCalls = 3;
+
+		/**
+		 * See {@link CircuitBreaker#listener}.
+		 */
+		OnStateChangeListener listener;
+
+		/**
+		 * Specifies whether circuits should be keyed by host instead of service id.
+		 * <p>
+		 * Calls not associated with any service are always keyed by host.
+		 * <p>
+		 * Default value: {@code false}
+		 *
+		 * @param enabled {@code True} to key circuits by host, {@code false} to key them by service id.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder keyByHost(final boolean enabled) {
+			this.keyByHost = enabled;
+			return this;
+		}
+
+		/**
+		 * Specifies a rate of failed calls at which should be a circuit opened.
+		 * <p>
+		 * Default value: {@code 0.5}
+		 *
+		 * @param threshold The desired threshold from the range {@code (0, 1]}.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder failureRateThreshold(final float threshold) {
+			this.failureRateThreshold = threshold;
+			return this;
+		}
+
+		/**
+		 * Specifies a rate of slow calls at which should be a circuit opened.
+		 * <p>
+		 * Default value: {@code 1}
+		 *
+		 * @param threshold The desired threshold from the range {@code (0, 1]}.
+		 * @return This builder to allow methods chaining.
+		 * @see #slowCallDuration(long, TimeUnit)
+		 */
+		public Builder slowCallRateThreshold(final float threshold) {
+			this.slowCallRateThreshold = threshold;
+			return this;
+		}
+
+		/**
+		 * Specifies a duration from which should be a call considered slow.
+		 * <p>
+		 * Default value: {@code 10 seconds}
+		 *
+		 * @param duration The desired duration.
+		 * @param unit     Time unit of the specified duration.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder slowCallDuration(final long duration, @NonNull final TimeUnit unit) {
+			this.slowCallDuration = unit.toMillis(duration);
+			return this;
+		}
+
+		/**
+		 * Specifies a count of the last calls of which outcomes should be recorded by a circuit.
+		 * <p>
+		 * Default value: {@code 20}
+		 *
+		 * @param windowSize The desired window size.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder windowSize(final int windowSize) {
+			this.windowSize = windowSize;
+			return this;
+		}
+
+		/**
+		 * Specifies a minimum count of recorded calls before a circuit may be opened.
+		 * <p>
+		 * Default value: {@code 10}
+		 *
+		 * @param minimumCalls The desired minimum count of calls.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder minimumCalls(final int minimumCalls) {
+			this.minimumCalls = minimumCalls;
+			return this;
+		}
+
+		/**
+		 * Specifies a duration for which should a circuit stay open before it lets through trial calls.
+		 * <p>
+		 * Default value: {@code 30 seconds}
+		 *
+		 * @param duration The desired duration.
+		 * @param unit     Time unit of the specified duration.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder openDuration(final long duration, @NonNull final TimeUnit unit) {
+			this.openDuration = unit.toMillis(duration);
+			return this;
+		}
+
+		/**
+		 * Specifies a count of trial calls which should a half-open circuit let through.
+		 * <p>
+		 * Default value: {@code 3}
+		 *
+		 * @param calls The desired count of calls.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder halfOpenCalls(final int calls) {
+			this.halfOpenCalls = calls;
+			return this;
+		}
+
+		/**
+		 * Specifies a listener to be notified about changed states of circuits.
+		 *
+		 * @param listener The desired listener. May be {@code null} to not notify any listener.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder onStateChangeListener(@Nullable final OnStateChangeListener listener) {
+			this.listener = listener;
+			return this;
+		}
+
+		/**
+		 * Builds a new instance of CircuitBreaker from the current data.
+		 *
+		 * @return New instance of CircuitBreaker.
+		 * @throws IllegalArgumentException If any of the specified values is out of its valid range.
+		 */
+		@NonNull public CircuitBreaker build() {
+			if (failureRateThreshold <= 0 || failureRateThreshold > 1) throw new IllegalArgumentException("Failure rate threshold must be from the range (0, 1].");
+			if (slowCallRateThreshold <= 0 || slowCallRateThreshold > 1) throw new IllegalArgumentException("Slow call rate threshold must be from the range (0, 1].");
+			if (windowSize <= 0) throw new IllegalArgumentException("Window size must be positive.");
+			if (minimumCalls <= 0) throw new IllegalArgumentException("Minimum calls must be positive.");
+			if (halfOpenCalls <= 0) throw new IllegalArgumentException("Half-open calls must be positive.");
+			return new CircuitBreaker(this);
+		}
+	}
+
+	/**
+	 * A single circuit of {@link CircuitBreaker} for calls of one service or to one host.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public final class Circuit {
+
+		/**
+		 * Outcome flag of a failed call.
+		 */
+		private static final byte FAILED = 1;
+
+		/**
+		 * Outcome flag of a slow call.
+		 */
+		private static final byte SLOW = 1 << 1;
+
+		/**
+		 * Id of the service for which is this circuit maintained.
+		 */
+		private final int serviceId;
+
+		/**
+		 * Host for which is this circuit maintained.
+		 */
+		private final String host;
+
+		/**
+		 * Ring buffer of recorded outcomes.
+		 */
+		private final byte[] outcomes = new byte[windowSize];
+
+		/**
+		 * Index in ring buffer at which to record the next outcome.
+		 */
+		private int index;
+
+		/**
+		 * Count of currently recorded outcomes.
+		 */
+		private int recordedCalls;
+
+		/**
+		 * Count of currently recorded failed calls.
+		 */
+		private int failedCalls;
+
+		/**
+		 * Count of currently recorded slow calls.
+		 */
+		private int slowCalls;
+
+		/**
+		 * Current state of this circuit.
+		 */
+		private volatile int state = CLOSED;
+
+		/**
+		 * Time in milliseconds at which has been this circuit opened.
+		 */
+		private long openedAt;
+
+		/**
+		 * Count of trial calls which may be still let through while this circuit is half-open.
+		 */
+		private int permittedCalls;
+
+		/**
+		 * Count of trial calls which have succeeded while this circuit is half-open.
+		 */
+		private int succeededCalls;
+
+		/**
+		 * Failure reported for all calls rejected by this circuit.
+		 */
+		private final CircuitOpenException openFailure;
+
+		/**
+		 * Creates a new instance of Circuit for the specified <var>serviceId</var> or <var>host</var>.
+		 *
+		 * @param serviceId Id of the service for which is the circuit maintained.
+		 * @param host      Host for which is the circuit maintained.
+		 */
+		Circuit(final int serviceId, final String host) {
+			this.serviceId = serviceId;
+			this.host = host;
+			this.openFailure = new CircuitOpenException(this);
+		}
+
+		/**
+		 * Returns id of the service for which is this circuit maintained.
+		 *
+		 * @return Service id or {@link ServiceObject#NO_SERVICE} if this circuit is maintained for a host.
+		 */
+		public int getServiceId() {
+			return serviceId;
+		}
+
+		/**
+		 * Returns the host for which is this circuit maintained.
+		 *
+		 * @return Host or {@code null} if this circuit is maintained for a service.
+		 */
+		@Nullable public String getHost() {
+			return host;
+		}
+
+		/**
+		 * Returns the failure to be reported for calls rejected by this circuit.
+		 *
+		 * @return Pre-allocated failure of this circuit.
+		 */
+		CircuitOpenException openFailure() {
+			return openFailure;
+		}
+
+		/**
+		 * Returns the current state of this circuit.
+		 *
+		 * @return One of {@link #CLOSED}, {@link #OPEN} or {@link #HALF_OPEN}.
+		 */
+		@State public int getState() {
+			return state;
+		}
+
+		/**
+		 * Returns the rate of failed calls among the calls recorded by this circuit.
+		 *
+		 * @return Failure rate from the range {@code [0, 1]}.
+		 */
+		public synchronized float getFailureRate() {
+			return recordedCalls == 0 ? 0 : (float) failedCalls / recordedCalls;
+		}
+
+		/**
+		 * Returns the rate of slow calls among the calls recorded by this circuit.
+		 *
+		 * @return Slow call rate from the range {@code [0, 1]}.
+		 */
+		public synchronized float getSlowCallRate() {
+			return recordedCalls == 0 ? 0 : (float) slowCalls / recordedCalls;
+		}
+
+		/**
+		 * Returns the count of calls of which outcomes are currently recorded by this circuit.
+		 *
+		 * @return Count of recorded calls.
+		 */
+		public synchronized int getRecordedCalls() {
+			return recordedCalls;
+		}
+
+		/**
+		 * Attempts to acquire permission for a new call.
+		 *
+		 * @param now Current time in milliseconds.
+		 * @return {@code True} if the call may proceed, {@code false} if it should be rejected.
+		 */
+		boolean tryAcquire(final long now) {
+			if (state == CLOSED) {
+				return true;
+			}
+			synchronized (this) {
+				switch (state) {
+					case OPEN:
+						if (now - openedAt < openDuration) {
+							return false;
+						}
+						changeState(HALF_OPEN, now);
+						this.permittedCalls--;
+						break;
+					case HALF_OPEN:
+						if (permittedCalls <= 0) {
+							return false;
+						}
+						this.permittedCalls--;
+						return true;
+					default:
+						return true;
+				}
+			}
+			notifyStateChanged(HALF_OPEN);
+			return true;
+		}
+
+		/**
+		 * Releases permission acquired for a call which has been canceled without any outcome.
+		 */
+		synchronized void release() {
+			if (state == HALF_OPEN) {
+				this.permittedCalls++;
+			}
+		}
+
+		/**
+		 * Records outcome of a completed call.
+		 *
+		 * @param failed   {@code True} if the call has failed, {@code false} otherwise.
+		 * @param duration Duration of the call in milliseconds.
+		 * @param now      Current time in milliseconds.
+		 */
+		void record(final boolean failed, final long duration, final long now) {
+			final boolean slow = duration >= slowCallDuration;
+			final int newState;
+			synchronized (this) {
+				switch (state) {
+					case CLOSED:
+						recordOutcome((byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0)));
+						if (recordedCalls < minimumCalls ||
+								(failedCalls < failureRateThreshold * recordedCalls && slowCalls < slowCallRateThreshold * recordedCalls)) {
+							return;
+						}
+						newState = OPEN;
+						break;
+					case HALF_OPEN:
+						if (failed || slow) {
+							newState = OPEN;
+						} else if (++succeededCalls >= halfOpenCalls) {
+							newState = CLOSED;
+						} else {
+							return;
+						}
+						break;
+					default:
+						// Outcomes of calls completed after the circuit has been opened are ignored.
+						return;
+				}
+				changeState(newState, now);
+			}
+			notifyStateChanged(newState);
+		}
+
+		/**
+		 * Records the given <var>outcome</var> into the ring buffer, replacing the eldest outcome
+		 * if the buffer is full.
+		 *
+		 * @param outcome The outcome to record.
+		 */
+		private void recordOutcome(final byte outcome) {
+			if (recordedCalls == outcomes.length) {
+				final byte eldest = outcomes[index];
+				if ((eldest & FAILED) != 0) failedCalls--;
+				if ((eldest & SLOW) != 0) slowCalls--;
+			} else {
+				this.recordedCalls++;
+			}
+			this.outcomes[index] = outcome;
+			if ((outcome & FAILED) != 0) failedCalls++;
+			if ((outcome & SLOW) != 0) slowCalls++;
+			this.index = (index + 1) % outcomes.length;
+		}
+
+		/**
+		 * Changes state of this circuit to the specified one and resets all its recorded data.
+		 * Listener should be notified via {@link #notifyStateChanged(int)} outside of the lock.
+		 *
+		 * @param newState The new state.
+		 * @param now      Current time in milliseconds.
+		 */
+		private void changeState(final int newState, final long now) {
+			this.state = newState;
+			this.openedAt = now;
+			this.permittedCalls = halfOpenCalls;
+			this.succeededCalls = 0;
+			this.index = 0;
+			this.recordedCalls = 0;
+			this.failedCalls = 0;
+			this.slowCalls = 0;
+		}
+
+		/**
+		 * Changes state of this circuit to the specified one and notifies listener.
+		 *
+		 * @param newState The new state.
+		 * @param now      Current time in milliseconds.
+		 */
+		void transitionTo(final int newState, final long now) {
+			synchronized (this) {
+				if (state == newState) {
+					return;
+				}
+				changeState(newState, now);
+			}
+			notifyStateChanged(newState);
+		}
+
+		/**
+		 * Notifies the listener, if any, about the specified new state of this circuit.
+		 *
+		 * @param newState The state to which has this circuit changed.
+		 */
+		private void notifyStateChanged(final int newState) {
+			if (listener != null) {
+				listener.onStateChanged(this, newState);
+			}
+		}
+
+		/**
+		 */
+		@Override public String toString() {
+			return "Circuit{" + (host == null ? "serviceId: " + serviceId : "host: " + host) + ", state: " + state + "}";
+		}
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import universum.studios.android.officium.service.ServiceObject;
+
+/**
+ * A {@link Call} implementation which guards the original call by {@link CircuitBreaker}. Calls of
+ * which circuit is open fail with {@link CircuitOpenException} without being performed.
+ * <p>
+ * Circuit is resolved from id of the service to which is associated the enqueued callback or from
+ * host of the request. Synchronous execution via {@link #execute()} always uses circuit of the host.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+final class CircuitBreakerCall<T> implements Call<T> {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "CircuitBreakerCall";
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Original call to which this call delegates.
+	 */
+	private final Call<T> delegate;
+
+	/**
+	 * Breaker providing circuit for this call.
+	 */
+	private final CircuitBreaker breaker;
+
+	/**
+	 * Executor used to deliver failures of rejected calls.
+	 */
+	private final Executor callbackExecutor;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of CircuitBreakerCall for the specified <var>delegate</var>.
+	 *
+	 * @param delegate         The call to which should the new call delegate.
+	 * @param breaker          The breaker providing circuit for the call.
+	 * @param callbackExecutor Executor used to deliver failures of rejected calls.
+	 */
+	CircuitBreakerCall(@NonNull final Call<T> delegate, @NonNull final CircuitBreaker breaker, @NonNull final Executor callbackExecutor) {
+		this.delegate = delegate;
+		this.breaker = breaker;
+		this.callbackExecutor = callbackExecutor;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Checks whether the given <var>response</var> should be recorded as failure.
+	 *
+	 * @param response The response to check.
+	 * @return {@code True} if the response has server error status code, {@code false} otherwise.
+	 */
+	static boolean isFailure(final Response<?> response) {
+		return response.code() >= 500;
+	}
+
+	/**
+	 */
+	@Override public Response<T> execute() throws IOException {
+		final CircuitBreaker.Circuit circuit = breaker.circuitFor(ServiceObject.NO_SERVICE, delegate.request());
+		final long startTime = CircuitBreaker.now();
+		if (!circuit.tryAcquire(startTime)) {
+			throw circuit.openFailure();
+		}
+		final Response<T> response;
+		try {
+			response = delegate.execute();
+		} catch (IOException | RuntimeException e) {
+			recordFailure(circuit, startTime);
+			throw e;
+		}
+		final long now = CircuitBreaker.now();
+		circuit.record(isFailure(response), now - startTime, now);
+		return response;
+	}
+
+	/**
+	 * Records failure of this call for the given <var>circuit</var> or releases permission acquired
+	 * for this call if it has been canceled.
+	 *
+	 * @param circuit   The circuit for which to record failure.
+	 * @param startTime Time in milliseconds at which has been this call started.
+	 */
+	void recordFailure(final CircuitBreaker.Circuit circuit, final long startTime) {
+		if (delegate.isCanceled()) {
+			circuit.release();
+		} else {
+			final long now = CircuitBreaker.now();
+			circuit.record(true, now - startTime, now);
+		}
+	}
+
+	/**
+	 */
+	@Override public void enqueue(@NonNull final Callback<T> callback) {
+		final CircuitBreaker.Circuit circuit = breaker.circuitFor(Callbacks.serviceIdOf(callback), delegate.request());
+		final long startTime = CircuitBreaker.now();
+		if (circuit.tryAcquire(startTime)) {
+			this.delegate.enqueue(new CircuitCallback(circuit, startTime, callback));
+			return;
+		}
+		this.callbackExecutor.execute(new Runnable() {
+
+			/**
+			 */
+			@Override public void run() {
+				callback.onFailure(CircuitBreakerCall.this, circuit.openFailure());
+			}
+		});
+	}
+
+	/**
+	 */
+	@Override public boolean isExecuted() {
+		return delegate.isExecuted();
+	}
+
+	/**
+	 */
+	@Override public void cancel() {
+		this.delegate.cancel();
+	}
+
+	/**
+	 */
+	@Override public boolean isCanceled() {
+		return delegate.isCanceled();
+	}
+
+	/**
+	 */
+	@Override public Request request() {
+		return delegate.request();
+	}
+
+	/**
+	 */
+	@SuppressWarnings("CloneDoesntCallSuperClone")
+	@Override public Call<T> clone() {
+		return new CircuitBreakerCall<>(delegate.clone(), breaker, callbackExecutor);
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * A {@link Callback} implementation which records outcome of the call for its circuit and forwards
+	 * the received response or failure to the original callback.
+	 */
+	private final class CircuitCallback implements Callback<T>, Callbacks.Wrapper {
+
+		/**
+		 * Circuit for which to record outcome.
+		 */
+		private final CircuitBreaker.Circuit circuit;
+
+		/**
+		 * Time in milliseconds at which has been the call started.
+		 */
+		private final long startTime;
+
+		/**
+		 * Original callback to which to forward received response or failure.
+		 */
+		private final Callback<T> callback;
+
+		/**
+		 * Creates a new instance of CircuitCallback with the specified <var>circuit</var> and
+		 * <var>callback</var>.
+		 *
+		 * @param circuit   The circuit for which to record outcome.
+		 * @param startTime Time in milliseconds at which has been the call started.
+		 * @param callback  The callback to which to forward received response or failure.
+		 */
+		CircuitCallback(final CircuitBreaker.Circuit circuit, final long startTime, final Callback<T> callback) {
+			this.circuit = circuit;
+			this.startTime = startTime;
+			this.callback = callback;
+		}
+
+		/**
+		 */
+		@Override @NonNull public Callback<?> unwrap() {
+			return callback;
+		}
+
+		/**
+		 */
+		@Override public void onResponse(@NonNull final Call<T> call, @NonNull final Response<T> response) {
+			final long now = CircuitBreaker.now();
+			circuit.record(isFailure(response), now - startTime, now);
+			callback.onResponse(CircuitBreakerCall.this, response);
+		}
+
+		/**
+		 */
+		@Override public void onFailure(@NonNull final Call<T> call, @NonNull final Throwable failure) {
+			recordFailure(circuit, startTime);
+			callback.onFailure(CircuitBreakerCall.this, failure);
+		}
+	}
+}
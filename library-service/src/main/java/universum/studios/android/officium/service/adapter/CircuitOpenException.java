@@ -0,0 +1,69 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import androidx.annotation.NonNull;
+import universum.studios.android.officium.service.ServiceError;
+import universum.studios.android.officium.service.ServiceFailure;
+
+/**
+ * A {@link ServiceFailure} with which fail calls rejected by {@link CircuitBreaker} because circuit
+ * for theirs service or host is open. Such calls never reach the network and are never retried.
+ * <p>
+ * Each circuit has a single pre-allocated instance of this failure reported for all calls rejected
+ * by that circuit. Errors with this failure are of {@link ServiceError#KIND_CIRCUIT_OPEN} kind.
+ * <p>
+ * When received via {@link universum.studios.android.officium.service.ServiceCallback ServiceCallback},
+ * this failure is available as failure of the dispatched
+ * {@link universum.studios.android.officium.service.ServiceError ServiceError}.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class CircuitOpenException extends ServiceFailure {
+
+	/**
+	 * Serial version UID of this exception.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Circuit which has rejected the call.
+	 */
+	private final transient CircuitBreaker.Circuit circuit;
+
+	/**
+	 * Creates a new instance of CircuitOpenException for the specified <var>circuit</var>.
+	 *
+	 * @param circuit The circuit which has rejected the call.
+	 */
+	CircuitOpenException(@NonNull final CircuitBreaker.Circuit circuit) {
+		super("Circuit is open for " + (circuit.getHost() == null ? "service(" + circuit.getServiceId() + ")" : "host(" + circuit.getHost() + ")") + ".", ServiceError.KIND_CIRCUIT_OPEN);
+		this.circuit = circuit;
+	}
+
+	/**
+	 * Returns the circuit which has rejected the call.
+	 *
+	 * @return The open circuit.
+	 */
+	@NonNull public CircuitBreaker.Circuit getCircuit() {
+		return circuit;
+	}
+}
@@ -0,0 +1,276 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import java.io.IOException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * An {@link Interceptor} implementation which adds validators of bodies cached in a {@link ResponseCache}
+ * to theirs requests, so the server may respond with {@code 304 Not Modified} instead of sending
+ * the same content again.
+ * <p>
+ * Only requests sent by {@link CachingCall} in order to revalidate a cached body, marked via
+ * {@link ResponseCache#markRevalidation(Request)}, are modified and theirs mark is removed. Other
+ * requests as well as requests which already specify any conditional header are left untouched.
+ * <p>
+ * Bodies of responses to idempotent requests which do not specify theirs content length are
+ * measured while being read and the count of bytes read is recorded via
+ * {@link ResponseCache#recordBodySize(Request, long)}, so the cache may limit its size by the
+ * actual size of such bodies.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ * @see ResponseCache#interceptor()
+ */
+final class ConditionalRequestInterceptor implements Interceptor {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "ConditionalRequestInterceptor";
+
+	/**
+	 * Name of the request header carrying entity tag of the cached body.
+	 */
+	static final String IF_NONE_MATCH = "If-None-Match";
+
+	/**
+	 * Name of the request header carrying last modification date of the cached body.
+	 */
+	static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+
+	/**
+	 * Name of the response header carrying entity tag of the body.
+	 */
+	static final String ETAG = "ETag";
+
+	/**
+	 * Name of the response header carrying last modification date of the body.
+	 */
+	static final String LAST_MODIFIED = "Last-Modified";
+
+	/**
+	 * Http status code of a response confirming that the cached body has not been modified.
+	 */
+	static final int NOT_MODIFIED = 304;
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Cache from which to obtain validators of cached bodies.
+	 */
+	private final ResponseCache cache;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of ConditionalRequestInterceptor for the specified <var>cache</var>.
+	 *
+	 * @param cache The cache from which to obtain validators of cached bodies.
+	 */
+	ConditionalRequestInterceptor(@NonNull final ResponseCache cache) {
+		this.cache = cache;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 */
+	@Override public Response intercept(@NonNull final Chain chain) throws IOException {
+		final Request request = chain.request();
+		if (!Requests.isIdempotent(request)) {
+			cache.consumeRevalidation(request);
+			return chain.proceed(request);
+		}
+		return measureBody(chain.proceed(prepareRequest(request)));
+	}
+
+	/**
+	 * Prepares the given <var>request</var> to be sent by adding validators of the body cached for
+	 * it, if the request has been marked as revalidation request.
+	 *
+	 * @param request The idempotent request to be prepared.
+	 * @return The request to be sent.
+	 */
+	private Request prepareRequest(final Request request) {
+		if (!cache.consumeRevalidation(request) || request.header(IF_NONE_MATCH) != null || request.header(IF_MODIFIED_SINCE) != null) {
+			return request;
+		}
+		final ResponseCache.Entry entry = cache.getValidated(Requests.createKey(request));
+		if (entry == null) {
+			return request;
+		}
+		final Request.Builder builder = request.newBuilder();
+		if (entry.eTag != null) {
+			builder.header(IF_NONE_MATCH, entry.eTag);
+		}
+		if (entry.lastModified != null) {
+			builder.header(IF_MODIFIED_SINCE, entry.lastModified);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Wraps body of the given <var>response</var> into a body which records its size into the cache
+	 * once read, if the response does not specify its content length.
+	 *
+	 * @param response The response of which body to measure.
+	 * @return The given response or its copy with measured body.
+	 */
+	private Response measureBody(final Response response) {
+		final ResponseBody body = response.body();
+		if (body == null || body.contentLength() >= 0) {
+			return response;
+		}
+		return response.newBuilder().body(new MeasuredBody(cache, response.request(), body)).build();
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * A {@link ResponseBody} implementation which counts bytes read from its delegate and records
+	 * the count into the cache when the body is exhausted or closed.
+	 */
+	private static final class MeasuredBody extends ResponseBody {
+
+		/**
+		 * Cache into which to record the size of body.
+		 */
+		final ResponseCache cache;
+
+		/**
+		 * Request for which has been the body received.
+		 */
+		final Request request;
+
+		/**
+		 * Body of which bytes to count.
+		 */
+		final ResponseBody delegate;
+
+		/**
+		 * Source counting bytes read from the delegate's source.
+		 */
+		private final BufferedSource source;
+
+		/**
+		 * Count of bytes read so far.
+		 */
+		long bytesRead;
+
+		/**
+		 * Boolean flag indicating whether the size of body has been already recorded.
+		 */
+		boolean recorded;
+
+		/**
+		 * Creates a new instance of MeasuredBody for the specified <var>delegate</var>.
+		 *
+		 * @param cache    The cache into which to record the size of body.
+		 * @param request  The request for which has been the body received.
+		 * @param delegate The body of which bytes to count.
+		 */
+		MeasuredBody(final ResponseCache cache, final Request request, final ResponseBody delegate) {
+			this.cache = cache;
+			this.request = request;
+			this.delegate = delegate;
+			this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+
+				/**
+				 */
+				@Override public long read(@NonNull final Buffer sink, final long byteCount) throws IOException {
+					final long read = super.read(sink, byteCount);
+					if (read == -1) {
+						record();
+					} else {
+						bytesRead += read;
+					}
+					return read;
+				}
+
+				/**
+				 */
+				@Override public void close() throws IOException {
+					record();
+					super.close();
+				}
+			});
+		}
+
+		/**
+		 * Records count of bytes read so far into the cache, if not recorded yet.
+		 */
+		void record() {
+			if (!recorded) {
+				this.recorded = true;
+				cache.recordBodySize(request, bytesRead);
+			}
+		}
+
+		/**
+		 */
+		@Override @Nullable public MediaType contentType() {
+			return delegate.contentType();
+		}
+
+		/**
+		 */
+		@Override public long contentLength() {
+			return -1;
+		}
+
+		/**
+		 */
+		@Override @NonNull public BufferedSource source() {
+			return source;
+		}
+	}
+}
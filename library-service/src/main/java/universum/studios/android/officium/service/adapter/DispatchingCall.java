@@ -0,0 +1,191 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * A {@link Call} implementation which delivers responses and failures of the original call to the
+ * enqueued callback via the specified executor, like Retrofit does for its default calls via its
+ * callback executor. This is the outermost call created by {@link ServiceCallAdapter} if a dispatch
+ * executor has been specified (see {@link ServiceCallAdapterFactory.Builder#dispatchExecutor(Executor)}),
+ * so all results, received from the network or not, are delivered on the same executor.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+final class DispatchingCall<T> implements Call<T> {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "DispatchingCall";
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Original call to which this call delegates.
+	 */
+	private final Call<T> delegate;
+
+	/**
+	 * Executor via which to deliver results to the enqueued callbacks.
+	 */
+	private final Executor callbackExecutor;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of DispatchingCall for the specified <var>delegate</var>.
+	 *
+	 * @param delegate         The call to which should the new call delegate.
+	 * @param callbackExecutor The executor via which to deliver results.
+	 */
+	DispatchingCall(@NonNull final Call<T> delegate, @NonNull final Executor callbackExecutor) {
+		this.delegate = delegate;
+		this.callbackExecutor = callbackExecutor;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 */
+	@Override public Response<T> execute() throws IOException {
+		return delegate.execute();
+	}
+
+	/**
+	 */
+	@Override public void enqueue(@NonNull final Callback<T> callback) {
+		this.delegate.enqueue(new DispatchingCallback(callback));
+	}
+
+	/**
+	 */
+	@Override public boolean isExecuted() {
+		return delegate.isExecuted();
+	}
+
+	/**
+	 */
+	@Override public void cancel() {
+		this.delegate.cancel();
+	}
+
+	/**
+	 */
+	@Override public boolean isCanceled() {
+		return delegate.isCanceled();
+	}
+
+	/**
+	 */
+	@Override public Request request() {
+		return delegate.request();
+	}
+
+	/**
+	 */
+	@SuppressWarnings("CloneDoesntCallSuperClone")
+	@Override public Call<T> clone() {
+		return new DispatchingCall<>(delegate.clone(), callbackExecutor);
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * A {@link Callback} implementation which forwards received response or failure to the original
+	 * callback via the callback executor.
+	 */
+	private final class DispatchingCallback implements Callback<T>, Callbacks.Wrapper {
+
+		/**
+		 * Original callback to which to forward received response or failure.
+		 */
+		private final Callback<T> callback;
+
+		/**
+		 * Creates a new instance of DispatchingCallback for the given <var>callback</var>.
+		 *
+		 * @param callback The callback to which to forward received response or failure.
+		 */
+		DispatchingCallback(final Callback<T> callback) {
+			this.callback = callback;
+		}
+
+		/**
+		 */
+		@Override @NonNull public Callback<?> unwrap() {
+			return callback;
+		}
+
+		/**
+		 */
+		@Override public void onResponse(@NonNull final Call<T> call, @NonNull final Response<T> response) {
+			callbackExecutor.execute(new Runnable() {
+
+				/**
+				 */
+				@Override public void run() {
+					callback.onResponse(DispatchingCall.this, response);
+				}
+			});
+		}
+
+		/**
+		 */
+		@Override public void onFailure(@NonNull final Call<T> call, @NonNull final Throwable failure) {
+			callbackExecutor.execute(new Runnable() {
+
+				/**
+				 */
+				@Override public void run() {
+					callback.onFailure(DispatchingCall.this, failure);
+				}
+			});
+		}
+	}
+}
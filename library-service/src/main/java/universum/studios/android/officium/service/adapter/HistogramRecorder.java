@@ -0,0 +1,183 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A lock-free recorder of durations which counts recorded values in <b>log-linear</b> buckets, that
+ * is, each power of two range of values is split into {@link #SUB_BUCKETS} buckets of equal width,
+ * so percentiles computed from the recorded values have relative error at most {@code 12.5%}.
+ * <p>
+ * Durations are recorded in microseconds. Durations longer than {@link #MAX_VALUE} are counted in
+ * the last bucket.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+final class HistogramRecorder {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "HistogramRecorder";
+
+	/**
+	 * Count of bits used to index buckets within a single power of two range.
+	 */
+	private static final int SUB_BUCKET_BITS = 3;
+
+	/**
+	 * Count of buckets within a single power of two range.
+	 */
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Exponent of the highest power of two range of recorded values.
+	 */
+	private static final int MAX_EXPONENT = 40;
+
+	/**
+	 * Maximum value in microseconds (about 12 days) distinguished by the recorder.
+	 */
+	static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+	/**
+	 * Count of all buckets.
+	 */
+	static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Counts of recorded values for each bucket.
+	 */
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * Sum of all recorded values.
+	 */
+	private final AtomicLong total = new AtomicLong();
+
+	/**
+	 * Maximum recorded value.
+	 */
+	private final AtomicLong max = new AtomicLong();
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Returns index of bucket for the specified <var>value</var>.
+	 *
+	 * @param value The value of which bucket index to return.
+	 * @return Bucket index from the range {@code [0, BUCKETS)}.
+	 */
+	static int bucketIndexOf(final long value) {
+		if (value < SUB_BUCKETS) {
+			return value < 0 ? 0 : (int) value;
+		}
+		final long clamped = Math.min(value, MAX_VALUE);
+		final int exponent = 63 - Long.numberOfLeadingZeros(clamped);
+		final int subBucket = (int) (clamped >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Returns the highest value counted in bucket at the specified <var>index</var>.
+	 *
+	 * @param index Index of the desired bucket.
+	 * @return Upper bound of the bucket.
+	 */
+	static long bucketUpperBoundOf(final int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		final int shift = index / SUB_BUCKETS - 1;
+		final long subBucket = index % SUB_BUCKETS;
+		return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+	}
+
+	/**
+	 * Records the specified <var>value</var>.
+	 *
+	 * @param value The value in microseconds to be recorded.
+	 */
+	void record(final long value) {
+		final long recorded = Math.max(value, 0);
+		counts.incrementAndGet(bucketIndexOf(recorded));
+		total.addAndGet(recorded);
+		for (;;) {
+			final long current = max.get();
+			if (recorded <= current || max.compareAndSet(current, recorded)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Resets all recorded values.
+	 */
+	void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		total.set(0);
+		max.set(0);
+	}
+
+	/**
+	 * Creates a snapshot of values currently recorded by this recorder.
+	 *
+	 * @return Histogram snapshot.
+	 */
+	@NonNull ServiceMetrics.Histogram snapshot() {
+		final long[] bucketCounts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			bucketCounts[i] = counts.get(i);
+		}
+		return new ServiceMetrics.Histogram(bucketCounts, total.get(), max.get());
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+}
@@ -0,0 +1,294 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import universum.studios.android.officium.service.ServiceObject;
+
+/**
+ * A {@link Call} implementation which records {@link ServiceMetrics} of the original call for the
+ * service to which is associated the enqueued callback. Synchronous execution via {@link #execute()}
+ * is recorded for {@link ServiceObject#NO_SERVICE}.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+final class MetricsCall<T> implements Call<T> {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "MetricsCall";
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Original call to which this call delegates.
+	 */
+	private final Call<T> delegate;
+
+	/**
+	 * Metrics to which to record the call.
+	 */
+	private final ServiceMetrics metrics;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of MetricsCall for the specified <var>delegate</var>.
+	 *
+	 * @param delegate The call to which should the new call delegate.
+	 * @param metrics  The metrics to which to record the call.
+	 */
+	MetricsCall(@NonNull final Call<T> delegate, @NonNull final ServiceMetrics metrics) {
+		this.delegate = delegate;
+		this.metrics = metrics;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Records the specified <var>response</var> into the given <var>recorder</var>.
+	 *
+	 * @param recorder  The recorder to which to record the response.
+	 * @param request   The request for which has been the response received.
+	 * @param response  The received response.
+	 * @param startTime Time in nanoseconds at which has been the call started.
+	 */
+	static void recordResponse(final ServiceMetrics.Recorder recorder, final Request request, final Response<?> response, final long startTime) {
+		recorder.latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime));
+		(response.isSuccessful() ? recorder.successes : recorder.errors).incrementAndGet();
+		recordRequestBytes(recorder, request);
+		final okhttp3.Response rawResponse = response.raw();
+		final ResponseBody body = rawResponse.body();
+		if (body != null && body.contentLength() > 0) {
+			recorder.responseBytes.addAndGet(body.contentLength());
+		}
+		final long receivedAt = rawResponse.receivedResponseAtMillis();
+		if (receivedAt > 0) {
+			final long conversionTime = System.currentTimeMillis() - receivedAt;
+			if (conversionTime >= 0) {
+				recorder.conversion.record(TimeUnit.MILLISECONDS.toMicros(conversionTime));
+			}
+		}
+	}
+
+	/**
+	 * Records the specified <var>failure</var> into the given <var>recorder</var>.
+	 *
+	 * @param recorder  The recorder to which to record the failure.
+	 * @param request   The request which has failed.
+	 * @param startTime Time in nanoseconds at which has been the call started.
+	 */
+	static void recordFailure(final ServiceMetrics.Recorder recorder, final Request request, final long startTime) {
+		recorder.latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime));
+		recorder.failures.incrementAndGet();
+		recordRequestBytes(recorder, request);
+	}
+
+	/**
+	 * Records content length of body of the specified <var>request</var>, if it is known.
+	 *
+	 * @param recorder The recorder to which to record the bytes.
+	 * @param request  The request of which bytes to record.
+	 */
+	private static void recordRequestBytes(final ServiceMetrics.Recorder recorder, final Request request) {
+		final RequestBody body = request.body();
+		if (body != null) {
+			try {
+				final long contentLength = body.contentLength();
+				if (contentLength > 0) {
+					recorder.requestBytes.addAndGet(contentLength);
+				}
+			} catch (IOException e) {
+				// Content length is not known, so there is nothing to record.
+			}
+		}
+	}
+
+	/**
+	 */
+	@Override public Response<T> execute() throws IOException {
+		if (!metrics.isEnabled()) {
+			return delegate.execute();
+		}
+		final ServiceMetrics.Recorder recorder = metrics.recorder(ServiceObject.NO_SERVICE);
+		final long startTime = System.nanoTime();
+		final Response<T> response;
+		try {
+			response = delegate.execute();
+		} catch (IOException | RuntimeException e) {
+			recordFailure(recorder, delegate.request(), startTime);
+			throw e;
+		}
+		recordResponse(recorder, delegate.request(), response, startTime);
+		return response;
+	}
+
+	/**
+	 */
+	@Override public void enqueue(@NonNull final Callback<T> callback) {
+		if (metrics.isEnabled()) {
+			this.delegate.enqueue(new MetricsCallback(metrics.recorder(Callbacks.serviceIdOf(callback)), callback));
+		} else {
+			this.delegate.enqueue(callback);
+		}
+	}
+
+	/**
+	 */
+	@Override public boolean isExecuted() {
+		return delegate.isExecuted();
+	}
+
+	/**
+	 */
+	@Override public void cancel() {
+		this.delegate.cancel();
+	}
+
+	/**
+	 */
+	@Override public boolean isCanceled() {
+		return delegate.isCanceled();
+	}
+
+	/**
+	 */
+	@Override public Request request() {
+		return delegate.request();
+	}
+
+	/**
+	 */
+	@SuppressWarnings("CloneDoesntCallSuperClone")
+	@Override public Call<T> clone() {
+		return new MetricsCall<>(delegate.clone(), metrics);
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * A {@link Callback} implementation which records the received response or failure and forwards
+	 * it to the original callback.
+	 */
+	private final class MetricsCallback implements Callback<T>, Callbacks.Wrapper {
+
+		/**
+		 * Recorder to which to record the response or failure.
+		 */
+		private final ServiceMetrics.Recorder recorder;
+
+		/**
+		 * Original callback to which to forward received response or failure.
+		 */
+		private final Callback<T> callback;
+
+		/**
+		 * Time in nanoseconds at which has been the call enqueued.
+		 */
+		private final long startTime;
+
+		/**
+		 * Flag indicating whether a response or failure has been already recorded. The original
+		 * callback may be notified multiple times, like by a stale-while-revalidate cache, but the
+		 * call is recorded only once.
+		 */
+		private boolean recorded;
+
+		/**
+		 * Creates a new instance of MetricsCallback with the specified <var>recorder</var> and
+		 * <var>callback</var>.
+		 *
+		 * @param recorder The recorder to which to record the response or failure.
+		 * @param callback The callback to which to forward received response or failure.
+		 */
+		MetricsCallback(final ServiceMetrics.Recorder recorder, final Callback<T> callback) {
+			this.recorder = recorder;
+			this.callback = callback;
+			this.startTime = System.nanoTime();
+		}
+
+		/**
+		 */
+		@Override @NonNull public Callback<?> unwrap() {
+			return callback;
+		}
+
+		/**
+		 */
+		@Override public void onResponse(@NonNull final Call<T> call, @NonNull final Response<T> response) {
+			if (markRecorded()) {
+				recordResponse(recorder, delegate.request(), response, startTime);
+			}
+			callback.onResponse(MetricsCall.this, response);
+		}
+
+		/**
+		 */
+		@Override public void onFailure(@NonNull final Call<T> call, @NonNull final Throwable failure) {
+			if (markRecorded()) {
+				recordFailure(recorder, delegate.request(), startTime);
+			}
+			callback.onFailure(MetricsCall.this, failure);
+		}
+
+		/**
+		 * Marks that a response or failure has been recorded.
+		 *
+		 * @return {@code True} if nothing has been recorded before, {@code false} otherwise.
+		 */
+		private synchronized boolean markRecorded() {
+			if (recorded) {
+				return false;
+			}
+			this.recorded = true;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,235 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import java.io.IOException;
+
+import androidx.annotation.NonNull;
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import universum.studios.android.officium.service.ServiceFailure;
+
+/**
+ * A {@link Call} implementation which enqueues the original call via {@link PriorityDispatcher}
+ * with priority of the enqueued callback. Synchronous execution via {@link #execute()} is not
+ * scheduled by the dispatcher.
+ * <p>
+ * If this call is canceled while it waits in the queue of the dispatcher, the callback is notified
+ * about failure with {@link ServiceFailure#CANCELED} right away.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+final class PriorityCall<T> implements Call<T> {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "PriorityCall";
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Original call to which this call delegates.
+	 */
+	private final Call<T> delegate;
+
+	/**
+	 * Dispatcher via which to enqueue the original call.
+	 */
+	private final PriorityDispatcher dispatcher;
+
+	/**
+	 * Task of this call enqueued in the dispatcher. May be {@code null} if this call has not been
+	 * enqueued yet.
+	 */
+	private volatile PriorityTask task;
+
+	/**
+	 * Flag indicating whether this call has been canceled.
+	 */
+	private volatile boolean canceled;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of PriorityCall for the specified <var>delegate</var>.
+	 *
+	 * @param delegate   The call to which should the new call delegate.
+	 * @param dispatcher The dispatcher via which to enqueue the original call.
+	 */
+	PriorityCall(@NonNull final Call<T> delegate, @NonNull final PriorityDispatcher dispatcher) {
+		this.delegate = delegate;
+		this.dispatcher = dispatcher;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 */
+	@Override public Response<T> execute() throws IOException {
+		return delegate.execute();
+	}
+
+	/**
+	 */
+	@Override public void enqueue(@NonNull final Callback<T> callback) {
+		final PriorityTask priorityTask = new PriorityTask(Callbacks.priorityOf(callback), delegate.request().url().host(), callback);
+		this.task = priorityTask;
+		this.dispatcher.enqueue(priorityTask);
+	}
+
+	/**
+	 */
+	@Override public boolean isExecuted() {
+		return task != null || delegate.isExecuted();
+	}
+
+	/**
+	 */
+	@Override public void cancel() {
+		this.canceled = true;
+		final PriorityTask priorityTask = task;
+		if (priorityTask == null) {
+			this.delegate.cancel();
+		} else if (dispatcher.remove(priorityTask)) {
+			priorityTask.callback.onFailure(this, ServiceFailure.CANCELED);
+		} else {
+			priorityTask.current.cancel();
+		}
+	}
+
+	/**
+	 */
+	@Override public boolean isCanceled() {
+		return canceled || delegate.isCanceled();
+	}
+
+	/**
+	 */
+	@Override public Request request() {
+		return delegate.request();
+	}
+
+	/**
+	 */
+	@SuppressWarnings("CloneDoesntCallSuperClone")
+	@Override public Call<T> clone() {
+		return new PriorityCall<>(delegate.clone(), dispatcher);
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * A {@link PriorityDispatcher.Task} implementation which enqueues the original call when
+	 * dispatched and forwards the received response or failure to the original callback.
+	 */
+	private final class PriorityTask extends PriorityDispatcher.Task implements Callback<T>, Callbacks.Wrapper {
+
+		/**
+		 * Original callback to which to forward received response or failure.
+		 */
+		final Callback<T> callback;
+
+		/**
+		 * Call currently performed by this task. Preempted task performs a clone of the original call.
+		 */
+		volatile Call<T> current;
+
+		/**
+		 * Creates a new instance of PriorityTask with the specified <var>priority</var>, <var>host</var>
+		 * and <var>callback</var>.
+		 *
+		 * @param priority Priority of the new task.
+		 * @param host     Host to which the new task performs request.
+		 * @param callback The callback to which to forward received response or failure.
+		 */
+		PriorityTask(final int priority, final String host, final Callback<T> callback) {
+			super(priority, host);
+			this.callback = callback;
+			this.current = delegate;
+		}
+
+		/**
+		 */
+		@Override @NonNull public Callback<?> unwrap() {
+			return callback;
+		}
+
+		/**
+		 */
+		@Override boolean isPreemptible() {
+			return Requests.isRepeatable(delegate.request());
+		}
+
+		/**
+		 */
+		@Override void dispatch() {
+			current.enqueue(this);
+		}
+
+		/**
+		 */
+		@Override void preempt() {
+			current.cancel();
+		}
+
+		/**
+		 */
+		@Override public void onResponse(@NonNull final Call<T> call, @NonNull final Response<T> response) {
+			dispatcher.finished(this, false);
+			callback.onResponse(PriorityCall.this, response);
+		}
+
+		/**
+		 */
+		@Override public void onFailure(@NonNull final Call<T> call, @NonNull final Throwable failure) {
+			if (preempted && !canceled) {
+				this.current = current.clone();
+				this.preempted = false;
+				dispatcher.finished(this, true);
+				return;
+			}
+			dispatcher.finished(this, false);
+			callback.onFailure(PriorityCall.this, failure);
+		}
+	}
+}
@@ -0,0 +1,592 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import androidx.annotation.NonNull;
+import universum.studios.android.officium.service.ServiceCall;
+
+/**
+ * A dispatcher which may be used by calls adapted by {@link ServiceCallAdapterFactory} (see
+ * {@link ServiceCallAdapterFactory.Builder#priorityDispatcher(PriorityDispatcher)}) in order to
+ * perform asynchronous requests in order of theirs priorities instead of the order in which they
+ * have been enqueued.
+ * <p>
+ * Priority of a request is specified via {@link ServiceCall#withPriority(int)}. The dispatcher
+ * holds enqueued requests in its own queue and passes them to the OkHttp dispatcher only while
+ * count of running requests is below the maximum count of requests and the maximum count of requests
+ * per host. These limits should not exceed limits of the OkHttp dispatcher, otherwise requests
+ * would be queued again in its first-in first-out queue. Requests with the same priority are
+ * dispatched in the order in which they have been enqueued.
+ * <p>
+ * Requests with priority lower than {@link ServiceCall#PRIORITY_DEFAULT} are <b>deferred</b> while
+ * they would leave less than the reserved count of requests per host to other requests. If enabled,
+ * such requests may be also <b>preempted</b>, that is, canceled and enqueued again, when a request
+ * with higher priority would otherwise wait for them. Only requests with idempotent method are
+ * preempted.
+ * <p>
+ * Time which requests spend in the queue of the dispatcher is measured for each priority class
+ * and may be obtained via {@link #getQueueWait(int)}.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class PriorityDispatcher {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "PriorityDispatcher";
+
+	/**
+	 * Count of priority classes for which is measured queue wait: low, default and high.
+	 */
+	private static final int PRIORITY_CLASSES = 3;
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Maximum count of requests that may run at the same time.
+	 */
+	private final int maxRequests;
+
+	/**
+	 * Maximum count of requests that may run at the same time for a single host.
+	 */
+	private final int maxRequestsPerHost;
+
+	/**
+	 * Count of requests per host which may not be taken by low priority requests.
+	 */
+	private final int reservedRequestsPerHost;
+
+	/**
+	 * Flag indicating whether low priority requests may be preempted by requests with higher priority.
+	 */
+	private final boolean preemptLowPriority;
+
+	/**
+	 * Queue of waiting tasks ordered by theirs priority and sequence.
+	 */
+	private final TreeSet<Task> queue = new TreeSet<>();
+
+	/**
+	 * List of running tasks.
+	 */
+	private final List<Task> running = new ArrayList<>();
+
+	/**
+	 * Counts of running tasks mapped to theirs hosts.
+	 */
+	private final Map<String, Integer> runningPerHost = new HashMap<>();
+
+	/**
+	 * Sequence used to order tasks with the same priority.
+	 */
+	private long sequence;
+
+	/**
+	 * Counts of dispatched tasks for each priority class.
+	 */
+	private final AtomicLongArray waitCounts = new AtomicLongArray(PRIORITY_CLASSES);
+
+	/**
+	 * Total queue wait in nanoseconds of dispatched tasks for each priority class.
+	 */
+	private final AtomicLongArray waitTotals = new AtomicLongArray(PRIORITY_CLASSES);
+
+	/**
+	 * Maximum queue wait in nanoseconds of dispatched tasks for each priority class.
+	 */
+	private final AtomicLongArray waitMaxima = new AtomicLongArray(PRIORITY_CLASSES);
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of PriorityDispatcher with configuration of the given <var>builder</var>.
+	 *
+	 * @param builder The builder with configuration for the new dispatcher.
+	 */
+	PriorityDispatcher(@NonNull final Builder builder) {
+		this.maxRequests = builder.maxRequests;
+		this.maxRequestsPerHost = builder.maxRequestsPerHost;
+		this.reservedRequestsPerHost = builder.reservedRequestsPerHost;
+		this.preemptLowPriority = builder.preemptLowPriority;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Returns index of priority class for the specified <var>priority</var>.
+	 *
+	 * @param priority The priority of which class to return.
+	 * @return Index of low, default or high priority class.
+	 */
+	private static int priorityClassOf(final int priority) {
+		return Integer.signum(priority - ServiceCall.PRIORITY_DEFAULT) + 1;
+	}
+
+	/**
+	 * Enqueues the given <var>task</var> and dispatches all tasks that may run.
+	 *
+	 * @param task The task to enqueue.
+	 */
+	void enqueue(@NonNull final Task task) {
+		final List<Task> ready;
+		final List<Task> preempted = new ArrayList<>(0);
+		synchronized (this) {
+			task.sequence = sequence++;
+			task.enqueueTime = System.nanoTime();
+			queue.add(task);
+			ready = promote(preempted);
+		}
+		dispatch(ready, preempted);
+	}
+
+	/**
+	 * Removes the given <var>task</var> from the queue, if it is still waiting.
+	 *
+	 * @param task The task to remove.
+	 * @return {@code True} if the task has been removed, {@code false} if it has been already dispatched.
+	 */
+	synchronized boolean remove(@NonNull final Task task) {
+		return queue.remove(task);
+	}
+
+	/**
+	 * Called when the given running <var>task</var> has finished, so other tasks may be dispatched.
+	 *
+	 * @param task   The finished task.
+	 * @param requeue {@code True} to enqueue the task again, as it has been preempted.
+	 */
+	void finished(@NonNull final Task task, final boolean requeue) {
+		final List<Task> ready;
+		final List<Task> preempted = new ArrayList<>(0);
+		synchronized (this) {
+			if (running.remove(task)) {
+				final int count = runningPerHost.get(task.host) - 1;
+				if (count == 0) runningPerHost.remove(task.host);
+				else runningPerHost.put(task.host, count);
+			}
+			if (requeue) {
+				task.enqueueTime = System.nanoTime();
+				queue.add(task);
+			}
+			ready = promote(preempted);
+		}
+		dispatch(ready, preempted);
+	}
+
+	/**
+	 * Moves all tasks which may run from the queue to the running tasks and marks running tasks
+	 * which should be preempted.
+	 *
+	 * @param preempted List to which to add tasks that should be preempted.
+	 * @return List of tasks to be dispatched.
+	 */
+	private List<Task> promote(final List<Task> preempted) {
+		List<Task> ready = Collections.emptyList();
+		final Iterator<Task> iterator = queue.iterator();
+		while (iterator.hasNext() && running.size() < maxRequests) {
+			final Task task = iterator.next();
+			final Integer hostCount = runningPerHost.get(task.host);
+			final int count = hostCount == null ? 0 : hostCount;
+			final int limit = task.priority < ServiceCall.PRIORITY_DEFAULT ? maxRequestsPerHost - reservedRequestsPerHost : maxRequestsPerHost;
+			if (count < limit) {
+				iterator.remove();
+				task.awaitsPreemption = false;
+				running.add(task);
+				runningPerHost.put(task.host, count + 1);
+				if (ready.isEmpty()) ready = new ArrayList<>(2);
+				ready.add(task);
+			} else if (preemptLowPriority && !task.awaitsPreemption && count >= maxRequestsPerHost) {
+				final Task victim = findPreemptible(task);
+				if (victim != null) {
+					victim.preempted = true;
+					task.awaitsPreemption = true;
+					preempted.add(victim);
+				}
+			}
+		}
+		return ready;
+	}
+
+	/**
+	 * Finds a running task for the same host as the given <var>task</var> which may be preempted
+	 * in its favor.
+	 *
+	 * @param task The waiting task.
+	 * @return Task to be preempted or {@code null} if there is no such task.
+	 */
+	private Task findPreemptible(final Task task) {
+		Task victim = null;
+		for (final Task candidate : running) {
+			if (!candidate.preempted &&
+					candidate.priority < ServiceCall.PRIORITY_DEFAULT &&
+					candidate.priority < task.priority &&
+					candidate.isPreemptible() &&
+					candidate.host.equals(task.host) &&
+					(victim == null || candidate.compareTo(victim) > 0)) {
+				victim = candidate;
+			}
+		}
+		return victim;
+	}
+
+	/**
+	 * Dispatches the given <var>ready</var> tasks and preempts the given <var>preempted</var> tasks.
+	 *
+	 * @param ready     Tasks to be dispatched.
+	 * @param preempted Tasks to be preempted.
+	 */
+	private void dispatch(final List<Task> ready, final List<Task> preempted) {
+		for (final Task task : preempted) {
+			task.preempt();
+		}
+		final long now = System.nanoTime();
+		for (final Task task : ready) {
+			recordQueueWait(task.priority, now - task.enqueueTime);
+			task.dispatch();
+		}
+	}
+
+	/**
+	 * Records the specified queue <var>wait</var> of a task with the specified <var>priority</var>.
+	 *
+	 * @param priority Priority of the task.
+	 * @param wait     Time in nanoseconds which the task has spent in the queue.
+	 */
+	private void recordQueueWait(final int priority, final long wait) {
+		final int index = priorityClassOf(priority);
+		waitCounts.incrementAndGet(index);
+		waitTotals.addAndGet(index, wait);
+		for (;;) {
+			final long max = waitMaxima.get(index);
+			if (wait <= max || waitMaxima.compareAndSet(index, max, wait)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Returns the count of requests currently waiting in the queue of this dispatcher.
+	 *
+	 * @return Count of queued requests.
+	 */
+	public synchronized int getQueuedCallCount() {
+		return queue.size();
+	}
+
+	/**
+	 * Returns the count of requests dispatched by this dispatcher which are currently running.
+	 *
+	 * @return Count of running requests.
+	 */
+	public synchronized int getRunningCallCount() {
+		return running.size();
+	}
+
+	/**
+	 * Returns snapshot of queue wait measured for requests within priority class of the specified
+	 * <var>priority</var>, that is, requests with priority lower than, equal to or higher than
+	 * {@link ServiceCall#PRIORITY_DEFAULT}.
+	 *
+	 * @param priority Priority of which class to return queue wait.
+	 * @return Queue wait snapshot.
+	 */
+	@NonNull public QueueWait getQueueWait(final int priority) {
+		final int index = priorityClassOf(priority);
+		return new QueueWait(waitCounts.get(index), waitTotals.get(index), waitMaxima.get(index));
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * Builder that may be used to build instances of {@link PriorityDispatcher}.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public static final class Builder {
+
+		/**
+		 * See {@link PriorityDispatcher#maxRequests}.
+		 */
+		int maxRequests = 64;
+
+		/**
+		 * See {@link PriorityDispatcher#maxRequestsPerHost}.
+		 */
+		int maxRequestsPerHost = 5;
+
+		/**
+		 * See {@link PriorityDispatcher#reservedRequestsPerHost}.
+		 */
+		int reservedRequestsPerHost = 1;
+
+		/**
+		 * See {@link PriorityDispatcher#preemptLowPriority}.
+		 */
+		boolean preemptLowPriority;
+
+		/**
+		 * Specifies a maximum count of requests that may run at the same time.
+		 * <p>
+		 * Default value: {@code 64}, the same as default of OkHttp dispatcher
+		 *
+		 * @param maxRequests The desired maximum count of requests.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder maxRequests(final int maxRequests) {
+			this.maxRequests = maxRequests;
+			return this;
+		}
+
+		/**
+		 * Specifies a maximum count of requests that may run at the same time for a single host.
+		 * <p>
+		 * Default value: {@code 5}, the same as default of OkHttp dispatcher
+		 *
+		 * @param maxRequestsPerHost The desired maximum count of requests per host.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder maxRequestsPerHost(final int maxRequestsPerHost) {
+			this.maxRequestsPerHost = maxRequestsPerHost;
+			return this;
+		}
+
+		/**
+		 * Specifies a count of requests per host which may not be taken by requests with priority
+		 * lower than {@link ServiceCall#PRIORITY_DEFAULT}.
+		 * <p>
+		 * Default value: {@code 1}
+		 *
+		 * @param reservedRequestsPerHost The desired count of reserved requests per host.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder reservedRequestsPerHost(final int reservedRequestsPerHost) {
+			this.reservedRequestsPerHost = reservedRequestsPerHost;
+			return this;
+		}
+
+		/**
+		 * Specifies whether running requests with priority lower than {@link ServiceCall#PRIORITY_DEFAULT}
+		 * may be canceled and enqueued again in favor of waiting requests with higher priority.
+		 * <p>
+		 * Default value: {@code false}
+		 *
+		 * @param enabled {@code True} to enable preemption, {@code false} otherwise.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder preemptLowPriority(final boolean enabled) {
+			this.preemptLowPriority = enabled;
+			return this;
+		}
+
+		/**
+		 * Builds a new instance of PriorityDispatcher from the current data.
+		 *
+		 * @return New instance of PriorityDispatcher.
+		 * @throws IllegalArgumentException If any of the specified values is out of its valid range.
+		 */
+		@NonNull public PriorityDispatcher build() {
+			if (maxRequests <= 0) throw new IllegalArgumentException("Max requests must be positive.");
+			if (maxRequestsPerHost <= 0) throw new IllegalArgumentException("Max requests per host must be positive.");
+			if (reservedRequestsPerHost < 0 || reservedRequestsPerHost >= maxRequestsPerHost) {
+				throw new IllegalArgumentException("Reserved requests per host must be from the range [0, maxRequestsPerHost).");
+			}
+			return new PriorityDispatcher(this);
+		}
+	}
+
+	/**
+	 * Immutable snapshot of queue wait measured for a single priority class.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public static final class QueueWait {
+
+		/**
+		 * Count of dispatched requests.
+		 */
+		private final long count;
+
+		/**
+		 * Total queue wait in nanoseconds of dispatched requests.
+		 */
+		private final long total;
+
+		/**
+		 * Maximum queue wait in nanoseconds of a single dispatched request.
+		 */
+		private final long max;
+
+		/**
+		 * Creates a new instance of QueueWait with the specified data.
+		 *
+		 * @param count Count of dispatched requests.
+		 * @param total Total queue wait in nanoseconds.
+		 * @param max   Maximum queue wait in nanoseconds.
+		 */
+		QueueWait(final long count, final long total, final long max) {
+			this.count = count;
+			this.total = total;
+			this.max = max;
+		}
+
+		/**
+		 * Returns the count of requests dispatched from the queue.
+		 *
+		 * @return Count of dispatched requests.
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the average time which the dispatched requests have spent in the queue.
+		 *
+		 * @param unit The desired time unit.
+		 * @return Average queue wait in the requested unit or {@code 0} if there were no requests.
+		 */
+		public long getAverage(@NonNull final TimeUnit unit) {
+			return count == 0 ? 0 : unit.convert(total / count, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Returns the maximum time which a single dispatched request has spent in the queue.
+		 *
+		 * @param unit The desired time unit.
+		 * @return Maximum queue wait in the requested unit.
+		 */
+		public long getMax(@NonNull final TimeUnit unit) {
+			return unit.convert(max, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 */
+		@Override public String toString() {
+			return "QueueWait{count: " + count + ", averageMillis: " + getAverage(TimeUnit.MILLISECONDS) + ", maxMillis: " + getMax(TimeUnit.MILLISECONDS) + "}";
+		}
+	}
+
+	/**
+	 * Base class for tasks dispatched by {@link PriorityDispatcher}.
+	 */
+	static abstract class Task implements Comparable<Task> {
+
+		/**
+		 * Priority of this task.
+		 */
+		final int priority;
+
+		/**
+		 * Host to which is this task performing request.
+		 */
+		final String host;
+
+		/**
+		 * Sequence of this task used to order tasks with the same priority.
+		 */
+		long sequence;
+
+		/**
+		 * Time in nanoseconds at which has been this task enqueued.
+		 */
+		long enqueueTime;
+
+		/**
+		 * Flag indicating whether this task has been preempted.
+		 */
+		volatile boolean preempted;
+
+		/**
+		 * Flag indicating whether a running task has been preempted in favor of this task.
+		 */
+		boolean awaitsPreemption;
+
+		/**
+		 * Creates a new instance of Task with the specified <var>priority</var> and <var>host</var>.
+		 *
+		 * @param priority Priority of the new task.
+		 * @param host     Host to which the new task performs request.
+		 */
+		Task(final int priority, @NonNull final String host) {
+			this.priority = priority;
+			this.host = host;
+		}
+
+		/**
+		 * Checks whether this task may be preempted.
+		 *
+		 * @return {@code True} if this task may be canceled and performed again, {@code false} otherwise.
+		 */
+		abstract boolean isPreemptible();
+
+		/**
+		 * Performs request of this task.
+		 */
+		abstract void dispatch();
+
+		/**
+		 * Cancels request of this task in favor of a task with higher priority. This task should
+		 * report itself as finished with request to be enqueued again.
+		 */
+		abstract void preempt();
+
+		/**
+		 */
+		@Override public int compareTo(@NonNull final Task other) {
+			if (priority != other.priority) {
+				return priority > other.priority ? -1 : 1;
+			}
+			return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import universum.studios.android.officium.service.ServiceError;
+import universum.studios.android.officium.service.ServiceFailure;
+
+/**
+ * A {@link ServiceFailure} with which fail calls rejected by {@link RateLimiter} because they would
+ * exceed its rate. Such calls never reach the network and are never retried.
+ * <p>
+ * This failure does not capture stack trace, so rejections are cheap even under heavy load. Errors
+ * with this failure are of {@link ServiceError#KIND_RATE_LIMITED} kind.
+ * <p>
+ * When received via {@link universum.studios.android.officium.service.ServiceCallback ServiceCallback},
+ * this failure is available as failure of the dispatched
+ * {@link universum.studios.android.officium.service.ServiceError ServiceError}.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class RateLimitedException extends ServiceFailure {
+
+	/**
+	 * Serial version UID of this exception.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Delay in nanoseconds after which should be the rejected call attempted again.
+	 */
+	private final long delay;
+
+	/**
+	 * Creates a new instance of RateLimitedException with the specified <var>delay</var>.
+	 *
+	 * @param delay Delay in nanoseconds after which should be the rejected call attempted again.
+	 */
+	RateLimitedException(final long delay) {
+		super("Rate limit exceeded.", ServiceError.KIND_RATE_LIMITED);
+		this.delay = delay;
+	}
+
+	/**
+	 * Returns the delay after which should be the rejected call attempted again, as estimated at
+	 * the time of rejection.
+	 *
+	 * @param unit The desired time unit of the delay.
+	 * @return Delay in the requested unit.
+	 */
+	public long getDelay(@NonNull final TimeUnit unit) {
+		return unit.convert(delay, TimeUnit.NANOSECONDS);
+	}
+}
@@ -0,0 +1,354 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import okhttp3.Headers;
+
+/**
+ * A <b>token bucket</b> rate limiter which may be used by calls adapted by {@link ServiceCallAdapterFactory}
+ * (see {@link ServiceCallAdapterFactory.Builder#rateLimiter(RateLimiter)}) in order to not exceed
+ * rate quotas of a backend.
+ * <p>
+ * The bucket is refilled with the specified count of permits per second and may hold at most
+ * the specified <b>burst</b> of permits. Each request takes one permit. Requests for which there
+ * is no permit available are by default delayed, without blocking the caller, until a permit
+ * becomes available, unless such delay would exceed the maximum delay. Requests which cannot be
+ * delayed, or all excess requests if the limiter rejects excess, fail immediately with
+ * {@link RateLimitedException}.
+ * <p>
+ * When a request receives response with <b>429 Too Many Requests</b> status code and a
+ * <b>Retry-After</b> header, no permits are given out until the specified time.
+ * <p>
+ * The limiter is lock-free and may be shared by calls of multiple services, so they share the same
+ * quota. Its current state may be inspected via {@link #getAvailablePermits()}, {@link #getDelay(TimeUnit)}
+ * and {@link #getDelayedCalls()}.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class RateLimiter {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "RateLimiter";
+
+	/**
+	 * Status code of response to a request that has exceeded rate quota.
+	 */
+	static final int TOO_MANY_REQUESTS = 429;
+
+	/**
+	 * Name of header specifying how long should a client wait before its next request.
+	 */
+	static final String RETRY_AFTER = "Retry-After";
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Maximum count of permits that may be held by this limiter.
+	 */
+	private final int burst;
+
+	/**
+	 * Interval in nanoseconds in which is this limiter refilled with a single permit.
+	 */
+	private final long interval;
+
+	/**
+	 * Duration in nanoseconds for which may be permits given out in advance of theirs refill,
+	 * that is, duration in which is refilled the whole burst except one permit.
+	 */
+	private final long tolerance;
+
+	/**
+	 * Flag indicating whether requests exceeding the rate should be rejected instead of delayed.
+	 */
+	private final boolean rejectExcess;
+
+	/**
+	 * Maximum delay in nanoseconds for which may be a request delayed.
+	 */
+	private final long maxDelay;
+
+	/**
+	 * Time in nanoseconds at which would be given out the next permit if the limiter had no burst.
+	 * The limiter is full whenever this time is in the past.
+	 */
+	private final AtomicLong nextPermitTime;
+
+	/**
+	 * Count of requests currently delayed by this limiter.
+	 */
+	private final AtomicInteger delayedCalls = new AtomicInteger();
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of RateLimiter with configuration of the given <var>builder</var>.
+	 *
+	 * @param builder The builder with configuration for the new limiter.
+	 */
+	RateLimiter(@NonNull final Builder builder) {
+		this.burst = builder.burst;
+		this.interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / builder.permitsPerSecond));
+		this.tolerance = (burst - 1) * interval;
+		this.rejectExcess = builder.rejectExcess;
+		this.maxDelay = builder.maxDelay;
+		this.nextPermitTime = new AtomicLong(now());
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Returns the current time used to measure refill of permits.
+	 *
+	 * @return Current time in nanoseconds.
+	 */
+	static long now() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Parses duration specified by the <b>Retry-After</b> header among the given <var>headers</var>.
+	 *
+	 * @param headers The headers to parse.
+	 * @return Duration in nanoseconds or {@code -1} if there is no valid header.
+	 */
+	static long parseRetryAfter(@NonNull final Headers headers) {
+		final String value = headers.get(RETRY_AFTER);
+		if (value == null) {
+			return -1;
+		}
+		final Date date = headers.getDate(RETRY_AFTER);
+		if (date != null) {
+			return TimeUnit.MILLISECONDS.toNanos(Math.max(0, date.getTime() - System.currentTimeMillis()));
+		}
+		try {
+			return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(value.trim())));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Attempts to acquire a single permit.
+	 *
+	 * @param now Current time in nanoseconds.
+	 * @return Delay in nanoseconds after which the permit becomes valid, {@code 0} if it is valid
+	 * immediately or {@code -1} if the request should be rejected.
+	 */
+	long acquire(final long now) {
+		for (;;) {
+			final long current = nextPermitTime.get();
+			final long start = Math.max(current, now);
+			final long delay = Math.max(0, start - now - tolerance);
+			if (delay > 0 && (rejectExcess || delay > maxDelay)) {
+				return -1;
+			}
+			if (nextPermitTime.compareAndSet(current, start + interval)) {
+				return delay;
+			}
+		}
+	}
+
+	/**
+	 * Blocks this limiter, so no permit is given out before the specified <var>duration</var>
+	 * elapses.
+	 *
+	 * @param duration Duration in nanoseconds for which to block.
+	 * @param now      Current time in nanoseconds.
+	 */
+	void block(final long duration, final long now) {
+		final long blockedUntil = now + duration + tolerance;
+		for (;;) {
+			final long current = nextPermitTime.get();
+			if (current >= blockedUntil || nextPermitTime.compareAndSet(current, blockedUntil)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Called when a request delayed by this limiter has been scheduled or has been performed.
+	 *
+	 * @param delayed {@code True} if the request has been delayed, {@code false} if its delay has elapsed.
+	 */
+	void onCallDelayed(final boolean delayed) {
+		if (delayed) delayedCalls.incrementAndGet();
+		else delayedCalls.decrementAndGet();
+	}
+
+	/**
+	 * Returns the count of permits currently available in this limiter.
+	 *
+	 * @return Available permits from the range {@code [0, burst]}.
+	 */
+	public int getAvailablePermits() {
+		final long now = now();
+		final long available = (now + tolerance + interval - Math.max(nextPermitTime.get(), now)) / interval;
+		return (int) Math.max(0, Math.min(burst, available));
+	}
+
+	/**
+	 * Returns the delay for which would be delayed a request made at this time.
+	 *
+	 * @param unit The desired time unit of the delay.
+	 * @return Delay in the requested unit or {@code 0} if there is a permit available.
+	 */
+	public long getDelay(@NonNull final TimeUnit unit) {
+		final long now = now();
+		return unit.convert(Math.max(0, Math.max(nextPermitTime.get(), now) - now - tolerance), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Returns the count of requests currently delayed by this limiter.
+	 *
+	 * @return Count of delayed requests.
+	 */
+	public int getDelayedCalls() {
+		return delayedCalls.get();
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * Builder that may be used to build instances of {@link RateLimiter}.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public static final class Builder {
+
+		/**
+		 * See {@link RateLimiter#interval}.
+		 */
+		double permitsPerSecond = 10;
+
+		/**
+		 * See {@link RateLimiter#burst}.
+		 */
+		int burst = 10;
+
+		/**
+		 * See {@link RateLimiter#rejectExcess}.
+		 */
+		boolean rejectExcess;
+
+		/**
+		 * See {@link RateLimiter#maxDelay}.
+		 */
+		long maxDelay = TimeUnit.SECONDS.toNanos(30);
+
+		/**
+		 * Specifies a count of permits with which is the limiter refilled per second.
+		 * <p>
+		 * Default value: {@code 10}
+		 *
+		 * @param permitsPerSecond The desired rate.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder permitsPerSecond(final double permitsPerSecond) {
+			this.permitsPerSecond = permitsPerSecond;
+			return this;
+		}
+
+		/**
+		 * Specifies a maximum count of permits that may be held by the limiter, that is, a count of
+		 * requests that may be performed at once after a period of inactivity.
+		 * <p>
+		 * Default value: {@code 10}
+		 *
+		 * @param burst The desired burst.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder burst(final int burst) {
+			this.burst = burst;
+			return this;
+		}
+
+		/**
+		 * Specifies whether requests exceeding the rate should be rejected immediately instead of
+		 * being delayed.
+		 * <p>
+		 * Default value: {@code false}
+		 *
+		 * @param enabled {@code True} to reject excess requests, {@code false} to delay them.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder rejectExcess(final boolean enabled) {
+			this.rejectExcess = enabled;
+			return this;
+		}
+
+		/**
+		 * Specifies a maximum delay for which may be a request delayed. Requests that would need to
+		 * be delayed longer are rejected.
+		 * <p>
+		 * Default value: {@code 30 seconds}
+		 *
+		 * @param duration The desired duration.
+		 * @param unit     Time unit of the specified duration.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder maxDelay(final long duration, @NonNull final TimeUnit unit) {
+			this.maxDelay = unit.toNanos(duration);
+			return this;
+		}
+
+		/**
+		 * Builds a new instance of RateLimiter from the current data.
+		 *
+		 * @return New instance of RateLimiter.
+		 * @throws IllegalArgumentException If any of the specified values is out of its valid range.
+		 */
+		@NonNull public RateLimiter build() {
+			if (permitsPerSecond <= 0) throw new IllegalArgumentException("Permits per second must be positive.");
+			if (burst <= 0) throw new IllegalArgumentException("Burst must be positive.");
+			if (maxDelay < 0) throw new IllegalArgumentException("Max delay must not be negative.");
+			return new RateLimiter(this);
+		}
+	}
+}
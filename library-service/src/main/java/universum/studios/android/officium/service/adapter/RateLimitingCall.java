@@ -0,0 +1,358 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import universum.studios.android.officium.service.ServiceFailure;
+import universum.studios.android.officium.service.ServiceObject;
+
+/**
+ * A {@link Call} implementation which performs the original call within rate of {@link RateLimiter}
+ * resolved for the service to which is associated the enqueued callback. Synchronous execution via
+ * {@link #execute()} has no callback from which to resolve the service, so it always uses the default
+ * limiter, regardless of limiters specified for particular services, and blocks the caller while
+ * the call is delayed.
+ * <p>
+ * Delayed calls are scheduled via the specified scheduler. Calls rejected by the limiter fail with
+ * {@link RateLimitedException} delivered via the callback executor.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+final class RateLimitingCall<T> implements Call<T> {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "RateLimitingCall";
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Original call to which this call delegates.
+	 */
+	private final Call<T> delegate;
+
+	/**
+	 * Factory from which to resolve rate limiters.
+	 */
+	private final ServiceCallAdapterFactory factory;
+
+	/**
+	 * Scheduler used to schedule delayed calls.
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * Executor used to deliver failures of rejected calls.
+	 */
+	private final Executor callbackExecutor;
+
+	/**
+	 * Delayed asynchronous execution of this call. May be {@code null} if this call has not been
+	 * delayed.
+	 */
+	private volatile DelayedExecution delayedExecution;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of RateLimitingCall for the specified <var>delegate</var>.
+	 *
+	 * @param delegate         The call to which should the new call delegate.
+	 * @param factory          The factory from which to resolve rate limiters.
+	 * @param scheduler        The scheduler used to schedule delayed calls.
+	 * @param callbackExecutor Executor used to deliver failures of rejected calls.
+	 */
+	RateLimitingCall(
+			@NonNull final Call<T> delegate,
+			@NonNull final ServiceCallAdapterFactory factory,
+			@NonNull final ScheduledExecutorService scheduler,
+			@NonNull final Executor callbackExecutor
+	) {
+		this.delegate = delegate;
+		this.factory = factory;
+		this.scheduler = scheduler;
+		this.callbackExecutor = callbackExecutor;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Blocks the given <var>limiter</var> if the given <var>response</var> signals that rate quota
+	 * has been exceeded and specifies when the next request may be made.
+	 *
+	 * @param limiter  The limiter to be blocked.
+	 * @param response The response to check.
+	 */
+	static void handleResponse(final RateLimiter limiter, final Response<?> response) {
+		if (response.code() == RateLimiter.TOO_MANY_REQUESTS) {
+			final long retryAfter = RateLimiter.parseRetryAfter(response.headers());
+			if (retryAfter > 0) {
+				limiter.block(retryAfter, RateLimiter.now());
+			}
+		}
+	}
+
+	/**
+	 */
+	@Override public Response<T> execute() throws IOException {
+		final RateLimiter limiter = factory.rateLimiter(ServiceObject.NO_SERVICE);
+		if (limiter == null) {
+			return delegate.execute();
+		}
+		final long delay = limiter.acquire(RateLimiter.now());
+		if (delay < 0) {
+			throw new RateLimitedException(limiter.getDelay(TimeUnit.NANOSECONDS));
+		}
+		if (delay > 0) {
+			limiter.onCallDelayed(true);
+			try {
+				TimeUnit.NANOSECONDS.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for rate limit.");
+			} finally {
+				limiter.onCallDelayed(false);
+			}
+		}
+		final Response<T> response = delegate.execute();
+		handleResponse(limiter, response);
+		return response;
+	}
+
+	/**
+	 */
+	@Override public void enqueue(@NonNull final Callback<T> callback) {
+		final RateLimiter limiter = factory.rateLimiter(Callbacks.serviceIdOf(callback));
+		if (limiter == null) {
+			this.delegate.enqueue(callback);
+			return;
+		}
+		final long delay = limiter.acquire(RateLimiter.now());
+		if (delay < 0) {
+			final RateLimitedException failure = new RateLimitedException(limiter.getDelay(TimeUnit.NANOSECONDS));
+			this.callbackExecutor.execute(new Runnable() {
+
+				/**
+				 */
+				@Override public void run() {
+					callback.onFailure(RateLimitingCall.this, failure);
+				}
+			});
+			return;
+		}
+		final Callback<T> limitingCallback = new LimitingCallback(limiter, callback);
+		if (delay == 0) {
+			this.delegate.enqueue(limitingCallback);
+			return;
+		}
+		final DelayedExecution execution = new DelayedExecution(limiter, limitingCallback, callback);
+		this.delayedExecution = execution;
+		execution.schedule(delay);
+	}
+
+	/**
+	 */
+	@Override public boolean isExecuted() {
+		return delayedExecution != null || delegate.isExecuted();
+	}
+
+	/**
+	 */
+	@Override public void cancel() {
+		this.delegate.cancel();
+		final DelayedExecution execution = delayedExecution;
+		if (execution != null) {
+			execution.cancel();
+		}
+	}
+
+	/**
+	 */
+	@Override public boolean isCanceled() {
+		return delegate.isCanceled();
+	}
+
+	/**
+	 */
+	@Override public Request request() {
+		return delegate.request();
+	}
+
+	/**
+	 */
+	@SuppressWarnings("CloneDoesntCallSuperClone")
+	@Override public Call<T> clone() {
+		return new RateLimitingCall<>(delegate.clone(), factory, scheduler, callbackExecutor);
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * A {@link Runnable} implementation which enqueues the original call after it has been delayed
+	 * by the limiter.
+	 */
+	private final class DelayedExecution implements Runnable {
+
+		/**
+		 * Limiter which has delayed the call.
+		 */
+		private final RateLimiter limiter;
+
+		/**
+		 * Callback with which to enqueue the original call.
+		 */
+		private final Callback<T> limitingCallback;
+
+		/**
+		 * Original callback to be notified if the delayed call is canceled.
+		 */
+		private final Callback<T> callback;
+
+		/**
+		 * Future of the scheduled execution.
+		 */
+		private Future<?> future;
+
+		/**
+		 * Creates a new instance of DelayedExecution with the specified <var>limiter</var> and callbacks.
+		 *
+		 * @param limiter          The limiter which has delayed the call.
+		 * @param limitingCallback The callback with which to enqueue the original call.
+		 * @param callback         The original callback to be notified if the call is canceled.
+		 */
+		DelayedExecution(final RateLimiter limiter, final Callback<T> limitingCallback, final Callback<T> callback) {
+			this.limiter = limiter;
+			this.limitingCallback = limitingCallback;
+			this.callback = callback;
+		}
+
+		/**
+		 * Schedules this execution after the specified <var>delay</var>.
+		 *
+		 * @param delay Delay in nanoseconds.
+		 */
+		synchronized void schedule(final long delay) {
+			limiter.onCallDelayed(true);
+			this.future = scheduler.schedule(this, delay, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Cancels this execution, if it has not been started yet, and notifies the original callback
+		 * that the call has been canceled.
+		 */
+		void cancel() {
+			final boolean cancelled;
+			synchronized (this) {
+				cancelled = future.cancel(false);
+			}
+			if (cancelled) {
+				limiter.onCallDelayed(false);
+				callback.onFailure(RateLimitingCall.this, ServiceFailure.CANCELED);
+			}
+		}
+
+		/**
+		 */
+		@Override public void run() {
+			limiter.onCallDelayed(false);
+			delegate.enqueue(limitingCallback);
+		}
+	}
+
+	/**
+	 * A {@link Callback} implementation which blocks the limiter when rate quota has been exceeded
+	 * and forwards the received response or failure to the original callback.
+	 */
+	private final class LimitingCallback implements Callback<T>, Callbacks.Wrapper {
+
+		/**
+		 * Limiter which has let through the call.
+		 */
+		private final RateLimiter limiter;
+
+		/**
+		 * Original callback to which to forward received response or failure.
+		 */
+		private final Callback<T> callback;
+
+		/**
+		 * Creates a new instance of LimitingCallback with the specified <var>limiter</var> and
+		 * <var>callback</var>.
+		 *
+		 * @param limiter  The limiter which has let through the call.
+		 * @param callback The callback to which to forward received response or failure.
+		 */
+		LimitingCallback(final RateLimiter limiter, final Callback<T> callback) {
+			this.limiter = limiter;
+			this.callback = callback;
+		}
+
+		/**
+		 */
+		@Override @NonNull public Callback<?> unwrap() {
+			return callback;
+		}
+
+		/**
+		 */
+		@Override public void onResponse(@NonNull final Call<T> call, @NonNull final Response<T> response) {
+			handleResponse(limiter, response);
+			callback.onResponse(RateLimitingCall.this, response);
+		}
+
+		/**
+		 */
+		@Override public void onFailure(@NonNull final Call<T> call, @NonNull final Throwable failure) {
+			callback.onFailure(RateLimitingCall.this, failure);
+		}
+	}
+}
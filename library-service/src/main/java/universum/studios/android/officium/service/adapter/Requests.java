@@ -0,0 +1,150 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import java.lang.reflect.Type;
+
+import androidx.annotation.NonNull;
+import okhttp3.Request;
+
+/**
+ * Utility class used by calls adapted by {@link ServiceCallAdapterFactory} to identify theirs requests.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+final class Requests {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Name of the request header carrying credentials of the request.
+	 */
+	static final String AUTHORIZATION = "Authorization";
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 */
+	private Requests() {
+		// Not allowed to be instantiated publicly.
+		throw new UnsupportedOperationException();
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Creates a key identifying the given <var>request</var> with the specified <var>responseType</var>.
+	 * Requests with the same method, url and headers expecting the same response type have equal keys.
+	 * <p>
+	 * Note that the key contains only headers of the given request, so credentials added to the
+	 * request later by an interceptor are not part of the key. See {@link #hasSameCredentials(Request, Request)}.
+	 *
+	 * @param request      The request for which to create key.
+	 * @param responseType Type of the response body.
+	 * @return Request key.
+	 */
+	@NonNull static String createKey(@NonNull final Request request, @NonNull final Type responseType) {
+		return appendKey(new StringBuilder(128), request).append(responseType).toString();
+	}
+
+	/**
+	 * Creates a key identifying the given <var>request</var> regardless of the expected response type.
+	 * Requests with the same method, url and headers have equal keys.
+	 *
+	 * @param request The request for which to create key.
+	 * @return Request key.
+	 */
+	@NonNull static String createKey(@NonNull final Request request) {
+		return appendKey(new StringBuilder(128), request).toString();
+	}
+
+	/**
+	 * Appends method, url and headers of the given <var>request</var> into the specified <var>builder</var>.
+	 *
+	 * @param builder The builder into which to append the request key.
+	 * @param request The request of which key to append.
+	 * @return The given builder.
+	 */
+	private static StringBuilder appendKey(final StringBuilder builder, final Request request) {
+		builder.append(request.method());
+		builder.append(' ');
+		builder.append(request.url());
+		builder.append('\n');
+		builder.append(request.headers());
+		return builder;
+	}
+
+	/**
+	 * Checks whether the given <var>request</var> is idempotent and safe, so its response may be
+	 * shared among multiple callers.
+	 *
+	 * @param request The request to check.
+	 * @return {@code True} if the request may be shared, {@code false} otherwise.
+	 */
+	static boolean isIdempotent(@NonNull final Request request) {
+		final String method = request.method();
+		return "GET".equals(method) || "HEAD".equals(method);
+	}
+
+	/**
+	 * Checks whether the given <var>request</var> may be repeated without changing the outcome on
+	 * the server side, so it may be safely retried. Such requests are those with an idempotent
+	 * method: <b>GET, HEAD, OPTIONS, PUT</b> and <b>DELETE</b>.
+	 *
+	 * @param request The request to check.
+	 * @return {@code True} if the request may be repeated, {@code false} otherwise.
+	 */
+	static boolean isRepeatable(@NonNull final Request request) {
+		switch (request.method()) {
+			case "GET":
+			case "HEAD":
+			case "OPTIONS":
+			case "PUT":
+			case "DELETE":
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Checks whether the given <var>networkRequest</var>, that is the request actually sent for the
+	 * specified <var>request</var> after it has been modified by interceptors, carries the same
+	 * credentials as the original request. Response to a request of which credentials have been
+	 * added or changed by an interceptor must not be shared under key of the original request,
+	 * as the key does not identify the credentials.
+	 *
+	 * @param request        The original request of which key identifies the response.
+	 * @param networkRequest The request actually sent for the original request.
+	 * @return {@code True} if both requests carry the same {@code Authorization} header, {@code false}
+	 * otherwise.
+	 */
+	static boolean hasSameCredentials(@NonNull final Request request, @NonNull final Request networkRequest) {
+		final String credentials = request.header(AUTHORIZATION);
+		final String networkCredentials = networkRequest.header(AUTHORIZATION);
+		return credentials == null ? networkCredentials == null : credentials.equals(networkCredentials);
+	}
+}
@@ -0,0 +1,646 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import universum.studios.android.officium.service.BaseServiceObject;
+import universum.studios.android.officium.service.ServiceCallback;
+import universum.studios.android.officium.service.ServiceObject;
+
+/**
+ * An in-memory <b>LRU</b> cache of converted response bodies which may be used by calls adapted by
+ * {@link ServiceCallAdapterFactory} (see {@link ServiceCallAdapterFactory.Builder#responseCache(ResponseCache)}).
+ * <p>
+ * Cached bodies are identified by method, url and headers of theirs requests along with the expected
+ * response type. The cache is limited by both, maximum count of entries and maximum estimated size
+ * in bytes, where size of each entry is estimated from the content length of the original response.
+ * When any of these limits is exceeded, the least recently used entries are evicted. Size of bodies
+ * of responses which do not specify theirs content length, like chunked responses, is measured as
+ * count of bytes actually received by the {@link #interceptor()} of the cache. If the interceptor
+ * is not added to the client, such bodies are estimated to have a fixed size of {@code 1 KB}.
+ * <p>
+ * Credentials added to requests by interceptors of the client, like {@code Authorization} header
+ * added by {@link universum.studios.android.officium.service.auth.AuthRequestInterceptor AuthRequestInterceptor},
+ * are not part of the requests identity, so bodies of responses to such requests are not cached
+ * at all. Credentials specified directly for the service requests are part of theirs identity.
+ * <p>
+ * The same cached body may be delivered to multiple callbacks. When a cached body is a
+ * {@link BaseServiceObject} delivered to a {@link ServiceCallback}, the callback receives a shallow
+ * copy of the body associated with its own request.
+ * <p>
+ * Each cached body is considered fresh for its <b>time to live</b> which may be specified for
+ * a specific service id via {@link Builder#timeToLive(int, long, TimeUnit)} or for all services
+ * via {@link Builder#timeToLive(long, TimeUnit)}. When the cache has <b>stale-while-revalidate</b>
+ * enabled, expired body is still delivered to the callback immediately and the request is performed
+ * in order to deliver the fresh body as well, so the callback is notified twice. Bodies cached for
+ * a specific service may be explicitly invalidated via {@link #invalidate(int)}.
+ * <p>
+ * Validators of cached bodies, that is {@code ETag} and {@code Last-Modified} headers of theirs
+ * original responses, are stored along with the bodies. When the {@link #interceptor()} of the cache
+ * is added to the {@link OkHttpClient} used by the services, requests revalidating expired bodies
+ * are sent as <b>conditional</b> requests with {@code If-None-Match} and {@code If-Modified-Since} headers.
+ * If the server responds with {@code 304 Not Modified}, the cached body is delivered again without
+ * being downloaded and converted, and the raw response delivered along with it has the 304 response
+ * as its {@link okhttp3.Response#networkResponse() network response}.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class ResponseCache {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "ResponseCache";
+
+	/**
+	 * Size in bytes used for entries of which original response does not specify its content length
+	 * and its actual size has not been measured by the {@link #interceptor()}.
+	 */
+	static final long UNKNOWN_ENTRY_SIZE = 1024;
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Maximum count of entries that may be stored in this cache.
+	 */
+	private final int maxEntries;
+
+	/**
+	 * Maximum estimated size in bytes of all entries stored in this cache.
+	 */
+	private final long maxBytes;
+
+	/**
+	 * Default time to live in milliseconds for cached entries.
+	 */
+	private final long defaultTimeToLive;
+
+	/**
+	 * Times to live in milliseconds specified for particular services.
+	 */
+	private final Map<Integer, Long> timesToLive;
+
+	/**
+	 * Flag indicating whether expired entries should be delivered while they are being revalidated.
+	 */
+	private final boolean staleWhileRevalidate;
+
+	/**
+	 * Map of cached entries in access order, so the eldest entry is the least recently used one.
+	 */
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Map of cached entries which have validators mapped to keys of theirs requests regardless of
+	 * the response type.
+	 */
+	private final Map<String, Entry> validatedEntries = new HashMap<>(16);
+
+	/**
+	 * Weak set of requests sent by {@link CachingCall} in order to revalidate cached entries, so only
+	 * these requests are sent as conditional requests. Requests are compared by identity.
+	 */
+	private final Map<Request, Boolean> revalidationRequests = new WeakHashMap<>(16);
+
+	/**
+	 * Weak map of sizes of response bodies without content length measured by the {@link #interceptor()}
+	 * mapped to the requests for which have been the responses received. Requests are compared by
+	 * identity.
+	 */
+	private final Map<Request, Long> bodySizes = new WeakHashMap<>(16);
+
+	/**
+	 * Interceptor which adds validators of cached entries to requests.
+	 */
+	private final Interceptor interceptor = new ConditionalRequestInterceptor(this);
+
+	/**
+	 * Current estimated size in bytes of all entries stored in this cache.
+	 */
+	private long bytes;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of ResponseCache with configuration of the given <var>builder</var>.
+	 *
+	 * @param builder The builder with configuration for the new cache.
+	 */
+	ResponseCache(@NonNull final Builder builder) {
+		this.maxEntries = builder.maxEntries;
+		this.maxBytes = builder.maxBytes;
+		this.defaultTimeToLive = builder.defaultTimeToLive;
+		this.timesToLive = new HashMap<>(builder.timesToLive);
+		this.staleWhileRevalidate = builder.staleWhileRevalidate;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Returns the time to live for entries cached for the specified <var>serviceId</var>.
+	 *
+	 * @param serviceId Id of the service for which to return time to live.
+	 * @return Time to live in milliseconds.
+	 */
+	long timeToLive(final int serviceId) {
+		final Long timeToLive = timesToLive.get(serviceId);
+		return timeToLive == null ? defaultTimeToLive : timeToLive;
+	}
+
+	/**
+	 * Returns flag indicating whether this cache delivers expired entries while they are being
+	 * revalidated.
+	 *
+	 * @return {@code True} if stale-while-revalidate is enabled, {@code false} otherwise.
+	 */
+	boolean isStaleWhileRevalidate() {
+		return staleWhileRevalidate;
+	}
+
+	/**
+	 * Returns the entry cached for the specified <var>key</var>.
+	 *
+	 * @param key Key of the desired entry.
+	 * @return Cached entry or {@code null} if there is no entry cached for the key.
+	 */
+	@Nullable synchronized Entry get(@NonNull final String key) {
+		return entries.get(key);
+	}
+
+	/**
+	 * Returns the cached entry with validators for the request with the specified <var>requestKey</var>.
+	 *
+	 * @param requestKey Key of the request created via {@link Requests#createKey(okhttp3.Request)}.
+	 * @return Cached entry or {@code null} if there is no entry with validators cached for the request.
+	 */
+	@Nullable synchronized Entry getValidated(@NonNull final String requestKey) {
+		return validatedEntries.get(requestKey);
+	}
+
+	/**
+	 * Same as {@link #put(String, String, int, Object, long, long, String, String)} without request
+	 * key and validators.
+	 */
+	void put(@NonNull final String key, final int serviceId, @NonNull final Object body, final long size, final long now) {
+		put(key, null, serviceId, body, size, now, null, null);
+	}
+
+	/**
+	 * Caches the given <var>body</var> for the specified <var>key</var> and evicts the least recently
+	 * used entries if limits of this cache are exceeded.
+	 *
+	 * @param key          Key for which to cache the body.
+	 * @param requestKey   Key of the request regardless of the response type. May be {@code null}
+	 *                     if the body should not be revalidated.
+	 * @param serviceId    Id of the service to which the body belongs.
+	 * @param body         The body to be cached.
+	 * @param size         Estimated size of the body in bytes. Negative if unknown.
+	 * @param now          Current time in milliseconds from which the time to live should be measured.
+	 * @param eTag         Value of {@code ETag} header of the response. May be {@code null}.
+	 * @param lastModified Value of {@code Last-Modified} header of the response. May be {@code null}.
+	 */
+	void put(
+			@NonNull final String key,
+			@Nullable final String requestKey,
+			final int serviceId,
+			@NonNull final Object body,
+			final long size,
+			final long now,
+			@Nullable final String eTag,
+			@Nullable final String lastModified
+	) {
+		final Entry entry = new Entry(serviceId, body, size < 0 ? UNKNOWN_ENTRY_SIZE : size, now + timeToLive(serviceId));
+		if (entry.size > maxBytes) {
+			remove(key);
+			return;
+		}
+		if (requestKey != null && (eTag != null || lastModified != null)) {
+			entry.setValidators(requestKey, eTag, lastModified);
+		}
+		synchronized (this) {
+			final Entry previous = entries.put(key, entry);
+			if (previous != null) {
+				this.bytes -= previous.size;
+				onEntryRemoved(previous);
+			}
+			this.bytes += entry.size;
+			if (entry.requestKey != null) {
+				validatedEntries.put(entry.requestKey, entry);
+			}
+			final Iterator<Entry> iterator = entries.values().iterator();
+			while ((entries.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+				final Entry eldest = iterator.next();
+				this.bytes -= eldest.size;
+				iterator.remove();
+				onEntryRemoved(eldest);
+			}
+		}
+	}
+
+	/**
+	 * Invoked whenever the given <var>entry</var> is removed from this cache.
+	 *
+	 * @param entry The removed entry.
+	 */
+	private void onEntryRemoved(final Entry entry) {
+		if (entry.requestKey != null && validatedEntries.get(entry.requestKey) == entry) {
+			validatedEntries.remove(entry.requestKey);
+		}
+	}
+
+	/**
+	 * Marks the given <var>request</var> as a request revalidating an entry cached in this cache, so
+	 * the {@link #interceptor()} sends it as conditional request if there are validators cached
+	 * for it.
+	 *
+	 * @param request The request to be marked.
+	 * @see #consumeRevalidation(Request)
+	 */
+	synchronized void markRevalidation(@NonNull final Request request) {
+		revalidationRequests.put(request, Boolean.TRUE);
+	}
+
+	/**
+	 * Removes mark of the given <var>request</var> previously marked via {@link #markRevalidation(Request)}.
+	 *
+	 * @param request The request of which mark to remove.
+	 * @return {@code True} if the request has been marked as revalidation request, {@code false}
+	 * otherwise.
+	 */
+	synchronized boolean consumeRevalidation(@NonNull final Request request) {
+		return revalidationRequests.remove(request) != null;
+	}
+
+	/**
+	 * Records the specified <var>size</var> of body of a response received for the given <var>request</var>
+	 * which does not specify its content length.
+	 *
+	 * @param request The request for which has been the response received.
+	 * @param size    Count of bytes of the body actually read.
+	 * @see #bodySizeOf(Request)
+	 */
+	synchronized void recordBodySize(@NonNull final Request request, final long size) {
+		bodySizes.put(request, size);
+	}
+
+	/**
+	 * Returns the size of body of a response received for the given <var>request</var> previously
+	 * recorded via {@link #recordBodySize(Request, long)}.
+	 *
+	 * @param request The request for which has been the response received.
+	 * @return Size in bytes or {@code -1} if there is no size recorded for the request.
+	 */
+	synchronized long bodySizeOf(@NonNull final Request request) {
+		final Long size = bodySizes.get(request);
+		return size == null ? -1 : size;
+	}
+
+	/**
+	 * Removes validators cached for the request with the specified <var>requestKey</var>, so the
+	 * request will not be sent as conditional request. The cached body remains in this cache.
+	 *
+	 * @param requestKey Key of the request created via {@link Requests#createKey(okhttp3.Request)}.
+	 */
+	synchronized void removeValidators(@NonNull final String requestKey) {
+		validatedEntries.remove(requestKey);
+	}
+
+	/**
+	 * Removes entry cached for the specified <var>key</var>.
+	 *
+	 * @param key Key of the entry to remove.
+	 */
+	synchronized void remove(@NonNull final String key) {
+		final Entry entry = entries.remove(key);
+		if (entry != null) {
+			this.bytes -= entry.size;
+			onEntryRemoved(entry);
+		}
+	}
+
+	/**
+	 * Invalidates all entries cached for the specified <var>serviceId</var>, so the next requests
+	 * for the service will be performed without use of this cache.
+	 *
+	 * @param serviceId Id of the service of which entries to invalidate.
+	 * @see ServiceObject#getServiceId()
+	 */
+	public synchronized void invalidate(final int serviceId) {
+		final Iterator<Entry> iterator = entries.values().iterator();
+		while (iterator.hasNext()) {
+			final Entry entry = iterator.next();
+			if (entry.serviceId == serviceId) {
+				this.bytes -= entry.size;
+				iterator.remove();
+				onEntryRemoved(entry);
+			}
+		}
+	}
+
+	/**
+	 * Invalidates all entries cached by this cache.
+	 */
+	public synchronized void invalidateAll() {
+		entries.clear();
+		validatedEntries.clear();
+		this.bytes = 0;
+	}
+
+	/**
+	 * Returns the current count of entries stored in this cache.
+	 *
+	 * @return Entries count.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the current estimated size in bytes of all entries stored in this cache.
+	 *
+	 * @return Size in bytes.
+	 */
+	public synchronized long byteSize() {
+		return bytes;
+	}
+
+	/**
+	 * Returns the interceptor which sends requests revalidating bodies cached in this cache as
+	 * conditional requests. Other requests, including requests of calls not adapted by
+	 * {@link ServiceCallAdapterFactory}, are left untouched. The interceptor also measures size of
+	 * response bodies which do not specify theirs content length.
+	 * <p>
+	 * The interceptor is added automatically as the first interceptor of the {@link OkHttpClient}
+	 * used by services of the {@link universum.studios.android.officium.service.ServiceManager ServiceManager}
+	 * with a call adapter factory using this cache. Other clients require the interceptor to be
+	 * added via {@link OkHttpClient.Builder#addInterceptor(Interceptor)}, before any interceptor
+	 * which modifies the requests.
+	 *
+	 * @return Interceptor adding validators of the cached bodies to the requests.
+	 */
+	@NonNull public Interceptor interceptor() {
+		return interceptor;
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * Builder that may be used to build instances of {@link ResponseCache}.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public static final class Builder {
+
+		/**
+		 * See {@link ResponseCache#maxEntries}.
+		 */
+		int maxEntries = 64;
+
+		/**
+		 * See {@link ResponseCache#maxBytes}.
+		 */
+		long maxBytes = 1024 * 1024;
+
+		/**
+		 * See {@link ResponseCache#defaultTimeToLive}.
+		 */
+		long defaultTimeToLive = TimeUnit.MINUTES.toMillis(1);
+
+		/**
+		 * See {@link ResponseCache#timesToLive}.
+		 */
+		final Map<Integer, Long> timesToLive = new HashMap<>(4);
+
+		/**
+		 * See {@link ResponseCache#staleWhileRevalidate}.
+		 */
+		boolean staleWhileRevalidate;
+
+		/**
+		 * Specifies a maximum count of entries that may be stored in the cache.
+		 * <p>
+		 * Default value: {@code 64}
+		 *
+		 * @param maxEntries The desired maximum count of entries.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder maxEntries(final int maxEntries) {
+			this.maxEntries = maxEntries;
+			return this;
+		}
+
+		/**
+		 * Specifies a maximum estimated size in bytes of all entries stored in the cache.
+		 * <p>
+		 * Size of entries of which original response does not specify its content length is
+		 * measured by the {@link ResponseCache#interceptor()}, or estimated to {@code 1 KB} if
+		 * the interceptor is not added to the client.
+		 * <p>
+		 * Default value: {@code 1 MB}
+		 *
+		 * @param maxBytes The desired maximum size in bytes.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder maxBytes(final long maxBytes) {
+			this.maxBytes = maxBytes;
+			return this;
+		}
+
+		/**
+		 * Specifies a time to live for entries of all services without time to live specified via
+		 * {@link #timeToLive(int, long, TimeUnit)}.
+		 * <p>
+		 * Default value: {@code 1 minute}
+		 *
+		 * @param duration The desired duration.
+		 * @param unit     Time unit of the specified duration.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder timeToLive(final long duration, @NonNull final TimeUnit unit) {
+			this.defaultTimeToLive = unit.toMillis(duration);
+			return this;
+		}
+
+		/**
+		 * Specifies a time to live for entries of the service with the specified <var>serviceId</var>.
+		 *
+		 * @param serviceId Id of the service for which to specify time to live.
+		 * @param duration  The desired duration.
+		 * @param unit      Time unit of the specified duration.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder timeToLive(final int serviceId, final long duration, @NonNull final TimeUnit unit) {
+			this.timesToLive.put(serviceId, unit.toMillis(duration));
+			return this;
+		}
+
+		/**
+		 * Specifies whether expired entries should be delivered immediately while theirs requests
+		 * are performed again, so the callback receives both, the cached and the fresh response body.
+		 * <p>
+		 * Default value: {@code false}
+		 *
+		 * @param enabled {@code True} to enable stale-while-revalidate, {@code false} otherwise.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder staleWhileRevalidate(final boolean enabled) {
+			this.staleWhileRevalidate = enabled;
+			return this;
+		}
+
+		/**
+		 * Builds a new instance of ResponseCache from the current data.
+		 *
+		 * @return New instance of ResponseCache.
+		 * @throws IllegalArgumentException If any of the specified limits is not positive.
+		 */
+		@NonNull public ResponseCache build() {
+			if (maxEntries <= 0) throw new IllegalArgumentException("Max entries must be positive.");
+			if (maxBytes <= 0) throw new IllegalArgumentException("Max bytes must be positive.");
+			return new ResponseCache(this);
+		}
+	}
+
+	/**
+	 * Entry holding a single cached response body.
+	 */
+	static final class Entry {
+
+		/**
+		 * Id of the service to which the cached body belongs.
+		 */
+		final int serviceId;
+
+		/**
+		 * Cached response body.
+		 */
+		final Object body;
+
+		/**
+		 * Estimated size of the cached body in bytes.
+		 */
+		final long size;
+
+		/**
+		 * Time in milliseconds at which the cached body expires.
+		 */
+		final long expiresAt;
+
+		/**
+		 * Key of the request for which has been the body received. May be {@code null} if the body
+		 * has no validators.
+		 */
+		String requestKey;
+
+		/**
+		 * Value of {@code ETag} header of the original response. May be {@code null}.
+		 */
+		String eTag;
+
+		/**
+		 * Value of {@code Last-Modified} header of the original response. May be {@code null}.
+		 */
+		String lastModified;
+
+		/**
+		 * Creates a new instance of Entry with the specified data.
+		 *
+		 * @param serviceId Id of the service to which the body belongs.
+		 * @param body      The body to be cached.
+		 * @param size      Estimated size of the body in bytes.
+		 * @param expiresAt Time in milliseconds at which the body expires.
+		 */
+		Entry(final int serviceId, final Object body, final long size, final long expiresAt) {
+			this.serviceId = serviceId;
+			this.body = body;
+			this.size = size;
+			this.expiresAt = expiresAt;
+		}
+
+		/**
+		 * Specifies validators of the cached body.
+		 *
+		 * @param requestKey   Key of the request for which has been the body received.
+		 * @param eTag         Value of {@code ETag} header of the original response.
+		 * @param lastModified Value of {@code Last-Modified} header of the original response.
+		 */
+		void setValidators(final String requestKey, final String eTag, final String lastModified) {
+			this.requestKey = requestKey;
+			this.eTag = eTag;
+			this.lastModified = lastModified;
+		}
+
+		/**
+		 * Checks whether the given <var>request</var> has been sent with validators of this entry.
+		 *
+		 * @param request The request to check.
+		 * @return {@code True} if a not modified response for the request confirms this entry,
+		 * {@code false} otherwise.
+		 */
+		boolean isValidatedBy(@NonNull final Request request) {
+			if (eTag != null) {
+				return eTag.equals(request.header(ConditionalRequestInterceptor.IF_NONE_MATCH));
+			}
+			return lastModified != null && lastModified.equals(request.header(ConditionalRequestInterceptor.IF_MODIFIED_SINCE));
+		}
+
+		/**
+		 * Checks whether this entry has expired at the specified time.
+		 *
+		 * @param now Current time in milliseconds.
+		 * @return {@code True} if expired, {@code false} otherwise.
+		 */
+		boolean isExpired(final long now) {
+			return now >= expiresAt;
+		}
+	}
+}
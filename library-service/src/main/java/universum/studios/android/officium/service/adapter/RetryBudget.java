@@ -0,0 +1,205 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A budget limiting count of retries made by calls adapted by {@link ServiceCallAdapterFactory}
+ * (see {@link ServiceCallAdapterFactory.Builder#retryBudget(RetryBudget)}) in order to prevent retry
+ * storms when a backend is not available.
+ * <p>
+ * Each request deposits a fraction of a retry specified as <b>ratio</b> into the budget and each
+ * retry withdraws one whole retry from it. A retry for which there is no whole retry left in the
+ * budget is not made, so retries make at most the specified ratio of all requests in the long run.
+ * The budget initially contains, and is capped at, a <b>reserve</b> of retries which allows clients
+ * with low traffic to retry as well.
+ * <p>
+ * The budget is lock-free and may be shared by multiple factories.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class RetryBudget {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "RetryBudget";
+
+	/**
+	 * Scale in which is balance of the budget stored, so fractions of retries may be deposited.
+	 */
+	private static final long SCALE = 1000;
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Scaled fraction of a retry deposited for each request.
+	 */
+	private final long deposit;
+
+	/**
+	 * Scaled maximum balance of this budget.
+	 */
+	private final long maxBalance;
+
+	/**
+	 * Scaled current balance of this budget.
+	 */
+	private final AtomicLong balance;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of RetryBudget with configuration of the given <var>builder</var>.
+	 *
+	 * @param builder The builder with configuration for the new budget.
+	 */
+	RetryBudget(@NonNull final Builder builder) {
+		this.deposit = Math.round(builder.ratio * SCALE);
+		this.maxBalance = builder.reserve * SCALE;
+		this.balance = new AtomicLong(maxBalance);
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Deposits a fraction of retry for a new request into this budget.
+	 */
+	void deposit() {
+		for (;;) {
+			final long current = balance.get();
+			final long updated = Math.min(maxBalance, current + deposit);
+			if (current == updated || balance.compareAndSet(current, updated)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Attempts to withdraw one retry from this budget.
+	 *
+	 * @return {@code True} if retry has been withdrawn and may be made, {@code false} if the budget
+	 * is exhausted.
+	 */
+	boolean tryWithdraw() {
+		for (;;) {
+			final long current = balance.get();
+			if (current < SCALE) {
+				return false;
+			}
+			if (balance.compareAndSet(current, current - SCALE)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Returns the count of retries that may be currently made within this budget.
+	 *
+	 * @return Count of available retries.
+	 */
+	public int getAvailableRetries() {
+		return (int) (balance.get() / SCALE);
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * Builder that may be used to build instances of {@link RetryBudget}.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public static final class Builder {
+
+		/**
+		 * See {@link RetryBudget#deposit}.
+		 */
+		float ratio = 0.1f;
+
+		/**
+		 * See {@link RetryBudget#maxBalance}.
+		 */
+		int reserve = 10;
+
+		/**
+		 * Specifies a maximum ratio of retries to all requests, like {@code 0.1} to allow retries
+		 * to make at most 10 percent of all requests.
+		 * <p>
+		 * Default value: {@code 0.1}
+		 *
+		 * @param ratio The desired ratio from the range {@code [0, 1]}.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder ratio(final float ratio) {
+			this.ratio = ratio;
+			return this;
+		}
+
+		/**
+		 * Specifies a count of retries which the budget initially contains and to which is its balance
+		 * capped.
+		 * <p>
+		 * Default value: {@code 10}
+		 *
+		 * @param reserve The desired reserve of retries.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder reserve(final int reserve) {
+			this.reserve = reserve;
+			return this;
+		}
+
+		/**
+		 * Builds a new instance of RetryBudget from the current data.
+		 *
+		 * @return New instance of RetryBudget.
+		 * @throws IllegalArgumentException If any of the specified values is out of its valid range.
+		 */
+		@NonNull public RetryBudget build() {
+			if (ratio < 0 || ratio > 1) throw new IllegalArgumentException("Ratio must be from the range [0, 1].");
+			if (reserve < 0) throw new IllegalArgumentException("Reserve must not be negative.");
+			return new RetryBudget(this);
+		}
+	}
+}
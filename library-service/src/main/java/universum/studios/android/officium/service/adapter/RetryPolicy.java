@@ -0,0 +1,305 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import okhttp3.Request;
+
+/**
+ * A policy describing when and how should be retried requests of calls adapted by {@link ServiceCallAdapterFactory}
+ * (see {@link ServiceCallAdapterFactory.Builder#retryPolicy(RetryPolicy)}).
+ * <p>
+ * A failed request is retried if it has failed due to {@link IOException} or it has received response
+ * with one of the <b>retryable status codes</b>, until the <b>maximum count of attempts</b> is reached.
+ * By default, only requests with idempotent method are retried. Delay before each retry is computed
+ * via <b>exponential backoff with full jitter</b>, that is, a random delay between zero and the
+ * backoff for the current attempt where the backoff grows exponentially from the initial one and
+ * is capped at the maximum one.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class RetryPolicy {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "RetryPolicy";
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/**
+	 * Random used to compute jittered backoff delays.
+	 */
+	private static final Random RANDOM = new Random();
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Maximum count of attempts, including the first one, that may be made for a single request.
+	 */
+	private final int maxAttempts;
+
+	/**
+	 * Backoff in milliseconds for the first retry.
+	 */
+	private final long initialBackoff;
+
+	/**
+	 * Maximum backoff in milliseconds for a single retry.
+	 */
+	private final long maxBackoff;
+
+	/**
+	 * Multiplier by which grows the backoff with each retry.
+	 */
+	private final double backoffMultiplier;
+
+	/**
+	 * Sorted status codes of responses for which may be requests retried.
+	 */
+	private final int[] retryableStatusCodes;
+
+	/**
+	 * Flag indicating whether requests with non-idempotent method may be retried as well.
+	 */
+	private final boolean retryNonIdempotent;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of RetryPolicy with configuration of the given <var>builder</var>.
+	 *
+	 * @param builder The builder with configuration for the new policy.
+	 */
+	RetryPolicy(@NonNull final Builder builder) {
+		this.maxAttempts = builder.maxAttempts;
+		this.initialBackoff = builder.initialBackoff;
+		this.maxBackoff = builder.maxBackoff;
+		this.backoffMultiplier = builder.backoffMultiplier;
+		this.retryableStatusCodes = Arrays.copyOf(builder.retryableStatusCodes, builder.retryableStatusCodes.length);
+		this.retryNonIdempotent = builder.retryNonIdempotent;
+		Arrays.sort(retryableStatusCodes);
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Returns the maximum count of attempts that may be made for a single request.
+	 *
+	 * @return Maximum attempts, including the first one.
+	 */
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * Checks whether the given <var>request</var> may be retried according to this policy.
+	 *
+	 * @param request The request to check.
+	 * @return {@code True} if the request may be retried, {@code false} otherwise.
+	 */
+	boolean isRetryable(@NonNull final Request request) {
+		return retryNonIdempotent || Requests.isRepeatable(request);
+	}
+
+	/**
+	 * Checks whether a request which has received response with the specified <var>statusCode</var>
+	 * may be retried according to this policy.
+	 *
+	 * @param statusCode Status code of the received response.
+	 * @return {@code True} if the status code is retryable, {@code false} otherwise.
+	 */
+	boolean isRetryable(final int statusCode) {
+		return Arrays.binarySearch(retryableStatusCodes, statusCode) >= 0;
+	}
+
+	/**
+	 * Computes a delay before the next attempt of a request for which has been already made the
+	 * specified count of <var>attempts</var>.
+	 *
+	 * @param attempts Count of already made attempts. Always at least {@code 1}.
+	 * @return Delay in milliseconds, chosen randomly between zero and backoff for the attempt.
+	 */
+	long computeDelay(final int attempts) {
+		final double backoff = Math.min(maxBackoff, initialBackoff * Math.pow(backoffMultiplier, attempts - 1));
+		return (long) (RANDOM.nextDouble() * backoff);
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * Builder that may be used to build instances of {@link RetryPolicy}.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public static final class Builder {
+
+		/**
+		 * See {@link RetryPolicy#maxAttempts}.
+		 */
+		int maxAttempts = 3;
+
+		/**
+		 * See {@link RetryPolicy#initialBackoff}.
+		 */
+		long initialBackoff = 100;
+
+		/**
+		 * See {@link RetryPolicy#maxBackoff}.
+		 */
+		long maxBackoff = TimeUnit.SECONDS.toMillis(10);
+
+		/**
+		 * See {@link RetryPolicy#backoffMultiplier}.
+		 */
+		double backoffMultiplier = 2;
+
+		/**
+		 * See {@link RetryPolicy#retryableStatusCodes}.
+		 */
+		int[] retryableStatusCodes = {408, 500, 502, 503, 504};
+
+		/**
+		 * See {@link RetryPolicy#retryNonIdempotent}.
+		 */
+		boolean retryNonIdempotent;
+
+		/**
+		 * Specifies a maximum count of attempts, including the first one, that may be made for
+		 * a single request.
+		 * <p>
+		 * Default value: {@code 3}
+		 *
+		 * @param maxAttempts The desired maximum count of attempts.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder maxAttempts(final int maxAttempts) {
+			this.maxAttempts = maxAttempts;
+			return this;
+		}
+
+		/**
+		 * Specifies a backoff for the first retry. Backoff for each subsequent retry is multiplied
+		 * by the multiplier specified via {@link #backoffMultiplier(double)}.
+		 * <p>
+		 * Default value: {@code 100 milliseconds}
+		 *
+		 * @param duration The desired duration.
+		 * @param unit     Time unit of the specified duration.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder initialBackoff(final long duration, @NonNull final TimeUnit unit) {
+			this.initialBackoff = unit.toMillis(duration);
+			return this;
+		}
+
+		/**
+		 * Specifies a maximum backoff for a single retry.
+		 * <p>
+		 * Default value: {@code 10 seconds}
+		 *
+		 * @param duration The desired duration.
+		 * @param unit     Time unit of the specified duration.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder maxBackoff(final long duration, @NonNull final TimeUnit unit) {
+			this.maxBackoff = unit.toMillis(duration);
+			return this;
+		}
+
+		/**
+		 * Specifies a multiplier by which should grow the backoff with each retry.
+		 * <p>
+		 * Default value: {@code 2}
+		 *
+		 * @param multiplier The desired multiplier.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder backoffMultiplier(final double multiplier) {
+			this.backoffMultiplier = multiplier;
+			return this;
+		}
+
+		/**
+		 * Specifies status codes of responses for which may be requests retried.
+		 * <p>
+		 * Default value: {@code 408, 500, 502, 503, 504}
+		 *
+		 * @param statusCodes The desired status codes. May be empty to retry only failed requests.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder retryableStatusCodes(@NonNull final int... statusCodes) {
+			this.retryableStatusCodes = statusCodes;
+			return this;
+		}
+
+		/**
+		 * Specifies whether requests with non-idempotent method, like <b>POST</b> or <b>PATCH</b>,
+		 * may be retried as well.
+		 * <p>
+		 * Default value: {@code false}
+		 *
+		 * @param enabled {@code True} to retry also non-idempotent requests, {@code false} otherwise.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder retryNonIdempotent(final boolean enabled) {
+			this.retryNonIdempotent = enabled;
+			return this;
+		}
+
+		/**
+		 * Builds a new instance of RetryPolicy from the current data.
+		 *
+		 * @return New instance of RetryPolicy.
+		 * @throws IllegalArgumentException If any of the specified values is out of its valid range.
+		 */
+		@NonNull public RetryPolicy build() {
+			if (maxAttempts <= 0) throw new IllegalArgumentException("Max attempts must be positive.");
+			if (initialBackoff < 0) throw new IllegalArgumentException("Initial backoff must not be negative.");
+			if (maxBackoff < initialBackoff) throw new IllegalArgumentException("Max backoff must not be less than initial backoff.");
+			if (backoffMultiplier < 1) throw new IllegalArgumentException("Backoff multiplier must be at least 1.");
+			return new RetryPolicy(this);
+		}
+	}
+}
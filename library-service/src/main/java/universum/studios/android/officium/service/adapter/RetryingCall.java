@@ -0,0 +1,394 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import universum.studios.android.officium.service.ServiceFailure;
+import universum.studios.android.officium.service.ServiceObject;
+
+/**
+ * A {@link Call} implementation which retries failed requests according to {@link RetryPolicy}
+ * resolved for the service to which is the enqueued callback associated, if the callback is a
+ * {@link ServiceObject}. Synchronous execution via {@link #execute()} uses the default policy.
+ * <p>
+ * Each retry is made via a clone of the original call, so all attempts are reported to the same
+ * callback, with the same request id. Calls rejected by {@link CircuitBreaker} or {@link RateLimiter}
+ * are never retried. Asynchronous retries are scheduled via the specified scheduler and never block
+ * the caller's thread.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+final class RetryingCall<T> implements Call<T> {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "RetryingCall";
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Original call to which this call delegates and which is cloned for each retry.
+	 */
+	private final Call<T> delegate;
+
+	/**
+	 * Factory from which to resolve retry policies and retry budget.
+	 */
+	private final ServiceCallAdapterFactory factory;
+
+	/**
+	 * Scheduler used to schedule asynchronous retries.
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * Call of the current attempt.
+	 */
+	private volatile Call<T> current;
+
+	/**
+	 * Callback of the current asynchronous execution. May be {@code null} if this call has not been
+	 * enqueued or its request is not retried.
+	 */
+	private volatile RetryingCallback callback;
+
+	/**
+	 * Flag indicating whether this call has been canceled.
+	 */
+	private volatile boolean canceled;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of RetryingCall for the specified <var>delegate</var>.
+	 *
+	 * @param delegate  The call to which should the new call delegate.
+	 * @param factory   The factory from which to resolve retry policies and retry budget.
+	 * @param scheduler The scheduler used to schedule asynchronous retries.
+	 */
+	RetryingCall(@NonNull final Call<T> delegate, @NonNull final ServiceCallAdapterFactory factory, @NonNull final ScheduledExecutorService scheduler) {
+		this.delegate = delegate;
+		this.factory = factory;
+		this.scheduler = scheduler;
+		this.current = delegate;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Closes error body of the given <var>response</var> which is to be discarded due to retry.
+	 *
+	 * @param response The response to be discarded.
+	 */
+	static void discard(final Response<?> response) {
+		final ResponseBody errorBody = response.errorBody();
+		if (errorBody != null) {
+			errorBody.close();
+		}
+	}
+
+	/**
+	 * Checks whether the given <var>failure</var> represents rejection of a call by {@link CircuitBreaker}
+	 * or {@link RateLimiter}. Rejected calls are never retried.
+	 *
+	 * @param failure The failure to check.
+	 * @return {@code True} if the failure is a rejection, {@code false} otherwise.
+	 */
+	static boolean isRejection(final Throwable failure) {
+		return failure instanceof CircuitOpenException || failure instanceof RateLimitedException;
+	}
+
+	/**
+	 * Checks whether there may be made another attempt after the specified count of <var>attempts</var>
+	 * have been already made according to the given <var>policy</var> and whether the retry budget
+	 * (if any) allows it. If so, one retry is withdrawn from the budget.
+	 *
+	 * @param policy   The policy to check.
+	 * @param attempts Count of already made attempts.
+	 * @return {@code True} if another attempt may be made, {@code false} otherwise.
+	 */
+	boolean tryRetry(final RetryPolicy policy, final int attempts) {
+		if (canceled || attempts >= policy.getMaxAttempts()) {
+			return false;
+		}
+		final RetryBudget budget = factory.retryBudget;
+		return budget == null || budget.tryWithdraw();
+	}
+
+	/**
+	 * Resolves a retry policy for the given <var>request</var> of the specified service.
+	 *
+	 * @param serviceId Id of the service to which the request belongs.
+	 * @param request   The request for which to resolve policy.
+	 * @return Retry policy or {@code null} if the request should not be retried.
+	 */
+	@Nullable private RetryPolicy resolvePolicy(final int serviceId, final Request request) {
+		final RetryBudget budget = factory.retryBudget;
+		if (budget != null) {
+			budget.deposit();
+		}
+		final RetryPolicy policy = factory.retryPolicy(serviceId);
+		return policy != null && policy.isRetryable(request) ? policy : null;
+	}
+
+	/**
+	 */
+	@Override public Response<T> execute() throws IOException {
+		final RetryPolicy policy = resolvePolicy(ServiceObject.NO_SERVICE, delegate.request());
+		if (policy == null) {
+			return delegate.execute();
+		}
+		int attempts = 1;
+		for (;;) {
+			try {
+				final Response<T> response = current.execute();
+				if (response.isSuccessful() || !policy.isRetryable(response.code()) || !tryRetry(policy, attempts)) {
+					return response;
+				}
+				discard(response);
+			} catch (IOException e) {
+				if (isRejection(e) || !tryRetry(policy, attempts)) {
+					throw e;
+				}
+			}
+			try {
+				Thread.sleep(policy.computeDelay(attempts));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for retry.");
+			}
+			attempts++;
+			this.current = delegate.clone();
+			if (canceled) {
+				current.cancel();
+			}
+		}
+	}
+
+	/**
+	 */
+	@Override public void enqueue(@NonNull final Callback<T> callback) {
+		final int serviceId = Callbacks.serviceIdOf(callback);
+		final RetryPolicy policy = resolvePolicy(serviceId, delegate.request());
+		if (policy == null) {
+			this.delegate.enqueue(callback);
+			return;
+		}
+		final RetryingCallback retryingCallback = new RetryingCallback(policy, callback);
+		this.callback = retryingCallback;
+		this.delegate.enqueue(retryingCallback);
+	}
+
+	/**
+	 */
+	@Override public boolean isExecuted() {
+		return delegate.isExecuted();
+	}
+
+	/**
+	 */
+	@Override public void cancel() {
+		this.canceled = true;
+		this.current.cancel();
+		final RetryingCallback retryingCallback = callback;
+		if (retryingCallback != null) {
+			retryingCallback.cancelPendingRetry();
+		}
+	}
+
+	/**
+	 */
+	@Override public boolean isCanceled() {
+		return canceled || current.isCanceled();
+	}
+
+	/**
+	 */
+	@Override public Request request() {
+		return delegate.request();
+	}
+
+	/**
+	 */
+	@SuppressWarnings("CloneDoesntCallSuperClone")
+	@Override public Call<T> clone() {
+		return new RetryingCall<>(delegate.clone(), factory, scheduler);
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * A {@link Callback} implementation which schedules retry of failed attempts or forwards the
+	 * received response or failure to the original callback.
+	 */
+	private final class RetryingCallback implements Callback<T>, Callbacks.Wrapper, Runnable {
+
+		/**
+		 * Policy according to which to retry.
+		 */
+		private final RetryPolicy policy;
+
+		/**
+		 * Original callback to which to forward received response or failure.
+		 */
+		private final Callback<T> callback;
+
+		/**
+		 * Count of attempts made so far.
+		 */
+		private int attempts = 1;
+
+		/**
+		 * Flag indicating whether a response has been already forwarded to the original callback,
+		 * which may be notified multiple times, like by a stale-while-revalidate cache. No retries
+		 * are made after the first forwarded response.
+		 */
+		private boolean delivered;
+
+		/**
+		 * Future of the scheduled retry. May be {@code null} if there is no retry scheduled.
+		 */
+		private Future<?> pendingRetry;
+
+		/**
+		 * Creates a new instance of RetryingCallback with the specified <var>policy</var> and
+		 * <var>callback</var>.
+		 *
+		 * @param policy   The policy according to which to retry.
+		 * @param callback The callback to which to forward received response or failure.
+		 */
+		RetryingCallback(final RetryPolicy policy, final Callback<T> callback) {
+			this.policy = policy;
+			this.callback = callback;
+		}
+
+		/**
+		 */
+		@Override @NonNull public Callback<?> unwrap() {
+			return callback;
+		}
+
+		/**
+		 */
+		@Override public void onResponse(@NonNull final Call<T> call, @NonNull final Response<T> response) {
+			if (!response.isSuccessful() && policy.isRetryable(response.code()) && scheduleRetry()) {
+				discard(response);
+				return;
+			}
+			markDelivered();
+			callback.onResponse(RetryingCall.this, response);
+		}
+
+		/**
+		 */
+		@Override public void onFailure(@NonNull final Call<T> call, @NonNull final Throwable failure) {
+			if (failure instanceof IOException && !isRejection(failure) && scheduleRetry()) {
+				return;
+			}
+			markDelivered();
+			callback.onFailure(RetryingCall.this, failure);
+		}
+
+		/**
+		 * Marks that a response or failure has been forwarded to the original callback.
+		 */
+		private synchronized void markDelivered() {
+			this.delivered = true;
+		}
+
+		/**
+		 * Schedules retry if allowed by the policy and the retry budget.
+		 *
+		 * @return {@code True} if retry has been scheduled, {@code false} otherwise.
+		 */
+		private synchronized boolean scheduleRetry() {
+			if (delivered || !tryRetry(policy, attempts)) {
+				return false;
+			}
+			this.pendingRetry = scheduler.schedule(this, policy.computeDelay(attempts), TimeUnit.MILLISECONDS);
+			this.attempts++;
+			return true;
+		}
+
+		/**
+		 * Cancels the scheduled retry, if any, and notifies the original callback that the call has
+		 * been canceled.
+		 */
+		void cancelPendingRetry() {
+			final boolean cancelled;
+			synchronized (this) {
+				cancelled = pendingRetry != null && pendingRetry.cancel(false);
+				this.pendingRetry = null;
+				this.delivered |= cancelled;
+			}
+			if (cancelled) {
+				callback.onFailure(RetryingCall.this, ServiceFailure.CANCELED);
+			}
+		}
+
+		/**
+		 * Performs the scheduled retry.
+		 */
+		@Override public void run() {
+			synchronized (this) {
+				this.pendingRetry = null;
+			}
+			final Call<T> retry = delegate.clone();
+			current = retry;
+			if (canceled) {
+				retry.cancel();
+			}
+			retry.enqueue(this);
+		}
+	}
+}
@@ -18,12 +18,18 @@
  */
 package universum.studios.android.officium.service.adapter;
 
+import java.io.Closeable;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.concurrent.Executor;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import retrofit2.Call;
 import retrofit2.CallAdapter;
+import retrofit2.Retrofit;
 import universum.studios.android.officium.service.ServiceCall;
+import universum.studios.android.officium.service.ServiceExecutors;
 
 /**
  * A {@link CallAdapter} implementation which can adapt {@link Call} to {@link ServiceCall}.
@@ -60,6 +66,29 @@ final class ServiceCallAdapter<R> implements CallAdapter<R, ServiceCall<R>> {
 	 */
 	private final Type responseType;
 
+	/**
+	 * Factory that has created this adapter and of which configuration should be applied to adapted
+	 * calls. May be {@code null} to adapt calls without any additional features.
+	 */
+	private final ServiceCallAdapterFactory factory;
+
+	/**
+	 * Executor via which to deliver all responses and failures to the enqueued callbacks. May be
+	 * {@code null} to deliver them on the thread which has received them.
+	 */
+	private final Executor dispatchExecutor;
+
+	/**
+	 * Retrofit instance for which has been this adapter created. May be {@code null}.
+	 */
+	private final Retrofit retrofit;
+
+	/**
+	 * Flag indicating whether a single response body may be delivered to multiple callbacks, which
+	 * is not true for bodies that may be consumed only once, like streams.
+	 */
+	private final boolean shareable;
+
 	/*
 	 * Constructors ================================================================================
 	 */
@@ -70,13 +99,63 @@ final class ServiceCallAdapter<R> implements CallAdapter<R, ServiceCall<R>> {
 	 * @param responseType Type of the response associated with call to be adapted by this adapter.
 	 */
 	ServiceCallAdapter(final Type responseType) {
+		this(responseType, null, null);
+	}
+
+	/**
+	 * Creates a new instance of ServiceCallAdapter with the specified <var>responseType</var> and
+	 * configuration of the given <var>factory</var>.
+	 *
+	 * @param responseType Type of the response associated with call to be adapted by this adapter.
+	 * @param factory      The factory of which configuration to apply to adapted calls. May be
+	 *                     {@code null}.
+	 * @param retrofit     The Retrofit instance for which is the adapter created. Its callback
+	 *                     executor is used to deliver all responses and failures to the enqueued
+	 *                     callbacks only if it is a {@link ServiceCallAdapterFactory.DispatchExecutor}.
+	 *                     May be {@code null}.
+	 */
+	ServiceCallAdapter(final Type responseType, @Nullable final ServiceCallAdapterFactory factory, @Nullable final Retrofit retrofit) {
 		this.responseType = responseType;
+		this.factory = factory;
+		this.retrofit = retrofit;
+		this.dispatchExecutor = resolveDispatchExecutor(factory, retrofit);
+		this.shareable = !isConsumable(responseType);
 	}
 
 	/*
 	 * Methods =====================================================================================
 	 */
 
+	/**
+	 * Checks whether bodies of the specified <var>responseType</var> may be consumed only once,
+	 * which is true for {@link Closeable} bodies, like {@link okhttp3.ResponseBody ResponseBody}.
+	 *
+	 * @param responseType The type of response bodies to check.
+	 * @return {@code True} if the bodies may be consumed only once, {@code false} otherwise.
+	 */
+	static boolean isConsumable(@NonNull final Type responseType) {
+		final Type rawType = responseType instanceof ParameterizedType ? ((ParameterizedType) responseType).getRawType() : responseType;
+		return rawType instanceof Class && Closeable.class.isAssignableFrom((Class<?>) rawType);
+	}
+
+	/**
+	 * Resolves executor via which should adapted calls deliver theirs results. The executor specified
+	 * for the given <var>factory</var> takes precedence over callback executor of the given
+	 * <var>retrofit</var>, which is used only if it is a {@link ServiceCallAdapterFactory.DispatchExecutor}.
+	 *
+	 * @param factory  The factory of which dispatch executor to resolve. May be {@code null}.
+	 * @param retrofit The Retrofit instance of which callback executor to resolve. May be {@code null}.
+	 * @return Resolved executor or {@code null} if results should be delivered on the thread which
+	 * has received them.
+	 */
+	@Nullable static Executor resolveDispatchExecutor(@Nullable final ServiceCallAdapterFactory factory, @Nullable final Retrofit retrofit) {
+		if (factory != null && factory.dispatchExecutor != null) {
+			return factory.dispatchExecutor;
+		}
+		final Executor callbackExecutor = retrofit == null ? null : retrofit.callbackExecutor();
+		return callbackExecutor instanceof ServiceCallAdapterFactory.DispatchExecutor ? callbackExecutor : null;
+	}
+
 	/**
 	 */
 	@Override public Type responseType() {
@@ -86,7 +165,38 @@ final class ServiceCallAdapter<R> implements CallAdapter<R, ServiceCall<R>> {
 	/**
 	 */
 	@Override public ServiceCall<R> adapt(@NonNull final Call<R> call) {
-		return new ServiceCall<>(call);
+		Call<R> adaptedCall = call;
+		if (factory != null) {
+			// Results not received from the network are delivered off the caller's thread, the
+			// dispatching call, if any, then hands them off to the dispatch executor like all other
+			// results.
+			final Executor deliveryExecutor = ServiceExecutors.background();
+			if (factory.circuitBreaker != null) {
+				adaptedCall = new CircuitBreakerCall<>(adaptedCall, factory.circuitBreaker, deliveryExecutor);
+			}
+			if (factory.priorityDispatcher != null) {
+				adaptedCall = new PriorityCall<>(adaptedCall, factory.priorityDispatcher);
+			}
+			if (factory.isRateLimitEnabled()) {
+				adaptedCall = new RateLimitingCall<>(adaptedCall, factory, ServiceExecutors.scheduler(), deliveryExecutor);
+			}
+			if (factory.flights != null && shareable) {
+				adaptedCall = new SingleFlightCall<>(adaptedCall, responseType, factory.flights);
+			}
+			if (factory.responseCache != null && shareable) {
+				adaptedCall = new CachingCall<>(adaptedCall, responseType, factory.responseCache, deliveryExecutor);
+			}
+			if (factory.isRetryEnabled()) {
+				adaptedCall = new RetryingCall<>(adaptedCall, factory, ServiceExecutors.scheduler());
+			}
+			if (factory.serviceMetrics != null) {
+				adaptedCall = new MetricsCall<>(adaptedCall, factory.serviceMetrics);
+			}
+		}
+		if (dispatchExecutor != null) {
+			adaptedCall = new DispatchingCall<>(adaptedCall, dispatchExecutor);
+		}
+		return new ServiceCall<>(adaptedCall, retrofit);
 	}
 
 	/*
@@ -21,6 +21,11 @@ package universum.studios.android.officium.service.adapter;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -32,6 +37,9 @@ import universum.studios.android.officium.service.ServiceCall;
 /**
  * A {@link CallAdapter.Factory} implementation which can provide instance of {@link CallAdapter}
  * that can adapt {@link Call} to {@link ServiceCall}.
+ * <p>
+ * Factory with default configuration may be created via {@link #create()}. Factory with additional
+ * features enabled for adapted calls may be built via {@link ServiceCallAdapterFactory.Builder}.
  *
  * @author Martin Albedinsky
  * @since 1.2
@@ -51,6 +59,19 @@ public final class ServiceCallAdapterFactory extends CallAdapter.Factory {
 	 * Interface ===================================================================================
 	 */
 
+	/**
+	 * Marker interface for executors which, when specified as callback executor of a Retrofit
+	 * instance via {@link Retrofit.Builder#callbackExecutor(Executor)}, should be used by calls
+	 * adapted for that Retrofit instance to deliver all theirs responses and failures, the same as
+	 * executor specified via {@link Builder#dispatchExecutor(Executor)}. Other callback executors,
+	 * like the main thread executor which is the default one on Android, are not used by adapted
+	 * calls.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public interface DispatchExecutor extends Executor {}
+
 	/*
 	 * Static members ==============================================================================
 	 */
@@ -59,15 +80,115 @@ public final class ServiceCallAdapterFactory extends CallAdapter.Factory {
 	 * Members =====================================================================================
 	 */
 
+	/**
+	 * Registry of flights of in-flight requests shared by calls adapted by this factory. May be
+	 * {@code null} if single-flight mode is not enabled.
+	 *
+	 * @see Builder#singleFlight(boolean)
+	 */
+	final ConcurrentMap<String, SingleFlightCall.Flight<?>> flights;
+
+	/**
+	 * Cache of converted response bodies used by calls adapted by this factory. May be {@code null}
+	 * if no cache has been specified.
+	 *
+	 * @see Builder#responseCache(ResponseCache)
+	 */
+	final ResponseCache responseCache;
+
+	/**
+	 * Retry policy used for calls of services without policy specified via {@link #retryPolicies}.
+	 * May be {@code null} to not retry such calls.
+	 *
+	 * @see Builder#retryPolicy(RetryPolicy)
+	 */
+	final RetryPolicy retryPolicy;
+
+	/**
+	 * Retry policies specified for particular services.
+	 *
+	 * @see Builder#retryPolicy(int, RetryPolicy)
+	 */
+	final Map<Integer, RetryPolicy> retryPolicies;
+
+	/**
+	 * Budget limiting retries made by calls adapted by this factory. May be {@code null} if retries
+	 * are not limited.
+	 *
+	 * @see Builder#retryBudget(RetryBudget)
+	 */
+	final RetryBudget retryBudget;
+
+	/**
+	 * Circuit breaker guarding calls adapted by this factory. May be {@code null} if calls are not
+	 * guarded.
+	 *
+	 * @see Builder#circuitBreaker(CircuitBreaker)
+	 */
+	final CircuitBreaker circuitBreaker;
+
+	/**
+	 * Rate limiter used for calls of services without limiter specified via {@link #rateLimiters}.
+	 * May be {@code null} to not limit such calls.
+	 *
+	 * @see Builder#rateLimiter(RateLimiter)
+	 */
+	final RateLimiter rateLimiter;
+
+	/**
+	 * Rate limiters specified for particular services.
+	 *
+	 * @see Builder#rateLimiter(int, RateLimiter)
+	 */
+	final Map<Integer, RateLimiter> rateLimiters;
+
+	/**
+	 * Dispatcher scheduling asynchronous calls adapted by this factory by theirs priorities. May be
+	 * {@code null} if calls are enqueued in the order in which they are made.
+	 *
+	 * @see Builder#priorityDispatcher(PriorityDispatcher)
+	 */
+	final PriorityDispatcher priorityDispatcher;
+
+	/**
+	 * Metrics to which are recorded calls adapted by this factory. May be {@code null} if calls
+	 * are not recorded.
+	 *
+	 * @see Builder#serviceMetrics(ServiceMetrics)
+	 */
+	final ServiceMetrics serviceMetrics;
+
+	/**
+	 * Executor via which calls adapted by this factory deliver all theirs responses and failures.
+	 * May be {@code null} to deliver them on the thread which has received them, unless callback
+	 * executor of the Retrofit instance is a {@link DispatchExecutor}.
+	 *
+	 * @see Builder#dispatchExecutor(Executor)
+	 */
+	final Executor dispatchExecutor;
+
 	/*
 	 * Constructors ================================================================================
 	 */
 
 	/**
-	 * Creates a new instance of ServiceCallAdapterFactory.
+	 * Creates a new instance of ServiceCallAdapterFactory with configuration of the given <var>builder</var>.
+	 *
+	 * @param builder The builder with configuration for the new factory.
 	 */
-	private ServiceCallAdapterFactory() {
+	ServiceCallAdapterFactory(@NonNull final Builder builder) {
 		super();
+		this.flights = builder.singleFlight ? new ConcurrentHashMap<String, SingleFlightCall.Flight<?>>() : null;
+		this.responseCache = builder.responseCache;
+		this.retryPolicy = builder.retryPolicy;
+		this.retryPolicies = new HashMap<>(builder.retryPolicies);
+		this.retryBudget = builder.retryBudget;
+		this.circuitBreaker = builder.circuitBreaker;
+		this.rateLimiter = builder.rateLimiter;
+		this.rateLimiters = new HashMap<>(builder.rateLimiters);
+		this.priorityDispatcher = builder.priorityDispatcher;
+		this.serviceMetrics = builder.serviceMetrics;
+		this.dispatchExecutor = builder.dispatchExecutor;
 	}
 
 	/*
@@ -80,7 +201,55 @@ public final class ServiceCallAdapterFactory extends CallAdapter.Factory {
 	 * @return Instance of call adapter factory ready to be used.
 	 */
 	@NonNull public static ServiceCallAdapterFactory create() {
-		return new ServiceCallAdapterFactory();
+		return new Builder().build();
+	}
+
+	/**
+	 * Returns the cache of converted response bodies used by calls adapted by this factory.
+	 *
+	 * @return The response cache or {@code null} if no cache has been specified.
+	 * @see Builder#responseCache(ResponseCache)
+	 */
+	@Nullable public ResponseCache getResponseCache() {
+		return responseCache;
+	}
+
+	/**
+	 * Checks whether calls adapted by this factory may be retried.
+	 *
+	 * @return {@code True} if there is at least one retry policy specified, {@code false} otherwise.
+	 */
+	boolean isRetryEnabled() {
+		return retryPolicy != null || !retryPolicies.isEmpty();
+	}
+
+	/**
+	 * Returns the retry policy for calls of the specified <var>serviceId</var>.
+	 *
+	 * @param serviceId Id of the service for which to return policy.
+	 * @return Retry policy or {@code null} if calls of the service should not be retried.
+	 */
+	@Nullable RetryPolicy retryPolicy(final int serviceId) {
+		return retryPolicies.containsKey(serviceId) ? retryPolicies.get(serviceId) : retryPolicy;
+	}
+
+	/**
+	 * Checks whether calls adapted by this factory may be rate limited.
+	 *
+	 * @return {@code True} if there is at least one rate limiter specified, {@code false} otherwise.
+	 */
+	boolean isRateLimitEnabled() {
+		return rateLimiter != null || !rateLimiters.isEmpty();
+	}
+
+	/**
+	 * Returns the rate limiter for calls of the specified <var>serviceId</var>.
+	 *
+	 * @param serviceId Id of the service for which to return limiter.
+	 * @return Rate limiter or {@code null} if calls of the service should not be limited.
+	 */
+	@Nullable RateLimiter rateLimiter(final int serviceId) {
+		return rateLimiters.containsKey(serviceId) ? rateLimiters.get(serviceId) : rateLimiter;
 	}
 
 	/**
@@ -95,10 +264,285 @@ public final class ServiceCallAdapterFactory extends CallAdapter.Factory {
 					"ServiceCall return type must be parametrized as ServiceCall<Foo> or ServiceCall<? extends Foo>."
 			);
 		}
-		return new ServiceCallAdapter<>(getParameterUpperBound(0, (ParameterizedType) returnType));
+		return new ServiceCallAdapter<>(getParameterUpperBound(0, (ParameterizedType) returnType), this, retrofit);
 	}
 
 	/*
 	 * Inner classes ===============================================================================
 	 */
+
+	/**
+	 * Builder that may be used to build instances of {@link ServiceCallAdapterFactory}.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public static final class Builder {
+
+		/**
+		 * See {@link ServiceCallAdapterFactory#flights}.
+		 */
+		boolean singleFlight;
+
+		/**
+		 * See {@link ServiceCallAdapterFactory#responseCache}.
+		 */
+		ResponseCache responseCache;
+
+		/**
+		 * See {@link ServiceCallAdapterFactory#retryPolicy}.
+		 */
+		RetryPolicy retryPolicy;
+
+		/**
+		 * See {@link ServiceCallAdapterFactory#retryPolicies}.
+		 */
+		final Map<Integer, RetryPolicy> retryPolicies = new HashMap<>(4);
+
+		/**
+		 * See {@link ServiceCallAdapterFactory#retryBudget}.
+		 */
+		RetryBudget retryBudget;
+
+		/**
+		 * See {@link ServiceCallAdapterFactory#circuitBreaker}.
+		 */
+		CircuitBreaker circuitBreaker;
+
+		/**
+		 * See {@link ServiceCallAdapterFactory#rateLimiter}.
+		 */
+		RateLimiter rateLimiter;
+
+		/**
+		 * See {@link ServiceCallAdapterFactory#rateLimiters}.
+		 */
+		final Map<Integer, RateLimiter> rateLimiters = new HashMap<>(4);
+
+		/**
+		 * See {@link ServiceCallAdapterFactory#priorityDispatcher}.
+		 */
+		PriorityDispatcher priorityDispatcher;
+
+		/**
+		 * See {@link ServiceCallAdapterFactory#serviceMetrics}.
+		 */
+		ServiceMetrics serviceMetrics;
+
+		/**
+		 * See {@link ServiceCallAdapterFactory#dispatchExecutor}.
+		 */
+		Executor dispatchExecutor;
+
+		/**
+		 * Specifies whether the single-flight mode should be enabled for calls adapted by the factory.
+		 * <p>
+		 * When enabled, identical idempotent requests (<b>GET</b> and <b>HEAD</b> with the same url,
+		 * headers and response type) enqueued while such request is already in flight are not sent
+		 * again. Their callbacks are rather attached to the request in flight and the received response
+		 * is delivered to all of them. Each {@link universum.studios.android.officium.service.ServiceCallback ServiceCallback}
+		 * keeps its own request id.
+		 * <p>
+		 * Note that all attached callbacks receive the same response body instance. Only a body which
+		 * is a {@link universum.studios.android.officium.service.BaseServiceObject BaseServiceObject}
+		 * delivered to a ServiceCallback is shallow copied for each callback, any other body, like
+		 * a list, is shared by all callbacks and should not be modified by them.
+		 * <p>
+		 * Synchronous execution via {@link Call#execute()} is never de-duplicated.
+		 * <p>
+		 * Default value: {@code false}
+		 *
+		 * @param enabled {@code True} to enable single-flight mode, {@code false} otherwise.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder singleFlight(final boolean enabled) {
+			this.singleFlight = enabled;
+			return this;
+		}
+
+		/**
+		 * Specifies a cache of converted response bodies to be used by calls adapted by the factory.
+		 * <p>
+		 * Bodies of successful responses received for idempotent requests enqueued via
+		 * {@link Call#enqueue(retrofit2.Callback)} are stored in the cache and subsequent identical
+		 * requests are served from the cache while the cached bodies are fresh. Cached bodies are
+		 * delivered via the dispatch executor, if any, otherwise on a background thread.
+		 * <p>
+		 * Expired bodies are revalidated via conditional requests only if {@link ResponseCache#interceptor()}
+		 * is installed in the OkHttp client, which is done automatically for services created via
+		 * {@link universum.studios.android.officium.service.ServiceManager ServiceManager}.
+		 *
+		 * @param cache The desired cache. May be {@code null} to not use any cache.
+		 * @return This builder to allow methods chaining.
+		 * @see ResponseCache.Builder
+		 */
+		public Builder responseCache(@Nullable final ResponseCache cache) {
+			this.responseCache = cache;
+			return this;
+		}
+
+		/**
+		 * Specifies a retry policy for calls of all services without policy specified via
+		 * {@link #retryPolicy(int, RetryPolicy)}.
+		 * <p>
+		 * Policy for a specific call is resolved from id of the service to which is associated the
+		 * enqueued callback, so synchronous execution via {@link Call#execute()} always uses this
+		 * policy. Retries are made via clones of the original call and are reported to the same
+		 * callback, with the same request id.
+		 *
+		 * @param policy The desired policy. May be {@code null} to not retry calls by default.
+		 * @return This builder to allow methods chaining.
+		 * @see RetryPolicy.Builder
+		 */
+		public Builder retryPolicy(@Nullable final RetryPolicy policy) {
+			this.retryPolicy = policy;
+			return this;
+		}
+
+		/**
+		 * Specifies a retry policy for calls of the service with the specified <var>serviceId</var>.
+		 *
+		 * @param serviceId Id of the service for which to specify policy.
+		 * @param policy    The desired policy. May be {@code null} to not retry calls of the service.
+		 * @return This builder to allow methods chaining.
+		 * @see #retryPolicy(RetryPolicy)
+		 */
+		public Builder retryPolicy(final int serviceId, @Nullable final RetryPolicy policy) {
+			this.retryPolicies.put(serviceId, policy);
+			return this;
+		}
+
+		/**
+		 * Specifies a budget limiting retries made by calls adapted by the factory.
+		 *
+		 * @param budget The desired budget. May be {@code null} to not limit retries.
+		 * @return This builder to allow methods chaining.
+		 * @see RetryBudget.Builder
+		 */
+		public Builder retryBudget(@Nullable final RetryBudget budget) {
+			this.retryBudget = budget;
+			return this;
+		}
+
+		/**
+		 * Specifies a circuit breaker to guard calls adapted by the factory.
+		 * <p>
+		 * Each request performed by an adapted call, including its retries, is guarded by the breaker.
+		 * Requests served from the response cache or joined to a request already in flight are not
+		 * recorded by the breaker.
+		 *
+		 * @param breaker The desired breaker. May be {@code null} to not guard calls.
+		 * @return This builder to allow methods chaining.
+		 * @see CircuitBreaker.Builder
+		 */
+		public Builder circuitBreaker(@Nullable final CircuitBreaker breaker) {
+			this.circuitBreaker = breaker;
+			return this;
+		}
+
+		/**
+		 * Specifies a rate limiter for calls of all services without limiter specified via
+		 * {@link #rateLimiter(int, RateLimiter)}.
+		 * <p>
+		 * Limiter for a specific call is resolved from id of the service to which is associated the
+		 * enqueued callback, so synchronous execution via {@link Call#execute()} always uses this
+		 * limiter. The same limiter may be specified for multiple services so they share the same quota.
+		 * Each request performed by an adapted call, including its retries, takes one permit from the
+		 * limiter. Requests served from the response cache or joined to a request already in flight
+		 * take no permits.
+		 *
+		 * @param limiter The desired limiter. May be {@code null} to not limit calls by default.
+		 * @return This builder to allow methods chaining.
+		 * @see RateLimiter.Builder
+		 */
+		public Builder rateLimiter(@Nullable final RateLimiter limiter) {
+			this.rateLimiter = limiter;
+			return this;
+		}
+
+		/**
+		 * Specifies a rate limiter for calls of the service with the specified <var>serviceId</var>.
+		 * <p>
+		 * Note that the service id is known only to callbacks of asynchronous calls, so calls executed
+		 * synchronously are never limited by this limiter, even when executed via {@link ServiceCall#execute()}
+		 * of a call associated with the service via {@link ServiceCall#withServiceId(int)}. Such calls
+		 * are limited by the limiter specified via {@link #rateLimiter(RateLimiter)}, if any.
+		 *
+		 * @param serviceId Id of the service for which to specify limiter.
+		 * @param limiter   The desired limiter. May be {@code null} to not limit calls of the service.
+		 * @return This builder to allow methods chaining.
+		 * @see #rateLimiter(RateLimiter)
+		 */
+		public Builder rateLimiter(final int serviceId, @Nullable final RateLimiter limiter) {
+			this.rateLimiters.put(serviceId, limiter);
+			return this;
+		}
+
+		/**
+		 * Specifies a dispatcher to schedule asynchronous calls adapted by the factory by theirs
+		 * priorities.
+		 * <p>
+		 * Priority of a specific call may be specified via {@link ServiceCall#withPriority(int)}.
+		 * Each request performed by an adapted call, including its retries, waits in the queue of
+		 * the dispatcher after it has passed the rate limiter. Synchronous execution via
+		 * {@link Call#execute()} is not scheduled by the dispatcher.
+		 *
+		 * @param dispatcher The desired dispatcher. May be {@code null} to enqueue calls in the order
+		 *                   in which they are made.
+		 * @return This builder to allow methods chaining.
+		 * @see PriorityDispatcher.Builder
+		 */
+		public Builder priorityDispatcher(@Nullable final PriorityDispatcher dispatcher) {
+			this.priorityDispatcher = dispatcher;
+			return this;
+		}
+
+		/**
+		 * Specifies metrics to which should be recorded calls adapted by the factory.
+		 * <p>
+		 * Each adapted call is recorded once from its enqueue to delivery of its response or failure,
+		 * including its retries, so responses served from the response cache or joined to a request
+		 * already in flight are recorded as well.
+		 *
+		 * @param metrics The desired metrics. May be {@code null} to not record calls.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder serviceMetrics(@Nullable final ServiceMetrics metrics) {
+			this.serviceMetrics = metrics;
+			return this;
+		}
+
+		/**
+		 * Specifies an executor via which should calls adapted by the factory deliver all theirs
+		 * responses and failures to the enqueued callbacks. This applies to responses received
+		 * from the network, including error ones, as well as to results not received from the
+		 * network, like cached responses or rejections.
+		 * <p>
+		 * If not specified, responses and failures received from the network are delivered on the
+		 * thread which has received them, like OkHttp's dispatcher thread, and the other results
+		 * on a background thread. Callback executor of the Retrofit instance is used only if it is
+		 * a {@link DispatchExecutor}, like the one specified via
+		 * {@link universum.studios.android.officium.service.ServiceManager.ServicesConfiguration#dispatchExecutor(Executor) ServicesConfiguration.dispatchExecutor(Executor)}.
+		 * <p>
+		 * Default value: {@code null}
+		 *
+		 * @param executor The desired executor. Should execute its tasks serially in order to preserve
+		 *                 order in which are results for a single callback delivered. May be {@code null}
+		 *                 to not dispatch results.
+		 * @return This builder to allow methods chaining.
+		 */
+		public Builder dispatchExecutor(@Nullable final Executor executor) {
+			this.dispatchExecutor = executor;
+			return this;
+		}
+
+		/**
+		 * Builds a new instance of ServiceCallAdapterFactory from the current data.
+		 *
+		 * @return New instance of ServiceCallAdapterFactory.
+		 */
+		@NonNull public ServiceCallAdapterFactory build() {
+			return new ServiceCallAdapterFactory(this);
+		}
+	}
 }
\ No newline at end of file
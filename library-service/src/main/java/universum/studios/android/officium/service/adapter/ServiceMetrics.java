@@ -0,0 +1,515 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import universum.studios.android.officium.service.ServiceObject;
+
+/**
+ * Metrics of calls adapted by {@link ServiceCallAdapterFactory} (see
+ * {@link ServiceCallAdapterFactory.Builder#serviceMetrics(ServiceMetrics)}) recorded for each id
+ * of service to which are associated callbacks of the calls.
+ * <p>
+ * For each service are recorded:
+ * <ul>
+ * <li>counts of successful responses, error responses and failures,</li>
+ * <li>latency from enqueue of a call to its response or failure, including retries and time spent
+ * in queues,</li>
+ * <li>conversion time, that is, time from receipt of response headers to delivery of the converted
+ * response, which covers reading and converting of the response body,</li>
+ * <li>counts of request and response bytes as specified by content lengths of theirs bodies.</li>
+ * </ul>
+ * Calls executed synchronously via {@link retrofit2.Call#execute()} are recorded for
+ * {@link ServiceObject#NO_SERVICE}.
+ * <p>
+ * All values are recorded without locking and may be obtained as immutable {@link Snapshot Snapshots}
+ * via {@link #getSnapshot(int)} or {@link #getSnapshots()}. Recording may be temporarily disabled
+ * via {@link #setEnabled(boolean)}. If no metrics are specified for the factory, calls are not
+ * instrumented at all.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class ServiceMetrics {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "ServiceMetrics";
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Recorders mapped to ids of theirs services.
+	 */
+	private final ConcurrentMap<Integer, Recorder> recorders = new ConcurrentHashMap<>(8);
+
+	/**
+	 * Flag indicating whether recording of metrics is enabled.
+	 */
+	private volatile boolean enabled = true;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Specifies whether these metrics should record calls. Calls enqueued while recording is disabled
+	 * are not recorded at all.
+	 *
+	 * @param enabled {@code True} to enable recording, {@code false} to disable it.
+	 * @see #isEnabled()
+	 */
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Checks whether these metrics record calls.
+	 *
+	 * @return {@code True} if recording is enabled, {@code false} otherwise.
+	 * @see #setEnabled(boolean)
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Returns recorder for the service with the specified <var>serviceId</var>. If there is no
+	 * recorder for the service yet, a new one is created.
+	 *
+	 * @param serviceId Id of the service for which to return recorder.
+	 * @return Recorder for the service.
+	 */
+	@NonNull Recorder recorder(final int serviceId) {
+		Recorder recorder = recorders.get(serviceId);
+		if (recorder == null) {
+			final Recorder newRecorder = new Recorder();
+			recorder = recorders.putIfAbsent(serviceId, newRecorder);
+			if (recorder == null) {
+				recorder = newRecorder;
+			}
+		}
+		return recorder;
+	}
+
+	/**
+	 * Returns snapshot of metrics recorded for the service with the specified <var>serviceId</var>.
+	 *
+	 * @param serviceId Id of the service of which metrics to return.
+	 * @return Snapshot of metrics or {@code null} if there were no calls recorded for the service.
+	 */
+	@Nullable public Snapshot getSnapshot(final int serviceId) {
+		final Recorder recorder = recorders.get(serviceId);
+		return recorder == null ? null : recorder.snapshot(serviceId);
+	}
+
+	/**
+	 * Returns snapshots of metrics recorded for all services.
+	 *
+	 * @return Snapshots mapped to ids of theirs services.
+	 */
+	@NonNull public Map<Integer, Snapshot> getSnapshots() {
+		final Map<Integer, Snapshot> snapshots = new HashMap<>(recorders.size());
+		for (final Map.Entry<Integer, Recorder> entry : recorders.entrySet()) {
+			snapshots.put(entry.getKey(), entry.getValue().snapshot(entry.getKey()));
+		}
+		return Collections.unmodifiableMap(snapshots);
+	}
+
+	/**
+	 * Resets metrics recorded for all services.
+	 */
+	public void reset() {
+		for (final Recorder recorder : recorders.values()) {
+			recorder.reset();
+		}
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * Recorder of metrics for a single service.
+	 */
+	static final class Recorder {
+
+		/**
+		 * Count of successful responses.
+		 */
+		final AtomicLong successes = new AtomicLong();
+
+		/**
+		 * Count of error responses.
+		 */
+		final AtomicLong errors = new AtomicLong();
+
+		/**
+		 * Count of failures.
+		 */
+		final AtomicLong failures = new AtomicLong();
+
+		/**
+		 * Count of request bytes.
+		 */
+		final AtomicLong requestBytes = new AtomicLong();
+
+		/**
+		 * Count of response bytes.
+		 */
+		final AtomicLong responseBytes = new AtomicLong();
+
+		/**
+		 * Recorder of latencies.
+		 */
+		final HistogramRecorder latency = new HistogramRecorder();
+
+		/**
+		 * Recorder of conversion times.
+		 */
+		final HistogramRecorder conversion = new HistogramRecorder();
+
+		/**
+		 * Resets all metrics of this recorder.
+		 */
+		void reset() {
+			successes.set(0);
+			errors.set(0);
+			failures.set(0);
+			requestBytes.set(0);
+			responseBytes.set(0);
+			latency.reset();
+			conversion.reset();
+		}
+
+		/**
+		 * Creates a snapshot of metrics currently recorded by this recorder.
+		 *
+		 * @param serviceId Id of the service for which are the metrics recorded.
+		 * @return Snapshot of metrics.
+		 */
+		Snapshot snapshot(final int serviceId) {
+			return new Snapshot(this, serviceId);
+		}
+	}
+
+	/**
+	 * Immutable snapshot of metrics recorded for a single service.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public static final class Snapshot {
+
+		/**
+		 * Id of the service for which have been the metrics recorded.
+		 */
+		private final int serviceId;
+
+		/**
+		 * Count of successful responses.
+		 */
+		private final long successCount;
+
+		/**
+		 * Count of error responses.
+		 */
+		private final long errorCount;
+
+		/**
+		 * Count of failures.
+		 */
+		private final long failureCount;
+
+		/**
+		 * Count of request bytes.
+		 */
+		private final long requestBytes;
+
+		/**
+		 * Count of response bytes.
+		 */
+		private final long responseBytes;
+
+		/**
+		 * Histogram of latencies.
+		 */
+		private final Histogram latency;
+
+		/**
+		 * Histogram of conversion times.
+		 */
+		private final Histogram conversionTime;
+
+		/**
+		 * Creates a new instance of Snapshot with metrics of the given <var>recorder</var>.
+		 *
+		 * @param recorder  The recorder of which metrics to snapshot.
+		 * @param serviceId Id of the service for which are the metrics recorded.
+		 */
+		Snapshot(final Recorder recorder, final int serviceId) {
+			this.serviceId = serviceId;
+			this.successCount = recorder.successes.get();
+			this.errorCount = recorder.errors.get();
+			this.failureCount = recorder.failures.get();
+			this.requestBytes = recorder.requestBytes.get();
+			this.responseBytes = recorder.responseBytes.get();
+			this.latency = recorder.latency.snapshot();
+			this.conversionTime = recorder.conversion.snapshot();
+		}
+
+		/**
+		 * Returns id of the service for which have been the metrics recorded.
+		 *
+		 * @return Service id.
+		 */
+		public int getServiceId() {
+			return serviceId;
+		}
+
+		/**
+		 * Returns the count of responses with successful code.
+		 *
+		 * @return Count of successful responses.
+		 */
+		public long getSuccessCount() {
+			return successCount;
+		}
+
+		/**
+		 * Returns the count of responses with error code.
+		 *
+		 * @return Count of error responses.
+		 */
+		public long getErrorCount() {
+			return errorCount;
+		}
+
+		/**
+		 * Returns the count of calls which have failed without response.
+		 *
+		 * @return Count of failures.
+		 */
+		public long getFailureCount() {
+			return failureCount;
+		}
+
+		/**
+		 * Returns the count of finished calls, that is, sum of successful responses, error responses
+		 * and failures.
+		 *
+		 * @return Count of calls.
+		 */
+		public long getCallCount() {
+			return successCount + errorCount + failureCount;
+		}
+
+		/**
+		 * Returns the count of bytes sent in bodies of requests with known content length.
+		 *
+		 * @return Count of request bytes.
+		 */
+		public long getRequestBytes() {
+			return requestBytes;
+		}
+
+		/**
+		 * Returns the count of bytes received in bodies of responses with known content length.
+		 *
+		 * @return Count of response bytes.
+		 */
+		public long getResponseBytes() {
+			return responseBytes;
+		}
+
+		/**
+		 * Returns histogram of latencies from enqueue of calls to theirs responses or failures.
+		 *
+		 * @return Latency histogram.
+		 */
+		@NonNull public Histogram getLatency() {
+			return latency;
+		}
+
+		/**
+		 * Returns histogram of times spent by reading and converting of response bodies.
+		 *
+		 * @return Conversion time histogram.
+		 */
+		@NonNull public Histogram getConversionTime() {
+			return conversionTime;
+		}
+
+		/**
+		 */
+		@Override public String toString() {
+			return "Snapshot{serviceId: " + serviceId +
+					", successCount: " + successCount +
+					", errorCount: " + errorCount +
+					", failureCount: " + failureCount +
+					", requestBytes: " + requestBytes +
+					", responseBytes: " + responseBytes +
+					", latency: " + latency +
+					", conversionTime: " + conversionTime + "}";
+		}
+	}
+
+	/**
+	 * Immutable snapshot of recorded durations which may be used to compute theirs percentiles.
+	 *
+	 * @author Martin Albedinsky
+	 * @since 2.0
+	 */
+	public static final class Histogram {
+
+		/**
+		 * Counts of durations in buckets of the recorder.
+		 */
+		private final long[] counts;
+
+		/**
+		 * Count of recorded durations.
+		 */
+		private final long count;
+
+		/**
+		 * Sum of recorded durations in microseconds.
+		 */
+		private final long total;
+
+		/**
+		 * Maximum recorded duration in microseconds.
+		 */
+		private final long max;
+
+		/**
+		 * Creates a new instance of Histogram with the specified data.
+		 *
+		 * @param counts Counts of durations in buckets of the recorder.
+		 * @param total  Sum of recorded durations in microseconds.
+		 * @param max    Maximum recorded duration in microseconds.
+		 */
+		Histogram(final long[] counts, final long total, final long max) {
+			long count = 0;
+			for (final long bucketCount : counts) {
+				count += bucketCount;
+			}
+			this.counts = counts;
+			this.count = count;
+			this.total = total;
+			this.max = max;
+		}
+
+		/**
+		 * Returns the count of recorded durations.
+		 *
+		 * @return Count of durations.
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the mean of recorded durations.
+		 *
+		 * @param unit The desired time unit.
+		 * @return Mean duration in the requested unit or {@code 0} if there are no durations.
+		 */
+		public long getMean(@NonNull final TimeUnit unit) {
+			return count == 0 ? 0 : unit.convert(total / count, TimeUnit.MICROSECONDS);
+		}
+
+		/**
+		 * Returns the maximum recorded duration.
+		 *
+		 * @param unit The desired time unit.
+		 * @return Maximum duration in the requested unit.
+		 */
+		public long getMax(@NonNull final TimeUnit unit) {
+			return unit.convert(max, TimeUnit.MICROSECONDS);
+		}
+
+		/**
+		 * Returns duration at the specified <var>percentile</var>, like {@code 50}, {@code 95} or
+		 * {@code 99}, that is, duration which is not exceeded by the specified percentage of recorded
+		 * durations. The returned duration is the upper bound of a histogram bucket, so it may
+		 * exceed the exact duration by at most {@code 12.5%}.
+		 *
+		 * @param percentile The desired percentile from the range {@code [0, 100]}.
+		 * @param unit       The desired time unit.
+		 * @return Duration in the requested unit or {@code 0} if there are no durations.
+		 * @throws IllegalArgumentException If the percentile is out of range.
+		 */
+		public long getPercentile(final double percentile, @NonNull final TimeUnit unit) {
+			if (percentile < 0 || percentile > 100) {
+				throw new IllegalArgumentException("Percentile must be from the range [0, 100].");
+			}
+			if (count == 0) {
+				return 0;
+			}
+			final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100d));
+			long cumulative = 0;
+			for (int i = 0; i < counts.length; i++) {
+				cumulative += counts[i];
+				if (cumulative >= rank) {
+					return unit.convert(Math.min(HistogramRecorder.bucketUpperBoundOf(i), max), TimeUnit.MICROSECONDS);
+				}
+			}
+			return unit.convert(max, TimeUnit.MICROSECONDS);
+		}
+
+		/**
+		 */
+		@Override public String toString() {
+			return "Histogram{count: " + count +
+					", p50Millis: " + getPercentile(50, TimeUnit.MILLISECONDS) +
+					", p95Millis: " + getPercentile(95, TimeUnit.MILLISECONDS) +
+					", p99Millis: " + getPercentile(99, TimeUnit.MILLISECONDS) +
+					", maxMillis: " + getMax(TimeUnit.MILLISECONDS) + "}";
+		}
+	}
+}
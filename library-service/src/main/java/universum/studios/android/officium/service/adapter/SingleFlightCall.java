@@ -0,0 +1,373 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import universum.studios.android.officium.service.ServiceFailure;
+
+/**
+ * A {@link Call} implementation which de-duplicates identical idempotent requests that are enqueued
+ * while such request is already in flight. Calls are identified by a key composed of request method,
+ * url, headers and response type. The first enqueued call starts a {@link Flight} which is joined
+ * by all subsequently enqueued identical calls until the response for the flight is received.
+ * The received response is then delivered to callbacks of all calls that have joined the flight.
+ * <p>
+ * The delivered response body is shared by all the callbacks. Only a
+ * {@link universum.studios.android.officium.service.BaseServiceObject BaseServiceObject} body
+ * is shallow copied by each {@link universum.studios.android.officium.service.ServiceCallback ServiceCallback}
+ * which receives it, so the callbacks should not modify bodies of other types.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+final class SingleFlightCall<T> implements Call<T> {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "SingleFlightCall";
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Original call to which this call delegates.
+	 */
+	private final Call<T> delegate;
+
+	/**
+	 * Type of the response body for this call. Used as part of the flight key.
+	 */
+	private final Type responseType;
+
+	/**
+	 * Registry of flights that are currently in flight.
+	 */
+	private final ConcurrentMap<String, Flight<?>> flights;
+
+	/**
+	 * Flight which this call has joined. May be {@code null} if this call has not been enqueued yet
+	 * or its request is not idempotent.
+	 */
+	private volatile Flight<T> flight;
+
+	/**
+	 * Flag indicating whether this call has been already executed or enqueued.
+	 */
+	private volatile boolean executed;
+
+	/**
+	 * Flag indicating whether this call has been canceled.
+	 */
+	private volatile boolean canceled;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of SingleFlightCall for the specified <var>delegate</var>.
+	 *
+	 * @param delegate     The call to which should the new call delegate.
+	 * @param responseType Type of the response body.
+	 * @param flights      Registry of flights currently in flight.
+	 */
+	SingleFlightCall(@NonNull final Call<T> delegate, @NonNull final Type responseType, @NonNull final ConcurrentMap<String, Flight<?>> flights) {
+		this.delegate = delegate;
+		this.responseType = responseType;
+		this.flights = flights;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 */
+	@Override public Response<T> execute() throws IOException {
+		markExecuted();
+		return delegate.execute();
+	}
+
+	/**
+	 */
+	@SuppressWarnings("unchecked")
+	@Override public void enqueue(@NonNull final Callback<T> callback) {
+		markExecuted();
+		final Request request = delegate.request();
+		if (!Requests.isIdempotent(request)) {
+			this.delegate.enqueue(callback);
+			return;
+		}
+		final String key = Requests.createKey(request, responseType);
+		while (true) {
+			final Flight<T> currentFlight = (Flight<T>) flights.get(key);
+			if (currentFlight == null) {
+				final Flight<T> newFlight = new Flight<>(key, delegate, flights);
+				newFlight.join(this, callback);
+				if (flights.putIfAbsent(key, newFlight) == null) {
+					this.flight = newFlight;
+					newFlight.start();
+					return;
+				}
+			} else if (currentFlight.join(this, callback)) {
+				this.flight = currentFlight;
+				return;
+			} else {
+				// Flight is just completing, remove it so a new one may be started.
+				flights.remove(key, currentFlight);
+			}
+		}
+	}
+
+	/**
+	 * Marks this call as executed.
+	 *
+	 * @throws IllegalStateException If this call has been already executed.
+	 */
+	private synchronized void markExecuted() {
+		if (executed) throw new IllegalStateException("Already executed.");
+		this.executed = true;
+	}
+
+	/**
+	 */
+	@Override public boolean isExecuted() {
+		return executed;
+	}
+
+	/**
+	 * If this call has joined a flight together with other calls, only this call leaves the flight
+	 * and its callback is notified about failure, the shared request continues for other calls.
+	 */
+	@Override public void cancel() {
+		this.canceled = true;
+		final Flight<T> currentFlight = flight;
+		if (currentFlight == null) {
+			this.delegate.cancel();
+		} else {
+			currentFlight.leave(this);
+		}
+	}
+
+	/**
+	 */
+	@Override public boolean isCanceled() {
+		return canceled || (flight == null && delegate.isCanceled());
+	}
+
+	/**
+	 */
+	@Override public Request request() {
+		return delegate.request();
+	}
+
+	/**
+	 */
+	@SuppressWarnings("CloneDoesntCallSuperClone")
+	@Override public Call<T> clone() {
+		return new SingleFlightCall<>(delegate.clone(), responseType, flights);
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+
+	/**
+	 * A {@link Callback} implementation which represents a single request in flight shared by
+	 * multiple calls.
+	 *
+	 * @param <T> Type of the response body.
+	 */
+	static final class Flight<T> implements Callback<T>, Callbacks.Wrapper {
+
+		/**
+		 * Key of this flight within registry of flights.
+		 */
+		private final String key;
+
+		/**
+		 * Call which actually performs request for this flight.
+		 */
+		private final Call<T> call;
+
+		/**
+		 * Registry of flights in which is this flight registered.
+		 */
+		private final ConcurrentMap<String, Flight<?>> flights;
+
+		/**
+		 * List of calls that have joined this flight.
+		 */
+		private final List<SingleFlightCall<T>> calls = new ArrayList<>(2);
+
+		/**
+		 * List of callbacks of calls that have joined this flight.
+		 */
+		private final List<Callback<T>> callbacks = new ArrayList<>(2);
+
+		/**
+		 * Flag indicating whether this flight has been already completed, so no other calls may
+		 * join it.
+		 */
+		private boolean completed;
+
+		/**
+		 * Creates a new instance of Flight with the specified <var>key</var> and <var>call</var>.
+		 *
+		 * @param key     Key of the new flight.
+		 * @param call    The call which should perform the shared request.
+		 * @param flights Registry of flights in which will be the new flight registered.
+		 */
+		Flight(@NonNull final String key, @NonNull final Call<T> call, @NonNull final ConcurrentMap<String, Flight<?>> flights) {
+			this.key = key;
+			this.call = call;
+			this.flights = flights;
+		}
+
+		/**
+		 * Returns callback of the first call that has joined this flight.
+		 */
+		@Override @Nullable public synchronized Callback<?> unwrap() {
+			return callbacks.isEmpty() ? null : callbacks.get(0);
+		}
+
+		/**
+		 * Starts this flight by enqueuing its call.
+		 */
+		void start() {
+			this.call.enqueue(this);
+		}
+
+		/**
+		 * Joins the given <var>call</var> along with its <var>callback</var> to this flight.
+		 *
+		 * @param call     The call that wants to join this flight.
+		 * @param callback The callback to be notified when this flight completes.
+		 * @return {@code True} if the call has joined this flight, {@code false} if this flight is
+		 * already completed.
+		 */
+		synchronized boolean join(@NonNull final SingleFlightCall<T> call, @NonNull final Callback<T> callback) {
+			if (completed) {
+				return false;
+			}
+			this.calls.add(call);
+			this.callbacks.add(callback);
+			return true;
+		}
+
+		/**
+		 * Removes the given <var>call</var> from this flight. If the call is the last one within
+		 * this flight, the whole flight is canceled.
+		 *
+		 * @param call The call that wants to leave this flight.
+		 */
+		void leave(@NonNull final SingleFlightCall<T> call) {
+			final Callback<T> callback;
+			synchronized (this) {
+				if (completed) {
+					return;
+				}
+				if (calls.size() == 1 && calls.get(0) == call) {
+					// Let the failure for cancellation be delivered by the original call.
+					complete();
+					this.call.cancel();
+					return;
+				}
+				final int index = calls.indexOf(call);
+				if (index == -1) {
+					return;
+				}
+				calls.remove(index);
+				callback = callbacks.remove(index);
+			}
+			callback.onFailure(call, ServiceFailure.CANCELED);
+		}
+
+		/**
+		 * Completes this flight so no other calls may join it.
+		 */
+		private synchronized void complete() {
+			this.completed = true;
+			this.flights.remove(key, this);
+		}
+
+		/**
+		 */
+		@Override public void onResponse(@NonNull final Call<T> call, @NonNull final Response<T> response) {
+			complete();
+			final int count = calls.size();
+			if (count == 1 || response.isSuccessful()) {
+				for (int i = 0; i < count; i++) {
+					callbacks.get(i).onResponse(calls.get(i), response);
+				}
+				return;
+			}
+			// Error body may be consumed only once, so each callback needs to receive its own copy.
+			final ResponseBody errorBody = response.errorBody();
+			final MediaType contentType = errorBody == null ? null : errorBody.contentType();
+			final byte[] errorBytes;
+			try {
+				errorBytes = errorBody == null ? new byte[0] : errorBody.bytes();
+			} catch (IOException e) {
+				onFailure(call, e);
+				return;
+			}
+			for (int i = 0; i < count; i++) {
+				callbacks.get(i).onResponse(calls.get(i), Response.<T>error(ResponseBody.create(contentType, errorBytes), response.raw()));
+			}
+		}
+
+		/**
+		 */
+		@Override public void onFailure(@NonNull final Call<T> call, @NonNull final Throwable failure) {
+			complete();
+			final int count = calls.size();
+			for (int i = 0; i < count; i++) {
+				callbacks.get(i).onFailure(calls.get(i), failure);
+			}
+		}
+	}
+}
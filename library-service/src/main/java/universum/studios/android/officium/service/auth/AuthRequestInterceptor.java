@@ -21,6 +21,7 @@ package universum.studios.android.officium.service.auth;
 import java.io.IOException;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import okhttp3.Interceptor;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -34,6 +35,9 @@ import okhttp3.Response;
  * {@link #intercept(Chain)} is invoked. If the peeked token is valid the interceptor will add a new
  * header into request with name: <b>Authorization</b> and value: <b>Bearer TOKEN_VALUE</b>. If token
  * provider does not provide valid token, request remains unchanged.
+ * <p>
+ * Token provider which peeks the token in an expensive way may be wrapped into {@link AuthTokenCache}
+ * which may be also used along with {@link AuthTokenAuthenticator} to refresh expired tokens.
  *
  * @author Martin Albedinsky
  * @since 1.0
@@ -62,6 +66,11 @@ public final class AuthRequestInterceptor implements Interceptor {
 	 */
 	public static final String HEADER_NAME = "Authorization";
 
+	/**
+	 * Prefix of value of the authorization header which is followed by the token.
+	 */
+	static final String HEADER_VALUE_PREFIX = "Bearer ";
+
 	/*
 	 * Members =====================================================================================
 	 */
@@ -102,11 +111,23 @@ public final class AuthRequestInterceptor implements Interceptor {
 		return (authToken == null || authToken.length() == 0) ?
 				chain.proceed(request) :
 				chain.proceed(request.newBuilder()
-						.header(HEADER_NAME, "Bearer " + authToken)
+						.header(HEADER_NAME, HEADER_VALUE_PREFIX + authToken)
 						.build()
 				);
 	}
 
+	/**
+	 * Returns the token with which has been the given <var>request</var> authorized.
+	 *
+	 * @param request The request of which token to return.
+	 * @return Token from the authorization header or {@code null} if the request has not been
+	 * authorized by this interceptor.
+	 */
+	@Nullable static String tokenOf(@NonNull final Request request) {
+		final String headerValue = request.header(HEADER_NAME);
+		return headerValue != null && headerValue.startsWith(HEADER_VALUE_PREFIX) ? headerValue.substring(HEADER_VALUE_PREFIX.length()) : null;
+	}
+
 	/*
 	 * Inner classes ===============================================================================
 	 */
@@ -0,0 +1,117 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.auth;
+
+import java.io.IOException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import okhttp3.Authenticator;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.Route;
+
+/**
+ * An {@link Authenticator} implementation which responds to <b>401 Unauthorized</b> responses by
+ * refreshing the authorization token via {@link AuthTokenCache#refreshToken(String, AuthTokenRefresher)}
+ * and retrying the rejected request with the new token.
+ * <p>
+ * When the token expires, all requests sent with that token are rejected at nearly the same time.
+ * Only the first of them performs the refresh, the others wait for it to finish and then are retried
+ * with the refreshed token. A request is retried with a new token only once, so the requests rejected
+ * also with the new token result in the 401 response.
+ * <p>
+ * This authenticator should be installed via {@link okhttp3.OkHttpClient.Builder#authenticator(Authenticator)}
+ * along with {@link AuthRequestInterceptor} created for the same token cache.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ */
+public final class AuthTokenAuthenticator implements Authenticator {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "AuthTokenAuthenticator";
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Cache of which token to refresh.
+	 */
+	private final AuthTokenCache tokenCache;
+
+	/**
+	 * Refresher used to obtain new tokens.
+	 */
+	private final AuthTokenRefresher tokenRefresher;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of AuthTokenAuthenticator for the given <var>tokenCache</var>.
+	 *
+	 * @param tokenCache     The cache of which token to refresh whenever the server rejects it.
+	 * @param tokenRefresher The refresher used to obtain new tokens.
+	 */
+	public AuthTokenAuthenticator(@NonNull final AuthTokenCache tokenCache, @NonNull final AuthTokenRefresher tokenRefresher) {
+		this.tokenCache = tokenCache;
+		this.tokenRefresher = tokenRefresher;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 */
+	@Override @Nullable public Request authenticate(@Nullable final Route route, @NonNull final Response response) throws IOException {
+		if (response.priorResponse() != null) {
+			// Request has been already retried with a refreshed token.
+			return null;
+		}
+		final Request request = response.request();
+		final String expiredToken = AuthRequestInterceptor.tokenOf(request);
+		final String token = tokenCache.refreshToken(expiredToken, tokenRefresher);
+		if (token == null || token.equals(expiredToken)) {
+			return null;
+		}
+		return request.newBuilder().header(AuthRequestInterceptor.HEADER_NAME, AuthRequestInterceptor.HEADER_VALUE_PREFIX + token).build();
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+}
@@ -0,0 +1,184 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.auth;
+
+import java.io.IOException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * An {@link AuthTokenProvider} implementation which caches token peeked from another provider in
+ * memory, so the other provider, which may for example request the token via inter process call
+ * to {@link android.accounts.AccountManager AccountManager}, is asked for the token only when there
+ * is no token cached.
+ * <p>
+ * The cached token may be invalidated via {@link #invalidateToken()} or, preferably, via
+ * {@link #invalidateToken(String)} which invalidates only the specified token and does not discard
+ * a newer one. Whenever the server rejects the cached token, a new token may be obtained via
+ * {@link #refreshToken(String, AuthTokenRefresher)} which performs at most one refresh at a time.
+ * This is performed automatically by {@link AuthTokenAuthenticator}.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ *
+ * @see AuthRequestInterceptor
+ */
+public final class AuthTokenCache implements AuthTokenProvider {
+
+	/*
+	 * Constants ===================================================================================
+	 */
+
+	/**
+	 * Log TAG.
+	 */
+	// private static final String TAG = "AuthTokenCache";
+
+	/*
+	 * Interface ===================================================================================
+	 */
+
+	/*
+	 * Static members ==============================================================================
+	 */
+
+	/*
+	 * Members =====================================================================================
+	 */
+
+	/**
+	 * Provider from which to peek token whenever there is no token cached.
+	 */
+	private final AuthTokenProvider tokenProvider;
+
+	/**
+	 * Lock used to load and refresh the token.
+	 */
+	private final Object lock = new Object();
+
+	/**
+	 * Currently cached token. May be {@code null} if there is no token cached.
+	 */
+	private volatile String token;
+
+	/*
+	 * Constructors ================================================================================
+	 */
+
+	/**
+	 * Creates a new instance of AuthTokenCache for the given <var>tokenProvider</var>.
+	 *
+	 * @param tokenProvider The provider from which to peek the token whenever there is no token cached.
+	 */
+	public AuthTokenCache(@NonNull final AuthTokenProvider tokenProvider) {
+		this.tokenProvider = tokenProvider;
+	}
+
+	/*
+	 * Methods =====================================================================================
+	 */
+
+	/**
+	 * Returns the cached token or, if there is no token cached, the token peeked from the provider
+	 * specified for this cache which is then cached.
+	 */
+	@Override @Nullable public String peekToken() {
+		final String cachedToken = token;
+		if (cachedToken != null) {
+			return cachedToken;
+		}
+		synchronized (lock) {
+			if (token == null) {
+				this.token = emptyToNull(tokenProvider.peekToken());
+			}
+			return token;
+		}
+	}
+
+	/**
+	 * Invalidates the cached token (if any), so the next call to {@link #peekToken()} will peek the
+	 * token from the provider specified for this cache.
+	 *
+	 * @see #invalidateToken(String)
+	 */
+	public void invalidateToken() {
+		synchronized (lock) {
+			this.token = null;
+		}
+	}
+
+	/**
+	 * Invalidates the cached token only if it is the specified one.
+	 *
+	 * @param token The token to invalidate.
+	 * @return {@code True} if the specified token has been cached and is now invalidated, {@code false}
+	 * otherwise.
+	 */
+	public boolean invalidateToken(@NonNull final String token) {
+		synchronized (lock) {
+			if (token.equals(this.token)) {
+				this.token = null;
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Obtains a new token in place of the specified <var>expiredToken</var> via the given <var>refresher</var>
+	 * and caches it.
+	 * <p>
+	 * Only one refresh is performed at a time. Callers which request refresh of the same expired token
+	 * while the refresh is in progress wait for its completion and receive the refreshed token without
+	 * performing another refresh.
+	 *
+	 * @param expiredToken The token rejected by the server. May be {@code null} if the rejected request
+	 *                     has not been authorized.
+	 * @param refresher    The refresher used to obtain the new token.
+	 * @return The new token or {@code null} if there is no token available.
+	 * @throws IOException If the refresher has failed to obtain the new token.
+	 */
+	@Nullable public String refreshToken(@Nullable final String expiredToken, @NonNull final AuthTokenRefresher refresher) throws IOException {
+		synchronized (lock) {
+			final String cachedToken = token;
+			if (cachedToken != null && !cachedToken.equals(expiredToken)) {
+				// Token has been already refreshed by another caller.
+				return cachedToken;
+			}
+			this.token = null;
+			this.token = emptyToNull(refresher.refreshToken(expiredToken));
+			return token;
+		}
+	}
+
+	/**
+	 * Returns {@code null} if the given <var>token</var> is empty.
+	 *
+	 * @param token The token to check.
+	 * @return The token or {@code null} if it is {@code null} or empty.
+	 */
+	private static String emptyToNull(final String token) {
+		return token == null || token.length() == 0 ? null : token;
+	}
+
+	/*
+	 * Inner classes ===============================================================================
+	 */
+}
@@ -0,0 +1,47 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.auth;
+
+import java.io.IOException;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Interface for refreshers that can obtain a new authorization token in place of a token that has
+ * been rejected by the server.
+ *
+ * @author Martin Albedinsky
+ * @since 2.0
+ *
+ * @see AuthTokenAuthenticator
+ */
+public interface AuthTokenRefresher {
+
+	/**
+	 * Invalidates the given <var>expiredToken</var> and obtains a new authorization token. This method
+	 * is invoked on a background thread and may block until the new token is obtained, like via
+	 * {@link android.accounts.AccountManager#blockingGetAuthToken(android.accounts.Account, String, boolean) AccountManager.blockingGetAuthToken(...)}.
+	 *
+	 * @param expiredToken The token which has been rejected by the server. May be {@code null} if
+	 *                     the rejected request has not been authorized.
+	 * @return New authorization token or {@code null} if there is no token available.
+	 * @throws IOException If the new token could not be obtained.
+	 */
+	@Nullable String refreshToken(@Nullable String expiredToken) throws IOException;
+}
@@ -20,9 +20,11 @@ package universum.studios.android.officium.service;
 
 import org.junit.Test;
 
+import androidx.annotation.NonNull;
 import universum.studios.android.test.local.LocalTestCase;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 /**
@@ -36,6 +38,7 @@ public final class BaseServiceObjectTest extends LocalTestCase {
 		// Assert:
 		assertThat(object.getServiceId(), is(BaseServiceObject.NO_SERVICE));
 		assertThat(object.getRequestId(), is(BaseServiceObject.NO_REQUEST));
+		assertThat(object.getRequestIdAsLong(), is(BaseServiceObject.NO_REQUEST_ID));
 	}
 
 	@Test public void testAssociateWith() {
@@ -87,5 +90,102 @@ public final class BaseServiceObjectTest extends LocalTestCase {
 		object.setRequestId("4");
 	}
 
+	@Test public void testAssociateWithPrimitiveRequestId() {
+		// Arrange:
+		final TestObject object = new TestObject();
+		// Act:
+		BaseServiceObject.associateWith(object, 1, 2L);
+		// Assert:
+		assertThat(object.getServiceId(), is(1));
+		assertThat(object.getRequestIdAsLong(), is(2L));
+		assertThat(object.getRequestId(), is("2"));
+	}
+
+	@Test public void testAssociateWithPrimitiveRequestIdWhenAlreadyAssociated() {
+		// Arrange:
+		final TestObject object = new TestObject();
+		BaseServiceObject.associateWith(object, 1, "2");
+		// Act:
+		BaseServiceObject.associateWith(object, 3, 4L);
+		// Assert:
+		assertThat(object.getServiceId(), is(1));
+		assertThat(object.getRequestIdAsLong(), is(2L));
+		assertThat(object.getRequestId(), is("2"));
+	}
+
+	@Test public void testAssociateServiceObjectWithPrimitiveRequestId() {
+		// Arrange:
+		final TestServiceObject object = new TestServiceObject();
+		// Act:
+		BaseServiceObject.associateWith(object, 1, 2L);
+		BaseServiceObject.associateWith(object, 3, 4L);
+		// Assert:
+		assertThat(object.serviceId, is(1));
+		assertThat(object.requestId, is("2"));
+	}
+
+	@Test public void testAssociateWithSource() {
+		// Arrange:
+		final TestObject source = new TestObject();
+		BaseServiceObject.associateWith(source, 1, 2L);
+		final TestObject object = new TestObject();
+		// Act:
+		BaseServiceObject.associateWith(object, source);
+		// Assert:
+		assertThat(object.getServiceId(), is(1));
+		assertThat(object.getRequestIdAsLong(), is(2L));
+		assertThat(object.requestId, is(nullValue()));
+	}
+
+	@Test public void testSetRequestIdNotRepresentingNumber() {
+		// Arrange:
+		final TestObject object = new TestObject();
+		// Act:
+		object.setRequestId("request:1");
+		// Assert:
+		assertThat(object.getRequestId(), is("request:1"));
+		assertThat(object.getRequestIdAsLong(), is(BaseServiceObject.NO_REQUEST_ID));
+	}
+
+	@Test public void testSetRequestIdExceedingPrimitiveRange() {
+		// Arrange:
+		final TestObject object = new TestObject();
+		// Act:
+		object.setRequestId("9999999999999999999");
+		// Assert:
+		assertThat(object.getRequestIdAsLong(), is(BaseServiceObject.NO_REQUEST_ID));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testSetPrimitiveRequestIdWhenAlreadyAssociated() {
+		// Arrange:
+		final TestObject object = new TestObject();
+		BaseServiceObject.associateWith(object, 1, "2");
+		// Act:
+		object.setRequestId(4L);
+	}
+
 	private static final class TestObject extends BaseServiceObject {}
+
+	private static final class TestServiceObject implements ServiceObject {
+
+		int serviceId = NO_SERVICE;
+		String requestId = NO_REQUEST;
+
+		@Override public void setServiceId(final int serviceId) {
+			this.serviceId = serviceId;
+		}
+
+		@Override public int getServiceId() {
+			return serviceId;
+		}
+
+		@Override public void setRequestId(@NonNull final String requestId) {
+			this.requestId = requestId;
+		}
+
+		@Override @NonNull public String getRequestId() {
+			return requestId;
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,242 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.Okio;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class ChunkedUploadTest extends LocalTestCase {
+
+	@Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test public void testPartContentRange() {
+		// Act + Assert:
+		assertThat(new ChunkedUpload.Part(1, 100, 100, 250).getContentRange(), is("bytes 100-199/250"));
+		assertThat(new ChunkedUpload.Part(0, 0, 0, 0).getContentRange(), is("bytes */0"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuilderBuildWithInvalidPartSize() {
+		// Act:
+		new ChunkedUpload.Builder(new File("file"), new TestPartCallFactory()).partSize(0).build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuilderBuildWithInvalidMaxConcurrency() {
+		// Act:
+		new ChunkedUpload.Builder(new File("file"), new TestPartCallFactory()).maxConcurrency(0).build();
+	}
+
+	@Test public void testExecute() throws Exception {
+		// Arrange:
+		final File file = createFile(250);
+		final File stateFile = new File(folder.getRoot(), "upload.state");
+		final TestPartCallFactory factory = new TestPartCallFactory();
+		final AtomicLong reportedBytes = new AtomicLong();
+		final ChunkedUpload upload = new ChunkedUpload.Builder(file, factory)
+				.partSize(100)
+				.maxConcurrency(2)
+				.stateFile(stateFile)
+				.mediaType(MediaType.parse("application/pdf"))
+				.progressInterval(0, TimeUnit.MILLISECONDS)
+				.progressListener(new ChunkedUpload.OnProgressListener() {
+
+					@Override public void onProgress(@NonNull final ChunkedUpload upload, final long uploadedBytes, final long totalBytes) {
+						assertThat(totalBytes, is(250L));
+						reportedBytes.set(uploadedBytes);
+					}
+				})
+				.build();
+		// Act:
+		upload.execute();
+		// Assert:
+		assertThat(factory.contents.size(), is(3));
+		final Buffer uploaded = new Buffer();
+		for (int i = 0; i < 3; i++) {
+			uploaded.write(factory.contents.get(i));
+		}
+		assertThat(uploaded.readByteArray(), is(contentOf(250)));
+		assertThat(factory.contentRanges.get(2), is("bytes 200-249/250"));
+		assertThat(factory.contentTypes.get(0), is(MediaType.parse("application/pdf")));
+		assertThat(upload.getUploadedBytes(), is(250L));
+		assertThat(reportedBytes.get(), is(250L));
+		assertThat(stateFile.exists(), is(false));
+	}
+
+	@Test public void testExecuteResumesFromState() throws Exception {
+		// Arrange:
+		final File file = createFile(250);
+		final File stateFile = new File(folder.getRoot(), "upload.state");
+		final TestPartCallFactory factory = new TestPartCallFactory();
+		factory.failingIndex = 1;
+		final ChunkedUpload upload = new ChunkedUpload.Builder(file, factory).partSize(100).maxConcurrency(1).stateFile(stateFile).build();
+		try {
+			upload.execute();
+			throw new AssertionError("No exception thrown.");
+		} catch (ServiceErrorException e) {
+			assertThat(e.getError().getErrorCode(), is(500));
+		}
+		assertThat(stateFile.exists(), is(true));
+		factory.failingIndex = -1;
+		factory.contents.clear();
+		// Act:
+		upload.execute();
+		// Assert:
+		assertThat(factory.contents.containsKey(0), is(false));
+		assertThat(factory.contents.get(1), is(notNullValue()));
+		assertThat(factory.contents.get(2), is(notNullValue()));
+		assertThat(stateFile.exists(), is(false));
+	}
+
+	@Test public void testExecuteIgnoresStateOfModifiedFile() throws Exception {
+		// Arrange:
+		final File file = createFile(250);
+		final File stateFile = new File(folder.getRoot(), "upload.state");
+		Okio.buffer(Okio.sink(stateFile)).writeUtf8("v1 100 0 100\n0\n").close();
+		final TestPartCallFactory factory = new TestPartCallFactory();
+		final ChunkedUpload upload = new ChunkedUpload.Builder(file, factory).partSize(100).stateFile(stateFile).build();
+		// Act:
+		upload.execute();
+		// Assert:
+		assertThat(factory.contents.size(), is(3));
+	}
+
+	@Test public void testExecuteCanceled() throws Exception {
+		// Arrange:
+		final TestPartCallFactory factory = new TestPartCallFactory();
+		final ChunkedUpload upload = new ChunkedUpload.Builder(createFile(10), factory).build();
+		upload.cancel();
+		// Act:
+		try {
+			upload.execute();
+			throw new AssertionError("No exception thrown.");
+		} catch (IOException e) {
+			// Assert:
+			assertThat(e, is((IOException) ServiceFailure.CANCELED));
+		}
+	}
+
+	private File createFile(final int length) throws IOException {
+		final File file = folder.newFile();
+		Okio.buffer(Okio.sink(file)).write(contentOf(length)).close();
+		return file;
+	}
+
+	private static byte[] contentOf(final int length) {
+		final byte[] content = new byte[length];
+		for (int i = 0; i < length; i++) {
+			content[i] = (byte) i;
+		}
+		return content;
+	}
+
+	private static final class TestPartCallFactory implements ChunkedUpload.PartCallFactory {
+
+		final Map<Integer, byte[]> contents = Collections.synchronizedMap(new HashMap<Integer, byte[]>());
+		final Map<Integer, String> contentRanges = Collections.synchronizedMap(new HashMap<Integer, String>());
+		final Map<Integer, MediaType> contentTypes = Collections.synchronizedMap(new HashMap<Integer, MediaType>());
+		volatile int failingIndex = -1;
+
+		@NonNull @Override public Call<?> newPartCall(@NonNull final ChunkedUpload.Part part, @NonNull final RequestBody body) {
+			return new PartCall(this, part, body);
+		}
+	}
+
+	private static final class PartCall implements Call<Object> {
+
+		final TestPartCallFactory factory;
+		final ChunkedUpload.Part part;
+		final RequestBody body;
+		volatile boolean executed;
+		volatile boolean canceled;
+
+		PartCall(final TestPartCallFactory factory, final ChunkedUpload.Part part, final RequestBody body) {
+			this.factory = factory;
+			this.part = part;
+			this.body = body;
+		}
+
+		@Override public Response<Object> execute() throws IOException {
+			this.executed = true;
+			if (part.getIndex() == factory.failingIndex) {
+				return Response.error(500, ResponseBody.create(null, "Failure."));
+			}
+			final Buffer buffer = new Buffer();
+			body.writeTo(buffer);
+			assertThat(buffer.size(), is(body.contentLength()));
+			factory.contents.put(part.getIndex(), buffer.readByteArray());
+			factory.contentRanges.put(part.getIndex(), part.getContentRange());
+			factory.contentTypes.put(part.getIndex(), body.contentType());
+			return Response.success((Object) "OK");
+		}
+
+		@Override public void enqueue(@NonNull final Callback<Object> callback) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override public boolean isExecuted() {
+			return executed;
+		}
+
+		@Override public void cancel() {
+			this.canceled = true;
+		}
+
+		@Override public boolean isCanceled() {
+			return canceled;
+		}
+
+		@SuppressWarnings("CloneDoesntCallSuperClone")
+		@Override public Call<Object> clone() {
+			return new PartCall(factory, part, body);
+		}
+
+		@Override public Request request() {
+			return new Request.Builder().url("https://www.android.com/upload").build();
+		}
+	}
+}
@@ -0,0 +1,300 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import retrofit2.Retrofit;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class ConnectionEventRecorderTest extends LocalTestCase {
+
+	private static final Request REQUEST = new Request.Builder().url("https://www.android.com/items").build();
+	private static final InetSocketAddress ADDRESS = InetSocketAddress.createUnresolved("www.android.com", 443);
+
+	@Test public void testCallWithNewConnection() throws Exception {
+		// Arrange:
+		final ConnectionEventRecorder recorder = new ConnectionEventRecorder();
+		final Call call = mockCall(REQUEST);
+		final EventListener listener = recorder.create(call);
+		final Response response = createResponse();
+		// Act:
+		listener.callStart(call);
+		listener.dnsStart(call, "www.android.com");
+		Thread.sleep(2);
+		listener.dnsEnd(call, "www.android.com", Collections.<InetAddress>emptyList());
+		listener.connectStart(call, ADDRESS, Proxy.NO_PROXY);
+		listener.secureConnectStart(call);
+		listener.secureConnectEnd(call, null);
+		listener.connectEnd(call, ADDRESS, Proxy.NO_PROXY, Protocol.HTTP_1_1);
+		listener.connectionAcquired(call, mock(Connection.class));
+		listener.requestHeadersStart(call);
+		listener.requestHeadersEnd(call, REQUEST);
+		Thread.sleep(2);
+		listener.responseHeadersStart(call);
+		listener.responseHeadersEnd(call, response);
+		listener.responseBodyStart(call);
+		listener.responseBodyEnd(call, 100);
+		listener.callEnd(call);
+		// Assert:
+		final CallTimings timings = recorder.timingsOf(response);
+		assertThat(timings, is(notNullValue()));
+		assertThat(timings.isFailed(), is(false));
+		assertThat(timings.isConnectionReused(), is(false));
+		assertThat(timings.getResponseBytes(), is(100L));
+		assertThat(timings.getDuration(CallTimings.PHASE_DNS, TimeUnit.MILLISECONDS) >= 2, is(true));
+		assertThat(timings.getDuration(CallTimings.PHASE_CONNECT, TimeUnit.NANOSECONDS) > 0, is(true));
+		assertThat(timings.getDuration(CallTimings.PHASE_WAIT, TimeUnit.MILLISECONDS) >= 2, is(true));
+		assertThat(timings.getDuration(CallTimings.PHASE_TOTAL, TimeUnit.MILLISECONDS) >= 4, is(true));
+		assertThat(recorder.acquiredConnections.get(), is(1L));
+		assertThat(recorder.openedConnections.get(), is(1L));
+		assertThat(timings.toString(), is(notNullValue()));
+	}
+
+	@Test public void testCallWithReusedConnection() {
+		// Arrange:
+		final ConnectionEventRecorder recorder = new ConnectionEventRecorder();
+		final Call call = mockCall(REQUEST);
+		final EventListener listener = recorder.create(call);
+		final Response response = createResponse();
+		// Act:
+		listener.callStart(call);
+		listener.connectionAcquired(call, mock(Connection.class));
+		listener.responseHeadersEnd(call, response);
+		listener.callEnd(call);
+		// Assert:
+		final CallTimings timings = recorder.timingsOf(response);
+		assertThat(timings.isConnectionReused(), is(true));
+		assertThat(timings.getDuration(CallTimings.PHASE_DNS, TimeUnit.NANOSECONDS), is(0L));
+		assertThat(timings.getDuration(CallTimings.PHASE_CONNECT, TimeUnit.NANOSECONDS), is(0L));
+	}
+
+	@Test public void testTimingsOfNotMatchingResponse() {
+		// Arrange:
+		final ConnectionEventRecorder recorder = new ConnectionEventRecorder();
+		final Call call = mockCall(REQUEST);
+		final EventListener listener = recorder.create(call);
+		listener.callStart(call);
+		listener.responseHeadersEnd(call, createResponse());
+		listener.callEnd(call);
+		// Act + Assert:
+		assertThat(recorder.timingsOf(createResponse().newBuilder().request(REQUEST.newBuilder().tag(null).build()).build()), is(nullValue()));
+		assertThat(new ConnectionEventRecorder().timingsOf(createResponse()), is(nullValue()));
+	}
+
+	@Test public void testTimingsOfResponseToTaggedRequest() {
+		// Arrange:
+		final ConnectionEventRecorder recorder = new ConnectionEventRecorder();
+		final Object tag = new Object();
+		final Request request = REQUEST.newBuilder().tag(tag).build();
+		final Call call = mockCall(request);
+		final EventListener listener = recorder.create(call);
+		listener.callStart(call);
+		listener.callEnd(call);
+		// Act + Assert:
+		assertThat(recorder.timingsOf(createResponse().newBuilder().request(request.newBuilder().header("Accept", "*/*").build()).build()), is(notNullValue()));
+	}
+
+	@Test public void testOf() {
+		// Arrange:
+		final ConnectionEventRecorder recorder = new ConnectionEventRecorder();
+		final OkHttpClient client = new OkHttpClient.Builder().eventListenerFactory(recorder).build();
+		// Act + Assert:
+		assertThat(ConnectionEventRecorder.of(createRetrofit(client)), is(sameInstance(recorder)));
+		assertThat(ConnectionEventRecorder.of(createRetrofit(new OkHttpClient())), is(nullValue()));
+		assertThat(ConnectionEventRecorder.of(null), is(nullValue()));
+	}
+
+	@Test public void testOfServiceManagerServices() {
+		// Arrange:
+		final ServiceManager manager = new ServiceManager("https://www.android.com/");
+		// Act + Assert:
+		assertThat(
+				ConnectionEventRecorder.of(manager.servicesConfiguration(TestServices.class).retrofit()),
+				is(sameInstance((Object) manager.getHttpClient().eventListenerFactory()))
+		);
+	}
+
+	@Test public void testFailedCall() {
+		// Arrange:
+		final ConnectionEventRecorder recorder = new ConnectionEventRecorder();
+		final Call call = mockCall(REQUEST);
+		final EventListener listener = recorder.create(call);
+		final IOException failure = new IOException();
+		// Act:
+		listener.callStart(call);
+		listener.connectStart(call, ADDRESS, Proxy.NO_PROXY);
+		listener.connectFailed(call, ADDRESS, Proxy.NO_PROXY, null, failure);
+		listener.callFailed(call, failure);
+		// Assert:
+		final CallTimings timings = recorder.timingsOf(failure);
+		assertThat(timings, is(notNullValue()));
+		assertThat(timings.isFailed(), is(true));
+		assertThat(timings.isConnectionReused(), is(false));
+		assertThat(recorder.failedConnections.get(), is(1L));
+		assertThat(recorder.timingsOf(new IOException()), is(nullValue()));
+	}
+
+	@Test public void testAggregate() {
+		// Arrange:
+		final ConnectionEventRecorder recorder = new ConnectionEventRecorder();
+		final Call call = mockCall(REQUEST);
+		final EventListener listener = recorder.create(call);
+		final IOException failure = new IOException();
+		listener.callStart(call);
+		listener.callFailed(call, failure);
+		final CallTimings timings = recorder.timingsOf(failure);
+		// Act:
+		timings.aggregateFor(1);
+		timings.aggregateFor(1);
+		// Assert:
+		final CallPhaseStats stats = recorder.phaseStatsOf(1);
+		assertThat(stats.getServiceId(), is(1));
+		assertThat(stats.getCallCount(), is(1L));
+		assertThat(stats.getReusedConnectionCount(), is(0L));
+		assertThat(stats.getPhaseCount(CallTimings.PHASE_DNS), is(0L));
+		assertThat(stats.getMeanDuration(CallTimings.PHASE_DNS, TimeUnit.MILLISECONDS), is(0L));
+		assertThat(stats.toString(), is(notNullValue()));
+		assertThat(recorder.phaseStatsOf(2), is(nullValue()));
+	}
+
+	@Test public void testServiceCallbackAttachesTimings() {
+		// Arrange:
+		final ConnectionEventRecorder recorder = new ConnectionEventRecorder();
+		final Call call = mockCall(REQUEST);
+		final EventListener listener = recorder.create(call);
+		final IOException failure = new IOException();
+		listener.callStart(call);
+		listener.callFailed(call, failure);
+		final TestCallback callback = new TestCallback();
+		callback.setServiceId(1);
+		callback.retrofit = createRetrofit(new OkHttpClient.Builder().eventListenerFactory(recorder).build());
+		// Act:
+		callback.onFailure(mock(TestCall.class), failure);
+		// Assert:
+		assertThat(callback.error.getCallTimings(), is(sameInstance(recorder.timingsOf(failure))));
+		assertThat(new ServiceError(callback.error).getCallTimings(), is(callback.error.getCallTimings()));
+		assertThat(recorder.phaseStatsOf(1).getCallCount(), is(1L));
+	}
+
+	@Test public void testServiceCallbackAttachesTimingsOfCallFinishedOnAnotherThread() throws Exception {
+		// Arrange:
+		final ConnectionEventRecorder recorder = new ConnectionEventRecorder();
+		final Request request = REQUEST.newBuilder().build();
+		final Call call = mockCall(request);
+		final EventListener listener = recorder.create(call);
+		final Response response = createResponse().newBuilder().request(request).build();
+		final Thread callThread = new Thread(new Runnable() {
+
+			@Override public void run() {
+				listener.callStart(call);
+				listener.responseHeadersEnd(call, response);
+				listener.callEnd(call);
+			}
+		});
+		callThread.start();
+		callThread.join();
+		final TestCallback callback = new TestCallback();
+		callback.setServiceId(1);
+		callback.retrofit = createRetrofit(new OkHttpClient.Builder().eventListenerFactory(recorder).build());
+		// Act:
+		callback.onResponse(mock(TestCall.class), retrofit2.Response.success("data", response.newBuilder().request(request.newBuilder().header("Accept", "*/*").build()).build()));
+		// Assert:
+		assertThat(recorder.timingsOf(response), is(notNullValue()));
+		assertThat(recorder.phaseStatsOf(1).getCallCount(), is(1L));
+	}
+
+	@Test public void testServiceCallbackWithoutRetrofit() {
+		// Arrange:
+		final ConnectionEventRecorder recorder = new ConnectionEventRecorder();
+		final Call call = mockCall(REQUEST);
+		final EventListener listener = recorder.create(call);
+		final IOException failure = new IOException();
+		listener.callStart(call);
+		listener.callFailed(call, failure);
+		final TestCallback callback = new TestCallback();
+		callback.setServiceId(1);
+		// Act:
+		callback.onFailure(mock(TestCall.class), failure);
+		// Assert:
+		assertThat(callback.error.getCallTimings(), is(nullValue()));
+		assertThat(recorder.phaseStatsOf(1), is(nullValue()));
+	}
+
+	private static Retrofit createRetrofit(final OkHttpClient client) {
+		return new Retrofit.Builder().baseUrl("https://www.android.com/").client(client).build();
+	}
+
+	private static Call mockCall(final Request request) {
+		final Call call = mock(Call.class);
+		when(call.request()).thenReturn(request);
+		return call;
+	}
+
+	private static Response createResponse() {
+		return new Response.Builder()
+				.request(REQUEST)
+				.protocol(Protocol.HTTP_1_1)
+				.code(200)
+				.message("OK")
+				.receivedResponseAtMillis(System.currentTimeMillis())
+				.build();
+	}
+
+	private interface TestServices {}
+
+	private interface TestCall extends retrofit2.Call<String> {}
+
+	private static final class TestCallback extends ServiceCallback<String> {
+
+		ServiceError error;
+
+		@Override protected void onDispatchResponse(@NonNull final String responseBody) {}
+
+		@Override protected void onDispatchError(@NonNull final ServiceError error) {
+			this.error = error;
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import org.junit.Test;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class ConnectionStatsTest extends LocalTestCase {
+
+	@Test public void testInstantiation() {
+		// Arrange:
+		final ConnectionEventRecorder recorder = new ConnectionEventRecorder();
+		recorder.acquiredConnections.set(10);
+		recorder.openedConnections.set(3);
+		recorder.failedConnections.set(1);
+		// Act:
+		final ConnectionStats stats = new ConnectionStats(new ConnectionPool(), new Dispatcher(), recorder);
+		// Assert:
+		assertThat(stats.getPooledConnectionCount(), is(0));
+		assertThat(stats.getIdleConnectionCount(), is(0));
+		assertThat(stats.getRunningCallCount(), is(0));
+		assertThat(stats.getQueuedCallCount(), is(0));
+		assertThat(stats.getAcquiredConnectionCount(), is(10L));
+		assertThat(stats.getOpenedConnectionCount(), is(3L));
+		assertThat(stats.getReusedConnectionCount(), is(7L));
+		assertThat(stats.getFailedConnectionCount(), is(1L));
+		assertThat(stats.toString(), is(notNullValue()));
+	}
+
+	@Test public void testReusedConnectionCountIsNeverNegative() {
+		// Arrange:
+		final ConnectionEventRecorder recorder = new ConnectionEventRecorder();
+		recorder.openedConnections.set(2);
+		// Act:
+		final ConnectionStats stats = new ConnectionStats(new ConnectionPool(), new Dispatcher(), recorder);
+		// Assert:
+		assertThat(stats.getReusedConnectionCount(), is(0L));
+	}
+}
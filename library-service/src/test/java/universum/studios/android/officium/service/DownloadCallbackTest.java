@@ -0,0 +1,267 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Sink;
+import retrofit2.Call;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class DownloadCallbackTest extends LocalTestCase {
+
+	private static final MediaType MEDIA_TYPE = MediaType.parse("application/octet-stream");
+	private static final Executor DIRECT_EXECUTOR = new Executor() {
+
+		@Override public void execute(@NonNull final Runnable command) {
+			command.run();
+		}
+	};
+
+	@Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test public void testDownloadIntoFile() throws Exception {
+		// Arrange:
+		final byte[] content = createContent(20000);
+		final File file = new File(folder.getRoot(), "download.bin");
+		final TestCallback callback = new TestCallback(file);
+		// Act:
+		callback.onResponse(mock(TestCall.class), Response.success(ResponseBody.create(MEDIA_TYPE, content)));
+		// Assert:
+		assertThat(callback.downloadedBytes, is(20000L));
+		assertThat(callback.error, is(nullValue()));
+		assertThat(Arrays.equals(Okio.buffer(Okio.source(file)).readByteArray(), content), is(true));
+		assertThat(new File(file.getPath() + ".part").exists(), is(false));
+	}
+
+	@Test public void testDownloadIntoSink() {
+		// Arrange:
+		final byte[] content = createContent(100);
+		final Buffer sink = new Buffer();
+		final TestCallback callback = new TestCallback(sink);
+		// Act:
+		callback.onResponse(mock(TestCall.class), Response.success(ResponseBody.create(MEDIA_TYPE, content)));
+		// Assert:
+		assertThat(callback.downloadedBytes, is(100L));
+		assertThat(callback.getFile(), is(nullValue()));
+		assertThat(Arrays.equals(sink.readByteArray(), content), is(true));
+	}
+
+	@Test public void testDownloadReportsProgress() {
+		// Arrange:
+		final TestCallback callback = new TestCallback(new Buffer());
+		callback.setProgressInterval(0, TimeUnit.MILLISECONDS);
+		// Act:
+		callback.onResponse(mock(TestCall.class), Response.success(ResponseBody.create(MEDIA_TYPE, createContent(20000))));
+		// Assert:
+		assertThat(callback.progress.size() > 1, is(true));
+		assertThat(callback.progress.get(callback.progress.size() - 1), is(20000L));
+	}
+
+	@Test public void testDownloadResumesAfterConnectionDrop() throws Exception {
+		// Arrange:
+		final byte[] content = createContent(30000);
+		final okhttp3.Call resumedCall = mock(okhttp3.Call.class);
+		final Request request = new Request.Builder().url("https://www.android.com/file").build();
+		final List<Request> requests = new ArrayList<>();
+		final Retrofit retrofit = new Retrofit.Builder()
+				.baseUrl("https://www.android.com/")
+				.callFactory(new okhttp3.Call.Factory() {
+
+					@Override public okhttp3.Call newCall(@NonNull final Request request) {
+						requests.add(request);
+						return resumedCall;
+					}
+				})
+				.build();
+		final File file = new File(folder.getRoot(), "download.bin");
+		final TestCallback callback = new TestCallback(file);
+		callback.retrofit = retrofit;
+		final int failAt = 10000;
+		final okhttp3.Response rawResponse = createRawResponse(request, 200).header("ETag", "\"v1\"").build();
+		when(resumedCall.execute()).thenAnswer(new Answer<okhttp3.Response>() {
+
+			@Override public okhttp3.Response answer(final InvocationOnMock invocation) {
+				final String range = requests.get(0).header("Range");
+				final long start = Long.parseLong(range.substring("bytes=".length(), range.length() - 1));
+				return createRawResponse(requests.get(0), 206)
+						.header("Content-Range", "bytes " + start + "-" + (content.length - 1) + "/" + content.length)
+						.body(ResponseBody.create(MEDIA_TYPE, Arrays.copyOfRange(content, (int) start, content.length)))
+						.build();
+			}
+		});
+		// Act:
+		callback.onResponse(mock(TestCall.class), Response.success(createFailingBody(content, failAt), rawResponse));
+		// Assert:
+		assertThat(callback.error, is(nullValue()));
+		assertThat(callback.downloadedBytes, is(30000L));
+		assertThat(requests.size(), is(1));
+		assertThat(requests.get(0).header("If-Range"), is("\"v1\""));
+		assertThat(Arrays.equals(Okio.buffer(Okio.source(file)).readByteArray(), content), is(true));
+	}
+
+	@Test public void testDownloadRestartsWhenServerIgnoresRange() throws Exception {
+		// Arrange:
+		final byte[] content = createContent(30000);
+		final okhttp3.Call resumedCall = mock(okhttp3.Call.class);
+		final Request request = new Request.Builder().url("https://www.android.com/file").build();
+		final Retrofit retrofit = new Retrofit.Builder()
+				.baseUrl("https://www.android.com/")
+				.callFactory(new okhttp3.Call.Factory() {
+
+					@Override public okhttp3.Call newCall(@NonNull final Request request) {
+						return resumedCall;
+					}
+				})
+				.build();
+		when(resumedCall.execute()).thenReturn(createRawResponse(request, 200).body(ResponseBody.create(MEDIA_TYPE, content)).build());
+		final File file = new File(folder.getRoot(), "download.bin");
+		final TestCallback callback = new TestCallback(file);
+		callback.retrofit = retrofit;
+		// Act:
+		callback.onResponse(mock(TestCall.class), Response.success(createFailingBody(content, 10000), createRawResponse(request, 200).build()));
+		// Assert:
+		assertThat(callback.downloadedBytes, is(30000L));
+		assertThat(Arrays.equals(Okio.buffer(Okio.source(file)).readByteArray(), content), is(true));
+	}
+
+	@Test public void testDownloadFailsWhenItCannotBeResumed() {
+		// Arrange:
+		final byte[] content = createContent(30000);
+		final File file = new File(folder.getRoot(), "download.bin");
+		final TestCallback callback = new TestCallback(file);
+		final Request request = new Request.Builder().url("https://www.android.com/file").build();
+		// Act:
+		callback.onResponse(mock(TestCall.class), Response.success(createFailingBody(content, 10000), createRawResponse(request, 200).build()));
+		// Assert:
+		assertThat(callback.error, is(notNullValue()));
+		assertThat(callback.error.getKind(), is(ServiceError.KIND_IO));
+		assertThat(file.exists(), is(false));
+		assertThat(new File(file.getPath() + ".part").exists(), is(false));
+	}
+
+	@Test public void testCancel() {
+		// Arrange:
+		final File file = new File(folder.getRoot(), "download.bin");
+		final TestCallback callback = new TestCallback(file);
+		callback.cancel();
+		// Act:
+		callback.onResponse(mock(TestCall.class), Response.success(ResponseBody.create(MEDIA_TYPE, createContent(20000))));
+		// Assert:
+		assertThat(callback.error, is(notNullValue()));
+		assertThat(callback.error.getKind(), is(ServiceError.KIND_CANCELED));
+		assertThat(file.exists(), is(false));
+	}
+
+	private static byte[] createContent(final int size) {
+		final byte[] content = new byte[size];
+		for (int i = 0; i < size; i++) {
+			content[i] = (byte) i;
+		}
+		return content;
+	}
+
+	private static okhttp3.Response.Builder createRawResponse(final Request request, final int code) {
+		return new okhttp3.Response.Builder()
+				.request(request)
+				.protocol(Protocol.HTTP_1_1)
+				.code(code)
+				.message("OK");
+	}
+
+	private static ResponseBody createFailingBody(final byte[] content, final long failAt) {
+		final Buffer buffer = new Buffer().write(content);
+		return ResponseBody.create(MEDIA_TYPE, content.length, Okio.buffer(new ForwardingSource(buffer) {
+
+			private long readBytes;
+
+			@Override public long read(@NonNull final Buffer sink, final long byteCount) throws IOException {
+				if (readBytes >= failAt) {
+					throw new IOException("Connection reset.");
+				}
+				final long read = super.read(sink, Math.min(byteCount, failAt - readBytes));
+				readBytes += read == -1 ? 0 : read;
+				return read;
+			}
+		}));
+	}
+
+	private interface TestCall extends Call<ResponseBody> {}
+
+	private static final class TestCallback extends DownloadCallback {
+
+		final List<Long> progress = new ArrayList<>();
+		long downloadedBytes = -1;
+		ServiceError error;
+
+		TestCallback(final File file) {
+			super(file);
+			this.downloadExecutor = DIRECT_EXECUTOR;
+		}
+
+		TestCallback(final Sink sink) {
+			super(sink);
+			this.downloadExecutor = DIRECT_EXECUTOR;
+		}
+
+		@Override protected void onDispatchProgress(final long writtenBytes, final long totalBytes) {
+			progress.add(writtenBytes);
+		}
+
+		@Override protected void onDispatchDownload(final long byteCount) {
+			this.downloadedBytes = byteCount;
+		}
+
+		@Override protected void onDispatchError(@NonNull final ServiceError error) {
+			this.error = error;
+		}
+	}
+}
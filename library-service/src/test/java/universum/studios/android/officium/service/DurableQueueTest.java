@@ -0,0 +1,305 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+import retrofit2.Call;
+import retrofit2.Response;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class DurableQueueTest extends LocalTestCase {
+
+	private static final Executor DIRECT_EXECUTOR = new Executor() {
+
+		@Override public void execute(@NonNull final Runnable command) {
+			command.run();
+		}
+	};
+
+	@Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+	private final ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuilderBuildWithInvalidMaxConcurrency() throws Exception {
+		// Act:
+		new DurableQueue.Builder(new File(folder.getRoot(), "queue.log"), new TestCallFactory()).maxConcurrency(0).build();
+	}
+
+	@Test public void testEnqueueDurable() throws Exception {
+		// Arrange:
+		final TestCallFactory factory = new TestCallFactory();
+		final DurableQueue queue = createQueue(factory);
+		final TestReplayListener listener = new TestReplayListener();
+		queue.setOnReplayListener(listener);
+		// Act:
+		final String requestId = createServiceCall("users/1", "{\"name\":\"John\"}").withServiceId(12).enqueueDurable(queue);
+		// Assert:
+		assertThat(queue.getPendingCount(), is(1));
+		verify(scheduler).schedule(any(Runnable.class), eq(DurableQueue.DEFAULT_SYNC_DELAY), eq(TimeUnit.MILLISECONDS));
+		queue.flush();
+		assertThat(queue.getFile().length() > 0, is(true));
+		queue.replay();
+		assertThat(factory.requests.size(), is(1));
+		assertThat(bodyOf(factory.requests.get(0)), is("{\"name\":\"John\"}"));
+		assertThat(listener.requestIds, is(listOf(requestId)));
+		assertThat(listener.serviceIds, is(listOf(12)));
+		assertThat(listener.bodies, is(listOf("OK")));
+		assertThat(queue.getPendingCount(), is(0));
+		assertThat(queue.getFile().length(), is(0L));
+	}
+
+	@Test public void testEnqueueDurableWithCallback() throws Exception {
+		// Arrange:
+		final TestCallFactory factory = new TestCallFactory();
+		final DurableQueue queue = createQueue(factory);
+		final ServiceCall<String> serviceCall = createServiceCall("users/1", "{}");
+		when(serviceCall.call.clone().execute()).thenReturn(Response.success("Replayed"));
+		final TestCallback callback = new TestCallback();
+		// Act:
+		final String requestId = serviceCall.enqueueDurable(queue, callback);
+		queue.replay();
+		// Assert:
+		assertThat(callback.getRequestId(), is(requestId));
+		assertThat(callback.bodies, is(listOf("Replayed")));
+		assertThat(factory.requests.size(), is(0));
+		assertThat(queue.getPendingCount(), is(0));
+	}
+
+	@Test public void testReplayWhileOffline() throws Exception {
+		// Arrange:
+		final TestCallFactory factory = new TestCallFactory();
+		factory.offline = true;
+		final DurableQueue queue = createQueue(factory);
+		final TestReplayListener listener = new TestReplayListener();
+		queue.setOnReplayListener(listener);
+		final String firstId = createServiceCall("users/1", "1").enqueueDurable(queue);
+		final String secondId = createServiceCall("users/2", "2").enqueueDurable(queue);
+		// Act + Assert:
+		queue.replay();
+		assertThat(factory.requests.size(), is(1));
+		assertThat(queue.getPendingCount(), is(2));
+		verify(scheduler).schedule(any(Runnable.class), eq(DurableQueue.DEFAULT_RETRY_DELAY), eq(TimeUnit.MILLISECONDS));
+		factory.offline = false;
+		queue.replay();
+		assertThat(listener.requestIds, is(listOf(firstId, secondId)));
+		assertThat(queue.getPendingCount(), is(0));
+	}
+
+	@Test public void testReplayWithFailure() throws Exception {
+		// Arrange:
+		final TestCallFactory factory = new TestCallFactory();
+		factory.failure = new IllegalStateException();
+		final DurableQueue queue = createQueue(factory);
+		final TestReplayListener listener = new TestReplayListener();
+		queue.setOnReplayListener(listener);
+		final String requestId = createServiceCall("users/1", "1").enqueueDurable(queue);
+		// Act:
+		queue.replay();
+		// Assert:
+		assertThat(listener.failedRequestIds, is(listOf(requestId)));
+		assertThat(queue.getPendingCount(), is(0));
+	}
+
+	@Test public void testRestore() throws Exception {
+		// Arrange:
+		final TestCallFactory factory = new TestCallFactory();
+		factory.offline = true;
+		final DurableQueue queue = createQueue(factory);
+		createServiceCall("users/1", "1").enqueueDurable(queue);
+		final String secondId = createServiceCall("users/2", "2").withServiceId(3).enqueueDurable(queue);
+		queue.flush();
+		factory.offline = false;
+		factory.onlineRequests = 1;
+		queue.replay();
+		queue.flush();
+		final TestCallFactory restoredFactory = new TestCallFactory();
+		final TestReplayListener listener = new TestReplayListener();
+		// Act:
+		final DurableQueue restoredQueue = new DurableQueue.Builder(queue.getFile(), restoredFactory)
+				.executor(DIRECT_EXECUTOR)
+				.scheduler(scheduler)
+				.build();
+		restoredQueue.setOnReplayListener(listener);
+		// Assert:
+		assertThat(restoredFactory.requests.size(), is(1));
+		final Request request = restoredFactory.requests.get(0);
+		assertThat(request.url().toString(), is("https://www.android.com/users/2"));
+		assertThat(request.method(), is("POST"));
+		assertThat(request.header("Idempotency-Key"), is("users/2"));
+		assertThat(request.body().contentType(), is(MediaType.parse("application/json; charset=utf-8")));
+		assertThat(bodyOf(request), is("2"));
+		assertThat(restoredQueue.getPendingCount(), is(0));
+		assertThat(listener.requestIds.size(), is(0));
+		assertThat(secondId, is(notNullValue()));
+	}
+
+	@Test public void testRestoreWithIncompleteRecord() throws Exception {
+		// Arrange:
+		final TestCallFactory factory = new TestCallFactory();
+		factory.offline = true;
+		final DurableQueue queue = createQueue(factory);
+		createServiceCall("users/1", "1").enqueueDurable(queue);
+		queue.flush();
+		final BufferedSink sink = Okio.buffer(Okio.appendingSink(queue.getFile()));
+		sink.writeByte(1).writeInt(100).writeUtf8("users");
+		sink.close();
+		// Act:
+		final DurableQueue restoredQueue = new DurableQueue.Builder(queue.getFile(), factory)
+				.executor(DIRECT_EXECUTOR)
+				.scheduler(scheduler)
+				.build();
+		// Assert:
+		assertThat(restoredQueue.getPendingCount(), is(1));
+	}
+
+	private DurableQueue createQueue(final okhttp3.Call.Factory factory) throws IOException {
+		return new DurableQueue.Builder(new File(folder.getRoot(), "queue.log"), factory)
+				.executor(DIRECT_EXECUTOR)
+				.scheduler(scheduler)
+				.build();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ServiceCall<String> createServiceCall(final String path, final String body) {
+		final Call<String> call = mock(Call.class);
+		final Call<String> clonedCall = mock(Call.class);
+		when(call.clone()).thenReturn(clonedCall);
+		when(call.request()).thenReturn(new Request.Builder()
+				.url("https://www.android.com/" + path)
+				.header("Idempotency-Key", path)
+				.post(RequestBody.create(MediaType.parse("application/json; charset=utf-8"), body))
+				.build()
+		);
+		return new ServiceCall<>(call);
+	}
+
+	private static String bodyOf(final Request request) throws IOException {
+		final Buffer buffer = new Buffer();
+		request.body().writeTo(buffer);
+		return buffer.readUtf8();
+	}
+
+	@SafeVarargs private static <T> List<T> listOf(final T... items) {
+		final List<T> list = new ArrayList<>(items.length);
+		for (final T item : items) {
+			list.add(item);
+		}
+		return list;
+	}
+
+	private static final class TestCallFactory implements okhttp3.Call.Factory {
+
+		final List<Request> requests = new ArrayList<>();
+		boolean offline;
+		int onlineRequests = Integer.MAX_VALUE;
+		RuntimeException failure;
+
+		@Override public okhttp3.Call newCall(@NonNull final Request request) {
+			requests.add(request);
+			final okhttp3.Call call = mock(okhttp3.Call.class);
+			try {
+				if (failure != null) {
+					when(call.execute()).thenThrow(failure);
+				} else if (offline || onlineRequests-- <= 0) {
+					when(call.execute()).thenThrow(new IOException("Offline."));
+				} else {
+					when(call.execute()).thenReturn(new okhttp3.Response.Builder()
+							.request(request)
+							.protocol(Protocol.HTTP_1_1)
+							.code(200)
+							.message("OK")
+							.body(ResponseBody.create(MediaType.parse("text/plain"), "OK"))
+							.build()
+					);
+				}
+			} catch (IOException e) {
+				throw new AssertionError(e);
+			}
+			return call;
+		}
+	}
+
+	private static final class TestReplayListener implements DurableQueue.OnReplayListener {
+
+		final List<String> requestIds = new ArrayList<>();
+		final List<Integer> serviceIds = new ArrayList<>();
+		final List<String> bodies = new ArrayList<>();
+		final List<String> failedRequestIds = new ArrayList<>();
+
+		@Override public void onRequestReplayed(@NonNull final DurableQueue queue, @NonNull final String requestId, final int serviceId, @NonNull final okhttp3.Response response) {
+			requestIds.add(requestId);
+			serviceIds.add(serviceId);
+			try {
+				bodies.add(response.body().string());
+			} catch (IOException e) {
+				throw new AssertionError(e);
+			}
+		}
+
+		@Override public void onRequestFailed(@NonNull final DurableQueue queue, @NonNull final String requestId, final int serviceId, @NonNull final Throwable failure) {
+			failedRequestIds.add(requestId);
+		}
+	}
+
+	private static final class TestCallback extends ServiceCallback<String> {
+
+		final List<String> bodies = new ArrayList<>();
+
+		@Override protected void onDispatchResponse(@NonNull final String responseBody) {
+			bodies.add(responseBody);
+		}
+
+		@Override protected void onDispatchError(@NonNull final ServiceError error) {
+			throw new AssertionError(error);
+		}
+	}
+}
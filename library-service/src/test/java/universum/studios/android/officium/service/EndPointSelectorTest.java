@@ -0,0 +1,322 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class EndPointSelectorTest extends LocalTestCase {
+
+	private static final HttpUrl PRIMARY = HttpUrl.parse("https://eu.android.com/api/");
+	private static final HttpUrl SECONDARY = HttpUrl.parse("https://us.android.com/api/");
+
+	@Test public void testBuild() {
+		// Act:
+		final EndPointSelector selector = new EndPointSelector.Builder()
+				.addEndPoint(SECONDARY, 1)
+				.addEndPoint(PRIMARY.toString(), 2)
+				.build();
+		// Assert:
+		assertThat(selector.getSelectedBaseUrl(), is(PRIMARY));
+		assertThat(selector.getAverageLatency(PRIMARY, TimeUnit.MILLISECONDS), is(-1L));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuildWithoutEndPoints() {
+		// Act:
+		new EndPointSelector.Builder().build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuildWithInvalidWeight() {
+		// Act:
+		new EndPointSelector.Builder().addEndPoint(PRIMARY, 0).build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuildWithInvalidBaseUrl() {
+		// Act:
+		new EndPointSelector.Builder().addEndPoint("https://eu.android.com/api", 1).build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuildWithInvalidSmoothing() {
+		// Act:
+		new EndPointSelector.Builder().addEndPoint(PRIMARY, 1).smoothing(0).build();
+	}
+
+	@Test public void testIsConnectFailure() {
+		// Act + Assert:
+		assertThat(EndPointSelector.isConnectFailure(new UnknownHostException()), is(true));
+		assertThat(EndPointSelector.isConnectFailure(new ConnectException()), is(true));
+		assertThat(EndPointSelector.isConnectFailure(new NoRouteToHostException()), is(true));
+		assertThat(EndPointSelector.isConnectFailure(new SocketTimeoutException("connect timed out")), is(false));
+		assertThat(EndPointSelector.isConnectFailure(new SocketTimeoutException("timeout")), is(false));
+		assertThat(EndPointSelector.isConnectFailure(new IOException()), is(false));
+	}
+
+	@Test public void testIsRepeatable() {
+		// Act + Assert:
+		assertThat(EndPointSelector.isRepeatable(new Request.Builder().url(PRIMARY).build()), is(true));
+		assertThat(EndPointSelector.isRepeatable(new Request.Builder().url(PRIMARY).put(RequestBody.create(null, "")).build()), is(true));
+		assertThat(EndPointSelector.isRepeatable(new Request.Builder().url(PRIMARY).delete().build()), is(true));
+		assertThat(EndPointSelector.isRepeatable(new Request.Builder().url(PRIMARY).post(RequestBody.create(null, "")).build()), is(false));
+		assertThat(EndPointSelector.isRepeatable(new Request.Builder().url(PRIMARY).patch(RequestBody.create(null, "")).build()), is(false));
+	}
+
+	@Test public void testSelectByLatency() {
+		// Arrange:
+		final EndPointSelector selector = new EndPointSelector.Builder()
+				.addEndPoint(PRIMARY, 1)
+				.addEndPoint(SECONDARY, 1)
+				.smoothing(1)
+				.build();
+		// Act + Assert:
+		selector.onRequestSucceeded(selector.endPoint(PRIMARY), 100);
+		// Secondary has not been measured yet so it should be probed.
+		assertThat(selector.getSelectedBaseUrl(), is(SECONDARY));
+		selector.onRequestSucceeded(selector.endPoint(SECONDARY), 90);
+		// Not better than the selected one by the threshold.
+		assertThat(selector.getSelectedBaseUrl(), is(SECONDARY));
+		selector.onRequestSucceeded(selector.endPoint(SECONDARY), 200);
+		assertThat(selector.getSelectedBaseUrl(), is(PRIMARY));
+		assertThat(selector.getAverageLatency(SECONDARY, TimeUnit.NANOSECONDS), is(200L));
+	}
+
+	@Test public void testSelectByWeight() {
+		// Arrange:
+		final EndPointSelector selector = new EndPointSelector.Builder()
+				.addEndPoint(PRIMARY, 3)
+				.addEndPoint(SECONDARY, 1)
+				.smoothing(1)
+				.build();
+		selector.onRequestSucceeded(selector.endPoint(SECONDARY), 100);
+		// Act:
+		selector.onRequestSucceeded(selector.endPoint(PRIMARY), 250);
+		// Assert:
+		assertThat(selector.getSelectedBaseUrl(), is(PRIMARY));
+	}
+
+	@Test public void testLatencyAverage() {
+		// Arrange:
+		final EndPointSelector selector = new EndPointSelector.Builder().addEndPoint(PRIMARY, 1).smoothing(0.5).build();
+		// Act:
+		selector.onRequestSucceeded(selector.endPoint(PRIMARY), 100);
+		selector.onRequestSucceeded(selector.endPoint(PRIMARY), 200);
+		// Assert:
+		assertThat(selector.getAverageLatency(PRIMARY, TimeUnit.NANOSECONDS), is(150L));
+	}
+
+	@Test public void testFailureCooldown() {
+		// Arrange:
+		final EndPointSelector selector = new EndPointSelector.Builder()
+				.addEndPoint(PRIMARY, 2)
+				.addEndPoint(SECONDARY, 1)
+				.failureCooldown(10, TimeUnit.NANOSECONDS)
+				.build();
+		final EndPointSelector.WeightedEndPoint primary = selector.endPoint(PRIMARY);
+		// Act + Assert:
+		selector.onRequestFailed(primary, 100);
+		assertThat(selector.getSelectedBaseUrl(), is(SECONDARY));
+		assertThat(primary.isFailedAt(105), is(true));
+		assertThat(primary.isFailedAt(110), is(false));
+	}
+
+	@Test public void testInterceptFailsOver() throws Exception {
+		// Arrange:
+		final EndPointSelector selector = new EndPointSelector.Builder()
+				.addEndPoint(PRIMARY, 2)
+				.addEndPoint(SECONDARY, 1)
+				.build();
+		final List<HttpUrl> changes = new ArrayList<>();
+		selector.addOnEndPointChangeListener(new EndPointSelector.OnEndPointChangeListener() {
+
+			@Override public void onEndPointChanged(EndPointSelector selector, HttpUrl oldBaseUrl, HttpUrl newBaseUrl) {
+				changes.add(newBaseUrl);
+			}
+		});
+		final FailingChain chain = new FailingChain(new Request.Builder().url(PRIMARY.resolve("users/1?full=true")).build(), PRIMARY.host());
+		// Act:
+		final Response response = selector.intercept(chain);
+		// Assert:
+		assertThat(response.request().url().toString(), is("https://us.android.com/api/users/1?full=true"));
+		assertThat(chain.requests.size(), is(2));
+		assertThat(selector.getSelectedBaseUrl(), is(SECONDARY));
+		assertThat(changes.size(), is(1));
+		assertSame(changes.get(0), SECONDARY);
+	}
+
+	@Test public void testInterceptFailsOverNotWrittenPost() throws Exception {
+		// Arrange:
+		final EndPointSelector selector = new EndPointSelector.Builder()
+				.addEndPoint(PRIMARY, 2)
+				.addEndPoint(SECONDARY, 1)
+				.build();
+		final Request request = new Request.Builder().url(PRIMARY.resolve("users")).post(RequestBody.create(null, "user")).build();
+		final FailingChain chain = new FailingChain(request, PRIMARY.host());
+		// Act:
+		final Response response = selector.intercept(chain);
+		// Assert:
+		assertThat(response.request().url().host(), is(SECONDARY.host()));
+		assertThat(chain.requests.size(), is(2));
+	}
+
+	@Test public void testInterceptDoesNotFailOverWrittenPost() throws Exception {
+		// Arrange:
+		final EndPointSelector selector = new EndPointSelector.Builder()
+				.addEndPoint(PRIMARY, 2)
+				.addEndPoint(SECONDARY, 1)
+				.build();
+		final Request request = new Request.Builder().url(PRIMARY.resolve("users")).post(RequestBody.create(null, "user")).build();
+		final FailingChain chain = new FailingChain(request, PRIMARY.host()) {
+
+			@Override public Response proceed(Request request) throws IOException {
+				request.body().writeTo(new Buffer());
+				return super.proceed(request);
+			}
+		};
+		// Act:
+		try {
+			selector.intercept(chain);
+			fail("Expected ConnectException.");
+		} catch (ConnectException e) {
+			// Assert:
+			assertThat(chain.requests.size(), is(1));
+			assertThat(selector.getSelectedBaseUrl(), is(SECONDARY));
+		}
+	}
+
+	@Test public void testInterceptRedirectsToSelectedEndPoint() throws Exception {
+		// Arrange:
+		final EndPointSelector selector = new EndPointSelector.Builder()
+				.addEndPoint(PRIMARY, 2)
+				.addEndPoint(SECONDARY, 1)
+				.build();
+		selector.onRequestFailed(selector.endPoint(PRIMARY), System.nanoTime());
+		final FailingChain chain = new FailingChain(new Request.Builder().url(PRIMARY.resolve("users")).build(), null);
+		// Act:
+		final Response response = selector.intercept(chain);
+		// Assert:
+		assertThat(response.request().url().host(), is(SECONDARY.host()));
+		assertThat(chain.requests.size(), is(1));
+	}
+
+	@Test public void testInterceptWhenAllEndPointsFail() throws Exception {
+		// Arrange:
+		final EndPointSelector selector = new EndPointSelector.Builder()
+				.addEndPoint(PRIMARY, 2)
+				.addEndPoint(SECONDARY, 1)
+				.build();
+		final Interceptor.Chain chain = mock(Interceptor.Chain.class);
+		when(chain.request()).thenReturn(new Request.Builder().url(PRIMARY.resolve("users")).build());
+		when(chain.proceed(any(Request.class))).thenThrow(new ConnectException());
+		// Act:
+		try {
+			selector.intercept(chain);
+			fail("Expected ConnectException.");
+		} catch (ConnectException e) {
+			// Assert:
+			verify(chain, times(2)).proceed(any(Request.class));
+		}
+	}
+
+	@Test(expected = SocketTimeoutException.class)
+	public void testInterceptWithReadFailure() throws Exception {
+		// Arrange:
+		final EndPointSelector selector = new EndPointSelector.Builder()
+				.addEndPoint(PRIMARY, 2)
+				.addEndPoint(SECONDARY, 1)
+				.build();
+		final Interceptor.Chain chain = mock(Interceptor.Chain.class);
+		when(chain.request()).thenReturn(new Request.Builder().url(PRIMARY.resolve("users")).build());
+		when(chain.proceed(any(Request.class))).thenThrow(new SocketTimeoutException("timeout"));
+		// Act:
+		selector.intercept(chain);
+	}
+
+	@Test public void testInterceptForeignRequest() throws Exception {
+		// Arrange:
+		final EndPointSelector selector = new EndPointSelector.Builder().addEndPoint(PRIMARY, 1).build();
+		final Request request = new Request.Builder().url("https://www.android.com/users").build();
+		final Interceptor.Chain chain = mock(Interceptor.Chain.class);
+		when(chain.request()).thenReturn(request);
+		when(chain.proceed(request)).thenAnswer(new Answer<Response>() {
+
+			@Override public Response answer(InvocationOnMock invocation) {
+				return new Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(200).message("OK").build();
+			}
+		});
+		// Act:
+		selector.intercept(chain);
+		// Assert:
+		verify(chain).proceed(request);
+		assertThat(selector.getAverageLatency(PRIMARY, TimeUnit.NANOSECONDS), is(-1L));
+	}
+
+	private static class FailingChain extends TestChain {
+
+		final List<Request> requests = new ArrayList<>();
+		private final String unreachableHost;
+
+		FailingChain(Request request, String unreachableHost) {
+			super(request);
+			this.unreachableHost = unreachableHost;
+		}
+
+		@Override public Response proceed(Request request) throws IOException {
+			requests.add(request);
+			if (request.url().host().equals(unreachableHost)) {
+				throw new ConnectException("Failed to connect.");
+			}
+			return super.proceed(request);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class FrameBatchingExecutorTest extends LocalTestCase {
+
+	@Test public void testExecuteCoalescesTasks() {
+		// Arrange:
+		final QueueExecutor target = new QueueExecutor();
+		final FrameBatchingExecutor executor = new FrameBatchingExecutor(target, 16, TimeUnit.MILLISECONDS);
+		final List<Integer> executed = new ArrayList<>();
+		// Act:
+		for (int i = 0; i < 3; i++) {
+			executor.execute(new RecordingTask(executed, i));
+		}
+		// Assert:
+		assertThat(target.tasks.size(), is(1));
+		assertThat(executed.isEmpty(), is(true));
+		target.tasks.get(0).run();
+		assertThat(executed, is(Arrays.asList(0, 1, 2)));
+	}
+
+	@Test public void testExecuteWithinFrameOfLastHandoff() {
+		// Arrange:
+		final QueueExecutor target = new QueueExecutor();
+		final FrameBatchingExecutor executor = new FrameBatchingExecutor(target, 1, TimeUnit.MINUTES);
+		final ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+		executor.scheduler = scheduler;
+		final List<Integer> executed = new ArrayList<>();
+		executor.execute(new RecordingTask(executed, 0));
+		target.tasks.remove(0).run();
+		// Act:
+		executor.execute(new RecordingTask(executed, 1));
+		executor.execute(new RecordingTask(executed, 2));
+		// Assert:
+		assertThat(target.tasks.isEmpty(), is(true));
+		final ArgumentCaptor<Runnable> handoffCaptor = ArgumentCaptor.forClass(Runnable.class);
+		verify(scheduler).schedule(handoffCaptor.capture(), anyLong(), eq(TimeUnit.NANOSECONDS));
+		handoffCaptor.getValue().run();
+		assertThat(target.tasks.size(), is(1));
+		target.tasks.get(0).run();
+		assertThat(executed, is(Arrays.asList(0, 1, 2)));
+	}
+
+	@Test public void testExecuteFirstTaskImmediately() {
+		// Arrange:
+		final QueueExecutor target = new QueueExecutor();
+		final FrameBatchingExecutor executor = new FrameBatchingExecutor(target, 1, TimeUnit.MINUTES);
+		final ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+		executor.scheduler = scheduler;
+		// Act:
+		executor.execute(new RecordingTask(new ArrayList<Integer>(), 0));
+		// Assert:
+		assertThat(target.tasks.size(), is(1));
+		verify(scheduler, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+	}
+
+	@Test public void testExecutePendingExecutesAllTasksDespiteFailure() {
+		// Arrange:
+		final QueueExecutor target = new QueueExecutor();
+		final FrameBatchingExecutor executor = new FrameBatchingExecutor(target, 16, TimeUnit.MILLISECONDS);
+		final List<Integer> executed = new ArrayList<>();
+		executor.execute(new Runnable() {
+
+			@Override public void run() {
+				throw new IllegalStateException("Failure.");
+			}
+		});
+		executor.execute(new RecordingTask(executed, 1));
+		// Act:
+		try {
+			executor.executePending();
+			throw new AssertionError("No exception thrown.");
+		} catch (IllegalStateException e) {
+			// Assert:
+			assertThat(e.getMessage(), is("Failure."));
+			assertThat(executed, is(Arrays.asList(1)));
+		}
+	}
+
+	private static final class QueueExecutor implements Executor {
+
+		final List<Runnable> tasks = new ArrayList<>();
+
+		@Override public void execute(@NonNull final Runnable task) {
+			tasks.add(task);
+		}
+	}
+
+	private static final class RecordingTask implements Runnable {
+
+		final List<Integer> executed;
+		final int index;
+
+		RecordingTask(final List<Integer> executed, final int index) {
+			this.executed = executed;
+			this.index = index;
+		}
+
+		@Override public void run() {
+			executed.add(index);
+		}
+	}
+}
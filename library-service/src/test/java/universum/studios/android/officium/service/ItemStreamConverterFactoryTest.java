@@ -0,0 +1,79 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import org.junit.Test;
+
+import java.lang.annotation.Annotation;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class ItemStreamConverterFactoryTest extends LocalTestCase {
+
+	private static final Retrofit RETROFIT = new Retrofit.Builder().baseUrl("https://www.android.com/").build();
+
+	@SuppressWarnings("unchecked")
+	@Test public void testResponseBodyConverter() throws Exception {
+		// Arrange:
+		final ItemStreamConverterFactory factory = ItemStreamConverterFactory.create();
+		// Act:
+		final Converter<ResponseBody, ?> converter = factory.responseBodyConverter(
+				TestApi.class.getMethod("items").getGenericReturnType(),
+				new Annotation[0],
+				RETROFIT
+		);
+		// Assert:
+		assertThat(converter, is(notNullValue()));
+		final ItemStream<String> stream = (ItemStream<String>) converter.convert(ResponseBody.create(MediaType.parse("application/json"), "[\"a\"]"));
+		assertThat(stream.read(10).get(0), is("a"));
+	}
+
+	@Test public void testResponseBodyConverterForOtherType() throws Exception {
+		// Arrange:
+		final ItemStreamConverterFactory factory = ItemStreamConverterFactory.create();
+		// Act + Assert:
+		assertThat(factory.responseBodyConverter(TestApi.class.getMethod("names").getGenericReturnType(), new Annotation[0], RETROFIT), is(nullValue()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testResponseBodyConverterForRawStream() {
+		// Act:
+		ItemStreamConverterFactory.create().responseBodyConverter(ItemStream.class, new Annotation[0], RETROFIT);
+	}
+
+	private interface TestApi {
+
+		ItemStream<String> items();
+
+		List<String> names();
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class ItemStreamTest extends LocalTestCase {
+
+	private static final MediaType JSON = MediaType.parse("application/json");
+
+	@Test public void testRead() throws Exception {
+		// Arrange:
+		final ItemStream<Item> stream = createStream("[{\"id\":1},{\"id\":2},{\"id\":3}]");
+		// Act + Assert:
+		assertThat(stream.read(2).size(), is(2));
+		assertThat(stream.isFinished(), is(false));
+		assertThat(stream.read(2).get(0).id, is(3));
+		assertThat(stream.isFinished(), is(true));
+		assertThat(stream.getReadCount(), is(3));
+		assertThat(stream.read(2).isEmpty(), is(true));
+	}
+
+	@Test public void testReadBatchOfExactSize() throws Exception {
+		// Arrange:
+		final ItemStream<Item> stream = createStream("[{\"id\":1},{\"id\":2}]");
+		// Act:
+		stream.read(2);
+		// Assert:
+		assertThat(stream.isFinished(), is(true));
+	}
+
+	@Test public void testReadEmptyArray() throws Exception {
+		// Arrange:
+		final ItemStream<Item> stream = createStream("[]");
+		// Act + Assert:
+		assertThat(stream.read(10), is(Collections.<Item>emptyList()));
+		assertThat(stream.isFinished(), is(true));
+	}
+
+	@Test public void testReadNull() throws Exception {
+		// Arrange:
+		final ItemStream<Item> stream = createStream("null");
+		// Act + Assert:
+		assertThat(stream.read(10).isEmpty(), is(true));
+		assertThat(stream.isFinished(), is(true));
+	}
+
+	@Test(expected = JsonSyntaxException.class)
+	public void testReadNotArray() throws Exception {
+		// Arrange:
+		final ItemStream<Item> stream = createStream("{\"id\":1}");
+		// Act:
+		stream.read(10);
+	}
+
+	@Test(expected = JsonSyntaxException.class)
+	public void testReadInvalidItem() throws Exception {
+		// Arrange:
+		final ItemStream<Item> stream = createStream("[{\"id\":\"one\"}]");
+		// Act:
+		stream.read(10);
+	}
+
+	@Test public void testClose() throws Exception {
+		// Arrange:
+		final ItemStream<Item> stream = createStream("[{\"id\":1}]");
+		// Act:
+		stream.close();
+		// Assert:
+		assertThat(stream.isFinished(), is(true));
+		assertThat(stream.read(10).isEmpty(), is(true));
+	}
+
+	@Test public void testReadStrings() throws Exception {
+		// Arrange:
+		final Gson gson = new Gson();
+		final ItemStream<String> stream = new ItemStream<>(
+				gson.newJsonReader(ResponseBody.create(JSON, "[\"a\",\"b\"]").charStream()),
+				gson.getAdapter(String.class)
+		);
+		// Act + Assert:
+		assertThat(stream.read(10), is(Arrays.asList("a", "b")));
+	}
+
+	private static ItemStream<Item> createStream(final String json) {
+		final Gson gson = new Gson();
+		return new ItemStream<>(gson.newJsonReader(ResponseBody.create(JSON, json).charStream()), gson.getAdapter(Item.class));
+	}
+
+	static final class Item {
+
+		int id;
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Response;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class ItemsCallbackTest extends LocalTestCase {
+
+	private static final Executor DIRECT_EXECUTOR = new Executor() {
+
+		@Override public void execute(@NonNull final Runnable command) {
+			command.run();
+		}
+	};
+
+	@SuppressWarnings("unchecked")
+	@Test public void testOnResponse() {
+		// Arrange:
+		final TestCallback callback = new TestCallback();
+		callback.setBatchSize(2);
+		// Act:
+		callback.onResponse(mock(TestCall.class), Response.success(createStream("[\"a\",\"b\",\"c\",\"d\",\"e\"]")));
+		// Assert:
+		assertThat(callback.batches.size(), is(3));
+		assertThat(callback.batches.get(0), is(Arrays.asList("a", "b")));
+		assertThat(callback.batches.get(2), is(Arrays.asList("e")));
+		assertThat(callback.finishedCount, is(5));
+		assertThat(callback.error, is(nullValue()));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testOnResponseWithEmptyArray() {
+		// Arrange:
+		final TestCallback callback = new TestCallback();
+		// Act:
+		callback.onResponse(mock(TestCall.class), Response.success(createStream("[]")));
+		// Assert:
+		assertThat(callback.batches.isEmpty(), is(true));
+		assertThat(callback.finishedCount, is(0));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testOnResponseWithInvalidBody() {
+		// Arrange:
+		final TestCallback callback = new TestCallback();
+		callback.setBatchSize(1);
+		// Act:
+		callback.onResponse(mock(TestCall.class), Response.success(createStream("[\"a\",{}]")));
+		// Assert:
+		assertThat(callback.batches.size(), is(1));
+		assertThat(callback.finishedCount, is(-1));
+		assertThat(callback.error, is(notNullValue()));
+		assertThat(callback.error.getKind(), is(ServiceError.KIND_CONVERSION));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testCancel() {
+		// Arrange:
+		final TestCallback callback = new TestCallback();
+		callback.cancel();
+		// Act:
+		callback.onResponse(mock(TestCall.class), Response.success(createStream("[\"a\"]")));
+		// Assert:
+		assertThat(callback.batches.isEmpty(), is(true));
+		assertThat(callback.error.getFailure(), is((Throwable) ServiceFailure.CANCELED));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetBatchSizeInvalid() {
+		// Act:
+		new TestCallback().setBatchSize(0);
+	}
+
+	private static ItemStream<String> createStream(final String json) {
+		final Gson gson = new Gson();
+		return new ItemStream<>(
+				gson.newJsonReader(ResponseBody.create(MediaType.parse("application/json"), json).charStream()),
+				gson.getAdapter(String.class)
+		);
+	}
+
+	private interface TestCall extends Call<ItemStream<String>> {}
+
+	private static final class TestCallback extends ItemsCallback<String> {
+
+		final List<List<String>> batches = new ArrayList<>();
+		int finishedCount = -1;
+		ServiceError error;
+
+		TestCallback() {
+			this.readExecutor = DIRECT_EXECUTOR;
+		}
+
+		@Override protected void onDispatchItems(@NonNull final List<String> items) {
+			batches.add(items);
+		}
+
+		@Override protected void onDispatchItemsFinished(final int itemCount) {
+			this.finishedCount = itemCount;
+		}
+
+		@Override protected void onDispatchError(@NonNull final ServiceError error) {
+			this.error = error;
+		}
+	}
+}
@@ -0,0 +1,274 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.NonNull;
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class ServiceCallBatchTest extends LocalTestCase {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	@After public void afterTest() {
+		executor.shutdownNow();
+	}
+
+	@Test public void testExecute() throws Exception {
+		// Arrange:
+		final Concurrency concurrency = new Concurrency();
+		final List<TestCall> calls = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			calls.add(new TestCall("www.host" + i + ".com", "body:" + i, concurrency));
+		}
+		final ServiceCallBatch<String> batch = new ServiceCallBatch<>(calls, 3, 3, executor);
+		// Act:
+		final List<Response<String>> responses = batch.execute();
+		// Assert:
+		assertThat(responses.size(), is(10));
+		for (int i = 0; i < 10; i++) {
+			assertThat(responses.get(i).body(), is("body:" + i));
+		}
+		assertThat(concurrency.max.get() <= 3, is(true));
+	}
+
+	@Test public void testExecuteWithLimitPerHost() throws Exception {
+		// Arrange:
+		final Concurrency sameHostConcurrency = new Concurrency();
+		final Concurrency otherHostConcurrency = new Concurrency();
+		final List<TestCall> calls = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			calls.add(new TestCall("www.android.com", "body:" + i, sameHostConcurrency));
+		}
+		calls.add(new TestCall("www.google.com", "body:other", otherHostConcurrency));
+		final ServiceCallBatch<String> batch = new ServiceCallBatch<>(calls, 4, 2, executor);
+		// Act:
+		final List<Response<String>> responses = batch.execute();
+		// Assert:
+		assertThat(responses.get(6).body(), is("body:other"));
+		assertThat(sameHostConcurrency.max.get() <= 2, is(true));
+		assertThat(otherHostConcurrency.started.get(), is(1));
+	}
+
+	@Test public void testExecuteStopsOnFailure() {
+		// Arrange:
+		final Concurrency concurrency = new Concurrency();
+		final TestCall failingCall = new TestCall("www.android.com", null, concurrency);
+		final TestCall nextCall = new TestCall("www.android.com", "body", concurrency);
+		final ServiceCallBatch<String> batch = new ServiceCallBatch<>(Arrays.asList(failingCall, nextCall), 1, 1, executor);
+		// Act:
+		try {
+			batch.execute();
+			throw new AssertionError("No exception thrown.");
+		} catch (IOException e) {
+			// Assert:
+			assertThat(e.getMessage(), is("Failure."));
+			assertThat(nextCall.executed, is(false));
+		}
+	}
+
+	@Test public void testExecuteCancelsRunningCallsOnFailure() {
+		// Arrange:
+		final Concurrency concurrency = new Concurrency();
+		final TestCall blockingCall = new TestCall("www.android.com", "body", concurrency);
+		blockingCall.blockUntilCanceled = true;
+		final TestCall failingCall = new TestCall("www.google.com", null, concurrency);
+		final ServiceCallBatch<String> batch = new ServiceCallBatch<>(Arrays.asList(blockingCall, failingCall), 2, 1, executor);
+		// Act:
+		try {
+			batch.execute();
+			throw new AssertionError("No exception thrown.");
+		} catch (IOException e) {
+			// Assert:
+			assertThat(blockingCall.isCanceled(), is(true));
+		}
+	}
+
+	@Test public void testExecuteNotifiesResponseListener() throws Exception {
+		// Arrange:
+		final Concurrency concurrency = new Concurrency();
+		final List<TestCall> calls = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			calls.add(new TestCall("www.android.com", "body:" + i, concurrency));
+		}
+		final ServiceCallBatch<String> batch = new ServiceCallBatch<>(calls, 2, 2, executor);
+		final AtomicInteger notifiedIndexes = new AtomicInteger();
+		batch.setOnResponseListener(new ServiceCallBatch.OnResponseListener<String>() {
+
+			@Override public void onResponse(final int index, @NonNull final Response<String> response) {
+				assertThat(response.body(), is("body:" + index));
+				notifiedIndexes.addAndGet(1 << index);
+			}
+		});
+		// Act:
+		batch.execute();
+		// Assert:
+		assertThat(notifiedIndexes.get(), is(7));
+	}
+
+	@Test public void testExecuteFailsWhenResponseListenerFails() {
+		// Arrange:
+		final Concurrency concurrency = new Concurrency();
+		final TestCall call = new TestCall("www.android.com", "body", concurrency);
+		final ServiceCallBatch<String> batch = new ServiceCallBatch<>(Arrays.asList(call, call.clone()), 1, 1, executor);
+		batch.setOnResponseListener(new ServiceCallBatch.OnResponseListener<String>() {
+
+			@Override public void onResponse(final int index, @NonNull final Response<String> response) throws IOException {
+				throw new IOException("Rejected.");
+			}
+		});
+		// Act:
+		try {
+			batch.execute();
+			throw new AssertionError("No exception thrown.");
+		} catch (IOException e) {
+			// Assert:
+			assertThat(e.getMessage(), is("Rejected."));
+		}
+	}
+
+	@Test public void testCancel() {
+		// Arrange:
+		final Concurrency concurrency = new Concurrency();
+		final TestCall blockingCall = new TestCall("www.android.com", "body", concurrency);
+		blockingCall.blockUntilCanceled = true;
+		final ServiceCallBatch<String> batch = new ServiceCallBatch<>(Arrays.asList(blockingCall), 1, 1, executor);
+		executor.execute(new Runnable() {
+
+			@Override public void run() {
+				while (!blockingCall.executed) {
+					Thread.yield();
+				}
+				batch.cancel();
+			}
+		});
+		// Act:
+		try {
+			batch.execute();
+			throw new AssertionError("No exception thrown.");
+		} catch (IOException e) {
+			// Assert:
+			assertThat(e, is((IOException) ServiceFailure.CANCELED));
+			assertThat(blockingCall.isCanceled(), is(true));
+		}
+	}
+
+	private static final class Concurrency {
+
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger started = new AtomicInteger();
+		final AtomicInteger max = new AtomicInteger();
+
+		void enter() {
+			started.incrementAndGet();
+			final int current = running.incrementAndGet();
+			int previous;
+			while ((previous = max.get()) < current && !max.compareAndSet(previous, current)) {
+				// Retry until the maximum is updated.
+			}
+		}
+
+		void exit() {
+			running.decrementAndGet();
+		}
+	}
+
+	private static final class TestCall implements Call<String> {
+
+		final Request request;
+		final String body;
+		final Concurrency concurrency;
+		final CountDownLatch cancelLatch = new CountDownLatch(1);
+		volatile boolean executed;
+		volatile boolean blockUntilCanceled;
+
+		TestCall(final String host, final String body, final Concurrency concurrency) {
+			this.request = new Request.Builder().url("https://" + host + "/").build();
+			this.body = body;
+			this.concurrency = concurrency;
+		}
+
+		@Override public Response<String> execute() throws IOException {
+			this.executed = true;
+			concurrency.enter();
+			try {
+				if (blockUntilCanceled) {
+					cancelLatch.await(5, TimeUnit.SECONDS);
+					throw new IOException("Canceled");
+				}
+				Thread.sleep(10);
+				if (body == null) {
+					throw new IOException("Failure.");
+				}
+				return Response.success(body);
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			} finally {
+				concurrency.exit();
+			}
+		}
+
+		@Override public void enqueue(@NonNull final Callback<String> callback) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override public boolean isExecuted() {
+			return executed;
+		}
+
+		@Override public void cancel() {
+			cancelLatch.countDown();
+		}
+
+		@Override public boolean isCanceled() {
+			return cancelLatch.getCount() == 0;
+		}
+
+		@SuppressWarnings("CloneDoesntCallSuperClone")
+		@Override public Call<String> clone() {
+			return new TestCall(request.url().host(), body, concurrency);
+		}
+
+		@Override public Request request() {
+			return request;
+		}
+	}
+}
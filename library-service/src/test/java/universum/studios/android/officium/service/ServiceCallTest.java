@@ -19,19 +19,27 @@
 package universum.studios.android.officium.service;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
 import androidx.annotation.NonNull;
+import okhttp3.MediaType;
 import okhttp3.Request;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
 import universum.studios.android.test.local.LocalTestCase;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -62,6 +70,99 @@ public final class ServiceCallTest extends LocalTestCase {
 		assertThat(call.withServiceId(2), is(call));
 	}
 
+	@Test public void testWithPriority() {
+		// Arrange:
+		final ServiceCall call = new ServiceCall<>(mock(TestCall.class));
+		// Act + Assert:
+		assertThat(call.priority, is(ServiceCall.PRIORITY_DEFAULT));
+		assertThat(call.withPriority(ServiceCall.PRIORITY_HIGH), is(call));
+		assertThat(call.priority, is(ServiceCall.PRIORITY_HIGH));
+	}
+
+	@Test public void testEnqueueRequestWithPriority() {
+		// Arrange:
+		final ServiceCallback<Void> callback = new TestServiceCallback() {
+
+			@Override protected void onDispatchResponse(@NonNull Void responseBody) {}
+
+			@Override protected void onDispatchError(@NonNull ServiceError error) {}
+		};
+		final ServiceCall<Void> call = new ServiceCall<>(mock(TestCall.class)).withPriority(ServiceCall.PRIORITY_LOW);
+		// Act:
+		call.enqueueRequest(callback);
+		// Assert:
+		assertThat(callback.getPriority(), is(ServiceCall.PRIORITY_LOW));
+	}
+
+	@Test public void testEnqueueWithRetrofit() {
+		// Arrange:
+		final ServiceCallback<Void> callback = new TestServiceCallback() {
+
+			@Override protected void onDispatchResponse(@NonNull Void responseBody) {}
+
+			@Override protected void onDispatchError(@NonNull ServiceError error) {}
+		};
+		final Retrofit retrofit = new Retrofit.Builder().baseUrl("https://www.google.com/").build();
+		final ServiceCall<Void> call = new ServiceCall<>(mock(TestCall.class), retrofit);
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		assertThat(callback.retrofit, is(retrofit));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testToFuture() {
+		// Arrange:
+		final Call<Void> mockCall = mock(TestCall.class);
+		final ServiceCall<Void> call = new ServiceCall<>(mockCall).withServiceId(1);
+		// Act:
+		final ServiceFuture<Void> future = call.toFuture();
+		// Assert:
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(mockCall).enqueue(callbackCaptor.capture());
+		assertThat(callbackCaptor.getValue(), instanceOf(ServiceCallback.class));
+		assertThat(((ServiceCallback) callbackCaptor.getValue()).getServiceId(), is(1));
+		assertThat(future.isDone(), is(false));
+		callbackCaptor.getValue().onResponse(mockCall, Response.success(null));
+		assertThat(future.isSuccessful(), is(true));
+		assertThat(future.getValue(), is(nullValue()));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testToFutureWithErrorResponse() {
+		// Arrange:
+		final Call<Void> mockCall = mock(TestCall.class);
+		final ServiceFuture<Void> future = new ServiceCall<>(mockCall).toFuture();
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(mockCall).enqueue(callbackCaptor.capture());
+		// Act:
+		callbackCaptor.getValue().onResponse(mockCall, Response.error(404, ResponseBody.create(MediaType.parse("text/plain"), "")));
+		// Assert:
+		assertThat(future.getFailure(), instanceOf(ServiceErrorException.class));
+		assertThat(future.getError().getErrorCode(), is(404));
+	}
+
+	@Test public void testCancelFuture() {
+		// Arrange:
+		final Call<Void> mockCall = mock(TestCall.class);
+		final ServiceFuture<Void> future = new ServiceCall<>(mockCall).toFuture();
+		// Act:
+		future.cancel(false);
+		// Assert:
+		verify(mockCall).cancel();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testExecuteAllWithInvalidConcurrency() throws Exception {
+		// Act:
+		ServiceCall.executeAll(Collections.singletonList(mock(TestCall.class)), 0);
+	}
+
+	@Test public void testExecuteAllWithoutCalls() throws Exception {
+		// Act + Assert:
+		assertThat(ServiceCall.executeAll(Collections.<Call<Void>>emptyList(), 4).isEmpty(), is(true));
+	}
+
 	@Test public void testExecute() throws Exception {
 		// Arrange:
 		final Call<Void> mockCall = mock(TestCall.class);
@@ -105,6 +206,65 @@ public final class ServiceCallTest extends LocalTestCase {
 		}
 	}
 
+	@Test public void testEnqueueRequest() {
+		// Arrange:
+		final Call<Void> mockCall = mock(TestCall.class);
+		final ServiceCallback<Void> callback = new TestServiceCallback() {
+
+			@Override protected void onDispatchResponse(@NonNull Void responseBody) {}
+
+			@Override protected void onDispatchError(@NonNull ServiceError error) {}
+		};
+		final ServiceCall<Void> call = new ServiceCall<>(mockCall).withServiceId(1);
+		// Act:
+		final long requestId = call.enqueueRequest(callback);
+		// Assert:
+		assertThat(requestId, is(not(ServiceCallback.NO_REQUEST_ID)));
+		assertThat(callback.getServiceId(), is(1));
+		assertThat(callback.getRequestIdAsLong(), is(requestId));
+		assertThat(callback.getRequestId(), is(Long.toString(requestId)));
+		verify(mockCall).enqueue(callback);
+		verifyNoMoreInteractions(mockCall);
+	}
+
+	@Test public void testNextRequestIdValue() {
+		// Arrange:
+		final ServiceCall<Void> call = new ServiceCall<>(mock(TestCall.class));
+		long previousRequestId = BaseServiceObject.NO_REQUEST_ID;
+		// Act + Assert:
+		for (int i = 0; i < 1000; i++) {
+			final long requestId = call.nextRequestIdValue();
+			assertThat(requestId > previousRequestId, is(true));
+			previousRequestId = requestId;
+		}
+	}
+
+	@Test public void testNextRequestIdValueConcurrently() throws Exception {
+		// Arrange:
+		final ServiceCall<Void> call = new ServiceCall<>(mock(TestCall.class));
+		final Set<Long> requestIds = Collections.synchronizedSet(new HashSet<Long>(4000));
+		final Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+
+				@Override public void run() {
+					for (int j = 0; j < 1000; j++) {
+						requestIds.add(call.nextRequestIdValue());
+					}
+				}
+			});
+		}
+		// Act:
+		for (final Thread thread : threads) {
+			thread.start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		// Assert:
+		assertThat(requestIds.size(), is(4000));
+	}
+
 	@Test public void testEnqueueWithCallback() {
 		// Arrange:
 		final Call<Void> mockCall = mock(TestCall.class);
@@ -170,12 +330,15 @@ public final class ServiceCallTest extends LocalTestCase {
 	@Test public void testClone() {
 		// Arrange:
 		final Call<Void> mockCall = mock(TestCall.class);
-		final ServiceCall<Void> call = new ServiceCall<>(mockCall).withServiceId(1);
+		final Retrofit retrofit = new Retrofit.Builder().baseUrl("https://www.google.com/").build();
+		final ServiceCall<Void> call = new ServiceCall<>(mockCall, retrofit).withServiceId(1).withPriority(ServiceCall.PRIORITY_HIGH);
 		// Act:
 		final ServiceCall<Void> callClone = call.clone();
 		// Assert:
 		assertThat(callClone, is(notNullValue()));
 		assertThat(callClone.serviceId, is(1));
+		assertThat(callClone.priority, is(ServiceCall.PRIORITY_HIGH));
+		assertThat(callClone.retrofit, is(retrofit));
 		assertThat(callClone.call, is(not(mockCall)));
 	}
 
@@ -22,13 +22,17 @@ import org.junit.Test;
 
 import androidx.annotation.NonNull;
 import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
 import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.Response;
 import universum.studios.android.test.local.LocalTestCase;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Mockito.mock;
 
@@ -37,6 +41,13 @@ import static org.mockito.Mockito.mock;
  */
 public final class ServiceCallbackTest extends LocalTestCase {
 
+	@Test public void testGetPriority() {
+		// Arrange:
+		final TestCallback<TestServiceResult> callback = new TestCallback<>();
+		// Act + Assert:
+		assertThat(callback.getPriority(), is(ServiceCall.PRIORITY_DEFAULT));
+	}
+
 	@Test public void testOnResponseThatIsSuccessful() {
 		// Arrange:
 		final TestCallback<TestServiceResult> callback = new TestCallback<>();
@@ -50,6 +61,7 @@ public final class ServiceCallbackTest extends LocalTestCase {
 		assertThat(callback.onDispatchResponseCalled, is(true));
 		assertThat(callback.onDispatchErrorCalled, is(false));
 		assertThat(callback.onDispatchResponseBody, is(responseBody));
+		assertThat(callback.onDispatchResponseNotModified, is(false));
 		assertThat(callback.getServiceId(), is(1));
 		assertThat(callback.getRequestId(), is("request:1"));
 	}
@@ -71,6 +83,31 @@ public final class ServiceCallbackTest extends LocalTestCase {
 		assertThat(callback.getRequestId(), is("request:1"));
 	}
 
+	@Test public void testOnResponseThatIsNotModified() {
+		// Arrange:
+		final TestCallback<TestResult> callback = new TestCallback<>();
+		final TestResult responseBody = new TestResult();
+		final Request request = new Request.Builder().url("https://www.android.com/").build();
+		final okhttp3.Response networkResponse = new okhttp3.Response.Builder()
+				.request(request)
+				.protocol(Protocol.HTTP_1_1)
+				.code(304)
+				.message("Not Modified")
+				.build();
+		final Response<TestResult> response = Response.success(responseBody, networkResponse.newBuilder()
+				.code(200)
+				.message("OK")
+				.networkResponse(networkResponse)
+				.build()
+		);
+		// Act:
+		callback.onResponse(mock(TestCall.class), response);
+		// Assert:
+		assertThat(callback.onDispatchResponseCalled, is(true));
+		assertThat(callback.onDispatchResponseBody, is(responseBody));
+		assertThat(callback.onDispatchResponseNotModified, is(true));
+	}
+
 	@Test public void testOnResponseThatIsError() {
 		// Arrange:
 		final TestCallback<TestResult> callback = new TestCallback<>();
@@ -86,6 +123,7 @@ public final class ServiceCallbackTest extends LocalTestCase {
 		assertThat(callback.onDispatchError.isError(), is(true));
 		assertThat(callback.onDispatchError.isFailure(), is(false));
 		assertThat(callback.onDispatchError.getErrorCode(), is(400));
+		assertThat(callback.onDispatchError.getErrorBody(), is(not(sameInstance(errorResponse.errorBody()))));
 		assertThat(callback.getServiceId(), is(1));
 		assertThat(callback.getRequestId(), is("request:1"));
 	}
@@ -133,8 +171,14 @@ public final class ServiceCallbackTest extends LocalTestCase {
 
 		boolean onDispatchResponseCalled, onDispatchErrorCalled;
 		T onDispatchResponseBody;
+		boolean onDispatchResponseNotModified;
 		ServiceError onDispatchError;
 
+		@Override protected void onDispatchResponse(@NonNull final T responseBody, final boolean notModified) {
+			this.onDispatchResponseNotModified = notModified;
+			super.onDispatchResponse(responseBody, notModified);
+		}
+
 		@Override protected void onDispatchResponse(@NonNull final T responseBody) {
 			this.onDispatchResponseCalled = true;
 			this.onDispatchResponseBody = responseBody;
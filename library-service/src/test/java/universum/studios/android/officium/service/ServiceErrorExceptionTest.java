@@ -0,0 +1,45 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import org.junit.Test;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class ServiceErrorExceptionTest extends LocalTestCase {
+
+	@Test public void testInstantiation() {
+		// Arrange:
+		final ServiceError error = new ServiceError(503, ResponseBody.create(MediaType.parse("text/plain"), ""));
+		// Act:
+		final ServiceErrorException exception = new ServiceErrorException(error);
+		// Assert:
+		assertThat(exception.getError(), is(error));
+		assertThat(exception.getKind(), is(ServiceError.KIND_HTTP));
+		assertThat(exception.getMessage(), is("Error response(503)."));
+	}
+}
@@ -23,16 +23,30 @@ import com.google.gson.Gson;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLHandshakeException;
 
 import androidx.annotation.NonNull;
 import okhttp3.MediaType;
 import okhttp3.ResponseBody;
+import okio.Buffer;
 import retrofit2.Converter;
+import retrofit2.Retrofit;
 import universum.studios.android.test.local.LocalTestCase;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.CoreMatchers.startsWith;
 import static org.hamcrest.MatcherAssert.assertThat;
 
@@ -86,6 +100,29 @@ public final class ServiceErrorTest extends LocalTestCase {
 	}
 
 	@SuppressWarnings("ConstantConditions")
+	@Test public void testGetKindOfError() {
+		// Arrange:
+		final ServiceError error = new ServiceError(503, ResponseBody.create(MediaType.parse(""), ""));
+		// Act + Assert:
+		assertThat(error.getKind(), is(ServiceError.KIND_HTTP));
+		assertThat(new ServiceError(error).getKind(), is(ServiceError.KIND_HTTP));
+	}
+
+	@Test public void testGetKindOfFailure() {
+		// Act + Assert:
+		assertThat(new ServiceError(new SocketTimeoutException()).getKind(), is(ServiceError.KIND_TIMEOUT));
+		assertThat(new ServiceError(new InterruptedIOException("timeout")).getKind(), is(ServiceError.KIND_TIMEOUT));
+		assertThat(new ServiceError(new InterruptedIOException()).getKind(), is(ServiceError.KIND_CANCELED));
+		assertThat(new ServiceError(new UnknownHostException()).getKind(), is(ServiceError.KIND_DNS));
+		assertThat(new ServiceError(new ConnectException()).getKind(), is(ServiceError.KIND_CONNECTION));
+		assertThat(new ServiceError(new SSLHandshakeException("Handshake failed.")).getKind(), is(ServiceError.KIND_TLS));
+		assertThat(new ServiceError(new IOException("Canceled")).getKind(), is(ServiceError.KIND_CANCELED));
+		assertThat(new ServiceError(ServiceFailure.CANCELED).getKind(), is(ServiceError.KIND_CANCELED));
+		assertThat(new ServiceError(new IllegalStateException()).getKind(), is(ServiceError.KIND_CONVERSION));
+		assertThat(new ServiceError(new IOException()).getKind(), is(ServiceError.KIND_IO));
+		assertThat(new ServiceError(new AssertionError()).getKind(), is(ServiceError.KIND_UNKNOWN));
+	}
+
 	@Test public void testGetErrorBodyAs() {
 		// Arrange:
 		final ResponseBody errorBody = ResponseBody.create(MediaType.parse("application/json"), "{code: 401, message: \"Unauthorized.\"}");
@@ -120,6 +157,137 @@ public final class ServiceErrorTest extends LocalTestCase {
 		assertThat(testError, is(nullValue()));
 	}
 
+	@Test public void testGetErrorBodyAsMemoizesDecodedBody() throws Exception {
+		// Arrange:
+		final ResponseBody errorBody = ResponseBody.create(MediaType.parse("application/json"), "{code: 401, message: \"Unauthorized.\"}");
+		final ServiceError error = new ServiceError(400, errorBody);
+		final AtomicInteger conversions = new AtomicInteger();
+		error.setErrorBodyConverter(new Converter<ResponseBody, TestError>() {
+
+			@Override public TestError convert(@NonNull final ResponseBody value) throws IOException {
+				conversions.incrementAndGet();
+				return new Gson().fromJson(value.string(), TestError.class);
+			}
+		});
+		final ServiceError errorCopy = new ServiceError(error);
+		// Act:
+		final TestError firstError = error.getErrorBodyAs(TestError.class);
+		final TestError secondError = errorCopy.getErrorBodyAs(TestError.class);
+		// Assert:
+		assertThat(firstError, is(notNullValue()));
+		assertThat(secondError, is(sameInstance(firstError)));
+		assertThat(conversions.get(), is(1));
+		assertThat(error.getErrorBody(), is(not(sameInstance(errorBody))));
+		assertThat(error.getErrorBody().string(), is("{code: 401, message: \"Unauthorized.\"}"));
+		assertThat(error.getErrorBodyFailure(), is(nullValue()));
+	}
+
+	@Test public void testGetErrorBodyAsWithConverterResolvedFromRetrofit() {
+		// Arrange:
+		final Retrofit retrofit = new Retrofit.Builder()
+				.baseUrl("https://www.google.com/")
+				.addConverterFactory(new TestConverterFactory())
+				.build();
+		final ServiceError error = new ServiceError(400, ResponseBody.create(MediaType.parse("application/json"), "{code: 401, message: \"Unauthorized.\"}"));
+		error.setRetrofit(retrofit);
+		// Act:
+		final TestError testError = error.getErrorBodyAs(TestError.class);
+		// Assert:
+		assertThat(testError, is(notNullValue()));
+		assertThat(testError.code, is(401));
+		assertThat(testError.message, is("Unauthorized."));
+	}
+
+	@Test public void testGetErrorBodyAsWhereErrorBodyExceedsMaximumSize() throws Exception {
+		// Arrange:
+		final byte[] content = new byte[(int) ServiceError.MAX_ERROR_BODY_SIZE + 1];
+		Arrays.fill(content, (byte) 'a');
+		final ServiceError error = new ServiceError(500, ResponseBody.create(MediaType.parse("text/plain"), content));
+		final AtomicInteger conversions = new AtomicInteger();
+		error.setErrorBodyConverter(new Converter<ResponseBody, String>() {
+
+			@Override public String convert(@NonNull final ResponseBody value) throws IOException {
+				conversions.incrementAndGet();
+				return value.string();
+			}
+		});
+		// Act:
+		final String decodedBody = error.getErrorBodyAs(String.class);
+		// Assert:
+		assertThat(decodedBody, is(nullValue()));
+		assertThat(conversions.get(), is(0));
+		assertThat(error.getErrorBodyFailure(), is(notNullValue()));
+		assertThat(error.getErrorBody().contentLength(), is(ServiceError.MAX_ERROR_BODY_SIZE));
+	}
+
+	@Test public void testGetErrorBodyFailureWhereConverterThrowsIOException() {
+		// Arrange:
+		final IOException failure = new IOException();
+		final ServiceError error = new ServiceError(400, ResponseBody.create(MediaType.parse("application/json"), "{}"));
+		error.setErrorBodyConverter(new Converter<ResponseBody, TestError>() {
+
+			@Override public TestError convert(@NonNull final ResponseBody value) throws IOException {
+				throw failure;
+			}
+		});
+		// Act:
+		error.getErrorBodyAs(TestError.class);
+		// Assert:
+		assertThat(error.getErrorBodyFailure(), is(sameInstance(failure)));
+	}
+
+	@Test public void testGetErrorBodyAsAfterConversionFailureForAnotherClass() {
+		// Arrange:
+		final ServiceError error = new ServiceError(400, ResponseBody.create(MediaType.parse("text/plain"), "Bad request."));
+		error.setErrorBodyConverter(new Converter<ResponseBody, TestError>() {
+
+			@Override public TestError convert(@NonNull final ResponseBody value) throws IOException {
+				throw new IOException();
+			}
+		});
+		error.getErrorBodyAs(TestError.class);
+		error.setErrorBodyConverter(new Converter<ResponseBody, String>() {
+
+			@Override public String convert(@NonNull final ResponseBody value) throws IOException {
+				return value.string();
+			}
+		});
+		// Act:
+		final String decodedBody = error.getErrorBodyAs(String.class);
+		// Assert:
+		assertThat(decodedBody, is("Bad request."));
+	}
+
+	@Test public void testReadErrorBody() throws Exception {
+		// Arrange:
+		final byte[] content = new byte[(int) ServiceError.MAX_ERROR_BODY_SIZE + 1];
+		Arrays.fill(content, (byte) 'a');
+		final Buffer source = new Buffer().write(content);
+		final ServiceError error = new ServiceError(500, ResponseBody.create(MediaType.parse("text/plain"), content.length, source));
+		// Act:
+		error.readErrorBody();
+		// Assert:
+		assertThat(source.size(), is(0L));
+		assertThat(error.getErrorBody().contentLength(), is(ServiceError.MAX_ERROR_BODY_SIZE));
+		assertThat(error.getErrorBodyFailure(), is(notNullValue()));
+	}
+
+	@Test public void testReadErrorBodyWhenNotError() {
+		// Arrange:
+		final ServiceError error = new ServiceError(new IOException("Failure."));
+		// Act:
+		error.readErrorBody();
+		// Assert:
+		assertThat(error.getErrorBodyFailure(), is(nullValue()));
+	}
+
+	@Test public void testGetErrorBodyFailureWhenNotError() {
+		// Arrange:
+		final ServiceError error = new ServiceError(new IOException("Failure."));
+		// Act + Assert:
+		assertThat(error.getErrorBodyFailure(), is(nullValue()));
+	}
+
 	@Test(expected = IllegalStateException.class)
 	public void testGetErrorBodyAsWithoutConverter() {
 		// Arrange:
@@ -184,4 +352,16 @@ public final class ServiceErrorTest extends LocalTestCase {
 		int code;
 		String message;
 	}
-}
\ No newline at end of file
+
+	private static final class TestConverterFactory extends Converter.Factory {
+
+		@Override public Converter<ResponseBody, ?> responseBodyConverter(@NonNull final Type type, @NonNull final Annotation[] annotations, @NonNull final Retrofit retrofit) {
+			return new Converter<ResponseBody, Object>() {
+
+				@Override public Object convert(@NonNull final ResponseBody value) throws IOException {
+					return new Gson().fromJson(value.string(), type);
+				}
+			};
+		}
+	}
+}
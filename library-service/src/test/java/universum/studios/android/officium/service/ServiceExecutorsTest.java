@@ -0,0 +1,122 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class ServiceExecutorsTest extends LocalTestCase {
+
+	@Test(expected = IllegalAccessException.class)
+	public void testInstantiation() throws Exception {
+		// Act:
+		ServiceExecutors.class.newInstance();
+	}
+
+	@Test(expected = InvocationTargetException.class)
+	public void testInstantiationWithAccessibleConstructor() throws Exception {
+		// Arrange:
+		final Constructor<ServiceExecutors> constructor = ServiceExecutors.class.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		// Act:
+		constructor.newInstance();
+	}
+
+	@Test public void testBackground() throws Exception {
+		// Act + Assert:
+		assertThat(ServiceExecutors.background(), is(notNullValue()));
+		assertSame(ServiceExecutors.background(), ServiceExecutors.background());
+		final boolean daemon = ServiceExecutors.background().submit(new Callable<Boolean>() {
+
+			@Override public Boolean call() {
+				return Thread.currentThread().isDaemon();
+			}
+		}).get();
+		assertThat(daemon, is(true));
+	}
+
+	@Test public void testBackgroundIsBounded() {
+		// Act:
+		final ThreadPoolExecutor executor = (ThreadPoolExecutor) ServiceExecutors.background();
+		// Assert:
+		assertThat(executor.getCorePoolSize(), is(ServiceExecutors.BACKGROUND_POOL_SIZE));
+		assertThat(executor.getMaximumPoolSize(), is(ServiceExecutors.BACKGROUND_POOL_SIZE));
+		assertThat(executor.getQueue(), instanceOf(LinkedBlockingQueue.class));
+		assertThat(executor.allowsCoreThreadTimeOut(), is(true));
+	}
+
+	@Test public void testScheduler() throws Exception {
+		// Act + Assert:
+		assertThat(ServiceExecutors.scheduler(), is(notNullValue()));
+		assertSame(ServiceExecutors.scheduler(), ServiceExecutors.scheduler());
+		final boolean daemon = ServiceExecutors.scheduler().schedule(new Callable<Boolean>() {
+
+			@Override public Boolean call() {
+				return Thread.currentThread().isDaemon();
+			}
+		}, 1, TimeUnit.MILLISECONDS).get();
+		assertThat(daemon, is(true));
+	}
+
+	@Test public void testDispatcher() throws Exception {
+		// Arrange:
+		final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+		// Act:
+		for (int i = 0; i < 10; i++) {
+			final int index = i;
+			ServiceExecutors.dispatcher().execute(new Runnable() {
+
+				@Override public void run() {
+					order.add(index);
+				}
+			});
+		}
+		// Assert:
+		assertSame(ServiceExecutors.dispatcher(), ServiceExecutors.dispatcher());
+		final boolean daemon = ServiceExecutors.dispatcher().submit(new Callable<Boolean>() {
+
+			@Override public Boolean call() {
+				return Thread.currentThread().isDaemon();
+			}
+		}).get();
+		assertThat(daemon, is(true));
+		assertThat(order, is(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9)));
+	}
+}
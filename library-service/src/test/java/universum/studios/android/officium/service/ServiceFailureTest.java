@@ -0,0 +1,56 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import org.junit.Test;
+
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class ServiceFailureTest extends LocalTestCase {
+
+	@Test public void testCanceled() {
+		// Act + Assert:
+		assertThat(ServiceFailure.CANCELED.getMessage(), is("Canceled"));
+		assertThat(ServiceFailure.CANCELED.getKind(), is(ServiceError.KIND_CANCELED));
+		assertThat(ServiceFailure.CANCELED.getCause(), is(nullValue()));
+	}
+
+	@Test public void testInstantiation() {
+		// Act:
+		final ServiceFailure failure = new ServiceFailure("Failure.", ServiceError.KIND_IO);
+		// Assert:
+		assertThat(failure.getMessage(), is("Failure."));
+		assertThat(failure.getKind(), is(ServiceError.KIND_IO));
+	}
+
+	@Test public void testFailureHasNoStackTrace() {
+		// Act:
+		final ServiceFailure failure = new ServiceFailure("Failure.", ServiceError.KIND_IO);
+		// Assert:
+		assertThat(failure.getStackTrace().length, is(0));
+		assertThat(failure.fillInStackTrace().getStackTrace().length, is(0));
+	}
+}
@@ -0,0 +1,373 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import androidx.annotation.NonNull;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class ServiceFutureTest extends LocalTestCase {
+
+	@Test public void testCompleted() throws Exception {
+		// Act:
+		final ServiceFuture<String> future = ServiceFuture.completed("value");
+		// Assert:
+		assertThat(future.isDone(), is(true));
+		assertThat(future.isSuccessful(), is(true));
+		assertThat(future.isCancelled(), is(false));
+		assertThat(future.getValue(), is("value"));
+		assertThat(future.getFailure(), is(nullValue()));
+		assertThat(future.getError(), is(nullValue()));
+		assertThat(future.get(), is("value"));
+	}
+
+	@Test public void testFailed() throws Exception {
+		// Arrange:
+		final IOException failure = new IOException();
+		// Act:
+		final ServiceFuture<String> future = ServiceFuture.failed(failure);
+		// Assert:
+		assertThat(future.isDone(), is(true));
+		assertThat(future.isSuccessful(), is(false));
+		assertThat(future.getValue(), is(nullValue()));
+		assertThat(future.getFailure(), is((Throwable) failure));
+		assertThat(future.getError().getFailure(), is((Throwable) failure));
+		try {
+			future.get();
+			throw new AssertionError("No exception thrown.");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), is((Throwable) failure));
+		}
+	}
+
+	@Test public void testGetErrorForErrorResponse() {
+		// Arrange:
+		final ServiceError error = new ServiceError(404, ResponseBody.create(MediaType.parse("text/plain"), ""));
+		// Act:
+		final ServiceFuture<String> future = ServiceFuture.failed(new ServiceErrorException(error));
+		// Assert:
+		assertThat(future.getError(), is(error));
+	}
+
+	@Test public void testCompleteOnlyOnce() {
+		// Arrange:
+		final ServiceFuture<String> future = new ServiceFuture<>(null);
+		// Act + Assert:
+		assertThat(future.complete("first"), is(true));
+		assertThat(future.complete("second"), is(false));
+		assertThat(future.fail(new IOException()), is(false));
+		assertThat(future.cancel(true), is(false));
+		assertThat(future.getValue(), is("first"));
+	}
+
+	@Test public void testAddListener() {
+		// Arrange:
+		final ServiceFuture<String> future = new ServiceFuture<>(null);
+		final TestListener<String> listener = new TestListener<>();
+		future.addListener(listener);
+		// Act:
+		future.complete("value");
+		// Assert:
+		assertThat(listener.completions.get(), is(1));
+		assertThat(listener.future, is(future));
+	}
+
+	@Test public void testAddListenerToCompletedFuture() {
+		// Arrange:
+		final ServiceFuture<String> future = ServiceFuture.completed("value");
+		final TestListener<String> listener = new TestListener<>();
+		// Act:
+		future.addListener(listener);
+		// Assert:
+		assertThat(listener.completions.get(), is(1));
+	}
+
+	@Test public void testAddListenerWithExecutor() {
+		// Arrange:
+		final QueueExecutor executor = new QueueExecutor();
+		final ServiceFuture<String> future = new ServiceFuture<>(executor);
+		final TestListener<String> listener = new TestListener<>();
+		future.addListener(listener);
+		// Act:
+		future.complete("value");
+		// Assert:
+		assertThat(listener.completions.get(), is(0));
+		executor.runAll();
+		assertThat(listener.completions.get(), is(1));
+	}
+
+	@Test public void testThen() throws Exception {
+		// Arrange:
+		final ServiceFuture<String> future = new ServiceFuture<>(null);
+		// Act:
+		final ServiceFuture<Integer> derived = future.then(new ServiceFuture.Function<String, Integer>() {
+
+			@Override public Integer apply(final String input) {
+				return input.length();
+			}
+		});
+		future.complete("value");
+		// Assert:
+		assertThat(derived.get(), is(5));
+	}
+
+	@Test public void testThenWithFunctionThatFails() {
+		// Arrange:
+		final IllegalStateException failure = new IllegalStateException();
+		// Act:
+		final ServiceFuture<Integer> derived = ServiceFuture.completed("value").then(new ServiceFuture.Function<String, Integer>() {
+
+			@Override public Integer apply(final String input) {
+				throw failure;
+			}
+		});
+		// Assert:
+		assertThat(derived.getFailure(), is((Throwable) failure));
+	}
+
+	@Test public void testThenWhenSourceFails() {
+		// Arrange:
+		final IOException failure = new IOException();
+		// Act:
+		final ServiceFuture<Integer> derived = ServiceFuture.<String>failed(failure).then(new ServiceFuture.Function<String, Integer>() {
+
+			@Override public Integer apply(final String input) {
+				throw new AssertionError();
+			}
+		});
+		// Assert:
+		assertThat(derived.getFailure(), is((Throwable) failure));
+	}
+
+	@Test public void testCancelDerivedFutureCancelsSource() {
+		// Arrange:
+		final ServiceFuture<String> future = new ServiceFuture<>(null);
+		final ServiceFuture<Integer> derived = future.then(new ServiceFuture.Function<String, Integer>() {
+
+			@Override public Integer apply(final String input) {
+				return input.length();
+			}
+		});
+		// Act:
+		derived.cancel(false);
+		// Assert:
+		assertThat(future.isCancelled(), is(true));
+		assertThat(derived.isCancelled(), is(true));
+		assertThat(derived.getFailure(), is((Throwable) ServiceFailure.CANCELED));
+	}
+
+	@Test public void testThenCompose() throws Exception {
+		// Arrange:
+		final ServiceFuture<String> future = new ServiceFuture<>(null);
+		final ServiceFuture<Integer> inner = new ServiceFuture<>(null);
+		final ServiceFuture<Integer> derived = future.thenCompose(new ServiceFuture.AsyncFunction<String, Integer>() {
+
+			@NonNull @Override public ServiceFuture<Integer> apply(final String input) {
+				return inner;
+			}
+		});
+		// Act:
+		future.complete("value");
+		// Assert:
+		assertThat(derived.isDone(), is(false));
+		inner.complete(10);
+		assertThat(derived.get(), is(10));
+	}
+
+	@Test public void testCancelComposedFutureCancelsInnerFuture() {
+		// Arrange:
+		final ServiceFuture<Integer> inner = new ServiceFuture<>(null);
+		final ServiceFuture<Integer> derived = ServiceFuture.completed("value").thenCompose(new ServiceFuture.AsyncFunction<String, Integer>() {
+
+			@NonNull @Override public ServiceFuture<Integer> apply(final String input) {
+				return inner;
+			}
+		});
+		// Act:
+		derived.cancel(false);
+		// Assert:
+		assertThat(inner.isCancelled(), is(true));
+	}
+
+	@Test public void testAllOf() throws Exception {
+		// Arrange:
+		final ServiceFuture<String> first = new ServiceFuture<>(null);
+		final ServiceFuture<String> second = new ServiceFuture<>(null);
+		final ServiceFuture<List<String>> all = ServiceFuture.allOf(Arrays.asList(first, second));
+		// Act:
+		second.complete("second");
+		// Assert:
+		assertThat(all.isDone(), is(false));
+		first.complete("first");
+		assertThat(all.get(), is(Arrays.asList("first", "second")));
+	}
+
+	@Test public void testAllOfEmpty() throws Exception {
+		// Act:
+		final ServiceFuture<List<String>> all = ServiceFuture.allOf(Collections.<ServiceFuture<String>>emptyList());
+		// Assert:
+		assertThat(all.get().isEmpty(), is(true));
+	}
+
+	@Test public void testAllOfFailsFast() {
+		// Arrange:
+		final IOException failure = new IOException();
+		final ServiceFuture<String> first = new ServiceFuture<>(null);
+		final ServiceFuture<String> second = new ServiceFuture<>(null);
+		final ServiceFuture<List<String>> all = ServiceFuture.allOf(Arrays.asList(first, second));
+		// Act:
+		second.fail(failure);
+		// Assert:
+		assertThat(all.getFailure(), is((Throwable) failure));
+		assertThat(first.isCancelled(), is(true));
+	}
+
+	@Test public void testAnyOf() throws Exception {
+		// Arrange:
+		final ServiceFuture<String> first = new ServiceFuture<>(null);
+		final ServiceFuture<String> second = new ServiceFuture<>(null);
+		final ServiceFuture<String> any = ServiceFuture.anyOf(Arrays.asList(first, second));
+		// Act:
+		first.fail(new IOException());
+		// Assert:
+		assertThat(any.isDone(), is(false));
+		second.complete("second");
+		assertThat(any.get(), is("second"));
+	}
+
+	@Test public void testAnyOfCancelsOthers() {
+		// Arrange:
+		final ServiceFuture<String> first = new ServiceFuture<>(null);
+		final ServiceFuture<String> second = new ServiceFuture<>(null);
+		final ServiceFuture<String> any = ServiceFuture.anyOf(Arrays.asList(first, second));
+		// Act:
+		first.complete("first");
+		// Assert:
+		assertThat(any.getValue(), is("first"));
+		assertThat(second.isCancelled(), is(true));
+	}
+
+	@Test public void testAnyOfWhenAllFail() {
+		// Arrange:
+		final IOException failure = new IOException();
+		final ServiceFuture<String> first = new ServiceFuture<>(null);
+		final ServiceFuture<String> second = new ServiceFuture<>(null);
+		final ServiceFuture<String> any = ServiceFuture.anyOf(Arrays.asList(first, second));
+		// Act:
+		first.fail(new IOException());
+		second.fail(failure);
+		// Assert:
+		assertThat(any.getFailure(), is((Throwable) failure));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAnyOfEmpty() {
+		// Act:
+		ServiceFuture.anyOf(Collections.<ServiceFuture<String>>emptyList());
+	}
+
+	@Test(expected = CancellationException.class)
+	public void testGetWhenCanceled() throws Exception {
+		// Arrange:
+		final ServiceFuture<String> future = new ServiceFuture<>(null);
+		future.cancel(true);
+		// Act:
+		future.get();
+	}
+
+	@Test(expected = TimeoutException.class)
+	public void testGetWithTimeout() throws Exception {
+		// Act:
+		new ServiceFuture<String>(null).get(10, TimeUnit.MILLISECONDS);
+	}
+
+	@Test public void testGetFromAnotherThread() throws Exception {
+		// Arrange:
+		final ServiceFuture<String> future = new ServiceFuture<>(null);
+		final AtomicReference<String> result = new AtomicReference<>();
+		final Thread thread = new Thread(new Runnable() {
+
+			@Override public void run() {
+				try {
+					result.set(future.get(5, TimeUnit.SECONDS));
+				} catch (Exception e) {
+					throw new AssertionError(e);
+				}
+			}
+		});
+		thread.start();
+		// Act:
+		future.complete("value");
+		thread.join(5000);
+		// Assert:
+		assertThat(result.get(), is(sameInstance("value")));
+	}
+
+	private static final class TestListener<V> implements ServiceFuture.Listener<V> {
+
+		final AtomicInteger completions = new AtomicInteger();
+		ServiceFuture<V> future;
+
+		@Override public void onComplete(@NonNull final ServiceFuture<V> future) {
+			this.future = future;
+			this.completions.incrementAndGet();
+		}
+	}
+
+	private static final class QueueExecutor implements Executor {
+
+		final Queue<Runnable> commands = new ArrayDeque<>();
+
+		@Override public void execute(@NonNull final Runnable command) {
+			commands.add(command);
+		}
+
+		void runAll() {
+			Runnable command;
+			while ((command = commands.poll()) != null) {
+				command.run();
+			}
+		}
+	}
+}
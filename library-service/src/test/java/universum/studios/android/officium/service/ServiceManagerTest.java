@@ -20,13 +20,32 @@ package universum.studios.android.officium.service;
 
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
 import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Retrofit;
 import universum.studios.android.test.local.LocalTestCase;
 
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
 
 /**
  * @author Martin Albedinsky
@@ -64,6 +83,43 @@ public final class ServiceManagerTest extends LocalTestCase {
 		assertThat(manager.getBaseUrl().toString(), is(BASE_URL));
 	}
 
+	@Test public void testInstantiationWithEndPointSelector() {
+		// Arrange:
+		final EndPointSelector selector = new EndPointSelector.Builder().addEndPoint(BASE_URL, 1).build();
+		// Act:
+		final ServiceManager manager = new ServiceManager(selector);
+		// Assert:
+		assertSame(manager.getEndPointSelector(), selector);
+		assertThat(manager.getBaseUrl(), is(selector.getSelectedBaseUrl()));
+		assertThat(manager.getHttpClient().interceptors().contains(selector), is(true));
+	}
+
+	@Test public void testEndPointSelectorChangeRedirectsRequests() throws Exception {
+		// Arrange:
+		final EndPointSelector selector = new EndPointSelector.Builder()
+				.addEndPoint(BASE_URL, 2)
+				.addEndPoint("https://www.android.org/", 1)
+				.build();
+		final List<Request> requests = new ArrayList<>();
+		final ServiceManager manager = new ServiceManager(selector) {
+
+			@Override @NonNull protected OkHttpClient onCreateHttpClient() {
+				return super.onCreateHttpClient().newBuilder().addInterceptor(new RecordingInterceptor(requests)).build();
+			}
+		};
+		final ServiceManager.ServicesConfiguration<TestPrimaryServices> configuration = manager.servicesConfiguration(TestPrimaryServices.class);
+		final Retrofit retrofit = configuration.retrofit();
+		// Act:
+		selector.onRequestFailed(selector.endPoint(HttpUrl.parse(BASE_URL)), System.nanoTime());
+		// Assert:
+		assertThat(manager.getBaseUrl().toString(), is(BASE_URL));
+		assertSame(configuration.retrofit(), retrofit);
+		assertThat(configuration.baseUrl().toString(), is(BASE_URL));
+		configuration.callFactory().newCall(new Request.Builder().url(BASE_URL + "users").build()).execute();
+		assertThat(requests.size(), is(1));
+		assertThat(requests.get(0).url().toString(), is("https://www.android.org/users"));
+	}
+
 	@Test public void testEndPoint() {
 		// Arrange:
 		final EndPoint endPoint = new SimpleEndPoint(BASE_URL);
@@ -112,9 +168,117 @@ public final class ServiceManagerTest extends LocalTestCase {
 		assertSame(manager.servicesConfiguration(TestTertiaryServices.class), manager.servicesConfiguration(TestTertiaryServices.class));
 	}
 
+	@Test public void testHttpClient() {
+		// Arrange:
+		final ServiceManager manager = new ServiceManager(BASE_URL);
+		// Act + Assert:
+		assertThat(manager.getHttpClient(), is(notNullValue()));
+		assertSame(manager.getHttpClient(), manager.getHttpClient());
+	}
+
+	@Test public void testServicesShareHttpClient() {
+		// Arrange:
+		final ServiceManager manager = new ServiceManager(BASE_URL);
+		final OkHttpClient sharedClient = manager.getHttpClient();
+		manager.servicesConfiguration(TestSecondaryServices.class).clientBuilder().addInterceptor(mock(Interceptor.class));
+		// Act:
+		final OkHttpClient primaryClient = (OkHttpClient) manager.servicesConfiguration(TestPrimaryServices.class).callFactory();
+		final OkHttpClient secondaryClient = (OkHttpClient) manager.servicesConfiguration(TestSecondaryServices.class).callFactory();
+		// Assert:
+		assertSame(primaryClient, sharedClient);
+		assertThat(secondaryClient, is(not(sharedClient)));
+		assertThat(secondaryClient.interceptors().size(), is(1));
+		assertSame(secondaryClient.connectionPool(), sharedClient.connectionPool());
+		assertSame(secondaryClient.dispatcher(), sharedClient.dispatcher());
+	}
+
+	@Test public void testConnectionStats() {
+		// Arrange:
+		final ServiceManager manager = new ServiceManager(BASE_URL);
+		// Act:
+		final ConnectionStats stats = manager.getConnectionStats();
+		// Assert:
+		assertThat(stats, instanceOf(ConnectionStats.class));
+		assertThat(stats.getPooledConnectionCount(), is(0));
+		assertThat(stats.getAcquiredConnectionCount(), is(0L));
+		assertThat(stats.getReusedConnectionCount(), is(0L));
+	}
+
+	@Test public void testCallPhaseStats() {
+		// Arrange:
+		final ServiceManager manager = new ServiceManager(BASE_URL);
+		// Act + Assert:
+		assertThat(manager.getCallPhaseStats(1), is(nullValue()));
+	}
+
+	@Test public void testPrewarm() {
+		// Arrange:
+		final ServiceManager manager = new ServiceManager(BASE_URL);
+		final TestExecutor executor = new TestExecutor();
+		// Act:
+		manager.prewarm(executor, TestPrimaryServices.class, TestSecondaryServices.class);
+		// Assert:
+		assertThat(executor.executions, is(1));
+		final TestPrimaryServices primaryServices = manager.services(TestPrimaryServices.class);
+		assertThat(primaryServices, is(notNullValue()));
+		assertSame(primaryServices, manager.services(TestPrimaryServices.class));
+		assertThat(manager.services(TestSecondaryServices.class), is(notNullValue()));
+	}
+
+	@Test public void testPrewarmReportsFailures() {
+		// Arrange:
+		final List<Class<?>> failures = new ArrayList<>();
+		final ServiceManager manager = new ServiceManager(BASE_URL) {
+
+			@Override protected void onPrewarmFailed(@NonNull final Class<?> servicesInterface, @NonNull final RuntimeException error) {
+				failures.add(servicesInterface);
+			}
+		};
+		// Act:
+		manager.prewarm(new TestExecutor(), TestInvalidServices.class, TestPrimaryServices.class);
+		// Assert:
+		assertThat(failures, is(Collections.<Class<?>>singletonList(TestInvalidServices.class)));
+		assertThat(manager.services(TestPrimaryServices.class), is(notNullValue()));
+	}
+
+	interface TestInvalidServices {
+
+		Call<String> invalid();
+	}
+
 	interface TestPrimaryServices {}
 
 	interface TestSecondaryServices {}
 
 	interface TestTertiaryServices {}
+
+	private static final class RecordingInterceptor implements Interceptor {
+
+		private final List<Request> requests;
+
+		RecordingInterceptor(final List<Request> requests) {
+			this.requests = requests;
+		}
+
+		@Override public Response intercept(@NonNull final Chain chain) throws IOException {
+			requests.add(chain.request());
+			return new Response.Builder()
+					.request(chain.request())
+					.protocol(Protocol.HTTP_1_1)
+					.code(200)
+					.message("OK")
+					.body(ResponseBody.create(null, ""))
+					.build();
+		}
+	}
+
+	private static final class TestExecutor implements Executor {
+
+		int executions;
+
+		@Override public void execute(@NonNull final Runnable runnable) {
+			this.executions++;
+			runnable.run();
+		}
+	}
 }
\ No newline at end of file
@@ -19,17 +19,38 @@
 package universum.studios.android.officium.service;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import androidx.annotation.NonNull;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+import universum.studios.android.officium.service.adapter.ResponseCache;
+import universum.studios.android.officium.service.adapter.ServiceCallAdapterFactory;
 import universum.studios.android.test.local.LocalTestCase;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * @author Martin Albedinsky
@@ -44,6 +65,196 @@ public final class ServicesConfigurationTest extends LocalTestCase {
 		assertThat(configuration.retrofitBuilder(), is(configuration.retrofitBuilder()));
 	}
 
+	@Test public void testClientBuilder() {
+		// Arrange:
+		final ServiceManager.ServicesConfiguration<TestServices> configuration = new ServiceManager.ServicesConfiguration<>(TestServices.class);
+		// Act + Assert:
+		assertThat(configuration.clientBuilder(), is(notNullValue()));
+		assertThat(configuration.clientBuilder(), is(configuration.clientBuilder()));
+	}
+
+	@Test public void testClientBuilderDerivedFromSharedClient() {
+		// Arrange:
+		final OkHttpClient sharedClient = new OkHttpClient();
+		final ServiceManager.ServicesConfiguration<TestServices> configuration = new ServiceManager.ServicesConfiguration<>(TestServices.class, sharedClient);
+		configuration.retrofitBuilder().baseUrl("https://www.google.com/");
+		// Act:
+		configuration.clientBuilder().readTimeout(1, TimeUnit.SECONDS);
+		// Assert:
+		final OkHttpClient client = (OkHttpClient) configuration.callFactory();
+		assertThat(client, is(not(sharedClient)));
+		assertThat(client.readTimeoutMillis(), is(1000));
+		assertSame(client.connectionPool(), sharedClient.connectionPool());
+		assertSame(client.dispatcher(), sharedClient.dispatcher());
+	}
+
+	@Test public void testDispatchExecutor() {
+		// Arrange:
+		final ServiceManager.ServicesConfiguration<TestServices> configuration = new ServiceManager.ServicesConfiguration<>(TestServices.class);
+		configuration.retrofitBuilder().baseUrl("https://www.google.com/");
+		final Retrofit retrofit = configuration.retrofit();
+		// Act:
+		final ServiceManager.ServicesConfiguration<TestServices> result = configuration.dispatchExecutor(ServiceExecutors.dispatcher());
+		// Assert:
+		assertSame(result, configuration);
+		assertThat(configuration.retrofit(), is(not(retrofit)));
+		assertThat(configuration.retrofit().callbackExecutor(), is(instanceOf(ServiceCallAdapterFactory.DispatchExecutor.class)));
+	}
+
+	@Test public void testDispatchExecutorDeliversResponses() throws Exception {
+		// Arrange:
+		final ServiceManager.ServicesConfiguration<TestAdaptedServices> configuration = new ServiceManager.ServicesConfiguration<>(TestAdaptedServices.class, createResponsesClient());
+		configuration.retrofitBuilder()
+				.baseUrl("https://www.google.com/")
+				.addCallAdapterFactory(ServiceCallAdapterFactory.create());
+		configuration.dispatchExecutor(ServiceExecutors.dispatcher());
+		final ThreadCallback responseCallback = new ThreadCallback();
+		final ThreadCallback errorCallback = new ThreadCallback();
+		// Act:
+		configuration.services().test().enqueue(responseCallback);
+		configuration.services().error().enqueue(errorCallback);
+		// Assert:
+		assertThat(responseCallback.latch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(errorCallback.latch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(responseCallback.threadName.startsWith("Officium Dispatcher"), is(true));
+		assertThat(errorCallback.threadName.startsWith("Officium Dispatcher"), is(true));
+	}
+
+	@Test public void testResponsesDeliveredOnReceivingThreadByDefault() throws Exception {
+		// Arrange:
+		final ServiceManager.ServicesConfiguration<TestAdaptedServices> configuration = new ServiceManager.ServicesConfiguration<>(TestAdaptedServices.class, createResponsesClient());
+		configuration.retrofitBuilder()
+				.baseUrl("https://www.google.com/")
+				.callbackExecutor(ServiceExecutors.dispatcher())
+				.addCallAdapterFactory(ServiceCallAdapterFactory.create());
+		final ThreadCallback responseCallback = new ThreadCallback();
+		final ThreadCallback errorCallback = new ThreadCallback();
+		// Act:
+		configuration.services().test().enqueue(responseCallback);
+		configuration.services().error().enqueue(errorCallback);
+		// Assert:
+		assertThat(responseCallback.latch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(errorCallback.latch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(responseCallback.threadName.startsWith("OkHttp"), is(true));
+		assertThat(errorCallback.threadName.startsWith("OkHttp"), is(true));
+	}
+
+	@Test public void testBaseUrl() throws Exception {
+		// Arrange:
+		final OkHttpClient client = mock(OkHttpClient.class);
+		when(client.newCall(any(Request.class))).thenReturn(mock(okhttp3.Call.class));
+		final ServiceManager.ServicesConfiguration<TestServices> configuration = new ServiceManager.ServicesConfiguration<>(TestServices.class, client);
+		configuration.retrofitBuilder().baseUrl("https://www.google.com/api/");
+		final TestServices services = configuration.services();
+		// Act:
+		final ServiceManager.ServicesConfiguration<TestServices> result = configuration.baseUrl(HttpUrl.parse("https://www.google.org/v2/"));
+		// Assert:
+		assertSame(result, configuration);
+		assertSame(configuration.services(), services);
+		assertThat(configuration.baseUrl().toString(), is("https://www.google.org/v2/"));
+		services.test().request();
+		final ArgumentCaptor<Request> request = ArgumentCaptor.forClass(Request.class);
+		verify(client).newCall(request.capture());
+		assertThat(request.getValue().url().toString(), is("https://www.google.org/v2/test"));
+	}
+
+	@Test public void testBaseUrlRedirectsByPathSegments() {
+		// Arrange:
+		final OkHttpClient client = mock(OkHttpClient.class);
+		when(client.newCall(any(Request.class))).thenReturn(mock(okhttp3.Call.class));
+		final ServiceManager.ServicesConfiguration<TestServices> configuration = new ServiceManager.ServicesConfiguration<>(TestServices.class, client);
+		configuration.retrofitBuilder().baseUrl("https://www.google.com/api/");
+		final okhttp3.Call.Factory callFactory = configuration.retrofit().callFactory();
+		// Act:
+		configuration.baseUrl(HttpUrl.parse("https://www.google.org:8080/v2/beta/"));
+		// Assert:
+		callFactory.newCall(new Request.Builder().url("https://www.google.com/api/").build());
+		callFactory.newCall(new Request.Builder().url("https://www.google.com/api/users/1%2F2?full=true#top").build());
+		callFactory.newCall(new Request.Builder().url("https://www.google.com/apix/users").build());
+		callFactory.newCall(new Request.Builder().url("https://www.google.com:8080/api/users").build());
+		final ArgumentCaptor<Request> request = ArgumentCaptor.forClass(Request.class);
+		verify(client, times(4)).newCall(request.capture());
+		assertThat(request.getAllValues().get(0).url().toString(), is("https://www.google.org:8080/v2/beta/"));
+		assertThat(request.getAllValues().get(1).url().toString(), is("https://www.google.org:8080/v2/beta/users/1%2F2?full=true#top"));
+		assertThat(request.getAllValues().get(2).url().toString(), is("https://www.google.com/apix/users"));
+		assertThat(request.getAllValues().get(3).url().toString(), is("https://www.google.com:8080/api/users"));
+	}
+
+	@Test public void testBaseUrlOfInvalidatedServices() throws Exception {
+		// Arrange:
+		final OkHttpClient client = mock(OkHttpClient.class);
+		when(client.newCall(any(Request.class))).thenReturn(mock(okhttp3.Call.class));
+		final ServiceManager.ServicesConfiguration<TestServices> configuration = new ServiceManager.ServicesConfiguration<>(TestServices.class, client);
+		configuration.retrofitBuilder().baseUrl("https://www.google.com/");
+		final TestServices staleServices = configuration.services();
+		configuration.baseUrl(HttpUrl.parse("https://eu.google.com/"));
+		configuration.invalidate();
+		final TestServices services = configuration.services();
+		// Act:
+		configuration.baseUrl(HttpUrl.parse("https://us.google.com/"));
+		// Assert:
+		assertThat(services, is(not(staleServices)));
+		staleServices.test().request();
+		services.test().request();
+		final ArgumentCaptor<Request> request = ArgumentCaptor.forClass(Request.class);
+		verify(client, times(2)).newCall(request.capture());
+		assertThat(request.getAllValues().get(0).url().toString(), is("https://eu.google.com/test"));
+		assertThat(request.getAllValues().get(1).url().toString(), is("https://us.google.com/test"));
+	}
+
+	@Test public void testClient() throws Exception {
+		// Arrange:
+		final ServiceManager.ServicesConfiguration<TestServices> configuration = new ServiceManager.ServicesConfiguration<>(TestServices.class, new OkHttpClient());
+		configuration.retrofitBuilder().baseUrl("https://www.google.com/");
+		final TestServices services = configuration.services();
+		final OkHttpClient client = mock(OkHttpClient.class);
+		when(client.newCall(any(Request.class))).thenReturn(mock(okhttp3.Call.class));
+		// Act:
+		final ServiceManager.ServicesConfiguration<TestServices> result = configuration.client(client);
+		// Assert:
+		assertSame(result, configuration);
+		assertSame(configuration.services(), services);
+		assertSame(configuration.callFactory(), client);
+		services.test().request();
+		verify(client).newCall(any(Request.class));
+	}
+
+	@Test public void testResponseCacheInterceptorInstalled() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		final OkHttpClient sharedClient = new OkHttpClient.Builder().addInterceptor(mock(Interceptor.class)).build();
+		final ServiceManager.ServicesConfiguration<TestServices> configuration = new ServiceManager.ServicesConfiguration<>(TestServices.class, sharedClient);
+		configuration.retrofitBuilder()
+				.baseUrl("https://www.google.com/")
+				.addCallAdapterFactory(new ServiceCallAdapterFactory.Builder().responseCache(cache).build());
+		// Act:
+		final okhttp3.Call.Factory callFactory = configuration.callFactory();
+		// Assert:
+		assertThat(callFactory, is(instanceOf(OkHttpClient.class)));
+		final OkHttpClient client = (OkHttpClient) callFactory;
+		assertThat(client.interceptors().size(), is(2));
+		assertSame(client.interceptors().get(0), cache.interceptor());
+		assertSame(client.connectionPool(), sharedClient.connectionPool());
+		configuration.client(client);
+		assertSame(configuration.callFactory(), client);
+	}
+
+	@Test public void testInvalidateWithChangedBuilder() {
+		// Arrange:
+		final ServiceManager.ServicesConfiguration<TestServices> configuration = new ServiceManager.ServicesConfiguration<>(TestServices.class);
+		configuration.retrofitBuilder().baseUrl("https://www.google.com/");
+		final Retrofit retrofit = configuration.retrofit();
+		final TestServices services = configuration.services();
+		configuration.retrofitBuilder().baseUrl("https://www.google.org/");
+		// Act:
+		configuration.invalidate();
+		// Assert:
+		assertThat(configuration.retrofit(), is(not(retrofit)));
+		assertThat(configuration.services(), is(not(services)));
+		assertThat(configuration.retrofit().baseUrl().toString(), is("https://www.google.org/"));
+		assertSame(configuration.retrofit(), configuration.retrofit());
+	}
+
 	@Test public void testRetrofit() throws Exception {
 		// Arrange:
 		final ServiceManager.ServicesConfiguration<TestServices> configuration = new ServiceManager.ServicesConfiguration<>(TestServices.class);
@@ -85,5 +296,77 @@ public final class ServicesConfigurationTest extends LocalTestCase {
 		assertNotSame(invalidatedServices, configuration.services());
 	}
 
-	interface TestServices {}
-}
\ No newline at end of file
+	@Test public void testPrewarm() {
+		// Arrange:
+		final ServiceManager.ServicesConfiguration<TestServices> configuration = new ServiceManager.ServicesConfiguration<>(TestServices.class);
+		configuration.retrofitBuilder().baseUrl("https://www.google.com/");
+		// Act:
+		configuration.prewarm();
+		// Assert:
+		final TestServices services = configuration.services();
+		assertThat(services, is(notNullValue()));
+		configuration.prewarm();
+		assertSame(services, configuration.services());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPrewarmValidatesServicesEagerly() {
+		// Arrange:
+		final ServiceManager.ServicesConfiguration<TestInvalidServices> configuration = new ServiceManager.ServicesConfiguration<>(TestInvalidServices.class);
+		configuration.retrofitBuilder().baseUrl("https://www.google.com/");
+		// Act:
+		configuration.prewarm();
+	}
+
+	interface TestServices {
+
+		@GET("test") Call<Void> test();
+	}
+
+	private static OkHttpClient createResponsesClient() {
+		return new OkHttpClient.Builder().addInterceptor(new Interceptor() {
+
+			@Override public okhttp3.Response intercept(@NonNull final Chain chain) {
+				final boolean error = chain.request().url().encodedPath().endsWith("error");
+				return new okhttp3.Response.Builder()
+						.request(chain.request())
+						.protocol(Protocol.HTTP_1_1)
+						.code(error ? 500 : 200)
+						.message(error ? "Error" : "OK")
+						.body(ResponseBody.create(null, ""))
+						.build();
+			}
+		}).build();
+	}
+
+	interface TestAdaptedServices {
+
+		@GET("test") ServiceCall<Void> test();
+
+		@GET("error") ServiceCall<Void> error();
+	}
+
+	interface TestInvalidServices {
+
+		@GET("test") String test();
+	}
+
+	private static final class ThreadCallback extends ServiceCallback<Void> {
+
+		final CountDownLatch latch = new CountDownLatch(1);
+		volatile String threadName;
+
+		@Override protected void onDispatchResponse(@NonNull final Void responseBody) {
+			onDispatched();
+		}
+
+		@Override protected void onDispatchError(@NonNull final ServiceError error) {
+			onDispatched();
+		}
+
+		private void onDispatched() {
+			this.threadName = Thread.currentThread().getName();
+			latch.countDown();
+		}
+	}
+}
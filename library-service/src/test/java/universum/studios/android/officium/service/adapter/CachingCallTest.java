@@ -0,0 +1,362 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import okhttp3.Headers;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import universum.studios.android.officium.service.BaseServiceObject;
+import universum.studios.android.officium.service.ServiceCallback;
+import universum.studios.android.officium.service.ServiceError;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class CachingCallTest extends LocalTestCase {
+
+	private static final Request GET_REQUEST = new Request.Builder().url("https://www.android.com/items").build();
+	private static final Executor DIRECT_EXECUTOR = new Executor() {
+
+		@Override public void execute(@NonNull final Runnable runnable) {
+			runnable.run();
+		}
+	};
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueWithoutCachedBody() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final CachingCall<String> call = new CachingCall<>(delegate, String.class, cache, DIRECT_EXECUTOR);
+		final Callback<String> callback = mock(TestCallback.class);
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		final Response<String> response = Response.success("data");
+		callbackCaptor.getValue().onResponse(delegate, response);
+		verify(callback).onResponse(call, response);
+		assertThat(cache.size(), is(1));
+		assertThat(call.isExecuted(), is(true));
+		assertThat(cache.consumeRevalidation(GET_REQUEST), is(false));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueWithFreshCachedBody() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		cache.put(Requests.createKey(GET_REQUEST, String.class), 1, "cached", 10, CachingCall.now());
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final CachingCall<String> call = new CachingCall<>(delegate, String.class, cache, DIRECT_EXECUTOR);
+		final Callback<String> callback = mock(TestCallback.class);
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		final ArgumentCaptor<Response> responseCaptor = ArgumentCaptor.forClass(Response.class);
+		verify(callback).onResponse(any(Call.class), responseCaptor.capture());
+		assertThat(responseCaptor.getValue().body(), is((Object) "cached"));
+		verify(delegate, never()).enqueue(any(Callback.class));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueWithFreshCachedServiceObjectBody() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		final Call<TestResult> firstDelegate = mock(TestResultCall.class);
+		when(firstDelegate.request()).thenReturn(GET_REQUEST);
+		final Call<TestResult> secondDelegate = mock(TestResultCall.class);
+		when(secondDelegate.request()).thenReturn(GET_REQUEST);
+		final TestServiceCallback firstCallback = new TestServiceCallback();
+		firstCallback.setRequestId(1L);
+		final TestServiceCallback secondCallback = new TestServiceCallback();
+		secondCallback.setRequestId(2L);
+		new CachingCall<>(firstDelegate, TestResult.class, cache, DIRECT_EXECUTOR).enqueue(firstCallback);
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(firstDelegate).enqueue(callbackCaptor.capture());
+		callbackCaptor.getValue().onResponse(firstDelegate, Response.success(new TestResult()));
+		// Act:
+		new CachingCall<>(secondDelegate, TestResult.class, cache, DIRECT_EXECUTOR).enqueue(secondCallback);
+		// Assert:
+		verify(secondDelegate, never()).enqueue(any(Callback.class));
+		assertThat(firstCallback.responseBody.getRequestIdAsLong(), is(1L));
+		assertThat(secondCallback.responseBody.getRequestIdAsLong(), is(2L));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueWithExpiredCachedBody() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		cache.put(Requests.createKey(GET_REQUEST, String.class), 1, "cached", 10, CachingCall.now() - cache.timeToLive(1));
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final CachingCall<String> call = new CachingCall<>(delegate, String.class, cache, DIRECT_EXECUTOR);
+		final Callback<String> callback = mock(TestCallback.class);
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		verify(callback, never()).onResponse(any(Call.class), any(Response.class));
+		verify(delegate).enqueue(any(Callback.class));
+		assertThat(cache.consumeRevalidation(GET_REQUEST), is(true));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueWithExpiredCachedBodyAndStaleWhileRevalidate() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().staleWhileRevalidate(true).build();
+		cache.put(Requests.createKey(GET_REQUEST, String.class), 1, "cached", 10, CachingCall.now() - cache.timeToLive(1));
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final CachingCall<String> call = new CachingCall<>(delegate, String.class, cache, DIRECT_EXECUTOR);
+		final Callback<String> callback = mock(TestCallback.class);
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		final Response<String> freshResponse = Response.success("fresh");
+		callbackCaptor.getValue().onResponse(delegate, freshResponse);
+		final ArgumentCaptor<Response> responseCaptor = ArgumentCaptor.forClass(Response.class);
+		verify(callback, times(2)).onResponse(any(Call.class), responseCaptor.capture());
+		assertThat(responseCaptor.getAllValues().get(0).body(), is((Object) "cached"));
+		assertThat(responseCaptor.getAllValues().get(1).body(), is((Object) "fresh"));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueStoresValidators() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final CachingCall<String> call = new CachingCall<>(delegate, String.class, cache, DIRECT_EXECUTOR);
+		call.enqueue(mock(TestCallback.class));
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		// Act:
+		callbackCaptor.getValue().onResponse(delegate, Response.success("data", Headers.of("ETag", "\"v1\"")));
+		// Assert:
+		final ResponseCache.Entry entry = cache.getValidated(Requests.createKey(GET_REQUEST));
+		assertThat(entry.body, is((Object) "data"));
+		assertThat(entry.eTag, is("\"v1\""));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueDoesNotStoreBodyOfRequestAuthorizedByInterceptor() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final CachingCall<String> call = new CachingCall<>(delegate, String.class, cache, DIRECT_EXECUTOR);
+		final Callback<String> callback = mock(TestCallback.class);
+		call.enqueue(callback);
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		final Response<String> response = Response.success("data", successResponse(
+				GET_REQUEST.newBuilder().header(Requests.AUTHORIZATION, "Bearer token").build(),
+				ResponseBody.create(null, "data")
+		));
+		// Act:
+		callbackCaptor.getValue().onResponse(delegate, response);
+		// Assert:
+		verify(callback).onResponse(call, response);
+		assertThat(cache.size(), is(0));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueStoresBodyOfAuthorizedRequest() {
+		// Arrange:
+		final Request request = GET_REQUEST.newBuilder().header(Requests.AUTHORIZATION, "Bearer token").build();
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		final Call<String> delegate = mockCall(request);
+		final CachingCall<String> call = new CachingCall<>(delegate, String.class, cache, DIRECT_EXECUTOR);
+		call.enqueue(mock(TestCallback.class));
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		// Act:
+		callbackCaptor.getValue().onResponse(delegate, Response.success("data", successResponse(request, ResponseBody.create(null, "data"))));
+		// Assert:
+		assertThat(cache.size(), is(1));
+		assertThat(cache.get(Requests.createKey(GET_REQUEST, String.class)), is(nullValue()));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueStoresMeasuredBodySize() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final CachingCall<String> call = new CachingCall<>(delegate, String.class, cache, DIRECT_EXECUTOR);
+		call.enqueue(mock(TestCallback.class));
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		final Request networkRequest = GET_REQUEST.newBuilder().build();
+		cache.recordBodySize(networkRequest, 4096);
+		// Act:
+		callbackCaptor.getValue().onResponse(delegate, Response.success("data", successResponse(networkRequest, null)));
+		// Assert:
+		assertThat(cache.byteSize(), is(4096L));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueStoresNotMeasuredBodySize() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final CachingCall<String> call = new CachingCall<>(delegate, String.class, cache, DIRECT_EXECUTOR);
+		call.enqueue(mock(TestCallback.class));
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		// Act:
+		callbackCaptor.getValue().onResponse(delegate, Response.success("data", successResponse(GET_REQUEST, null)));
+		// Assert:
+		assertThat(cache.byteSize(), is(ResponseCache.UNKNOWN_ENTRY_SIZE));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueWithExpiredCachedBodyNotModified() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		final String key = Requests.createKey(GET_REQUEST, String.class);
+		cache.put(key, Requests.createKey(GET_REQUEST), 1, "cached", 10, CachingCall.now() - cache.timeToLive(1), "\"v1\"", null);
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final CachingCall<String> call = new CachingCall<>(delegate, String.class, cache, DIRECT_EXECUTOR);
+		final Callback<String> callback = mock(TestCallback.class);
+		call.enqueue(callback);
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		// Act:
+		callbackCaptor.getValue().onResponse(delegate, notModifiedResponse("\"v1\""));
+		// Assert:
+		final ArgumentCaptor<Response> responseCaptor = ArgumentCaptor.forClass(Response.class);
+		verify(callback).onResponse(any(Call.class), responseCaptor.capture());
+		final Response<String> response = responseCaptor.getValue();
+		assertThat(response.isSuccessful(), is(true));
+		assertThat(response.body(), is("cached"));
+		assertThat(response.raw().networkResponse().code(), is(304));
+		assertThat(cache.get(key).isExpired(CachingCall.now()), is(false));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueNotModifiedWithoutValidatedBody() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		cache.put(Requests.createKey(GET_REQUEST, String.class), Requests.createKey(GET_REQUEST), 1, "cached", 10, 0, "\"v2\"", null);
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final Call<String> clonedDelegate = mockCall(GET_REQUEST);
+		when(delegate.clone()).thenReturn(clonedDelegate);
+		final CachingCall<String> call = new CachingCall<>(delegate, String.class, cache, DIRECT_EXECUTOR);
+		final Callback<String> callback = mock(TestCallback.class);
+		call.enqueue(callback);
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		// Act:
+		callbackCaptor.getValue().onResponse(delegate, notModifiedResponse("\"v1\""));
+		// Assert:
+		verify(callback, never()).onResponse(any(Call.class), any(Response.class));
+		verify(clonedDelegate).enqueue(callbackCaptor.getValue());
+		assertThat(cache.getValidated(Requests.createKey(GET_REQUEST)), is(nullValue()));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueNotIdempotentCall() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		final Call<String> delegate = mockCall(new Request.Builder().url("https://www.android.com/items").post(RequestBody.create(null, "")).build());
+		final CachingCall<String> call = new CachingCall<>(delegate, String.class, cache, DIRECT_EXECUTOR);
+		final Callback<String> callback = mock(TestCallback.class);
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		verify(delegate).enqueue(callback);
+	}
+
+	@Test public void testCancel() {
+		// Arrange:
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final CachingCall<String> call = new CachingCall<>(delegate, String.class, new ResponseCache.Builder().build(), DIRECT_EXECUTOR);
+		// Act:
+		call.cancel();
+		// Assert:
+		assertThat(call.isCanceled(), is(true));
+		verify(delegate).cancel();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Call<String> mockCall(final Request request) {
+		final Call<String> call = mock(TestCall.class);
+		when(call.request()).thenReturn(request);
+		return call;
+	}
+
+	private static okhttp3.Response successResponse(final Request request, final ResponseBody body) {
+		return new okhttp3.Response.Builder()
+				.request(request)
+				.protocol(Protocol.HTTP_1_1)
+				.code(200)
+				.message("OK")
+				.body(body)
+				.build();
+	}
+
+	private static Response<String> notModifiedResponse(final String eTag) {
+		return Response.error(ResponseBody.create(null, ""), new okhttp3.Response.Builder()
+				.request(GET_REQUEST.newBuilder().header(ConditionalRequestInterceptor.IF_NONE_MATCH, eTag).build())
+				.protocol(Protocol.HTTP_1_1)
+				.code(304)
+				.message("Not Modified")
+				.build()
+		);
+	}
+
+	private interface TestCall extends Call<String> {}
+
+	private interface TestCallback extends Callback<String> {}
+
+	private interface TestResultCall extends Call<TestResult> {}
+
+	private static final class TestResult extends BaseServiceObject {}
+
+	private static final class TestServiceCallback extends ServiceCallback<TestResult> {
+
+		TestResult responseBody;
+
+		@Override protected void onDispatchResponse(@NonNull final TestResult responseBody) {
+			this.responseBody = responseBody;
+		}
+
+		@Override protected void onDispatchError(@NonNull final ServiceError error) {}
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import universum.studios.android.officium.service.ServiceCall;
+import universum.studios.android.officium.service.ServiceCallback;
+import universum.studios.android.officium.service.ServiceError;
+import universum.studios.android.officium.service.ServiceObject;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class CallbacksTest extends LocalTestCase {
+
+	@Test(expected = IllegalAccessException.class)
+	public void testInstantiation() throws Exception {
+		// Act:
+		Callbacks.class.newInstance();
+	}
+
+	@Test(expected = InvocationTargetException.class)
+	public void testInstantiationWithAccessibleConstructor() throws Exception {
+		// Arrange:
+		final Constructor<Callbacks> constructor = Callbacks.class.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		// Act:
+		constructor.newInstance();
+	}
+
+	@Test public void testServiceIdOf() {
+		// Arrange:
+		final TestServiceCallback serviceCallback = new TestServiceCallback();
+		serviceCallback.setServiceId(1);
+		// Act + Assert:
+		assertThat(Callbacks.serviceIdOf(serviceCallback), is(1));
+		assertThat(Callbacks.serviceIdOf(new WrapperCallback(new WrapperCallback(serviceCallback))), is(1));
+		assertThat(Callbacks.serviceIdOf(new WrapperCallback(null)), is(ServiceObject.NO_SERVICE));
+		assertThat(Callbacks.serviceIdOf(mock(Callback.class)), is(ServiceObject.NO_SERVICE));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testPriorityOf() {
+		// Arrange:
+		final TestServiceCallback serviceCallback = new TestServiceCallback();
+		new ServiceCall<>(mock(Call.class)).withPriority(ServiceCall.PRIORITY_HIGH).enqueue(serviceCallback);
+		// Act + Assert:
+		assertThat(Callbacks.priorityOf(serviceCallback), is(ServiceCall.PRIORITY_HIGH));
+		assertThat(Callbacks.priorityOf(new WrapperCallback(new WrapperCallback(serviceCallback))), is(ServiceCall.PRIORITY_HIGH));
+		assertThat(Callbacks.priorityOf(new WrapperCallback(null)), is(ServiceCall.PRIORITY_DEFAULT));
+		assertThat(Callbacks.priorityOf(mock(Callback.class)), is(ServiceCall.PRIORITY_DEFAULT));
+	}
+
+	private static final class TestServiceCallback extends ServiceCallback<String> {
+
+		@Override protected void onDispatchResponse(@NonNull final String responseBody) {}
+
+		@Override protected void onDispatchError(@NonNull final ServiceError error) {}
+	}
+
+	private static final class WrapperCallback implements Callback<String>, Callbacks.Wrapper {
+
+		private final Callback<?> callback;
+
+		WrapperCallback(final Callback<?> callback) {
+			this.callback = callback;
+		}
+
+		@Override @Nullable public Callback<?> unwrap() {
+			return callback;
+		}
+
+		@Override public void onResponse(@NonNull final Call<String> call, @NonNull final Response<String> response) {}
+
+		@Override public void onFailure(@NonNull final Call<String> call, @NonNull final Throwable failure) {}
+	}
+}
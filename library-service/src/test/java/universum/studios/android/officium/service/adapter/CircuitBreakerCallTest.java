@@ -0,0 +1,172 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import universum.studios.android.officium.service.BaseServiceObject;
+import universum.studios.android.officium.service.ServiceError;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class CircuitBreakerCallTest extends LocalTestCase {
+
+	private static final Request REQUEST = new Request.Builder().url("https://www.android.com/items").build();
+	private static final Executor DIRECT_EXECUTOR = new Executor() {
+
+		@Override public void execute(@NonNull final Runnable runnable) {
+			runnable.run();
+		}
+	};
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueRecordsOutcome() {
+		// Arrange:
+		final CircuitBreaker breaker = new CircuitBreaker.Builder().windowSize(1).minimumCalls(1).build();
+		final Call<String> delegate = mockCall();
+		final CircuitBreakerCall<String> call = new CircuitBreakerCall<>(delegate, breaker, DIRECT_EXECUTOR);
+		final Callback<String> callback = mock(TestCallback.class);
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		final Response<String> response = Response.error(503, ResponseBody.create(null, ""));
+		callbackCaptor.getValue().onResponse(delegate, response);
+		verify(callback).onResponse(call, response);
+		assertThat(breaker.getState("www.android.com"), is(CircuitBreaker.OPEN));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueWhenCircuitIsOpen() {
+		// Arrange:
+		final CircuitBreaker breaker = new CircuitBreaker.Builder().windowSize(1).minimumCalls(1).build();
+		breaker.circuitFor(ServiceObjectCallback.SERVICE_ID, REQUEST).record(true, 0, CircuitBreaker.now());
+		final Call<String> delegate = mockCall();
+		final CircuitBreakerCall<String> call = new CircuitBreakerCall<>(delegate, breaker, DIRECT_EXECUTOR);
+		final ServiceObjectCallback callback = new ServiceObjectCallback();
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		verify(delegate, never()).enqueue(any(Callback.class));
+		assertThat(callback.failure, instanceOf(CircuitOpenException.class));
+	}
+
+	@Test public void testEnqueueWhenCircuitIsOpenReportsSameFailure() {
+		// Arrange:
+		final CircuitBreaker breaker = new CircuitBreaker.Builder().windowSize(1).minimumCalls(1).build();
+		breaker.circuitFor(ServiceObjectCallback.SERVICE_ID, REQUEST).record(true, 0, CircuitBreaker.now());
+		final CircuitBreakerCall<String> call = new CircuitBreakerCall<>(mockCall(), breaker, DIRECT_EXECUTOR);
+		final ServiceObjectCallback firstCallback = new ServiceObjectCallback();
+		final ServiceObjectCallback secondCallback = new ServiceObjectCallback();
+		// Act:
+		call.enqueue(firstCallback);
+		call.clone().enqueue(secondCallback);
+		// Assert:
+		assertThat(secondCallback.failure, is(sameInstance(firstCallback.failure)));
+		assertThat(firstCallback.failure.getStackTrace().length, is(0));
+		assertThat(ServiceError.kindOf(firstCallback.failure), is(ServiceError.KIND_CIRCUIT_OPEN));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueCanceledCallReleasesCircuit() {
+		// Arrange:
+		final CircuitBreaker breaker = new CircuitBreaker.Builder().windowSize(1).minimumCalls(1).build();
+		final Call<String> delegate = mockCall();
+		when(delegate.isCanceled()).thenReturn(true);
+		final CircuitBreakerCall<String> call = new CircuitBreakerCall<>(delegate, breaker, DIRECT_EXECUTOR);
+		final Callback<String> callback = mock(TestCallback.class);
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		callbackCaptor.getValue().onFailure(delegate, new IOException("Canceled"));
+		assertThat(breaker.getState("www.android.com"), is(CircuitBreaker.CLOSED));
+	}
+
+	@Test(expected = CircuitOpenException.class)
+	public void testExecuteWhenCircuitIsOpen() throws Exception {
+		// Arrange:
+		final CircuitBreaker breaker = new CircuitBreaker.Builder().windowSize(1).minimumCalls(1).build();
+		final Call<String> delegate = mockCall();
+		when(delegate.execute()).thenThrow(new IOException());
+		final CircuitBreakerCall<String> call = new CircuitBreakerCall<>(delegate, breaker, DIRECT_EXECUTOR);
+		try {
+			call.execute();
+		} catch (CircuitOpenException e) {
+			throw new AssertionError(e);
+		} catch (IOException e) {
+			// Expected failure that opens the circuit.
+		}
+		// Act:
+		call.clone().execute();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Call<String> mockCall() {
+		final Call<String> call = mock(TestCall.class);
+		when(call.request()).thenReturn(REQUEST);
+		when(call.clone()).thenReturn(call);
+		return call;
+	}
+
+	private static final class ServiceObjectCallback extends BaseServiceObject implements Callback<String> {
+
+		static final int SERVICE_ID = 1;
+
+		Throwable failure;
+
+		ServiceObjectCallback() {
+			setServiceId(SERVICE_ID);
+		}
+
+		@Override public void onResponse(@NonNull final Call<String> call, @NonNull final Response<String> response) {}
+
+		@Override public void onFailure(@NonNull final Call<String> call, @NonNull final Throwable failure) {
+			this.failure = failure;
+		}
+	}
+
+	private interface TestCall extends Call<String> {}
+
+	private interface TestCallback extends Callback<String> {}
+}
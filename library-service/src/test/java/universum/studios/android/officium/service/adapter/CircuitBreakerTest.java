@@ -0,0 +1,205 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Request;
+import universum.studios.android.officium.service.ServiceObject;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class CircuitBreakerTest extends LocalTestCase {
+
+	private static final Request REQUEST = new Request.Builder().url("https://www.android.com/items").build();
+
+	@Test public void testCircuitFor() {
+		// Arrange:
+		final CircuitBreaker breaker = new CircuitBreaker.Builder().build();
+		// Act:
+		final CircuitBreaker.Circuit circuit = breaker.circuitFor(1, REQUEST);
+		// Assert:
+		assertSame(circuit, breaker.circuitFor(1, REQUEST));
+		assertThat(circuit.getServiceId(), is(1));
+		assertThat(circuit.getHost(), is(nullValue()));
+		assertThat(circuit.getState(), is(CircuitBreaker.CLOSED));
+		assertThat(breaker.getCircuits().size(), is(1));
+	}
+
+	@Test public void testCircuitForCallWithoutService() {
+		// Arrange:
+		final CircuitBreaker breaker = new CircuitBreaker.Builder().build();
+		// Act:
+		final CircuitBreaker.Circuit circuit = breaker.circuitFor(ServiceObject.NO_SERVICE, REQUEST);
+		// Assert:
+		assertThat(circuit.getServiceId(), is(ServiceObject.NO_SERVICE));
+		assertThat(circuit.getHost(), is("www.android.com"));
+	}
+
+	@Test public void testCircuitForWhenKeyedByHost() {
+		// Arrange:
+		final CircuitBreaker breaker = new CircuitBreaker.Builder().keyByHost(true).build();
+		// Act:
+		final CircuitBreaker.Circuit circuit = breaker.circuitFor(1, REQUEST);
+		// Assert:
+		assertSame(circuit, breaker.circuitFor(2, REQUEST));
+		assertThat(circuit.getHost(), is("www.android.com"));
+	}
+
+	@Test public void testOpensWhenFailureRateExceedsThreshold() {
+		// Arrange:
+		final CircuitBreaker.OnStateChangeListener mockListener = mock(CircuitBreaker.OnStateChangeListener.class);
+		final CircuitBreaker breaker = new CircuitBreaker.Builder()
+				.windowSize(4)
+				.minimumCalls(4)
+				.failureRateThreshold(0.5f)
+				.onStateChangeListener(mockListener)
+				.build();
+		final CircuitBreaker.Circuit circuit = breaker.circuitFor(1, REQUEST);
+		// Act:
+		circuit.record(false, 0, 0);
+		circuit.record(false, 0, 0);
+		circuit.record(true, 0, 0);
+		assertThat(circuit.getState(), is(CircuitBreaker.CLOSED));
+		circuit.record(true, 0, 0);
+		// Assert:
+		assertThat(circuit.getState(), is(CircuitBreaker.OPEN));
+		assertThat(breaker.getState(1), is(CircuitBreaker.OPEN));
+		assertThat(circuit.tryAcquire(1), is(false));
+		verify(mockListener).onStateChanged(circuit, CircuitBreaker.OPEN);
+	}
+
+	@Test public void testOpensWhenSlowCallRateExceedsThreshold() {
+		// Arrange:
+		final CircuitBreaker breaker = new CircuitBreaker.Builder()
+				.windowSize(2)
+				.minimumCalls(2)
+				.slowCallDuration(100, TimeUnit.MILLISECONDS)
+				.slowCallRateThreshold(1)
+				.build();
+		final CircuitBreaker.Circuit circuit = breaker.circuitFor(1, REQUEST);
+		// Act:
+		circuit.record(false, 100, 0);
+		circuit.record(false, 200, 0);
+		// Assert:
+		assertThat(circuit.getState(), is(CircuitBreaker.OPEN));
+	}
+
+	@Test public void testSlidingWindowEvictsEldestOutcomes() {
+		// Arrange:
+		final CircuitBreaker breaker = new CircuitBreaker.Builder().windowSize(2).minimumCalls(2).failureRateThreshold(1).build();
+		final CircuitBreaker.Circuit circuit = breaker.circuitFor(1, REQUEST);
+		// Act:
+		circuit.record(true, 0, 0);
+		circuit.record(false, 0, 0);
+		circuit.record(false, 0, 0);
+		// Assert:
+		assertThat(circuit.getRecordedCalls(), is(2));
+		assertThat(circuit.getFailureRate(), is(0f));
+		assertThat(circuit.getState(), is(CircuitBreaker.CLOSED));
+	}
+
+	@Test public void testHalfOpenClosesAfterSuccessfulTrialCalls() {
+		// Arrange:
+		final CircuitBreaker breaker = createOpenableBreaker();
+		final CircuitBreaker.Circuit circuit = breaker.circuitFor(1, REQUEST);
+		circuit.record(true, 0, 0);
+		// Act + Assert:
+		assertThat(circuit.tryAcquire(999), is(false));
+		assertThat(circuit.tryAcquire(1000), is(true));
+		assertThat(circuit.getState(), is(CircuitBreaker.HALF_OPEN));
+		assertThat(circuit.tryAcquire(1000), is(true));
+		assertThat(circuit.tryAcquire(1000), is(false));
+		circuit.record(false, 0, 1000);
+		assertThat(circuit.getState(), is(CircuitBreaker.HALF_OPEN));
+		circuit.record(false, 0, 1000);
+		assertThat(circuit.getState(), is(CircuitBreaker.CLOSED));
+	}
+
+	@Test public void testHalfOpenOpensAfterFailedTrialCall() {
+		// Arrange:
+		final CircuitBreaker breaker = createOpenableBreaker();
+		final CircuitBreaker.Circuit circuit = breaker.circuitFor(1, REQUEST);
+		circuit.record(true, 0, 0);
+		circuit.tryAcquire(1000);
+		// Act:
+		circuit.record(true, 0, 1000);
+		// Assert:
+		assertThat(circuit.getState(), is(CircuitBreaker.OPEN));
+		assertThat(circuit.tryAcquire(1999), is(false));
+	}
+
+	@Test public void testReleaseInHalfOpen() {
+		// Arrange:
+		final CircuitBreaker breaker = createOpenableBreaker();
+		final CircuitBreaker.Circuit circuit = breaker.circuitFor(1, REQUEST);
+		circuit.record(true, 0, 0);
+		circuit.tryAcquire(1000);
+		circuit.tryAcquire(1000);
+		// Act:
+		circuit.release();
+		// Assert:
+		assertThat(circuit.tryAcquire(1000), is(true));
+	}
+
+	@Test public void testReset() {
+		// Arrange:
+		final CircuitBreaker breaker = createOpenableBreaker();
+		final CircuitBreaker.Circuit circuit = breaker.circuitFor(1, REQUEST);
+		circuit.record(true, 0, 0);
+		// Act:
+		breaker.reset();
+		// Assert:
+		assertThat(circuit.getState(), is(CircuitBreaker.CLOSED));
+		assertThat(breaker.getState(1), is(CircuitBreaker.CLOSED));
+		assertThat(breaker.getState("www.android.com"), is(CircuitBreaker.CLOSED));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuilderWithInvalidFailureRateThreshold() {
+		// Act:
+		new CircuitBreaker.Builder().failureRateThreshold(0).build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuilderWithInvalidWindowSize() {
+		// Act:
+		new CircuitBreaker.Builder().windowSize(0).build();
+	}
+
+	private static CircuitBreaker createOpenableBreaker() {
+		return new CircuitBreaker.Builder()
+				.windowSize(1)
+				.minimumCalls(1)
+				.openDuration(1000, TimeUnit.MILLISECONDS)
+				.halfOpenCalls(2)
+				.build();
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class ConditionalRequestInterceptorTest extends LocalTestCase {
+
+	private static final Request GET_REQUEST = new Request.Builder().url("https://www.android.com/items").build();
+
+	@Test public void testInterceptRequestWithCachedValidators() throws Exception {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		cache.put("key", Requests.createKey(GET_REQUEST), 1, "body", 10, 0, "\"v1\"", "Mon, 05 Oct 2026 10:00:00 GMT");
+		cache.markRevalidation(GET_REQUEST);
+		final Interceptor.Chain chain = mockChain(GET_REQUEST);
+		// Act:
+		new ConditionalRequestInterceptor(cache).intercept(chain);
+		// Assert:
+		final Request request = captureProceededRequest(chain);
+		assertThat(request.header(ConditionalRequestInterceptor.IF_NONE_MATCH), is("\"v1\""));
+		assertThat(request.header(ConditionalRequestInterceptor.IF_MODIFIED_SINCE), is("Mon, 05 Oct 2026 10:00:00 GMT"));
+		assertThat(cache.consumeRevalidation(GET_REQUEST), is(false));
+	}
+
+	@Test public void testInterceptNotRevalidationRequestWithCachedValidators() throws Exception {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		cache.put("key", Requests.createKey(GET_REQUEST), 1, "body", 10, 0, "\"v1\"", null);
+		cache.markRevalidation(GET_REQUEST.newBuilder().build());
+		final Interceptor.Chain chain = mockChain(GET_REQUEST);
+		// Act:
+		new ConditionalRequestInterceptor(cache).intercept(chain);
+		// Assert:
+		assertThat(captureProceededRequest(chain), is(GET_REQUEST));
+	}
+
+	@Test public void testInterceptRequestWithoutCachedValidators() throws Exception {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		cache.markRevalidation(GET_REQUEST);
+		final Interceptor.Chain chain = mockChain(GET_REQUEST);
+		// Act:
+		new ConditionalRequestInterceptor(cache).intercept(chain);
+		// Assert:
+		assertThat(captureProceededRequest(chain), is(GET_REQUEST));
+	}
+
+	@Test public void testInterceptRequestWithConditionalHeader() throws Exception {
+		// Arrange:
+		final Request conditionalRequest = GET_REQUEST.newBuilder().header(ConditionalRequestInterceptor.IF_NONE_MATCH, "\"v0\"").build();
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		cache.put("key", Requests.createKey(conditionalRequest), 1, "body", 10, 0, "\"v1\"", null);
+		cache.markRevalidation(conditionalRequest);
+		final Interceptor.Chain chain = mockChain(conditionalRequest);
+		// Act:
+		new ConditionalRequestInterceptor(cache).intercept(chain);
+		// Assert:
+		assertThat(captureProceededRequest(chain), is(conditionalRequest));
+	}
+
+	@Test public void testInterceptNotIdempotentRequest() throws Exception {
+		// Arrange:
+		final Request postRequest = GET_REQUEST.newBuilder().post(RequestBody.create(null, "")).build();
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		cache.put("key", Requests.createKey(postRequest), 1, "body", 10, 0, "\"v1\"", null);
+		cache.markRevalidation(postRequest);
+		final Interceptor.Chain chain = mockChain(postRequest);
+		// Act:
+		new ConditionalRequestInterceptor(cache).intercept(chain);
+		// Assert:
+		final Request request = captureProceededRequest(chain);
+		assertThat(request.header(ConditionalRequestInterceptor.IF_NONE_MATCH), is(nullValue()));
+	}
+
+	@Test public void testInterceptMeasuresBodyWithoutContentLength() throws Exception {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		final Interceptor.Chain chain = mockChain(GET_REQUEST, ResponseBody.create(null, -1, new Buffer().writeUtf8("chunked body")));
+		// Act:
+		final Response response = new ConditionalRequestInterceptor(cache).intercept(chain);
+		// Assert:
+		assertThat(cache.bodySizeOf(response.request()), is(-1L));
+		assertThat(response.body().string(), is("chunked body"));
+		assertThat(cache.bodySizeOf(response.request()), is(12L));
+	}
+
+	@Test public void testInterceptMeasuresClosedBody() throws Exception {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		final Interceptor.Chain chain = mockChain(GET_REQUEST, ResponseBody.create(null, -1, new Buffer().writeUtf8("chunked body")));
+		// Act:
+		final Response response = new ConditionalRequestInterceptor(cache).intercept(chain);
+		response.body().close();
+		// Assert:
+		assertThat(cache.bodySizeOf(response.request()), is(0L));
+	}
+
+	@Test public void testInterceptDoesNotMeasureBodyWithContentLength() throws Exception {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		final Interceptor.Chain chain = mockChain(GET_REQUEST, ResponseBody.create(null, "body"));
+		// Act:
+		final Response response = new ConditionalRequestInterceptor(cache).intercept(chain);
+		response.body().string();
+		// Assert:
+		assertThat(response.body().contentLength(), is(4L));
+		assertThat(cache.bodySizeOf(response.request()), is(-1L));
+	}
+
+	private static Interceptor.Chain mockChain(final Request request) throws Exception {
+		return mockChain(request, ResponseBody.create(null, ""));
+	}
+
+	private static Interceptor.Chain mockChain(final Request request, final ResponseBody body) throws Exception {
+		final Interceptor.Chain chain = mock(Interceptor.Chain.class);
+		when(chain.request()).thenReturn(request);
+		when(chain.proceed(any(Request.class))).thenAnswer(new Answer<Response>() {
+
+			@Override public Response answer(final InvocationOnMock invocation) {
+				return new Response.Builder()
+						.request(invocation.<Request>getArgument(0))
+						.protocol(Protocol.HTTP_1_1)
+						.code(200)
+						.message("OK")
+						.body(body)
+						.build();
+			}
+		});
+		return chain;
+	}
+
+	private static Request captureProceededRequest(final Interceptor.Chain chain) throws Exception {
+		final ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+		verify(chain).proceed(requestCaptor.capture());
+		return requestCaptor.getValue();
+	}
+}
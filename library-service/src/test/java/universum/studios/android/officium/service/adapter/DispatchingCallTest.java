@@ -0,0 +1,111 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class DispatchingCallTest extends LocalTestCase {
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueDeliversResponseViaExecutor() {
+		// Arrange:
+		final Call<String> delegate = mock(Call.class);
+		final TestExecutor executor = new TestExecutor();
+		final DispatchingCall<String> call = new DispatchingCall<>(delegate, executor);
+		final Callback<String> callback = mock(TestCallback.class);
+		call.enqueue(callback);
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		final Response<String> response = Response.success("data");
+		// Act:
+		callbackCaptor.getValue().onResponse(delegate, response);
+		// Assert:
+		verifyZeroInteractions(callback);
+		assertThat(executor.commands.size(), is(1));
+		executor.commands.get(0).run();
+		verify(callback).onResponse(call, response);
+		assertSame(((Callbacks.Wrapper) callbackCaptor.getValue()).unwrap(), callback);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueDeliversFailureViaExecutor() {
+		// Arrange:
+		final Call<String> delegate = mock(Call.class);
+		final TestExecutor executor = new TestExecutor();
+		final DispatchingCall<String> call = new DispatchingCall<>(delegate, executor);
+		final Callback<String> callback = mock(TestCallback.class);
+		call.enqueue(callback);
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		final IOException failure = new IOException();
+		// Act:
+		callbackCaptor.getValue().onFailure(delegate, failure);
+		// Assert:
+		verifyZeroInteractions(callback);
+		executor.commands.get(0).run();
+		verify(callback).onFailure(call, failure);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testExecute() throws Exception {
+		// Arrange:
+		final Call<String> delegate = mock(Call.class);
+		final Response<String> response = Response.success("data");
+		when(delegate.execute()).thenReturn(response);
+		final TestExecutor executor = new TestExecutor();
+		final DispatchingCall<String> call = new DispatchingCall<>(delegate, executor);
+		// Act + Assert:
+		assertSame(call.execute(), response);
+		assertThat(executor.commands.size(), is(0));
+	}
+
+	private interface TestCallback extends Callback<String> {}
+
+	private static final class TestExecutor implements Executor {
+
+		final List<Runnable> commands = new ArrayList<>();
+
+		@Override public void execute(@NonNull final Runnable command) {
+			commands.add(command);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class HistogramRecorderTest extends LocalTestCase {
+
+	@Test public void testBucketIndexOf() {
+		// Act + Assert:
+		assertThat(HistogramRecorder.bucketIndexOf(-1), is(0));
+		assertThat(HistogramRecorder.bucketIndexOf(0), is(0));
+		assertThat(HistogramRecorder.bucketIndexOf(7), is(7));
+		assertThat(HistogramRecorder.bucketIndexOf(8), is(8));
+		assertThat(HistogramRecorder.bucketIndexOf(15), is(15));
+		assertThat(HistogramRecorder.bucketIndexOf(16), is(16));
+		assertThat(HistogramRecorder.bucketIndexOf(17), is(16));
+		assertThat(HistogramRecorder.bucketIndexOf(HistogramRecorder.MAX_VALUE), is(HistogramRecorder.BUCKETS - 1));
+		assertThat(HistogramRecorder.bucketIndexOf(Long.MAX_VALUE), is(HistogramRecorder.BUCKETS - 1));
+	}
+
+	@Test public void testBucketUpperBoundOf() {
+		// Act + Assert:
+		for (long value = 0; value < 100000; value++) {
+			final int index = HistogramRecorder.bucketIndexOf(value);
+			final long upperBound = HistogramRecorder.bucketUpperBoundOf(index);
+			assertThat(upperBound >= value, is(true));
+			assertThat(HistogramRecorder.bucketIndexOf(upperBound), is(index));
+			assertThat(HistogramRecorder.bucketIndexOf(upperBound + 1), is(index + 1));
+		}
+		assertThat(HistogramRecorder.bucketUpperBoundOf(HistogramRecorder.BUCKETS - 1), is(HistogramRecorder.MAX_VALUE));
+	}
+
+	@Test public void testSnapshot() {
+		// Arrange:
+		final HistogramRecorder recorder = new HistogramRecorder();
+		for (int i = 1; i <= 100; i++) {
+			recorder.record(i * 1000);
+		}
+		// Act:
+		final ServiceMetrics.Histogram histogram = recorder.snapshot();
+		// Assert:
+		assertThat(histogram.getCount(), is(100L));
+		assertThat(histogram.getMax(TimeUnit.MILLISECONDS), is(100L));
+		assertThat(histogram.getMean(TimeUnit.MICROSECONDS), is(50500L));
+		assertWithinError(histogram.getPercentile(50, TimeUnit.MICROSECONDS), 50000);
+		assertWithinError(histogram.getPercentile(95, TimeUnit.MICROSECONDS), 95000);
+		assertWithinError(histogram.getPercentile(99, TimeUnit.MICROSECONDS), 99000);
+		assertThat(histogram.getPercentile(100, TimeUnit.MICROSECONDS), is(100000L));
+	}
+
+	@Test public void testReset() {
+		// Arrange:
+		final HistogramRecorder recorder = new HistogramRecorder();
+		recorder.record(1000);
+		// Act:
+		recorder.reset();
+		// Assert:
+		final ServiceMetrics.Histogram histogram = recorder.snapshot();
+		assertThat(histogram.getCount(), is(0L));
+		assertThat(histogram.getMax(TimeUnit.MICROSECONDS), is(0L));
+		assertThat(histogram.getPercentile(99, TimeUnit.MICROSECONDS), is(0L));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPercentileOutOfRange() {
+		// Act:
+		new HistogramRecorder().snapshot().getPercentile(101, TimeUnit.MILLISECONDS);
+	}
+
+	private static void assertWithinError(final long actual, final long expected) {
+		assertThat(actual >= expected && actual <= expected * 1.125, is(true));
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import universum.studios.android.officium.service.ServiceObject;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class MetricsCallTest extends LocalTestCase {
+
+	private static final Request REQUEST = new Request.Builder()
+			.url("https://www.android.com/items")
+			.post(RequestBody.create(MediaType.parse("text/plain"), "request"))
+			.build();
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueRecordsResponse() {
+		// Arrange:
+		final ServiceMetrics metrics = new ServiceMetrics();
+		final Call<String> delegate = mockCall();
+		final MetricsCall<String> call = new MetricsCall<>(delegate, metrics);
+		final Callback<String> callback = mock(TestCallback.class);
+		call.enqueue(callback);
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		final okhttp3.Response rawResponse = new okhttp3.Response.Builder()
+				.request(REQUEST)
+				.protocol(Protocol.HTTP_1_1)
+				.code(200)
+				.message("OK")
+				.body(ResponseBody.create(MediaType.parse("text/plain"), "response-body"))
+				.receivedResponseAtMillis(System.currentTimeMillis())
+				.build();
+		final Response<String> response = Response.success("data", rawResponse);
+		// Act:
+		callbackCaptor.getValue().onResponse(delegate, response);
+		// Assert:
+		verify(callback).onResponse(call, response);
+		final ServiceMetrics.Snapshot snapshot = metrics.getSnapshot(ServiceObject.NO_SERVICE);
+		assertThat(snapshot.getSuccessCount(), is(1L));
+		assertThat(snapshot.getRequestBytes(), is(7L));
+		assertThat(snapshot.getResponseBytes(), is(13L));
+		assertThat(snapshot.getLatency().getCount(), is(1L));
+		assertThat(snapshot.getConversionTime().getCount(), is(1L));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueRecordsStaleWhileRevalidateResponsesOnce() {
+		// Arrange:
+		final ServiceMetrics metrics = new ServiceMetrics();
+		final Call<String> delegate = mockCall();
+		final MetricsCall<String> call = new MetricsCall<>(delegate, metrics);
+		final Callback<String> callback = mock(TestCallback.class);
+		call.enqueue(callback);
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		final Response<String> staleResponse = Response.success("stale");
+		final Response<String> revalidatedResponse = Response.success("revalidated");
+		// Act:
+		callbackCaptor.getValue().onResponse(delegate, staleResponse);
+		callbackCaptor.getValue().onResponse(delegate, revalidatedResponse);
+		// Assert:
+		verify(callback).onResponse(call, staleResponse);
+		verify(callback).onResponse(call, revalidatedResponse);
+		final ServiceMetrics.Snapshot snapshot = metrics.getSnapshot(ServiceObject.NO_SERVICE);
+		assertThat(snapshot.getSuccessCount(), is(1L));
+		assertThat(snapshot.getLatency().getCount(), is(1L));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueRecordsErrorAndFailure() {
+		// Arrange:
+		final ServiceMetrics metrics = new ServiceMetrics();
+		final Call<String> delegate = mockCall();
+		final MetricsCall<String> call = new MetricsCall<>(delegate, metrics);
+		call.enqueue(mock(TestCallback.class));
+		call.enqueue(mock(TestCallback.class));
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate, times(2)).enqueue(callbackCaptor.capture());
+		// Act:
+		callbackCaptor.getAllValues().get(0).onResponse(delegate, Response.error(500, ResponseBody.create(null, "")));
+		callbackCaptor.getAllValues().get(1).onFailure(delegate, new IOException());
+		// Assert:
+		final ServiceMetrics.Snapshot snapshot = metrics.getSnapshot(ServiceObject.NO_SERVICE);
+		assertThat(snapshot.getErrorCount(), is(1L));
+		assertThat(snapshot.getFailureCount(), is(1L));
+		assertThat(snapshot.getLatency().getCount(), is(2L));
+		assertThat(snapshot.getConversionTime().getCount(), is(0L));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueWhenDisabled() {
+		// Arrange:
+		final ServiceMetrics metrics = new ServiceMetrics();
+		metrics.setEnabled(false);
+		final Call<String> delegate = mockCall();
+		final Callback<String> callback = mock(TestCallback.class);
+		// Act:
+		new MetricsCall<>(delegate, metrics).enqueue(callback);
+		// Assert:
+		verify(delegate).enqueue(callback);
+		assertThat(metrics.getSnapshots().isEmpty(), is(true));
+	}
+
+	@Test public void testExecuteRecordsFailure() throws Exception {
+		// Arrange:
+		final ServiceMetrics metrics = new ServiceMetrics();
+		final Call<String> delegate = mockCall();
+		when(delegate.execute()).thenThrow(new IOException());
+		// Act:
+		try {
+			new MetricsCall<>(delegate, metrics).execute();
+		} catch (IOException e) {
+			// Expected.
+		}
+		// Assert:
+		assertThat(metrics.getSnapshot(ServiceObject.NO_SERVICE).getFailureCount(), is(1L));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Call<String> mockCall() {
+		final Call<String> call = mock(TestCall.class);
+		when(call.request()).thenReturn(REQUEST);
+		return call;
+	}
+
+	private interface TestCall extends Call<String> {}
+
+	private interface TestCallback extends Callback<String> {}
+}
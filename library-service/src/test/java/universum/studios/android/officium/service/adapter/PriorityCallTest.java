@@ -0,0 +1,150 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+
+import androidx.annotation.NonNull;
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import universum.studios.android.officium.service.ServiceCall;
+import universum.studios.android.officium.service.ServiceCallback;
+import universum.studios.android.officium.service.ServiceError;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class PriorityCallTest extends LocalTestCase {
+
+	private static final Request REQUEST = new Request.Builder().url("https://www.android.com/items").build();
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueue() {
+		// Arrange:
+		final PriorityDispatcher dispatcher = new PriorityDispatcher.Builder().build();
+		final Call<String> delegate = mockCall();
+		final PriorityCall<String> call = new PriorityCall<>(delegate, dispatcher);
+		final Callback<String> callback = mock(TestCallback.class);
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		assertThat(call.isExecuted(), is(true));
+		assertThat(dispatcher.getRunningCallCount(), is(1));
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		assertThat(Callbacks.priorityOf(callbackCaptor.getValue()), is(0));
+		final Response<String> response = Response.success("data");
+		callbackCaptor.getValue().onResponse(delegate, response);
+		verify(callback).onResponse(call, response);
+		assertThat(dispatcher.getRunningCallCount(), is(0));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testCancelQueuedCall() {
+		// Arrange:
+		final PriorityDispatcher dispatcher = new PriorityDispatcher.Builder().maxRequests(1).build();
+		new PriorityCall<>(mockCall(), dispatcher).enqueue(mock(TestCallback.class));
+		final Call<String> delegate = mockCall();
+		final PriorityCall<String> call = new PriorityCall<>(delegate, dispatcher);
+		final Callback<String> callback = mock(TestCallback.class);
+		call.enqueue(callback);
+		// Act:
+		call.cancel();
+		// Assert:
+		assertThat(call.isCanceled(), is(true));
+		assertThat(dispatcher.getQueuedCallCount(), is(0));
+		verify(delegate, never()).enqueue(any(Callback.class));
+		final ArgumentCaptor<Throwable> failureCaptor = ArgumentCaptor.forClass(Throwable.class);
+		verify(callback).onFailure(any(Call.class), failureCaptor.capture());
+		assertThat(failureCaptor.getValue(), instanceOf(IOException.class));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testCancelRunningCall() {
+		// Arrange:
+		final Call<String> delegate = mockCall();
+		final PriorityCall<String> call = new PriorityCall<>(delegate, new PriorityDispatcher.Builder().build());
+		call.enqueue(mock(TestCallback.class));
+		// Act:
+		call.cancel();
+		// Assert:
+		verify(delegate).cancel();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testPreemptedCallIsEnqueuedAgain() {
+		// Arrange:
+		final PriorityDispatcher dispatcher = new PriorityDispatcher.Builder()
+				.maxRequestsPerHost(1)
+				.reservedRequestsPerHost(0)
+				.preemptLowPriority(true)
+				.build();
+		final Call<String> delegate = mockCall();
+		final Call<String> delegateClone = mockCall();
+		when(delegate.clone()).thenReturn(delegateClone);
+		final PriorityCall<String> lowCall = new PriorityCall<>(delegate, dispatcher);
+		new ServiceCall<>(lowCall).withPriority(ServiceCall.PRIORITY_LOW).enqueue(new TestServiceCallback());
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		final Call<String> highDelegate = mockCall();
+		final PriorityCall<String> highCall = new PriorityCall<>(highDelegate, dispatcher);
+		// Act:
+		highCall.enqueue(mock(TestCallback.class));
+		// Assert:
+		verify(delegate).cancel();
+		callbackCaptor.getValue().onFailure(delegate, new IOException("Canceled"));
+		verify(highDelegate).enqueue(any(Callback.class));
+		verify(delegateClone, never()).enqueue(any(Callback.class));
+		assertThat(lowCall.isCanceled(), is(false));
+		assertThat(dispatcher.getQueuedCallCount(), is(1));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Call<String> mockCall() {
+		final Call<String> call = mock(TestCall.class);
+		when(call.request()).thenReturn(REQUEST);
+		return call;
+	}
+
+	private interface TestCall extends Call<String> {}
+
+	private interface TestCallback extends Callback<String> {}
+
+	private static final class TestServiceCallback extends ServiceCallback<String> {
+
+		@Override protected void onDispatchResponse(@NonNull final String responseBody) {}
+
+		@Override protected void onDispatchError(@NonNull final ServiceError error) {}
+	}
+}
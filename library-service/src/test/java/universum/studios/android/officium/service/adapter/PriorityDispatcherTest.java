@@ -0,0 +1,204 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import universum.studios.android.officium.service.ServiceCall;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class PriorityDispatcherTest extends LocalTestCase {
+
+	private static final String HOST = "www.android.com";
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuilderWithInvalidMaxRequests() {
+		// Act:
+		new PriorityDispatcher.Builder().maxRequests(0).build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuilderWithInvalidReservedRequestsPerHost() {
+		// Act:
+		new PriorityDispatcher.Builder().maxRequestsPerHost(2).reservedRequestsPerHost(2).build();
+	}
+
+	@Test public void testEnqueueDispatchesWithinLimits() {
+		// Arrange:
+		final PriorityDispatcher dispatcher = new PriorityDispatcher.Builder().maxRequests(2).build();
+		final List<TestTask> dispatched = new ArrayList<>();
+		// Act:
+		for (int i = 0; i < 3; i++) {
+			dispatcher.enqueue(new TestTask(ServiceCall.PRIORITY_DEFAULT, HOST, dispatched));
+		}
+		// Assert:
+		assertThat(dispatched.size(), is(2));
+		assertThat(dispatcher.getRunningCallCount(), is(2));
+		assertThat(dispatcher.getQueuedCallCount(), is(1));
+	}
+
+	@Test public void testFinishedDispatchesByPriority() {
+		// Arrange:
+		final PriorityDispatcher dispatcher = new PriorityDispatcher.Builder().maxRequests(1).build();
+		final List<TestTask> dispatched = new ArrayList<>();
+		final TestTask running = new TestTask(ServiceCall.PRIORITY_DEFAULT, HOST, dispatched);
+		final TestTask low = new TestTask(ServiceCall.PRIORITY_LOW, HOST, dispatched);
+		final TestTask firstDefault = new TestTask(ServiceCall.PRIORITY_DEFAULT, HOST, dispatched);
+		final TestTask secondDefault = new TestTask(ServiceCall.PRIORITY_DEFAULT, HOST, dispatched);
+		final TestTask high = new TestTask(ServiceCall.PRIORITY_HIGH, HOST, dispatched);
+		dispatcher.enqueue(running);
+		dispatcher.enqueue(low);
+		dispatcher.enqueue(firstDefault);
+		dispatcher.enqueue(secondDefault);
+		dispatcher.enqueue(high);
+		// Act:
+		dispatcher.finished(running, false);
+		dispatcher.finished(high, false);
+		dispatcher.finished(firstDefault, false);
+		dispatcher.finished(secondDefault, false);
+		// Assert:
+		assertThat(dispatched.size(), is(5));
+		assertThat(dispatched.get(1), is(high));
+		assertThat(dispatched.get(2), is(firstDefault));
+		assertThat(dispatched.get(3), is(secondDefault));
+		assertThat(dispatched.get(4), is(low));
+	}
+
+	@Test public void testLowPriorityIsDeferredByReservedRequests() {
+		// Arrange:
+		final PriorityDispatcher dispatcher = new PriorityDispatcher.Builder().maxRequestsPerHost(2).reservedRequestsPerHost(1).build();
+		final List<TestTask> dispatched = new ArrayList<>();
+		// Act:
+		dispatcher.enqueue(new TestTask(ServiceCall.PRIORITY_LOW, HOST, dispatched));
+		dispatcher.enqueue(new TestTask(ServiceCall.PRIORITY_LOW, HOST, dispatched));
+		dispatcher.enqueue(new TestTask(ServiceCall.PRIORITY_LOW, "www.google.com", dispatched));
+		dispatcher.enqueue(new TestTask(ServiceCall.PRIORITY_DEFAULT, HOST, dispatched));
+		// Assert:
+		assertThat(dispatched.size(), is(3));
+		assertThat(dispatcher.getQueuedCallCount(), is(1));
+	}
+
+	@Test public void testRemove() {
+		// Arrange:
+		final PriorityDispatcher dispatcher = new PriorityDispatcher.Builder().maxRequests(1).build();
+		final List<TestTask> dispatched = new ArrayList<>();
+		final TestTask running = new TestTask(ServiceCall.PRIORITY_DEFAULT, HOST, dispatched);
+		final TestTask queued = new TestTask(ServiceCall.PRIORITY_DEFAULT, HOST, dispatched);
+		dispatcher.enqueue(running);
+		dispatcher.enqueue(queued);
+		// Act + Assert:
+		assertThat(dispatcher.remove(running), is(false));
+		assertThat(dispatcher.remove(queued), is(true));
+		dispatcher.finished(running, false);
+		assertThat(dispatched.size(), is(1));
+	}
+
+	@Test public void testPreemptLowPriority() {
+		// Arrange:
+		final PriorityDispatcher dispatcher = new PriorityDispatcher.Builder()
+				.maxRequestsPerHost(2)
+				.reservedRequestsPerHost(0)
+				.preemptLowPriority(true)
+				.build();
+		final List<TestTask> dispatched = new ArrayList<>();
+		final TestTask lowFirst = new TestTask(ServiceCall.PRIORITY_LOW, HOST, dispatched);
+		final TestTask lowSecond = new TestTask(ServiceCall.PRIORITY_LOW, HOST, dispatched);
+		final TestTask high = new TestTask(ServiceCall.PRIORITY_HIGH, HOST, dispatched);
+		dispatcher.enqueue(lowFirst);
+		dispatcher.enqueue(lowSecond);
+		// Act:
+		dispatcher.enqueue(high);
+		// Assert:
+		assertThat(lowFirst.preempted, is(false));
+		assertThat(lowSecond.preempted, is(true));
+		assertThat(dispatcher.getQueuedCallCount(), is(1));
+		lowSecond.preempted = false;
+		dispatcher.finished(lowSecond, true);
+		assertThat(dispatched.get(dispatched.size() - 1), is(high));
+		assertThat(dispatcher.getQueuedCallCount(), is(1));
+	}
+
+	@Test public void testDoNotPreemptNotRepeatableCalls() {
+		// Arrange:
+		final PriorityDispatcher dispatcher = new PriorityDispatcher.Builder()
+				.maxRequestsPerHost(1)
+				.reservedRequestsPerHost(0)
+				.preemptLowPriority(true)
+				.build();
+		final List<TestTask> dispatched = new ArrayList<>();
+		final TestTask low = new TestTask(ServiceCall.PRIORITY_LOW, HOST, dispatched);
+		low.preemptible = false;
+		dispatcher.enqueue(low);
+		// Act:
+		dispatcher.enqueue(new TestTask(ServiceCall.PRIORITY_HIGH, HOST, dispatched));
+		// Assert:
+		assertThat(low.preempted, is(false));
+	}
+
+	@Test public void testGetQueueWait() throws Exception {
+		// Arrange:
+		final PriorityDispatcher dispatcher = new PriorityDispatcher.Builder().maxRequests(1).build();
+		final List<TestTask> dispatched = new ArrayList<>();
+		final TestTask running = new TestTask(ServiceCall.PRIORITY_DEFAULT, HOST, dispatched);
+		dispatcher.enqueue(running);
+		dispatcher.enqueue(new TestTask(ServiceCall.PRIORITY_HIGH, HOST, dispatched));
+		Thread.sleep(20);
+		// Act:
+		dispatcher.finished(running, false);
+		// Assert:
+		final PriorityDispatcher.QueueWait highWait = dispatcher.getQueueWait(ServiceCall.PRIORITY_HIGH + 1);
+		assertThat(highWait.getCount(), is(1L));
+		assertThat(highWait.getMax(TimeUnit.MILLISECONDS) >= 20, is(true));
+		assertThat(highWait.getAverage(TimeUnit.NANOSECONDS), is(highWait.getMax(TimeUnit.NANOSECONDS)));
+		assertThat(dispatcher.getQueueWait(ServiceCall.PRIORITY_DEFAULT).getCount(), is(1L));
+		assertThat(dispatcher.getQueueWait(ServiceCall.PRIORITY_LOW).getCount(), is(0L));
+		assertThat(dispatcher.getQueueWait(ServiceCall.PRIORITY_LOW).getAverage(TimeUnit.MILLISECONDS), is(0L));
+	}
+
+	private static final class TestTask extends PriorityDispatcher.Task {
+
+		final List<TestTask> dispatched;
+		boolean preemptible = true;
+
+		TestTask(final int priority, final String host, final List<TestTask> dispatched) {
+			super(priority, host);
+			this.dispatched = dispatched;
+		}
+
+		@Override boolean isPreemptible() {
+			return preemptible;
+		}
+
+		@Override void dispatch() {
+			dispatched.add(this);
+		}
+
+		@Override void preempt() {}
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import org.junit.Test;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Headers;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class RateLimiterTest extends LocalTestCase {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	@Test public void testInstantiation() {
+		// Act:
+		final RateLimiter limiter = new RateLimiter.Builder().burst(5).build();
+		// Assert:
+		assertThat(limiter.getAvailablePermits(), is(5));
+		assertThat(limiter.getDelay(TimeUnit.NANOSECONDS), is(0L));
+		assertThat(limiter.getDelayedCalls(), is(0));
+	}
+
+	@Test public void testAcquireWithinBurst() {
+		// Arrange:
+		final RateLimiter limiter = new RateLimiter.Builder().permitsPerSecond(1).burst(3).build();
+		final long now = RateLimiter.now();
+		// Act + Assert:
+		assertThat(limiter.acquire(now), is(0L));
+		assertThat(limiter.acquire(now), is(0L));
+		assertThat(limiter.acquire(now), is(0L));
+		assertThat(limiter.getAvailablePermits(), is(0));
+	}
+
+	@Test public void testAcquireDelaysExcess() {
+		// Arrange:
+		final RateLimiter limiter = new RateLimiter.Builder().permitsPerSecond(1).burst(1).build();
+		final long now = RateLimiter.now();
+		limiter.acquire(now);
+		// Act + Assert:
+		assertThat(limiter.acquire(now), is(SECOND));
+		assertThat(limiter.acquire(now), is(2 * SECOND));
+		assertThat(limiter.acquire(now + 3 * SECOND), is(0L));
+	}
+
+	@Test public void testAcquireRejectsExcess() {
+		// Arrange:
+		final RateLimiter limiter = new RateLimiter.Builder().permitsPerSecond(1).burst(1).rejectExcess(true).build();
+		final long now = RateLimiter.now();
+		limiter.acquire(now);
+		// Act + Assert:
+		assertThat(limiter.acquire(now), is(-1L));
+		assertThat(limiter.acquire(now + SECOND), is(0L));
+	}
+
+	@Test public void testAcquireRejectsExcessOverMaxDelay() {
+		// Arrange:
+		final RateLimiter limiter = new RateLimiter.Builder().permitsPerSecond(1).burst(1).maxDelay(1, TimeUnit.SECONDS).build();
+		final long now = RateLimiter.now();
+		limiter.acquire(now);
+		// Act + Assert:
+		assertThat(limiter.acquire(now), is(SECOND));
+		assertThat(limiter.acquire(now), is(-1L));
+	}
+
+	@Test public void testBlock() {
+		// Arrange:
+		final RateLimiter limiter = new RateLimiter.Builder().permitsPerSecond(100).burst(10).build();
+		final long now = RateLimiter.now();
+		// Act:
+		limiter.block(5 * SECOND, now);
+		// Assert:
+		assertThat(limiter.acquire(now), is(5 * SECOND));
+		assertThat(limiter.getAvailablePermits(), is(0));
+	}
+
+	@Test public void testParseRetryAfter() {
+		// Act + Assert:
+		assertThat(RateLimiter.parseRetryAfter(Headers.of()), is(-1L));
+		assertThat(RateLimiter.parseRetryAfter(Headers.of("Retry-After", "120")), is(120 * SECOND));
+		assertThat(RateLimiter.parseRetryAfter(Headers.of("Retry-After", "invalid")), is(-1L));
+		assertThat(RateLimiter.parseRetryAfter(Headers.of("Retry-After", "Thu, 01 Jan 1970 00:00:00 GMT")), is(0L));
+		final DateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("GMT"));
+		final long delay = RateLimiter.parseRetryAfter(Headers.of("Retry-After", format.format(new Date(System.currentTimeMillis() + 60000))));
+		assertThat(delay > 0 && delay <= 60 * SECOND, is(true));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuilderWithInvalidRate() {
+		// Act:
+		new RateLimiter.Builder().permitsPerSecond(0).build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuilderWithInvalidBurst() {
+		// Act:
+		new RateLimiter.Builder().burst(0).build();
+	}
+}
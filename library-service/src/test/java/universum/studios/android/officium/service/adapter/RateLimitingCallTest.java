@@ -0,0 +1,203 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import okhttp3.Headers;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import universum.studios.android.officium.service.ServiceExecutors;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class RateLimitingCallTest extends LocalTestCase {
+
+	private static final Request REQUEST = new Request.Builder().url("https://www.android.com/items").build();
+	private static final Executor DIRECT_EXECUTOR = new Executor() {
+
+		@Override public void execute(@NonNull final Runnable runnable) {
+			runnable.run();
+		}
+	};
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueWithinRate() {
+		// Arrange:
+		final RateLimiter limiter = new RateLimiter.Builder().build();
+		final Call<String> delegate = mockCall();
+		final RateLimitingCall<String> call = createCall(delegate, new ServiceCallAdapterFactory.Builder().rateLimiter(limiter));
+		final Callback<String> callback = mock(TestCallback.class);
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		final Response<String> response = Response.success("data");
+		callbackCaptor.getValue().onResponse(delegate, response);
+		verify(callback).onResponse(call, response);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueDelaysExcess() {
+		// Arrange:
+		final RateLimiter limiter = new RateLimiter.Builder().permitsPerSecond(20).burst(1).build();
+		limiter.acquire(RateLimiter.now());
+		final Call<String> delegate = mockCall();
+		final RateLimitingCall<String> call = createCall(delegate, new ServiceCallAdapterFactory.Builder().rateLimiter(limiter));
+		// Act:
+		call.enqueue(mock(TestCallback.class));
+		// Assert:
+		assertThat(call.isExecuted(), is(true));
+		verify(delegate, timeout(1000)).enqueue(any(Callback.class));
+		assertThat(limiter.getDelayedCalls(), is(0));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueRejectsExcess() {
+		// Arrange:
+		final RateLimiter limiter = new RateLimiter.Builder().permitsPerSecond(1).burst(1).rejectExcess(true).build();
+		limiter.acquire(RateLimiter.now());
+		final Call<String> delegate = mockCall();
+		final RateLimitingCall<String> call = createCall(delegate, new ServiceCallAdapterFactory.Builder().rateLimiter(limiter));
+		final Callback<String> callback = mock(TestCallback.class);
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		verify(delegate, never()).enqueue(any(Callback.class));
+		final ArgumentCaptor<Throwable> failureCaptor = ArgumentCaptor.forClass(Throwable.class);
+		verify(callback).onFailure(any(Call.class), failureCaptor.capture());
+		assertThat(failureCaptor.getValue(), instanceOf(RateLimitedException.class));
+		final long delay = ((RateLimitedException) failureCaptor.getValue()).getDelay(TimeUnit.MILLISECONDS);
+		assertThat(delay > 0 && delay <= 1000, is(true));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueHonoursRetryAfter() {
+		// Arrange:
+		final RateLimiter limiter = new RateLimiter.Builder().build();
+		final Call<String> delegate = mockCall();
+		final RateLimitingCall<String> call = createCall(delegate, new ServiceCallAdapterFactory.Builder().rateLimiter(limiter));
+		call.enqueue(mock(TestCallback.class));
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		final okhttp3.Response rawResponse = new okhttp3.Response.Builder()
+				.request(REQUEST)
+				.protocol(Protocol.HTTP_1_1)
+				.code(429)
+				.message("Too Many Requests")
+				.headers(Headers.of("Retry-After", "60"))
+				.build();
+		// Act:
+		callbackCaptor.getValue().onResponse(delegate, Response.error(ResponseBody.create(null, ""), rawResponse));
+		// Assert:
+		assertThat(limiter.getAvailablePermits(), is(0));
+		assertThat(limiter.getDelay(TimeUnit.SECONDS) >= 59, is(true));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testCancelDelayedCall() {
+		// Arrange:
+		final RateLimiter limiter = new RateLimiter.Builder().permitsPerSecond(0.1).burst(1).build();
+		limiter.acquire(RateLimiter.now());
+		final Call<String> delegate = mockCall();
+		final RateLimitingCall<String> call = createCall(delegate, new ServiceCallAdapterFactory.Builder().rateLimiter(limiter));
+		final Callback<String> callback = mock(TestCallback.class);
+		call.enqueue(callback);
+		assertThat(limiter.getDelayedCalls(), is(1));
+		// Act:
+		call.cancel();
+		// Assert:
+		verify(delegate).cancel();
+		verify(callback).onFailure(any(Call.class), any(IOException.class));
+		assertThat(limiter.getDelayedCalls(), is(0));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueForServiceWithoutLimiter() {
+		// Arrange:
+		final Call<String> delegate = mockCall();
+		final RateLimitingCall<String> call = createCall(delegate, new ServiceCallAdapterFactory.Builder().rateLimiter(1, new RateLimiter.Builder().build()));
+		final Callback<String> callback = mock(TestCallback.class);
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		verify(delegate).enqueue(callback);
+	}
+
+	@Test(expected = RateLimitedException.class)
+	public void testExecuteRejectsExcess() throws Exception {
+		// Arrange:
+		final RateLimiter limiter = new RateLimiter.Builder().permitsPerSecond(1).burst(1).rejectExcess(true).build();
+		limiter.acquire(RateLimiter.now());
+		final RateLimitingCall<String> call = createCall(mockCall(), new ServiceCallAdapterFactory.Builder().rateLimiter(limiter));
+		// Act:
+		call.execute();
+	}
+
+	@Test public void testExecuteUsesDefaultLimiter() throws Exception {
+		// Arrange:
+		final RateLimiter serviceLimiter = new RateLimiter.Builder().permitsPerSecond(1).burst(1).rejectExcess(true).build();
+		serviceLimiter.acquire(RateLimiter.now());
+		final Call<String> delegate = mockCall();
+		final Response<String> response = Response.success("data");
+		when(delegate.execute()).thenReturn(response);
+		final RateLimitingCall<String> call = createCall(delegate, new ServiceCallAdapterFactory.Builder().rateLimiter(1, serviceLimiter));
+		// Act + Assert:
+		assertThat(call.execute(), is(response));
+		verify(delegate).execute();
+	}
+
+	private static RateLimitingCall<String> createCall(final Call<String> delegate, final ServiceCallAdapterFactory.Builder factoryBuilder) {
+		return new RateLimitingCall<>(delegate, factoryBuilder.build(), ServiceExecutors.scheduler(), DIRECT_EXECUTOR);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Call<String> mockCall() {
+		final Call<String> call = mock(TestCall.class);
+		when(call.request()).thenReturn(REQUEST);
+		return call;
+	}
+
+	private interface TestCall extends Call<String> {}
+
+	private interface TestCallback extends Callback<String> {}
+}
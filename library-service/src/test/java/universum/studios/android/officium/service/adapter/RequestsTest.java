@@ -0,0 +1,83 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class RequestsTest extends LocalTestCase {
+
+	private static final Request GET_REQUEST = new Request.Builder().url("https://www.android.com/items").build();
+	private static final Request POST_REQUEST = new Request.Builder().url("https://www.android.com/items").post(RequestBody.create(null, "")).build();
+
+	@Test(expected = InvocationTargetException.class)
+	public void testInstantiationWithAccessibleConstructor() throws Exception {
+		// Arrange:
+		final Constructor<Requests> constructor = Requests.class.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		// Act:
+		constructor.newInstance();
+	}
+
+	@Test public void testCreateKey() {
+		// Arrange:
+		final Request requestWithHeader = GET_REQUEST.newBuilder().header("Accept", "application/json").build();
+		// Act + Assert:
+		assertThat(Requests.createKey(GET_REQUEST, String.class), is(Requests.createKey(GET_REQUEST, String.class)));
+		assertThat(Requests.createKey(GET_REQUEST, String.class), is(not(Requests.createKey(GET_REQUEST, Integer.class))));
+		assertThat(Requests.createKey(GET_REQUEST, String.class), is(not(Requests.createKey(POST_REQUEST, String.class))));
+		assertThat(Requests.createKey(GET_REQUEST, String.class), is(not(Requests.createKey(requestWithHeader, String.class))));
+	}
+
+	@Test public void testCreateKeyWithoutResponseType() {
+		// Act + Assert:
+		assertThat(Requests.createKey(GET_REQUEST), is(Requests.createKey(GET_REQUEST)));
+		assertThat(Requests.createKey(GET_REQUEST), is(not(Requests.createKey(POST_REQUEST))));
+		assertThat(Requests.createKey(GET_REQUEST, String.class).startsWith(Requests.createKey(GET_REQUEST)), is(true));
+	}
+
+	@Test public void testIsIdempotent() {
+		// Act + Assert:
+		assertThat(Requests.isIdempotent(GET_REQUEST), is(true));
+		assertThat(Requests.isIdempotent(GET_REQUEST.newBuilder().head().build()), is(true));
+		assertThat(Requests.isIdempotent(POST_REQUEST), is(false));
+	}
+
+	@Test public void testIsRepeatable() {
+		// Act + Assert:
+		assertThat(Requests.isRepeatable(GET_REQUEST), is(true));
+		assertThat(Requests.isRepeatable(GET_REQUEST.newBuilder().head().build()), is(true));
+		assertThat(Requests.isRepeatable(GET_REQUEST.newBuilder().delete().build()), is(true));
+		assertThat(Requests.isRepeatable(GET_REQUEST.newBuilder().put(RequestBody.create(null, "")).build()), is(true));
+		assertThat(Requests.isRepeatable(POST_REQUEST), is(false));
+	}
+}
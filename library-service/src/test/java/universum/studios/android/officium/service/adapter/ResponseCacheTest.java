@@ -0,0 +1,214 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class ResponseCacheTest extends LocalTestCase {
+
+	@Test public void testBuilder() {
+		// Act:
+		final ResponseCache cache = new ResponseCache.Builder()
+				.timeToLive(10, TimeUnit.SECONDS)
+				.timeToLive(1, 5, TimeUnit.MINUTES)
+				.staleWhileRevalidate(true)
+				.build();
+		// Assert:
+		assertThat(cache.timeToLive(0), is(10000L));
+		assertThat(cache.timeToLive(1), is(300000L));
+		assertThat(cache.isStaleWhileRevalidate(), is(true));
+		assertThat(cache.size(), is(0));
+		assertThat(cache.byteSize(), is(0L));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuilderWithInvalidMaxEntries() {
+		// Act:
+		new ResponseCache.Builder().maxEntries(0).build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuilderWithInvalidMaxBytes() {
+		// Act:
+		new ResponseCache.Builder().maxBytes(0).build();
+	}
+
+	@Test public void testPutAndGet() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().timeToLive(10, TimeUnit.MILLISECONDS).build();
+		// Act:
+		cache.put("key", 1, "body", 100, 0);
+		// Assert:
+		final ResponseCache.Entry entry = cache.get("key");
+		assertThat(entry, is(notNullValue()));
+		assertThat(entry.body, is((Object) "body"));
+		assertThat(entry.serviceId, is(1));
+		assertThat(entry.isExpired(9), is(false));
+		assertThat(entry.isExpired(10), is(true));
+		assertThat(cache.byteSize(), is(100L));
+	}
+
+	@Test public void testPutWithUnknownSize() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		// Act:
+		cache.put("key", 1, "body", -1, 0);
+		// Assert:
+		assertThat(cache.byteSize(), is(ResponseCache.UNKNOWN_ENTRY_SIZE));
+	}
+
+	@Test public void testEvictionByEntriesCount() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().maxEntries(2).build();
+		cache.put("key:1", 1, "body:1", 10, 0);
+		cache.put("key:2", 1, "body:2", 10, 0);
+		cache.get("key:1");
+		// Act:
+		cache.put("key:3", 1, "body:3", 10, 0);
+		// Assert:
+		assertThat(cache.size(), is(2));
+		assertThat(cache.get("key:1"), is(notNullValue()));
+		assertThat(cache.get("key:2"), is(nullValue()));
+		assertThat(cache.get("key:3"), is(notNullValue()));
+	}
+
+	@Test public void testEvictionByBytes() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().maxBytes(100).build();
+		cache.put("key:1", 1, "body:1", 60, 0);
+		// Act:
+		cache.put("key:2", 1, "body:2", 60, 0);
+		// Assert:
+		assertThat(cache.size(), is(1));
+		assertThat(cache.byteSize(), is(60L));
+		assertThat(cache.get("key:2"), is(notNullValue()));
+	}
+
+	@Test public void testPutEntryLargerThanCache() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().maxBytes(100).build();
+		cache.put("key", 1, "body:1", 10, 0);
+		// Act:
+		cache.put("key", 1, "body:2", 200, 0);
+		// Assert:
+		assertThat(cache.get("key"), is(nullValue()));
+		assertThat(cache.byteSize(), is(0L));
+	}
+
+	@Test public void testInvalidate() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		cache.put("key:1", 1, "body:1", 10, 0);
+		cache.put("key:2", 2, "body:2", 10, 0);
+		// Act:
+		cache.invalidate(1);
+		// Assert:
+		assertThat(cache.get("key:1"), is(nullValue()));
+		assertThat(cache.get("key:2"), is(notNullValue()));
+		assertThat(cache.byteSize(), is(10L));
+	}
+
+	@Test public void testInvalidateAll() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		cache.put("key:1", 1, "body:1", 10, 0);
+		cache.put("key:2", 2, "body:2", 10, 0);
+		// Act:
+		cache.invalidateAll();
+		// Assert:
+		assertThat(cache.size(), is(0));
+		assertThat(cache.byteSize(), is(0L));
+	}
+
+	@Test public void testPutWithValidators() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		// Act:
+		cache.put("key:1", "request:1", 1, "body:1", 10, 0, "\"v1\"", "Mon, 05 Oct 2026 10:00:00 GMT");
+		// Assert:
+		final ResponseCache.Entry entry = cache.getValidated("request:1");
+		assertThat(entry, is(cache.get("key:1")));
+		assertThat(entry.eTag, is("\"v1\""));
+		assertThat(entry.lastModified, is("Mon, 05 Oct 2026 10:00:00 GMT"));
+	}
+
+	@Test public void testPutWithoutValidators() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		// Act:
+		cache.put("key:1", "request:1", 1, "body:1", 10, 0, null, null);
+		// Assert:
+		assertThat(cache.get("key:1"), is(notNullValue()));
+		assertThat(cache.getValidated("request:1"), is(nullValue()));
+	}
+
+	@Test public void testEvictionRemovesValidators() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().maxEntries(1).build();
+		cache.put("key:1", "request:1", 1, "body:1", 10, 0, "\"v1\"", null);
+		// Act:
+		cache.put("key:2", "request:2", 1, "body:2", 10, 0, "\"v2\"", null);
+		// Assert:
+		assertThat(cache.getValidated("request:1"), is(nullValue()));
+		assertThat(cache.getValidated("request:2"), is(notNullValue()));
+	}
+
+	@Test public void testInvalidateRemovesValidators() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		cache.put("key:1", "request:1", 1, "body:1", 10, 0, "\"v1\"", null);
+		cache.put("key:2", "request:2", 2, "body:2", 10, 0, "\"v2\"", null);
+		// Act:
+		cache.invalidate(1);
+		// Assert:
+		assertThat(cache.getValidated("request:1"), is(nullValue()));
+		assertThat(cache.getValidated("request:2"), is(notNullValue()));
+	}
+
+	@Test public void testRemoveValidators() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		cache.put("key:1", "request:1", 1, "body:1", 10, 0, "\"v1\"", null);
+		// Act:
+		cache.removeValidators("request:1");
+		// Assert:
+		assertThat(cache.getValidated("request:1"), is(nullValue()));
+		assertThat(cache.get("key:1"), is(notNullValue()));
+	}
+
+	@Test public void testInterceptor() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		// Act + Assert:
+		assertThat(cache.interceptor(), is(notNullValue()));
+		assertThat(cache.interceptor(), is(cache.interceptor()));
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import org.junit.Test;
+
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class RetryBudgetTest extends LocalTestCase {
+
+	@Test public void testInstantiation() {
+		// Act:
+		final RetryBudget budget = new RetryBudget.Builder().reserve(5).build();
+		// Assert:
+		assertThat(budget.getAvailableRetries(), is(5));
+	}
+
+	@Test public void testTryWithdraw() {
+		// Arrange:
+		final RetryBudget budget = new RetryBudget.Builder().reserve(2).build();
+		// Act + Assert:
+		assertThat(budget.tryWithdraw(), is(true));
+		assertThat(budget.tryWithdraw(), is(true));
+		assertThat(budget.tryWithdraw(), is(false));
+		assertThat(budget.getAvailableRetries(), is(0));
+	}
+
+	@Test public void testDeposit() {
+		// Arrange:
+		final RetryBudget budget = new RetryBudget.Builder().ratio(0.25f).reserve(1).build();
+		budget.tryWithdraw();
+		// Act + Assert:
+		for (int i = 0; i < 3; i++) {
+			budget.deposit();
+			assertThat(budget.tryWithdraw(), is(false));
+		}
+		budget.deposit();
+		assertThat(budget.tryWithdraw(), is(true));
+	}
+
+	@Test public void testDepositIsCappedAtReserve() {
+		// Arrange:
+		final RetryBudget budget = new RetryBudget.Builder().ratio(1).reserve(2).build();
+		// Act:
+		for (int i = 0; i < 10; i++) {
+			budget.deposit();
+		}
+		// Assert:
+		assertThat(budget.getAvailableRetries(), is(2));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuilderWithInvalidRatio() {
+		// Act:
+		new RetryBudget.Builder().ratio(2).build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuilderWithInvalidReserve() {
+		// Act:
+		new RetryBudget.Builder().reserve(-1).build();
+	}
+}
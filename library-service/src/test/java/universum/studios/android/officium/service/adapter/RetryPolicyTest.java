@@ -0,0 +1,102 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class RetryPolicyTest extends LocalTestCase {
+
+	@Test public void testBuilderDefaults() {
+		// Act:
+		final RetryPolicy policy = new RetryPolicy.Builder().build();
+		// Assert:
+		assertThat(policy.getMaxAttempts(), is(3));
+		assertThat(policy.isRetryable(503), is(true));
+		assertThat(policy.isRetryable(404), is(false));
+	}
+
+	@Test public void testIsRetryableRequest() {
+		// Arrange:
+		final Request getRequest = new Request.Builder().url("https://www.android.com/items").build();
+		final Request postRequest = getRequest.newBuilder().post(RequestBody.create(null, "")).build();
+		final RetryPolicy policy = new RetryPolicy.Builder().build();
+		final RetryPolicy nonIdempotentPolicy = new RetryPolicy.Builder().retryNonIdempotent(true).build();
+		// Act + Assert:
+		assertThat(policy.isRetryable(getRequest), is(true));
+		assertThat(policy.isRetryable(postRequest), is(false));
+		assertThat(nonIdempotentPolicy.isRetryable(postRequest), is(true));
+	}
+
+	@Test public void testIsRetryableStatusCode() {
+		// Arrange:
+		final RetryPolicy policy = new RetryPolicy.Builder().retryableStatusCodes(503, 429).build();
+		// Act + Assert:
+		assertThat(policy.isRetryable(429), is(true));
+		assertThat(policy.isRetryable(503), is(true));
+		assertThat(policy.isRetryable(500), is(false));
+	}
+
+	@Test public void testComputeDelay() {
+		// Arrange:
+		final RetryPolicy policy = new RetryPolicy.Builder()
+				.initialBackoff(100, TimeUnit.MILLISECONDS)
+				.maxBackoff(1, TimeUnit.SECONDS)
+				.backoffMultiplier(2)
+				.build();
+		// Act + Assert:
+		for (int i = 0; i < 100; i++) {
+			final long firstDelay = policy.computeDelay(1);
+			assertThat(firstDelay >= 0 && firstDelay <= 100, is(true));
+			final long thirdDelay = policy.computeDelay(3);
+			assertThat(thirdDelay >= 0 && thirdDelay <= 400, is(true));
+			final long cappedDelay = policy.computeDelay(20);
+			assertThat(cappedDelay >= 0 && cappedDelay <= 1000, is(true));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuilderWithInvalidMaxAttempts() {
+		// Act:
+		new RetryPolicy.Builder().maxAttempts(0).build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuilderWithInvalidMaxBackoff() {
+		// Act:
+		new RetryPolicy.Builder().initialBackoff(2, TimeUnit.SECONDS).maxBackoff(1, TimeUnit.SECONDS).build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuilderWithInvalidBackoffMultiplier() {
+		// Act:
+		new RetryPolicy.Builder().backoffMultiplier(0.5).build();
+	}
+}
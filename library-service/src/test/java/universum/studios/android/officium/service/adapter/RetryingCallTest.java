@@ -0,0 +1,240 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import universum.studios.android.officium.service.ServiceExecutors;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class RetryingCallTest extends LocalTestCase {
+
+	private static final Request GET_REQUEST = new Request.Builder().url("https://www.android.com/items").build();
+	private static final RetryPolicy IMMEDIATE_POLICY = new RetryPolicy.Builder()
+			.initialBackoff(0, TimeUnit.MILLISECONDS)
+			.maxBackoff(0, TimeUnit.MILLISECONDS)
+			.build();
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueRetriesRetryableResponse() {
+		// Arrange:
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final Call<String> retry = mockCall(GET_REQUEST);
+		when(delegate.clone()).thenReturn(retry);
+		final RetryingCall<String> call = createCall(delegate, new ServiceCallAdapterFactory.Builder().retryPolicy(IMMEDIATE_POLICY));
+		final Callback<String> callback = mock(TestCallback.class);
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		callbackCaptor.getValue().onResponse(delegate, Response.error(503, ResponseBody.create(null, "")));
+		verify(retry, timeout(1000)).enqueue(callbackCaptor.getValue());
+		final Response<String> response = Response.success("data");
+		callbackCaptor.getValue().onResponse(retry, response);
+		verify(callback).onResponse(call, response);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueDoesNotRetryNotRetryableResponse() {
+		// Arrange:
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final RetryingCall<String> call = createCall(delegate, new ServiceCallAdapterFactory.Builder().retryPolicy(IMMEDIATE_POLICY));
+		final Callback<String> callback = mock(TestCallback.class);
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		final Response<String> response = Response.error(404, ResponseBody.create(null, ""));
+		callbackCaptor.getValue().onResponse(delegate, response);
+		verify(callback).onResponse(call, response);
+		verify(delegate, never()).clone();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueRetriesFailureUntilMaxAttempts() {
+		// Arrange:
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final Call<String> retry = mockCall(GET_REQUEST);
+		when(delegate.clone()).thenReturn(retry);
+		final RetryPolicy policy = new RetryPolicy.Builder()
+				.maxAttempts(2)
+				.initialBackoff(0, TimeUnit.MILLISECONDS)
+				.maxBackoff(0, TimeUnit.MILLISECONDS)
+				.build();
+		final RetryingCall<String> call = createCall(delegate, new ServiceCallAdapterFactory.Builder().retryPolicy(policy));
+		final Callback<String> callback = mock(TestCallback.class);
+		final IOException failure = new IOException();
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		callbackCaptor.getValue().onFailure(delegate, failure);
+		verify(retry, timeout(1000)).enqueue(callbackCaptor.getValue());
+		callbackCaptor.getValue().onFailure(retry, failure);
+		verify(callback).onFailure(call, failure);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueWithExhaustedRetryBudget() {
+		// Arrange:
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final RetryBudget budget = new RetryBudget.Builder().ratio(0).reserve(0).build();
+		final RetryingCall<String> call = createCall(delegate, new ServiceCallAdapterFactory.Builder().retryPolicy(IMMEDIATE_POLICY).retryBudget(budget));
+		final Callback<String> callback = mock(TestCallback.class);
+		final IOException failure = new IOException();
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		callbackCaptor.getValue().onFailure(delegate, failure);
+		verify(callback).onFailure(call, failure);
+		verify(delegate, never()).clone();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueDoesNotRetryRejectedCall() {
+		// Arrange:
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final RetryingCall<String> call = createCall(delegate, new ServiceCallAdapterFactory.Builder().retryPolicy(IMMEDIATE_POLICY));
+		final Callback<String> callback = mock(TestCallback.class);
+		final CircuitBreaker breaker = new CircuitBreaker.Builder().build();
+		final CircuitOpenException failure = new CircuitOpenException(breaker.circuitFor(1, GET_REQUEST));
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		callbackCaptor.getValue().onFailure(delegate, failure);
+		verify(callback).onFailure(call, failure);
+		verify(delegate, never()).clone();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueNotIdempotentCall() {
+		// Arrange:
+		final Call<String> delegate = mockCall(new Request.Builder().url("https://www.android.com/items").post(RequestBody.create(null, "")).build());
+		final RetryingCall<String> call = createCall(delegate, new ServiceCallAdapterFactory.Builder().retryPolicy(IMMEDIATE_POLICY));
+		final Callback<String> callback = mock(TestCallback.class);
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		verify(delegate).enqueue(callback);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueForServiceWithoutPolicy() {
+		// Arrange:
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final RetryingCall<String> call = createCall(delegate, new ServiceCallAdapterFactory.Builder().retryPolicy(1, IMMEDIATE_POLICY));
+		final Callback<String> callback = mock(TestCallback.class);
+		// Act:
+		call.enqueue(callback);
+		// Assert:
+		verify(delegate).enqueue(callback);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testCancelWithPendingRetry() {
+		// Arrange:
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final RetryPolicy policy = new RetryPolicy.Builder()
+				.initialBackoff(1, TimeUnit.MINUTES)
+				.maxBackoff(1, TimeUnit.MINUTES)
+				.build();
+		final RetryingCall<String> call = createCall(delegate, new ServiceCallAdapterFactory.Builder().retryPolicy(policy));
+		final Callback<String> callback = mock(TestCallback.class);
+		call.enqueue(callback);
+		final ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(delegate).enqueue(callbackCaptor.capture());
+		callbackCaptor.getValue().onFailure(delegate, new IOException());
+		// Act:
+		call.cancel();
+		// Assert:
+		assertThat(call.isCanceled(), is(true));
+		verify(delegate).cancel();
+		final ArgumentCaptor<Throwable> failureCaptor = ArgumentCaptor.forClass(Throwable.class);
+		verify(callback).onFailure(any(Call.class), failureCaptor.capture());
+		assertThat(failureCaptor.getValue(), instanceOf(IOException.class));
+	}
+
+	@Test public void testExecuteRetriesFailure() throws Exception {
+		// Arrange:
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final Call<String> retry = mockCall(GET_REQUEST);
+		final Response<String> response = Response.success("data");
+		when(delegate.execute()).thenThrow(new IOException());
+		when(delegate.clone()).thenReturn(retry);
+		when(retry.execute()).thenReturn(response);
+		final RetryingCall<String> call = createCall(delegate, new ServiceCallAdapterFactory.Builder().retryPolicy(IMMEDIATE_POLICY));
+		// Act + Assert:
+		assertThat(call.execute(), is(response));
+	}
+
+	@Test(expected = IOException.class)
+	public void testExecuteWithoutPolicy() throws Exception {
+		// Arrange:
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		when(delegate.execute()).thenThrow(new IOException());
+		final RetryingCall<String> call = createCall(delegate, new ServiceCallAdapterFactory.Builder().retryPolicy(1, IMMEDIATE_POLICY));
+		// Act:
+		call.execute();
+	}
+
+	private static RetryingCall<String> createCall(final Call<String> delegate, final ServiceCallAdapterFactory.Builder factoryBuilder) {
+		return new RetryingCall<>(delegate, factoryBuilder.build(), ServiceExecutors.scheduler());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Call<String> mockCall(final Request request) {
+		final Call<String> call = mock(TestCall.class);
+		when(call.request()).thenReturn(request);
+		return call;
+	}
+
+	private interface TestCall extends Call<String> {}
+
+	private interface TestCallback extends Callback<String> {}
+}
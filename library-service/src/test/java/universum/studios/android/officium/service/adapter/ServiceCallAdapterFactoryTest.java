@@ -22,6 +22,7 @@ import org.junit.Test;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.util.concurrent.Executor;
 
 import androidx.annotation.NonNull;
 import retrofit2.Call;
@@ -36,6 +37,7 @@ import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
 
 /**
  * @author Martin Albedinsky
@@ -59,7 +61,105 @@ public final class ServiceCallAdapterFactoryTest extends LocalTestCase {
 		assertThat(factory, is(not(ServiceCallAdapterFactory.create())));
 	}
 
+	@Test public void testBuilder() {
+		// Act:
+		final ServiceCallAdapterFactory factory = new ServiceCallAdapterFactory.Builder().build();
+		// Assert:
+		assertThat(factory, is(notNullValue()));
+		assertThat(factory.flights, is(nullValue()));
+		assertThat(factory.responseCache, is(nullValue()));
+	}
+
+	@Test public void testBuilderWithSingleFlight() {
+		// Act:
+		final ServiceCallAdapterFactory factory = new ServiceCallAdapterFactory.Builder().singleFlight(true).build();
+		// Assert:
+		assertThat(factory.flights, is(notNullValue()));
+	}
+
+	@Test public void testBuilderWithResponseCache() {
+		// Arrange:
+		final ResponseCache cache = new ResponseCache.Builder().build();
+		// Act:
+		final ServiceCallAdapterFactory factory = new ServiceCallAdapterFactory.Builder().responseCache(cache).build();
+		// Assert:
+		assertThat(factory.responseCache, is(cache));
+	}
+
 	@SuppressWarnings("ConstantConditions")
+	@Test public void testBuilderWithRetryPolicies() {
+		// Arrange:
+		final RetryPolicy defaultPolicy = new RetryPolicy.Builder().build();
+		final RetryPolicy servicePolicy = new RetryPolicy.Builder().maxAttempts(5).build();
+		final RetryBudget budget = new RetryBudget.Builder().build();
+		// Act:
+		final ServiceCallAdapterFactory factory = new ServiceCallAdapterFactory.Builder()
+				.retryPolicy(defaultPolicy)
+				.retryPolicy(1, servicePolicy)
+				.retryPolicy(2, null)
+				.retryBudget(budget)
+				.build();
+		// Assert:
+		assertThat(factory.isRetryEnabled(), is(true));
+		assertThat(factory.retryPolicy(1), is(servicePolicy));
+		assertThat(factory.retryPolicy(2), is(nullValue()));
+		assertThat(factory.retryPolicy(3), is(defaultPolicy));
+		assertThat(factory.retryBudget, is(budget));
+	}
+
+	@Test public void testBuilderWithCircuitBreaker() {
+		// Arrange:
+		final CircuitBreaker breaker = new CircuitBreaker.Builder().build();
+		// Act:
+		final ServiceCallAdapterFactory factory = new ServiceCallAdapterFactory.Builder().circuitBreaker(breaker).build();
+		// Assert:
+		assertThat(factory.circuitBreaker, is(breaker));
+	}
+
+	@Test public void testBuilderWithPriorityDispatcher() {
+		// Arrange:
+		final PriorityDispatcher dispatcher = new PriorityDispatcher.Builder().build();
+		// Act:
+		final ServiceCallAdapterFactory factory = new ServiceCallAdapterFactory.Builder().priorityDispatcher(dispatcher).build();
+		// Assert:
+		assertThat(factory.priorityDispatcher, is(dispatcher));
+	}
+
+	@Test public void testBuilderWithServiceMetrics() {
+		// Arrange:
+		final ServiceMetrics metrics = new ServiceMetrics();
+		// Act:
+		final ServiceCallAdapterFactory factory = new ServiceCallAdapterFactory.Builder().serviceMetrics(metrics).build();
+		// Assert:
+		assertThat(factory.serviceMetrics, is(metrics));
+	}
+
+	@Test public void testBuilderWithDispatchExecutor() {
+		// Arrange:
+		final Executor executor = mock(Executor.class);
+		// Act:
+		final ServiceCallAdapterFactory factory = new ServiceCallAdapterFactory.Builder().dispatchExecutor(executor).build();
+		// Assert:
+		assertThat(factory.dispatchExecutor, is(executor));
+	}
+
+	@Test public void testBuilderWithRateLimiters() {
+		// Arrange:
+		final RateLimiter defaultLimiter = new RateLimiter.Builder().build();
+		final RateLimiter serviceLimiter = new RateLimiter.Builder().build();
+		// Act:
+		final ServiceCallAdapterFactory factory = new ServiceCallAdapterFactory.Builder()
+				.rateLimiter(defaultLimiter)
+				.rateLimiter(1, serviceLimiter)
+				.rateLimiter(2, null)
+				.build();
+		// Assert:
+		assertThat(factory.isRateLimitEnabled(), is(true));
+		assertThat(factory.rateLimiter(1), is(serviceLimiter));
+		assertThat(factory.rateLimiter(2), is(nullValue()));
+		assertThat(factory.rateLimiter(3), is(defaultLimiter));
+	}
+
 	@Test public void testGetForParametrizedServiceCallType() {
 		// Arrange:
 		final ServiceCallAdapterFactory factory = ServiceCallAdapterFactory.create();
@@ -20,12 +20,20 @@ package universum.studios.android.officium.service.adapter;
 
 import org.junit.Test;
 
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
+import retrofit2.Retrofit;
+import universum.studios.android.officium.service.ItemStream;
 import universum.studios.android.officium.service.ServiceCall;
 import universum.studios.android.test.local.LocalTestCase;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
@@ -53,6 +61,50 @@ public final class ServiceCallAdapterTest extends LocalTestCase {
 		assertThat(serviceCall.isCanceled(), is(false));
 	}
 
+	@Test public void testResolveDispatchExecutor() {
+		// Arrange:
+		final Executor executor = mock(Executor.class);
+		final ServiceCallAdapterFactory factory = new ServiceCallAdapterFactory.Builder().dispatchExecutor(executor).build();
+		final Retrofit retrofit = new Retrofit.Builder().baseUrl("https://www.google.com/").callbackExecutor(new TestDispatchExecutor()).build();
+		// Act + Assert:
+		assertThat(ServiceCallAdapter.resolveDispatchExecutor(factory, retrofit), is(executor));
+		assertThat(ServiceCallAdapter.resolveDispatchExecutor(factory, null), is(executor));
+		assertThat(ServiceCallAdapter.resolveDispatchExecutor(null, retrofit), is(retrofit.callbackExecutor()));
+		assertThat(ServiceCallAdapter.resolveDispatchExecutor(ServiceCallAdapterFactory.create(), retrofit), is(retrofit.callbackExecutor()));
+	}
+
+	@Test public void testResolveDispatchExecutorByDefault() {
+		// Arrange:
+		final Retrofit retrofit = new Retrofit.Builder().baseUrl("https://www.google.com/").callbackExecutor(mock(Executor.class)).build();
+		// Act + Assert:
+		assertThat(ServiceCallAdapter.resolveDispatchExecutor(ServiceCallAdapterFactory.create(), retrofit), is(nullValue()));
+		assertThat(ServiceCallAdapter.resolveDispatchExecutor(null, retrofit), is(nullValue()));
+		assertThat(ServiceCallAdapter.resolveDispatchExecutor(null, null), is(nullValue()));
+	}
+
+	@Test public void testIsConsumable() throws Exception {
+		// Act + Assert:
+		assertThat(ServiceCallAdapter.isConsumable(String.class), is(false));
+		assertThat(ServiceCallAdapter.isConsumable(ResponseBody.class), is(true));
+		assertThat(ServiceCallAdapter.isConsumable(ItemStream.class), is(true));
+		assertThat(ServiceCallAdapter.isConsumable(TestApi.class.getMethod("items").getGenericReturnType()), is(true));
+		assertThat(ServiceCallAdapter.isConsumable(TestApi.class.getMethod("names").getGenericReturnType()), is(false));
+	}
+
+	private interface TestApi {
+
+		ItemStream<String> items();
+
+		List<String> names();
+	}
+
+	private static final class TestDispatchExecutor implements ServiceCallAdapterFactory.DispatchExecutor {
+
+		@Override public void execute(@NonNull final Runnable command) {
+			command.run();
+		}
+	}
+
 	private static abstract class TestCall implements Call<String> {
 
 		@SuppressWarnings("MethodDoesntCallSuperMethod")
@@ -0,0 +1,103 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class ServiceMetricsTest extends LocalTestCase {
+
+	@Test public void testRecorder() {
+		// Arrange:
+		final ServiceMetrics metrics = new ServiceMetrics();
+		// Act + Assert:
+		assertThat(metrics.recorder(1), is(sameInstance(metrics.recorder(1))));
+		assertThat(metrics.recorder(1) == metrics.recorder(2), is(false));
+	}
+
+	@Test public void testEnabled() {
+		// Arrange:
+		final ServiceMetrics metrics = new ServiceMetrics();
+		// Act + Assert:
+		assertThat(metrics.isEnabled(), is(true));
+		metrics.setEnabled(false);
+		assertThat(metrics.isEnabled(), is(false));
+	}
+
+	@Test public void testGetSnapshot() {
+		// Arrange:
+		final ServiceMetrics metrics = new ServiceMetrics();
+		final ServiceMetrics.Recorder recorder = metrics.recorder(1);
+		recorder.successes.incrementAndGet();
+		recorder.errors.incrementAndGet();
+		recorder.failures.incrementAndGet();
+		recorder.requestBytes.addAndGet(10);
+		recorder.responseBytes.addAndGet(20);
+		recorder.latency.record(1000);
+		// Act:
+		final ServiceMetrics.Snapshot snapshot = metrics.getSnapshot(1);
+		// Assert:
+		assertThat(snapshot.getServiceId(), is(1));
+		assertThat(snapshot.getSuccessCount(), is(1L));
+		assertThat(snapshot.getErrorCount(), is(1L));
+		assertThat(snapshot.getFailureCount(), is(1L));
+		assertThat(snapshot.getCallCount(), is(3L));
+		assertThat(snapshot.getRequestBytes(), is(10L));
+		assertThat(snapshot.getResponseBytes(), is(20L));
+		assertThat(snapshot.getLatency().getCount(), is(1L));
+		assertThat(snapshot.getConversionTime().getCount(), is(0L));
+		assertThat(metrics.getSnapshot(2), is(nullValue()));
+	}
+
+	@Test public void testGetSnapshots() {
+		// Arrange:
+		final ServiceMetrics metrics = new ServiceMetrics();
+		metrics.recorder(1).successes.incrementAndGet();
+		metrics.recorder(2).failures.incrementAndGet();
+		// Act:
+		final Map<Integer, ServiceMetrics.Snapshot> snapshots = metrics.getSnapshots();
+		// Assert:
+		assertThat(snapshots.size(), is(2));
+		assertThat(snapshots.get(1).getSuccessCount(), is(1L));
+		assertThat(snapshots.get(2).getFailureCount(), is(1L));
+	}
+
+	@Test public void testReset() {
+		// Arrange:
+		final ServiceMetrics metrics = new ServiceMetrics();
+		metrics.recorder(1).successes.incrementAndGet();
+		metrics.recorder(1).latency.record(1000);
+		// Act:
+		metrics.reset();
+		// Assert:
+		assertThat(metrics.getSnapshot(1).getCallCount(), is(0L));
+		assertThat(metrics.getSnapshot(1).getLatency().getCount(), is(0L));
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.adapter;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import universum.studios.android.officium.service.BaseServiceObject;
+import universum.studios.android.officium.service.ServiceCallback;
+import universum.studios.android.officium.service.ServiceError;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class SingleFlightCallTest extends LocalTestCase {
+
+	private static final Request GET_REQUEST = new Request.Builder().url("https://www.android.com/items").build();
+	private static final Request POST_REQUEST = new Request.Builder().url("https://www.android.com/items").post(RequestBody.create(null, "")).build();
+
+	private final ConcurrentMap<String, SingleFlightCall.Flight<?>> flights = new ConcurrentHashMap<>();
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueIdenticalCalls() {
+		// Arrange:
+		final Call<String> firstDelegate = mockCall(GET_REQUEST);
+		final Call<String> secondDelegate = mockCall(GET_REQUEST);
+		final SingleFlightCall<String> firstCall = new SingleFlightCall<>(firstDelegate, String.class, flights);
+		final SingleFlightCall<String> secondCall = new SingleFlightCall<>(secondDelegate, String.class, flights);
+		final Callback<String> firstCallback = mock(TestCallback.class);
+		final Callback<String> secondCallback = mock(TestCallback.class);
+		// Act:
+		firstCall.enqueue(firstCallback);
+		secondCall.enqueue(secondCallback);
+		// Assert:
+		final ArgumentCaptor<Callback> flightCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(firstDelegate).enqueue(flightCaptor.capture());
+		verify(secondDelegate).request();
+		verify(secondDelegate, never()).enqueue(any(Callback.class));
+		final Response<String> response = Response.success("data");
+		flightCaptor.getValue().onResponse(firstDelegate, response);
+		verify(firstCallback).onResponse(firstCall, response);
+		verify(secondCallback).onResponse(secondCall, response);
+		assertThat(flights.isEmpty(), is(true));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueIdenticalCallsWithServiceCallbacks() {
+		// Arrange:
+		final Call<TestResult> firstDelegate = mock(TestResultCall.class);
+		when(firstDelegate.request()).thenReturn(GET_REQUEST);
+		final Call<TestResult> secondDelegate = mock(TestResultCall.class);
+		when(secondDelegate.request()).thenReturn(GET_REQUEST);
+		final TestServiceCallback firstCallback = new TestServiceCallback();
+		firstCallback.setServiceId(1);
+		firstCallback.setRequestId("1");
+		final TestServiceCallback secondCallback = new TestServiceCallback();
+		secondCallback.setServiceId(1);
+		secondCallback.setRequestId("2");
+		new SingleFlightCall<>(firstDelegate, TestResult.class, flights).enqueue(firstCallback);
+		new SingleFlightCall<>(secondDelegate, TestResult.class, flights).enqueue(secondCallback);
+		final ArgumentCaptor<Callback> flightCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(firstDelegate).enqueue(flightCaptor.capture());
+		// Act:
+		flightCaptor.getValue().onResponse(firstDelegate, Response.success(new TestResult()));
+		// Assert:
+		assertThat(firstCallback.responseBody.getRequestId(), is("1"));
+		assertThat(secondCallback.responseBody.getRequestId(), is("2"));
+		assertThat(firstCallback.responseBody.getServiceId(), is(1));
+		assertThat(secondCallback.responseBody.getServiceId(), is(1));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueIdenticalCallsShareBody() {
+		// Arrange:
+		final Call<List<String>> firstDelegate = mock(TestListCall.class);
+		when(firstDelegate.request()).thenReturn(GET_REQUEST);
+		final Call<List<String>> secondDelegate = mock(TestListCall.class);
+		when(secondDelegate.request()).thenReturn(GET_REQUEST);
+		final Callback<List<String>> firstCallback = mock(TestListCallback.class);
+		final Callback<List<String>> secondCallback = mock(TestListCallback.class);
+		new SingleFlightCall<>(firstDelegate, List.class, flights).enqueue(firstCallback);
+		new SingleFlightCall<>(secondDelegate, List.class, flights).enqueue(secondCallback);
+		final ArgumentCaptor<Callback> flightCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(firstDelegate).enqueue(flightCaptor.capture());
+		// Act:
+		flightCaptor.getValue().onResponse(firstDelegate, Response.success(new ArrayList<>(Collections.singletonList("data"))));
+		// Assert:
+		final ArgumentCaptor<Response> firstResponseCaptor = ArgumentCaptor.forClass(Response.class);
+		final ArgumentCaptor<Response> secondResponseCaptor = ArgumentCaptor.forClass(Response.class);
+		verify(firstCallback).onResponse(any(Call.class), firstResponseCaptor.capture());
+		verify(secondCallback).onResponse(any(Call.class), secondResponseCaptor.capture());
+		assertSame(firstResponseCaptor.getValue().body(), secondResponseCaptor.getValue().body());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueIdenticalCallsWithErrorResponse() throws Exception {
+		// Arrange:
+		final Call<String> firstDelegate = mockCall(GET_REQUEST);
+		final SingleFlightCall<String> firstCall = new SingleFlightCall<>(firstDelegate, String.class, flights);
+		final SingleFlightCall<String> secondCall = new SingleFlightCall<>(mockCall(GET_REQUEST), String.class, flights);
+		final Callback<String> firstCallback = mock(TestCallback.class);
+		final Callback<String> secondCallback = mock(TestCallback.class);
+		firstCall.enqueue(firstCallback);
+		secondCall.enqueue(secondCallback);
+		final ArgumentCaptor<Callback> flightCaptor = ArgumentCaptor.forClass(Callback.class);
+		verify(firstDelegate).enqueue(flightCaptor.capture());
+		// Act:
+		flightCaptor.getValue().onResponse(firstDelegate, Response.error(404, ResponseBody.create(MediaType.parse("application/json"), "{}")));
+		// Assert:
+		final ArgumentCaptor<Response> firstResponseCaptor = ArgumentCaptor.forClass(Response.class);
+		final ArgumentCaptor<Response> secondResponseCaptor = ArgumentCaptor.forClass(Response.class);
+		verify(firstCallback).onResponse(any(Call.class), firstResponseCaptor.capture());
+		verify(secondCallback).onResponse(any(Call.class), secondResponseCaptor.capture());
+		assertThat(firstResponseCaptor.getValue().errorBody().string(), is("{}"));
+		assertThat(secondResponseCaptor.getValue().errorBody().string(), is("{}"));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testEnqueueNotIdempotentCalls() {
+		// Arrange:
+		final Call<String> firstDelegate = mockCall(POST_REQUEST);
+		final Call<String> secondDelegate = mockCall(POST_REQUEST);
+		final Callback<String> firstCallback = mock(TestCallback.class);
+		final Callback<String> secondCallback = mock(TestCallback.class);
+		// Act:
+		new SingleFlightCall<>(firstDelegate, String.class, flights).enqueue(firstCallback);
+		new SingleFlightCall<>(secondDelegate, String.class, flights).enqueue(secondCallback);
+		// Assert:
+		verify(firstDelegate).enqueue(firstCallback);
+		verify(secondDelegate).enqueue(secondCallback);
+		assertThat(flights.isEmpty(), is(true));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testCancelJoinedCall() {
+		// Arrange:
+		final Call<String> firstDelegate = mockCall(GET_REQUEST);
+		final SingleFlightCall<String> firstCall = new SingleFlightCall<>(firstDelegate, String.class, flights);
+		final SingleFlightCall<String> secondCall = new SingleFlightCall<>(mockCall(GET_REQUEST), String.class, flights);
+		final Callback<String> firstCallback = mock(TestCallback.class);
+		final Callback<String> secondCallback = mock(TestCallback.class);
+		firstCall.enqueue(firstCallback);
+		secondCall.enqueue(secondCallback);
+		// Act:
+		secondCall.cancel();
+		// Assert:
+		assertThat(secondCall.isCanceled(), is(true));
+		verify(secondCallback).onFailure(any(Call.class), any(Throwable.class));
+		verify(firstDelegate, never()).cancel();
+		verifyZeroInteractions(firstCallback);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testCancelLastCall() {
+		// Arrange:
+		final Call<String> delegate = mockCall(GET_REQUEST);
+		final SingleFlightCall<String> call = new SingleFlightCall<>(delegate, String.class, flights);
+		call.enqueue(mock(TestCallback.class));
+		// Act:
+		call.cancel();
+		// Assert:
+		verify(delegate).cancel();
+		assertThat(flights.isEmpty(), is(true));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testEnqueueWhenAlreadyExecuted() {
+		// Arrange:
+		final SingleFlightCall<String> call = new SingleFlightCall<>(mockCall(GET_REQUEST), String.class, flights);
+		call.enqueue(mock(TestCallback.class));
+		// Act:
+		call.enqueue(mock(TestCallback.class));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Call<String> mockCall(final Request request) {
+		final Call<String> call = mock(TestCall.class);
+		when(call.request()).thenReturn(request);
+		return call;
+	}
+
+	private interface TestCall extends Call<String> {}
+
+	private interface TestCallback extends Callback<String> {}
+
+	private interface TestListCall extends Call<List<String>> {}
+
+	private interface TestListCallback extends Callback<List<String>> {}
+
+	private interface TestResultCall extends Call<TestResult> {}
+
+	private static final class TestResult extends BaseServiceObject {}
+
+	private static final class TestServiceCallback extends ServiceCallback<TestResult> {
+
+		TestResult responseBody;
+
+		@Override protected void onDispatchResponse(@NonNull final TestResult responseBody) {
+			this.responseBody = responseBody;
+		}
+
+		@Override protected void onDispatchError(@NonNull final ServiceError error) {}
+	}
+}
@@ -78,4 +78,13 @@ public final class AuthRequestInterceptorTest extends LocalTestCase {
 		assertThat(headers, is(notNullValue()));
 		assertThat(headers.get(AuthRequestInterceptor.HEADER_NAME), is("Bearer 81297a2ee021a840a160551409407615f0d05b15"));
 	}
-}
\ No newline at end of file
+
+	@Test public void testTokenOf() {
+		// Arrange:
+		final Request request = new Request.Builder().url("https://google.com").build();
+		// Act + Assert:
+		assertThat(AuthRequestInterceptor.tokenOf(request), is(nullValue()));
+		assertThat(AuthRequestInterceptor.tokenOf(request.newBuilder().header(AuthRequestInterceptor.HEADER_NAME, "Basic dXNlcg==").build()), is(nullValue()));
+		assertThat(AuthRequestInterceptor.tokenOf(request.newBuilder().header(AuthRequestInterceptor.HEADER_NAME, "Bearer token").build()), is("token"));
+	}
+}
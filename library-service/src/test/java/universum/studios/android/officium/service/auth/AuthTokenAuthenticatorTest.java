@@ -0,0 +1,110 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.auth;
+
+import org.junit.Test;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class AuthTokenAuthenticatorTest extends LocalTestCase {
+
+	private static final Request REQUEST = new Request.Builder()
+			.url("https://www.android.com/")
+			.header(AuthRequestInterceptor.HEADER_NAME, "Bearer token:1")
+			.build();
+
+	@Test public void testAuthenticate() throws Exception {
+		// Arrange:
+		final AuthTokenProvider mockTokenProvider = mock(AuthTokenProvider.class);
+		when(mockTokenProvider.peekToken()).thenReturn("token:1");
+		final AuthTokenRefresher mockTokenRefresher = mock(AuthTokenRefresher.class);
+		when(mockTokenRefresher.refreshToken("token:1")).thenReturn("token:2");
+		final AuthTokenCache cache = new AuthTokenCache(mockTokenProvider);
+		final AuthTokenAuthenticator authenticator = new AuthTokenAuthenticator(cache, mockTokenRefresher);
+		// Act:
+		final Request request = authenticator.authenticate(null, createUnauthorizedResponse(REQUEST));
+		// Assert:
+		assertThat(request, is(notNullValue()));
+		assertThat(request.header(AuthRequestInterceptor.HEADER_NAME), is("Bearer token:2"));
+		assertThat(cache.peekToken(), is("token:2"));
+	}
+
+	@Test public void testAuthenticateWithTokenAlreadyRefreshed() throws Exception {
+		// Arrange:
+		final AuthTokenProvider mockTokenProvider = mock(AuthTokenProvider.class);
+		when(mockTokenProvider.peekToken()).thenReturn("token:3");
+		final AuthTokenRefresher mockTokenRefresher = mock(AuthTokenRefresher.class);
+		final AuthTokenCache cache = new AuthTokenCache(mockTokenProvider);
+		cache.peekToken();
+		final AuthTokenAuthenticator authenticator = new AuthTokenAuthenticator(cache, mockTokenRefresher);
+		// Act:
+		final Request request = authenticator.authenticate(null, createUnauthorizedResponse(REQUEST));
+		// Assert:
+		assertThat(request, is(notNullValue()));
+		assertThat(request.header(AuthRequestInterceptor.HEADER_NAME), is("Bearer token:3"));
+		verify(mockTokenRefresher, never()).refreshToken(anyString());
+	}
+
+	@Test public void testAuthenticateWithoutNewToken() throws Exception {
+		// Arrange:
+		final AuthTokenRefresher mockTokenRefresher = mock(AuthTokenRefresher.class);
+		when(mockTokenRefresher.refreshToken("token:1")).thenReturn(null);
+		final AuthTokenCache cache = new AuthTokenCache(mock(AuthTokenProvider.class));
+		final AuthTokenAuthenticator authenticator = new AuthTokenAuthenticator(cache, mockTokenRefresher);
+		// Act + Assert:
+		assertThat(authenticator.authenticate(null, createUnauthorizedResponse(REQUEST)), is(nullValue()));
+	}
+
+	@Test public void testAuthenticateAlreadyRetriedRequest() throws Exception {
+		// Arrange:
+		final AuthTokenRefresher mockTokenRefresher = mock(AuthTokenRefresher.class);
+		final AuthTokenAuthenticator authenticator = new AuthTokenAuthenticator(new AuthTokenCache(mock(AuthTokenProvider.class)), mockTokenRefresher);
+		final Response response = createUnauthorizedResponse(REQUEST).newBuilder()
+				.priorResponse(createUnauthorizedResponse(REQUEST))
+				.build();
+		// Act + Assert:
+		assertThat(authenticator.authenticate(null, response), is(nullValue()));
+		verify(mockTokenRefresher, never()).refreshToken(anyString());
+	}
+
+	private static Response createUnauthorizedResponse(final Request request) {
+		return new Response.Builder()
+				.request(request)
+				.protocol(Protocol.HTTP_1_1)
+				.code(401)
+				.message("Unauthorized")
+				.build();
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * *************************************************************************************************
+ *                                 Copyright 2018 Universum Studios
+ * *************************************************************************************************
+ *                  Licensed under the Apache License, Version 2.0 (the "License")
+ * -------------------------------------------------------------------------------------------------
+ * You may not use this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ * *************************************************************************************************
+ */
+package universum.studios.android.officium.service.auth;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.Nullable;
+import universum.studios.android.test.local.LocalTestCase;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Martin Albedinsky
+ */
+public final class AuthTokenCacheTest extends LocalTestCase {
+
+	@Test public void testPeekToken() {
+		// Arrange:
+		final AuthTokenProvider mockTokenProvider = mock(AuthTokenProvider.class);
+		when(mockTokenProvider.peekToken()).thenReturn("token");
+		final AuthTokenCache cache = new AuthTokenCache(mockTokenProvider);
+		// Act + Assert:
+		assertThat(cache.peekToken(), is("token"));
+		assertThat(cache.peekToken(), is("token"));
+		verify(mockTokenProvider, times(1)).peekToken();
+	}
+
+	@Test public void testPeekTokenWithoutToken() {
+		// Arrange:
+		final AuthTokenProvider mockTokenProvider = mock(AuthTokenProvider.class);
+		when(mockTokenProvider.peekToken()).thenReturn("");
+		final AuthTokenCache cache = new AuthTokenCache(mockTokenProvider);
+		// Act + Assert:
+		assertThat(cache.peekToken(), is(nullValue()));
+		assertThat(cache.peekToken(), is(nullValue()));
+		verify(mockTokenProvider, times(2)).peekToken();
+	}
+
+	@Test public void testInvalidateToken() {
+		// Arrange:
+		final AuthTokenProvider mockTokenProvider = mock(AuthTokenProvider.class);
+		when(mockTokenProvider.peekToken()).thenReturn("token:1", "token:2");
+		final AuthTokenCache cache = new AuthTokenCache(mockTokenProvider);
+		cache.peekToken();
+		// Act:
+		cache.invalidateToken();
+		// Assert:
+		assertThat(cache.peekToken(), is("token:2"));
+	}
+
+	@Test public void testInvalidateSpecificToken() {
+		// Arrange:
+		final AuthTokenProvider mockTokenProvider = mock(AuthTokenProvider.class);
+		when(mockTokenProvider.peekToken()).thenReturn("token:1", "token:2");
+		final AuthTokenCache cache = new AuthTokenCache(mockTokenProvider);
+		cache.peekToken();
+		// Act + Assert:
+		assertThat(cache.invalidateToken("token:0"), is(false));
+		assertThat(cache.peekToken(), is("token:1"));
+		assertThat(cache.invalidateToken("token:1"), is(true));
+		assertThat(cache.peekToken(), is("token:2"));
+	}
+
+	@Test public void testRefreshToken() throws Exception {
+		// Arrange:
+		final AuthTokenProvider mockTokenProvider = mock(AuthTokenProvider.class);
+		when(mockTokenProvider.peekToken()).thenReturn("token:1");
+		final AuthTokenRefresher mockTokenRefresher = mock(AuthTokenRefresher.class);
+		when(mockTokenRefresher.refreshToken("token:1")).thenReturn("token:2");
+		final AuthTokenCache cache = new AuthTokenCache(mockTokenProvider);
+		cache.peekToken();
+		// Act + Assert:
+		assertThat(cache.refreshToken("token:1", mockTokenRefresher), is("token:2"));
+		assertThat(cache.peekToken(), is("token:2"));
+		assertThat(cache.refreshToken("token:1", mockTokenRefresher), is("token:2"));
+		verify(mockTokenRefresher, times(1)).refreshToken("token:1");
+	}
+
+	@Test public void testRefreshTokenThatFails() throws Exception {
+		// Arrange:
+		final AuthTokenProvider mockTokenProvider = mock(AuthTokenProvider.class);
+		when(mockTokenProvider.peekToken()).thenReturn("token:1", "token:2");
+		final AuthTokenRefresher mockTokenRefresher = mock(AuthTokenRefresher.class);
+		when(mockTokenRefresher.refreshToken("token:1")).thenThrow(new IOException());
+		final AuthTokenCache cache = new AuthTokenCache(mockTokenProvider);
+		cache.peekToken();
+		// Act:
+		try {
+			cache.refreshToken("token:1", mockTokenRefresher);
+			throw new AssertionError("No exception thrown.");
+		} catch (IOException e) {
+			// Assert:
+			assertThat(cache.peekToken(), is("token:2"));
+		}
+	}
+
+	@Test public void testRefreshTokenConcurrently() throws Exception {
+		// Arrange:
+		final AuthTokenProvider mockTokenProvider = mock(AuthTokenProvider.class);
+		when(mockTokenProvider.peekToken()).thenReturn("token:1");
+		final AtomicInteger refreshes = new AtomicInteger();
+		final AuthTokenRefresher tokenRefresher = new AuthTokenRefresher() {
+
+			@Override @Nullable public String refreshToken(@Nullable final String expiredToken) throws IOException {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				return "token:" + (refreshes.incrementAndGet() + 1);
+			}
+		};
+		final AuthTokenCache cache = new AuthTokenCache(mockTokenProvider);
+		final String expiredToken = cache.peekToken();
+		final int threads = 8;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final CountDownLatch startLatch = new CountDownLatch(1);
+		final List<Future<String>> results = new ArrayList<>(threads);
+		try {
+			for (int i = 0; i < threads; i++) {
+				results.add(executor.submit(new Callable<String>() {
+
+					@Override public String call() throws Exception {
+						startLatch.await();
+						return cache.refreshToken(expiredToken, tokenRefresher);
+					}
+				}));
+			}
+			// Act:
+			startLatch.countDown();
+			// Assert:
+			for (final Future<String> result : results) {
+				assertThat(result.get(), is("token:2"));
+			}
+			assertThat(refreshes.get(), is(1));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}